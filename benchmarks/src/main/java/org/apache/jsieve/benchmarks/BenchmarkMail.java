@@ -0,0 +1,152 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.benchmarks;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.mailet.Mail;
+import org.apache.mailet.MailAddress;
+
+/**
+ * Minimal {@link Mail} wrapping a message, for benchmarks of the mailet.
+ */
+public class BenchmarkMail implements Mail {
+
+    private static final long serialVersionUID = 5146233549627403837L;
+
+    private final Map<String, Serializable> attributes = new HashMap<String, Serializable>();
+
+    private MimeMessage message;
+
+    private Collection<MailAddress> recipients;
+
+    private final MailAddress sender;
+
+    private String name = "benchmark";
+
+    private String state = Mail.DEFAULT;
+
+    private String errorMessage;
+
+    private Date lastUpdated = new Date();
+
+    public BenchmarkMail(MimeMessage message, MailAddress sender, MailAddress recipient) {
+        this.message = message;
+        this.sender = sender;
+        this.recipients = Collections.singletonList(recipient);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public MimeMessage getMessage() throws MessagingException {
+        return message;
+    }
+
+    public void setMessage(MimeMessage message) {
+        this.message = message;
+    }
+
+    public Collection<MailAddress> getRecipients() {
+        return recipients;
+    }
+
+    public void setRecipients(Collection<MailAddress> recipients) {
+        this.recipients = recipients;
+    }
+
+    public MailAddress getSender() {
+        return sender;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public String getRemoteHost() {
+        return "localhost";
+    }
+
+    public String getRemoteAddr() {
+        return "127.0.0.1";
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public Serializable getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public Iterator<String> getAttributeNames() {
+        return attributes.keySet().iterator();
+    }
+
+    public boolean hasAttributes() {
+        return !attributes.isEmpty();
+    }
+
+    public Serializable removeAttribute(String name) {
+        return attributes.remove(name);
+    }
+
+    public void removeAllAttributes() {
+        attributes.clear();
+    }
+
+    public Serializable setAttribute(String name, Serializable object) {
+        return attributes.put(name, object);
+    }
+
+    public long getMessageSize() throws MessagingException {
+        return message.getSize();
+    }
+
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(Date lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+}
@@ -0,0 +1,97 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jsieve.ConfigurationManager;
+import org.apache.jsieve.comparators.Comparator;
+import org.apache.jsieve.comparators.ComparatorUtils;
+import org.apache.jsieve.comparators.MatchType;
+import org.apache.jsieve.exception.SieveException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the <code>:is</code>, <code>:contains</code> and 
+ * <code>:matches</code> match types of each comparator, 
+ * against a header length and a body length value.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ComparatorBenchmark {
+
+    @Param({ "i;octet", "i;ascii-casemap" })
+    public String comparatorName;
+
+    @Param({ "64", "4096" })
+    public int length;
+
+    private Comparator comparator;
+
+    private String value;
+
+    private String contents;
+
+    private String glob;
+
+    @Setup
+    public void setUp() throws Exception {
+        comparator = new ConfigurationManager().getComparatorManager()
+                .getComparator(comparatorName);
+        final StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length - 16) {
+            builder.append("Re: quarterly figures ");
+        }
+        builder.setLength(length - 16);
+        builder.append("[JIRA] JSIEVE-99");
+        value = builder.toString();
+        contents = "JSIEVE-99";
+        glob = "*quarterly*[JIRA]*-??";
+    }
+
+    @Benchmark
+    public boolean is() throws SieveException {
+        return ComparatorUtils.match(comparator, MatchType.IS, value, value);
+    }
+
+    @Benchmark
+    public boolean contains() throws SieveException {
+        return ComparatorUtils.match(comparator, MatchType.CONTAINS, value, contents);
+    }
+
+    @Benchmark
+    public boolean matches() throws SieveException {
+        return ComparatorUtils.match(comparator, MatchType.MATCHES, value, glob);
+    }
+}
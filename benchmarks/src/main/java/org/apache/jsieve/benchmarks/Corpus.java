@@ -0,0 +1,232 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * <p>
+ * Scripts and messages evaluated by the benchmarks. 
+ * These are generated, so that the corpus is reproducible without 
+ * external files, and are shaped after typical mailbox traffic.
+ * </p>
+ * <h4>Scripts</h4>
+ * <ul>
+ * <li><code>small</code> a single sorting rule</li>
+ * <li><code>medium</code> a vacation style filter of some tens of rules</li>
+ * <li><code>huge</code> a generated filter of many hundreds of rules</li>
+ * </ul>
+ * <h4>Messages</h4>
+ * <ul>
+ * <li><code>plain</code> a short personal message</li>
+ * <li><code>headerHeavy</code> a list message with a long trace of 
+ * Received, ARC and DKIM headers</li>
+ * <li><code>bodyHeavy</code> a message with a large text body</li>
+ * </ul>
+ */
+public final class Corpus {
+
+    public static final String SMALL = "small";
+    public static final String MEDIUM = "medium";
+    public static final String HUGE = "huge";
+
+    public static final String PLAIN = "plain";
+    public static final String HEADER_HEAVY = "headerHeavy";
+    public static final String BODY_HEAVY = "bodyHeavy";
+
+    private static final int HUGE_RULES = 600;
+
+    private static final int TRACE_HOPS = 60;
+
+    private static final int BODY_LINES = 20000;
+
+    private Corpus() {
+    }
+
+    /**
+     * Gets the script of the given size.
+     * @param size {@link #SMALL}, {@link #MEDIUM} or {@link #HUGE}
+     * @return script source, not null
+     */
+    public static String script(String size) {
+        if (SMALL.equals(size)) {
+            return "require \"fileinto\";\r\n"
+                    + "if header :contains \"Subject\" \"jsieve\" {\r\n"
+                    + "    fileinto \"jsieve\";\r\n" 
+                    + "    stop;\r\n" 
+                    + "}\r\n";
+        } else if (MEDIUM.equals(size)) {
+            return medium();
+        } else if (HUGE.equals(size)) {
+            return huge();
+        }
+        throw new IllegalArgumentException("Unknown script: " + size);
+    }
+
+    private static String medium() {
+        final StringBuilder script = new StringBuilder(4096);
+        script.append("require [\"fileinto\", \"reject\"];\r\n");
+        script.append("if size :over 10M { reject \"Too large\"; stop; }\r\n");
+        script.append("if exists \"X-Spam-Flag\" { fileinto \"Junk\"; stop; }\r\n");
+        script.append("if header :matches \"X-Spam-Score\" \"1?.*\" { fileinto \"Junk\"; stop; }\r\n");
+        final String[] lists = { "james-dev", "james-user", "server-dev", "mime4j-dev",
+                "general", "announce", "commits", "notifications" };
+        for (final String list : lists) {
+            script.append("if header :contains \"List-Id\" \"<").append(list)
+                    .append(".james.apache.org>\" { fileinto \"lists.")
+                    .append(list).append("\"; stop; }\r\n");
+        }
+        script.append("if anyof (address :domain :is \"From\" [\"example.com\", \"example.org\"],\r\n");
+        script.append("          address :localpart :matches \"From\" \"*-noreply\") {\r\n");
+        script.append("    fileinto \"Robots\";\r\n");
+        script.append("} elsif allof (header :contains \"Subject\" [\"invoice\", \"receipt\", \"order\"],\r\n");
+        script.append("               not address :all :is \"From\" \"boss@example.net\") {\r\n");
+        script.append("    fileinto \"Receipts\";\r\n");
+        script.append("} elsif header :is \"Precedence\" [\"bulk\", \"junk\", \"list\"] {\r\n");
+        script.append("    fileinto \"Bulk\";\r\n");
+        script.append("} else {\r\n");
+        script.append("    keep;\r\n");
+        script.append("}\r\n");
+        return script.toString();
+    }
+
+    private static String huge() {
+        final StringBuilder script = new StringBuilder(HUGE_RULES * 128);
+        script.append("require [\"fileinto\"];\r\n");
+        for (int i = 0; i < HUGE_RULES; i++) {
+            switch (i % 5) {
+            case 0:
+                script.append("if header :contains \"Subject\" [\"project-").append(i)
+                        .append("\", \"ticket #").append(i).append("\"]");
+                break;
+            case 1:
+                script.append("if address :is \"From\" \"user").append(i)
+                        .append("@example.com\"");
+                break;
+            case 2:
+                script.append("if header :matches \"List-Id\" \"*list-").append(i)
+                        .append(".example.org*\"");
+                break;
+            case 3:
+                script.append("if allof (exists \"X-Rule-").append(i)
+                        .append("\", size :under ").append(i + 1).append("K)");
+                break;
+            default:
+                script.append("if address :domain :is [\"To\", \"Cc\"] \"domain").append(i)
+                        .append(".example.net\"");
+                break;
+            }
+            script.append(" { fileinto \"folder").append(i).append("\"; stop; }\r\n");
+        }
+        return script.toString();
+    }
+
+    /**
+     * Gets the source of the message of the given shape.
+     * @param shape {@link #PLAIN}, {@link #HEADER_HEAVY} or {@link #BODY_HEAVY}
+     * @return RFC 822 source, not null
+     */
+    public static byte[] messageSource(String shape) {
+        final StringBuilder message = new StringBuilder(4096);
+        if (HEADER_HEAVY.equals(shape)) {
+            for (int i = 0; i < TRACE_HOPS; i++) {
+                message.append("Received: from relay").append(i)
+                        .append(".example.net (relay").append(i)
+                        .append(".example.net [192.0.2.").append(i % 250)
+                        .append("])\r\n\tby mx.example.org with ESMTPS id ")
+                        .append(1000 + i).append(";\r\n\tMon, 1 Jan 2024 00:00:")
+                        .append(10 + i % 50).append(" +0000\r\n");
+                if (i % 3 == 0) {
+                    message.append("ARC-Seal: i=").append(i / 3 + 1)
+                            .append("; a=rsa-sha256; t=1700000000; cv=pass;\r\n\td=example.net; s=arc; b=")
+                            .append(signature(i)).append("\r\n");
+                    message.append("DKIM-Signature: v=1; a=rsa-sha256; c=relaxed/relaxed;\r\n\td=example")
+                            .append(i).append(".net; s=sel; h=from:to:subject; b=")
+                            .append(signature(i)).append("\r\n");
+                }
+            }
+            message.append("List-Id: Developers <james-dev.james.apache.org>\r\n");
+            message.append("Precedence: list\r\n");
+        }
+        message.append("From: Sender <sender@example.com>\r\n");
+        message.append("To: Recipient <recipient@example.org>, other@example.net\r\n");
+        message.append("Cc: copy@example.net\r\n");
+        message.append("Subject: Re: Quarterly report\r\n");
+        message.append("Date: Mon, 1 Jan 2024 00:00:00 +0000\r\n");
+        message.append("Message-ID: <benchmark@example.com>\r\n");
+        message.append("MIME-Version: 1.0\r\n");
+        message.append("Content-Type: text/plain; charset=us-ascii\r\n");
+        message.append("\r\n");
+        if (BODY_HEAVY.equals(shape)) {
+            for (int i = 0; i < BODY_LINES; i++) {
+                message.append("Line ").append(i)
+                        .append(" of the quarterly report, with nothing of interest.\r\n");
+            }
+            message.append("The final line mentions the secret phrase.\r\n");
+        } else if (PLAIN.equals(shape) || HEADER_HEAVY.equals(shape)) {
+            message.append("Please find the figures attached.\r\n");
+        } else {
+            throw new IllegalArgumentException("Unknown message: " + shape);
+        }
+        try {
+            return message.toString().getBytes("US-ASCII");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String signature(int seed) {
+        final StringBuilder signature = new StringBuilder(88);
+        for (int i = 0; i < 88; i++) {
+            signature.append((char) ('A' + (seed * 31 + i * 7) % 26));
+        }
+        return signature.toString();
+    }
+
+    /**
+     * Parses the message of the given shape.
+     * @param shape {@link #PLAIN}, {@link #HEADER_HEAVY} or {@link #BODY_HEAVY}
+     * @return message, not null
+     * @throws MessagingException
+     */
+    public static MimeMessage message(String shape) throws MessagingException {
+        return new MimeMessage(Session.getDefaultInstance(new Properties()),
+                new ByteArrayInputStream(messageSource(shape)));
+    }
+
+    /**
+     * Gets the script of the given size as a stream.
+     * @param size {@link #SMALL}, {@link #MEDIUM} or {@link #HUGE}
+     * @return stream, not null
+     */
+    public static ByteArrayInputStream scriptStream(String size) {
+        try {
+            return new ByteArrayInputStream(script(size).getBytes("US-ASCII"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
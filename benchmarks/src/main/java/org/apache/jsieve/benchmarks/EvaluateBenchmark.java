@@ -0,0 +1,103 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.internet.MimeMessage;
+
+import org.apache.jsieve.CompiledScript;
+import org.apache.jsieve.ConfigurationManager;
+import org.apache.jsieve.SieveFactory;
+import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.mail.Action;
+import org.apache.jsieve.parser.generated.Node;
+import org.apache.jsieve.util.check.ScriptCheckMailAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Measures evaluating each script of the {@link Corpus} against each message.
+ * </p>
+ * <p>
+ * <code>evaluate</code> reuses a script compiled once, as a server caching
+ * scripts would. <code>interpret</code> compiles the parsed script for every
+ * evaluation, as {@link SieveFactory#evaluate(org.apache.jsieve.mail.MailAdapter, Node)}
+ * does.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EvaluateBenchmark {
+
+    @Param({ Corpus.SMALL, Corpus.MEDIUM, Corpus.HUGE })
+    public String script;
+
+    @Param({ Corpus.PLAIN, Corpus.HEADER_HEAVY, Corpus.BODY_HEAVY })
+    public String message;
+
+    private SieveFactory factory;
+
+    private Node node;
+
+    private CompiledScript compiled;
+
+    private MimeMessage mail;
+
+    private ScriptCheckMailAdapter adapter;
+
+    @Setup
+    public void setUp() throws Exception {
+        factory = new ConfigurationManager().build();
+        node = factory.parse(Corpus.scriptStream(script));
+        compiled = factory.compile(node);
+        mail = Corpus.message(message);
+        adapter = new ScriptCheckMailAdapter();
+    }
+
+    @Benchmark
+    public List<Action> evaluate() throws SieveException {
+        adapter.setMail(mail);
+        factory.evaluate(adapter, compiled);
+        return adapter.getActions();
+    }
+
+    @Benchmark
+    public List<Action> interpret() throws SieveException {
+        adapter.setMail(mail);
+        factory.evaluate(adapter, node);
+        return adapter.getActions();
+    }
+}
@@ -0,0 +1,118 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.MessagingException;
+
+import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.mail.MailAdapter;
+import org.apache.jsieve.mail.MailUtils;
+import org.apache.jsieve.mail.SieveMailException;
+import org.apache.jsieve.mailet.MessageView;
+import org.apache.jsieve.mailet.SieveMailAdapter;
+import org.apache.mailet.MailAddress;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>
+ * Measures header access through the mailet {@link SieveMailAdapter}.
+ * </p>
+ * <p>
+ * <code>firstLookups</code> includes the cost of reading the headers into 
+ * a new view, as for the first test of each mail. <code>lookups</code> 
+ * reuses a view, as later tests do. <code>scan</code> matches header names
+ * by {@link MailUtils#getMatchingHeader(MailAdapter, String)} for comparison.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HeaderAccessBenchmark {
+
+    private static final String[] NAMES = { "From", "subject", "List-Id", "X-Spam-Flag" };
+
+    @Param({ Corpus.PLAIN, Corpus.HEADER_HEAVY })
+    public String message;
+
+    private BenchmarkMail mail;
+
+    private SieveMailAdapter adapter;
+
+    @Setup
+    public void setUp() throws Exception {
+        mail = new BenchmarkMail(Corpus.message(message), 
+                new MailAddress("sender@example.com"), 
+                new MailAddress("recipient@example.org"));
+        adapter = newAdapter(new MessageView(mail.getMessage()));
+    }
+
+    private SieveMailAdapter newAdapter(MessageView view) {
+        return new SieveMailAdapter(mail, null, null, null, view);
+    }
+
+    @Benchmark
+    public void firstLookups(Blackhole blackhole) throws SieveMailException {
+        final SieveMailAdapter first = newAdapter(null);
+        for (final String name : NAMES) {
+            blackhole.consume(first.getMatchingHeader(name));
+        }
+    }
+
+    @Benchmark
+    public void lookups(Blackhole blackhole) throws SieveMailException {
+        for (final String name : NAMES) {
+            blackhole.consume(adapter.getMatchingHeader(name));
+        }
+    }
+
+    @Benchmark
+    public void scan(Blackhole blackhole) throws SieveMailException {
+        for (final String name : NAMES) {
+            blackhole.consume(MailUtils.getMatchingHeader(adapter, name));
+        }
+    }
+
+    @Benchmark
+    public List<String> headerNames() throws SieveMailException {
+        return adapter.getHeaderNames();
+    }
+
+    @Benchmark
+    public MailAdapter.Address[] firstParseAddresses() throws SieveException, MessagingException {
+        return newAdapter(new MessageView(mail.getMessage())).parseAddresses("To");
+    }
+}
@@ -0,0 +1,106 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.managesieve.api.ManageSieveException;
+import org.apache.james.managesieve.api.ScriptSummary;
+import org.apache.james.managesieve.api.commands.Capability.Capabilities;
+import org.apache.james.managesieve.core.CoreProcessor;
+import org.apache.james.managesieve.mock.MockSession;
+import org.apache.james.managesieve.mock.MockSieveParser;
+import org.apache.james.managesieve.mock.MockSieveRepository;
+import org.apache.james.managesieve.transcode.LineToCore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing of ManageSieve command lines by {@link LineToCore}. 
+ * Commands are executed against the mock repository and parser, 
+ * so that the cost measured is mostly that of parsing arguments.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LineToCoreBenchmark {
+
+    private static final String SCRIPT_NAME = "\"sorting\"";
+
+    private LineToCore lineToCore;
+
+    private String content;
+
+    @Setup
+    public void setUp() throws Exception {
+        final MockSession session = new MockSession();
+        final MockSieveParser parser = new MockSieveParser();
+        parser.setExtensions(Arrays.asList("fileinto", "reject", "envelope", "body"));
+        lineToCore = new LineToCore(new CoreProcessor(session, new MockSieveRepository(), parser));
+        session.setUser("user");
+        session.setAuthentication(true);
+        content = Corpus.script(Corpus.MEDIUM);
+        lineToCore.putScript(SCRIPT_NAME + " " + content);
+    }
+
+    @Benchmark
+    public Map<Capabilities, String> capability() throws ManageSieveException {
+        return lineToCore.capability("");
+    }
+
+    @Benchmark
+    public String getScript() throws ManageSieveException {
+        return lineToCore.getScript(SCRIPT_NAME);
+    }
+
+    @Benchmark
+    public List<String> putScript() throws ManageSieveException {
+        return lineToCore.putScript(SCRIPT_NAME + " " + content);
+    }
+
+    @Benchmark
+    public List<String> checkScript() throws ManageSieveException {
+        return lineToCore.checkScript(content);
+    }
+
+    @Benchmark
+    public void haveSpace() throws ManageSieveException {
+        lineToCore.haveSpace(SCRIPT_NAME + " 4096");
+    }
+
+    @Benchmark
+    public List<ScriptSummary> listScripts() throws ManageSieveException {
+        return lineToCore.listScripts("");
+    }
+}
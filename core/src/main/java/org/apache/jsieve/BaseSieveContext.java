@@ -22,12 +22,24 @@ package org.apache.jsieve;
 import org.apache.commons.logging.Log;
 
 /**
+ * <p>
  * Bean based implementation of context.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances hold the state of a single evaluation, and must be confined to
+ * the thread performing it. Once the evaluation completes, {@link #reset()}
+ * prepares the instance for another. The script coordinates set are never
+ * modified, and so may be shared by concurrent evaluations.
+ * </p>
  */
 public class BaseSieveContext extends SieveContext {
 
     private ScriptCoordinate coordinate;
 
+    /** The coordinate reporting to the log of this context, or null */
+    private ScriptCoordinate loggingCoordinate;
+
     private ConditionManager conditionManager;
 
     private final CommandStateManager commandStateManager;
@@ -40,6 +52,8 @@ public class BaseSieveContext extends SieveContext {
 
     private final Log log;
 
+    private TestResults testResults;
+
     public BaseSieveContext(final CommandManager commandManager,
                             final ComparatorManager comparatorManager,
                             final TestManager testManager, final Log log) {
@@ -58,7 +72,10 @@ public class BaseSieveContext extends SieveContext {
      */
     @Override
     public ScriptCoordinate getCoordinate() {
-        return coordinate;
+        if (loggingCoordinate == null && coordinate != null) {
+            loggingCoordinate = coordinate.withLog(getLog());
+        }
+        return loggingCoordinate;
     }
 
     /**
@@ -69,9 +86,18 @@ public class BaseSieveContext extends SieveContext {
     @Override
     public void setCoordinate(ScriptCoordinate coordinate) {
         this.coordinate = coordinate;
-        if (coordinate != null) {
-            coordinate.setLog(getLog());
-        }
+        this.loggingCoordinate = null;
+    }
+
+    /**
+     * Resets the state of the evaluation, so that this context may be reused
+     * for another evaluation by the same thread.
+     */
+    public void reset() {
+        setCoordinate(null);
+        commandStateManager.initialize();
+        conditionManager.initialize();
+        testResults = null;
     }
 
     /**
@@ -129,4 +155,20 @@ public class BaseSieveContext extends SieveContext {
     public TestManager getTestManager() {
         return testManager;
     }
+
+    /**
+     * @see SieveContext#getTestResults()
+     */
+    @Override
+    public TestResults getTestResults() {
+        return testResults;
+    }
+
+    /**
+     * @see SieveContext#setTestResults(TestResults)
+     */
+    @Override
+    public void setTestResults(TestResults testResults) {
+        this.testResults = testResults;
+    }
 }
@@ -48,6 +48,12 @@ public class Command implements Executable {
      */
     private ScriptCoordinate coordinate;
 
+    /**
+     * The implementation resolved when the script was compiled, or null when
+     * it must be looked up on each execution.
+     */
+    private ExecutableCommand fieldExecutable;
+
     /**
      * Constructor for Test.
      */
@@ -71,6 +77,23 @@ public class Command implements Executable {
         setBlock(block);
     }
 
+    /**
+     * Constructor for Command bound to a resolved implementation.
+     * 
+     * @param name
+     * @param arguments
+     * @param block
+     * @param coordinate
+     * @param executable
+     *            the implementation of the named command, or null to look it
+     *            up on each execution
+     */
+    public Command(String name, Arguments arguments, Block block,
+            ScriptCoordinate coordinate, ExecutableCommand executable) {
+        this(name, arguments, block, coordinate);
+        setExecutable(executable);
+    }
+
     /**
      * Returns the name.
      * 
@@ -90,6 +113,25 @@ public class Command implements Executable {
         fieldName = name;
     }
 
+    /**
+     * Returns the implementation resolved at compile time.
+     * 
+     * @return ExecutableCommand, or null when resolved on each execution
+     */
+    public ExecutableCommand getExecutable() {
+        return fieldExecutable;
+    }
+
+    /**
+     * Sets the implementation resolved at compile time.
+     * 
+     * @param executable
+     *            The executable to set
+     */
+    protected void setExecutable(ExecutableCommand executable) {
+        fieldExecutable = executable;
+    }
+
     /**
      * @see java.lang.Object#toString()
      */
@@ -120,6 +162,15 @@ public class Command implements Executable {
         return fieldBlock;
     }
 
+    /**
+     * Returns the position of this command in the script.
+     * 
+     * @return ScriptCoordinate
+     */
+    public ScriptCoordinate getCoordinate() {
+        return coordinate;
+    }
+
     /**
      * Sets the arguments.
      * 
@@ -154,7 +205,9 @@ public class Command implements Executable {
         // recursively from the top level block
         // so need to use the coordinate recorded from the parse
         context.setCoordinate(coordinate);
-        final ExecutableCommand executable = context.getCommandManager().getCommand(getName());
+        ExecutableCommand executable = getExecutable();
+        if (null == executable)
+            executable = context.getCommandManager().getCommand(getName());
         return executable.execute(mail, getArguments(),getBlock(), context);
     }
 }
@@ -22,12 +22,17 @@ package org.apache.jsieve;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.jsieve.exception.LookupException;
 
 /**
  * <p>Maps command names to common implementations.</p>
+ * <p>
+ * Command classes are loaded once and a single instance of each is shared
+ * by all callers, unless the implementation is marked {@link Stateful}.
+ * </p>
  * <h4>Thread Safety</h4>
  * <p>
  * Instances may safely be accessed concurrently by multiple threads.
@@ -44,6 +49,12 @@ public class CommandManagerImpl implements CommandManager {
 
     private final ConcurrentMap<String, String> classNameMap;
 
+    /** Loaded Command classes indexed by class name */
+    private final ConcurrentMap<String, Class> classes = new ConcurrentHashMap<String, Class>();
+
+    /** Shared Command instances indexed by class name */
+    private final ConcurrentMap<String, ExecutableCommand> instances = new ConcurrentHashMap<String, ExecutableCommand>();
+
     /**
      * Constructor for CommandManager.
      */
@@ -63,23 +74,43 @@ public class CommandManagerImpl implements CommandManager {
      * @throws LookupException
      */
     private Class lookup(String name) throws LookupException {
-        Class cmdClass;
+        return lookup(name, getClassName(name));
+    }
+
+    /**
+     * <p>
+     * Method lookup answers the named Command class, loading it when it has
+     * not been loaded before.
+     * </p>
+     * 
+     * @param name -
+     *            The name of the Command
+     * @param className -
+     *            The name of the class to which the Command is mapped
+     * @return Class - The class of the Command
+     * @throws LookupException
+     */
+    private Class lookup(String name, String className) throws LookupException {
+        Class cmdClass = classes.get(className);
+        if (null != cmdClass)
+            return cmdClass;
         try {
-            cmdClass = getClass().getClassLoader()
-                    .loadClass(getClassName(name));
+            cmdClass = getClass().getClassLoader().loadClass(className);
         } catch (ClassNotFoundException e) {
             throw new LookupException("Command named '" + name + "' not found.");
         }
         if (!ExecutableCommand.class.isAssignableFrom(cmdClass))
             throw new LookupException("Class " + cmdClass.getName()
                     + " must implement " + ExecutableCommand.class.getName());
+        classes.putIfAbsent(className, cmdClass);
         return cmdClass;
     }
 
     /**
      * <p>
      * Method newInstance answers an instance of the class to which a Command
-     * name is mapped.
+     * name is mapped. The instance is shared unless the class is marked
+     * {@link Stateful}.
      * </p>
      * 
      * @param name -
@@ -88,13 +119,22 @@ public class CommandManagerImpl implements CommandManager {
      * @throws LookupException
      */
     public ExecutableCommand getCommand(String name) throws LookupException {
+        final String className = getClassName(name);
+        final ExecutableCommand shared = instances.get(className);
+        if (null != shared)
+            return shared;
+        final ExecutableCommand command;
         try {
-            return (ExecutableCommand) lookup(name).newInstance();
+            command = (ExecutableCommand) lookup(name, className).newInstance();
         } catch (InstantiationException e) {
             throw new LookupException(e.getMessage());
         } catch (IllegalAccessException e) {
             throw new LookupException(e.getMessage());
         }
+        if (command instanceof Stateful)
+            return command;
+        final ExecutableCommand existing = instances.putIfAbsent(className, command);
+        return (null == existing ? command : existing);
     }
 
     /**
@@ -45,6 +45,11 @@ public class CommandStateManager {
      */
     private boolean fieldHasActions = false;
 
+    /**
+     * The evaluation has been stopped
+     */
+    private boolean fieldStopped = false;
+
     /**
      * Constructor for CommandStateManager.
      */
@@ -61,6 +66,7 @@ public class CommandStateManager {
         setRejected(false);
         setHasActions(false);
         setImplicitKeep(true);
+        setStopped(false);
     }
 
     /**
@@ -139,4 +145,23 @@ public class CommandStateManager {
         fieldImplicitKeep = implicitKeep;
     }
 
+    /**
+     * Returns the stopped.
+     * 
+     * @return boolean
+     */
+    public boolean isStopped() {
+        return fieldStopped;
+    }
+
+    /**
+     * Sets the stopped.
+     * 
+     * @param stopped
+     *            The stopped to set
+     */
+    public void setStopped(boolean stopped) {
+        fieldStopped = stopped;
+    }
+
 }
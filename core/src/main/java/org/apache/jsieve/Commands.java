@@ -79,8 +79,11 @@ public class Commands implements Executable {
             throws SieveException {
         for (Command command : fieldChildren) {
             command.execute(mail, context);
+            if (context.getCommandStateManager().isStopped()) {
+                return Completion.STOP;
+            }
         }
-        return null;
+        return Completion.CONTINUE;
     }
 
     public String toString() {
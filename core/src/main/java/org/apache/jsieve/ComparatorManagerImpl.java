@@ -24,6 +24,7 @@ import static org.apache.jsieve.Constants.COMPARATOR_OCTET_NAME;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 
@@ -32,6 +33,10 @@ import org.apache.jsieve.exception.LookupException;
 
 /**
  * <p>Maps Comparator names to configured Comparator implementation classes.</p>
+ * <p>
+ * Comparator classes are loaded once and a single instance of each is shared
+ * by all callers, unless the implementation is marked {@link Stateful}.
+ * </p>
  * <h4>Thread Safety</h4>
  * <p>
  * Instances may safely be accessed concurrently by multiple threads.
@@ -52,6 +57,13 @@ public class ComparatorManagerImpl implements ComparatorManager {
     }
     
     private final ConcurrentMap<String, String> classNameMap;
+
+    /** Loaded Comparator classes indexed by class name */
+    private final ConcurrentMap<String, Class> classes = new ConcurrentHashMap<String, Class>();
+
+    /** Shared Comparator instances indexed by class name */
+    private final ConcurrentMap<String, Comparator> instances = new ConcurrentHashMap<String, Comparator>();
+
     /** 
      * The names of those comparisons for which <code>require</code> is not necessary before usage.
      * See <a href='http://tools.ietf.org/html/rfc5228#section-2.7.3'>RFC5228, 2.7.3 Comparators</a>. 
@@ -99,10 +111,28 @@ public class ComparatorManagerImpl implements ComparatorManager {
      * @throws LookupException
      */
     public Class lookup(String name) throws LookupException {
-        Class comparatorClass;
+        return lookup(name, getClassName(name));
+    }
+
+    /**
+     * <p>
+     * Method lookup answers the named Comparator class, loading it when it has
+     * not been loaded before.
+     * </p>
+     * 
+     * @param name -
+     *            The name of the Comparator
+     * @param className -
+     *            The name of the class to which the Comparator is mapped
+     * @return Class - The class of the Comparator
+     * @throws LookupException
+     */
+    private Class lookup(String name, String className) throws LookupException {
+        Class comparatorClass = classes.get(className);
+        if (null != comparatorClass)
+            return comparatorClass;
         try {
-            comparatorClass = getClass().getClassLoader().loadClass(
-                    getClassName(name));
+            comparatorClass = getClass().getClassLoader().loadClass(className);
         } catch (ClassNotFoundException e) {
             throw new LookupException("Comparator named '" + name
                     + "' not found.");
@@ -110,13 +140,15 @@ public class ComparatorManagerImpl implements ComparatorManager {
         if (!Comparator.class.isAssignableFrom(comparatorClass))
             throw new LookupException("Class " + comparatorClass.getName()
                     + " must implement " + Comparator.class.getName());
+        classes.putIfAbsent(className, comparatorClass);
         return comparatorClass;
     }
 
     /**
      * <p>
      * Method newInstance answers an instance of the class to which a Comparator
-     * name is mapped.
+     * name is mapped. The instance is shared unless the class is marked
+     * {@link Stateful}.
      * </p>
      * 
      * @param name -
@@ -125,13 +157,22 @@ public class ComparatorManagerImpl implements ComparatorManager {
      * @throws LookupException
      */
     public Comparator getComparator(String name) throws LookupException {
+        final String className = getClassName(name);
+        final Comparator shared = instances.get(className);
+        if (null != shared)
+            return shared;
+        final Comparator comparator;
         try {
-            return (Comparator) lookup(name).newInstance();
+            comparator = (Comparator) lookup(name, className).newInstance();
         } catch (InstantiationException e) {
             throw new LookupException(e.getMessage());
         } catch (IllegalAccessException e) {
             throw new LookupException(e.getMessage());
         }
+        if (comparator instanceof Stateful)
+            return comparator;
+        final Comparator existing = instances.putIfAbsent(className, comparator);
+        return (null == existing ? comparator : existing);
     }
 
     /**
@@ -0,0 +1,141 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve;
+
+import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.mail.MailAdapter;
+
+/**
+ * <p>
+ * An executable representation of a parsed Sieve script. The tree of
+ * {@link Command}s, {@link Test}s and {@link Argument}s is built once by
+ * {@link SieveFactory#compile(org.apache.jsieve.parser.generated.Node)}
+ * and then reused by every evaluation, rather than being rebuilt from the
+ * parsed nodes for each mail.
+ * </p>
+ * <p>
+ * The results of identical tests are memoized for the duration of each
+ * evaluation, see {@link TestResults}.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are immutable once constructed and may be evaluated concurrently
+ * by multiple threads, each with its own {@link SieveContext}.
+ * </p>
+ */
+public final class CompiledScript implements Executable {
+
+    /** The implicit Block at the start of the script */
+    private final Block block;
+
+    /** The position of the start of the script */
+    private final ScriptCoordinate coordinate;
+
+    /** The number of memo slots assigned to the tests of the script */
+    private final int memoSlots;
+
+    /**
+     * Constructor for CompiledScript.
+     *
+     * @param block
+     *            the implicit start <code>Block</code>, not null
+     * @param coordinate
+     *            the position of the start of the script, possibly null
+     */
+    public CompiledScript(final Block block, final ScriptCoordinate coordinate) {
+        this(block, coordinate, 0);
+    }
+
+    /**
+     * Constructor for CompiledScript whose tests memoize their results.
+     *
+     * @param block
+     *            the implicit start <code>Block</code>, not null
+     * @param coordinate
+     *            the position of the start of the script, possibly null
+     * @param memoSlots
+     *            the number of memo slots assigned to tests, see
+     *            {@link Test#getMemoSlot()}
+     */
+    public CompiledScript(final Block block, final ScriptCoordinate coordinate,
+            final int memoSlots) {
+        super();
+        this.block = block;
+        this.coordinate = coordinate;
+        this.memoSlots = memoSlots;
+    }
+
+    /**
+     * Gets the implicit Block at the start of the script.
+     *
+     * @return <code>Block</code>, not null
+     */
+    public Block getBlock() {
+        return block;
+    }
+
+    /**
+     * Gets the position of the start of the script.
+     *
+     * @return <code>ScriptCoordinate</code>, possibly null
+     */
+    public ScriptCoordinate getCoordinate() {
+        return coordinate;
+    }
+
+    /**
+     * Gets the number of memo slots assigned to the tests of the script.
+     *
+     * @return the size of the {@link TestResults} of each evaluation
+     */
+    public int getMemoSlots() {
+        return memoSlots;
+    }
+
+    /**
+     * @see org.apache.jsieve.Executable#execute(MailAdapter, SieveContext)
+     */
+    public Object execute(MailAdapter mail, SieveContext context)
+            throws SieveException {
+        return execute(mail, context, null);
+    }
+
+    /**
+     * Executes the script using, and adding to, the results of tests shared
+     * with the other scripts of a {@link RuleIndex}.
+     *
+     * @param mail not null
+     * @param context not null
+     * @param matches results for <code>mail</code>, or null
+     * @return the result of the script
+     * @throws SieveException
+     */
+    public Object execute(MailAdapter mail, SieveContext context,
+            RuleIndex.Matches matches) throws SieveException {
+        context.setCoordinate(coordinate);
+        context.setTestResults(memoSlots == 0 && null == matches ? null
+                : new TestResults(memoSlots, matches));
+        return block.execute(mail, context);
+    }
+
+    public String toString() {
+        return "SCRIPT: " + block;
+    }
+}
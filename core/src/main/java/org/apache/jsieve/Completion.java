@@ -0,0 +1,43 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve;
+
+/**
+ * <p>
+ * The completion status of an executed {@link Command}, {@link Commands} or
+ * {@link Block}. Evaluation continues with the next command unless
+ * execution completes with {@link #STOP}.
+ * </p>
+ * <p>
+ * The Stop command records that evaluation has been stopped with the
+ * {@link CommandStateManager}, which {@link Commands} checks after each
+ * command. Evaluation is ended in this way, from any depth of nested blocks,
+ * without the cost of throwing a
+ * {@link org.apache.jsieve.exception.StopException}.
+ * </p>
+ */
+public enum Completion {
+
+    /** Continue with the next command */
+    CONTINUE,
+
+    /** End evaluation of the script */
+    STOP
+}
@@ -101,6 +101,8 @@ public class ConfigurationManager {
 
     private Log log = LOG;
 
+    private boolean reorderTests = false;
+
     /**
      * Constructor for ConfigurationManager.
      *
@@ -292,8 +294,33 @@ public class ConfigurationManager {
         this.log = log;
     }
 
+    /**
+     * Are the tests of <code>allof</code> and <code>anyof</code> reordered
+     * by cost in scripts compiled by factories built by this manager?
+     *
+     * @return true when reordered, false when executed in script order
+     */
+    public boolean isReorderTests() {
+        return reorderTests;
+    }
+
+    /**
+     * Sets whether the tests of <code>allof</code> and <code>anyof</code>
+     * are reordered by cost. Only lists of tests free of side effects are
+     * reordered, and so the result of each is unchanged; an error raised by
+     * a test which is no longer reached may go unreported. Cheap tests such
+     * as <code>size</code> and <code>exists</code> are then executed before
+     * pattern matching and <code>body</code>. Defaults to false.
+     *
+     * @param reorderTests true to reorder, false to execute in script order
+     * @see org.apache.jsieve.tests.CostedTest
+     */
+    public void setReorderTests(boolean reorderTests) {
+        this.reorderTests = reorderTests;
+    }
+
     public SieveFactory build() {
         return new SieveFactory(getCommandManager(), getComparatorManager(),
-                getTestManager(), getLog());
+                getTestManager(), getLog(), isReorderTests());
     }
 }
@@ -0,0 +1,72 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve;
+
+import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.mail.MailAdapter;
+
+/**
+ * A {@link Test} whose result was folded when the script was compiled, see
+ * {@link TestOptimizer}.
+ */
+final class ConstantTest extends Test {
+
+    /** The result of this test for every mail */
+    private final boolean value;
+
+    /**
+     * Constructor for ConstantTest.
+     * 
+     * @param test
+     *            the test folded, not null
+     * @param value
+     *            the result of the test for every mail
+     */
+    ConstantTest(Test test, boolean value) {
+        super(test.getName(), test.getArguments());
+        this.value = value;
+    }
+
+    /**
+     * Gets the result of this test for every mail.
+     * 
+     * @return boolean
+     */
+    boolean getValue() {
+        return value;
+    }
+
+    /**
+     * @see org.apache.jsieve.Test#isTestPassed(MailAdapter, SieveContext)
+     */
+    @Override
+    public boolean isTestPassed(MailAdapter mail, SieveContext context)
+            throws SieveException {
+        return value;
+    }
+
+    /**
+     * @see org.apache.jsieve.Test#toString()
+     */
+    @Override
+    public String toString() {
+        return super.toString() + " (constant " + value + ")";
+    }
+}
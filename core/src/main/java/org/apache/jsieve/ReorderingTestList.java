@@ -0,0 +1,184 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.mail.MailAdapter;
+
+/**
+ * <p>
+ * A {@link TestList} of side effect free tests, executed in the order
+ * expected to decide the result most cheaply rather than in script order.
+ * </p>
+ * <p>
+ * Tests are ranked by estimated cost divided by the probability that the
+ * test decides the result: that it fails, for <code>allof</code>, or passes,
+ * for <code>anyof</code>. Probabilities are observed as tests are executed,
+ * and the order revised every {@link #REORDER_INTERVAL} executions of the
+ * list. Until then, cheaper tests are executed first.
+ * </p>
+ * <p>
+ * Since every test is free of side effects, the result of the list is
+ * unchanged. Errors raised on execution by a test which is not reached may
+ * however go unreported.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances may safely be executed concurrently by multiple threads.
+ * Observations are updated atomically; a thread may execute the tests in an
+ * order which has just been superseded.
+ * </p>
+ */
+final class ReorderingTestList extends TestList {
+
+    /** The number of executions of the list between revisions of the order */
+    static final int REORDER_INTERVAL = 64;
+
+    /** The tests, in script order */
+    private final Test[] tests;
+
+    /** Estimated costs indexed as {@link #tests} */
+    private final int[] costs;
+
+    /** True for <code>allof</code>, false for <code>anyof</code> */
+    private final boolean conjunction;
+
+    /** Executions of each test indexed as {@link #tests} */
+    private final AtomicLongArray executions;
+
+    /** Executions of each test which decided the result */
+    private final AtomicLongArray decisions;
+
+    /** Executions of this list */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /** Indexes into {@link #tests} in order of execution */
+    private volatile int[] order;
+
+    /**
+     * Constructor for ReorderingTestList.
+     * 
+     * @param children
+     *            the tests in script order, all free of side effects
+     * @param costs
+     *            estimated cost of each test, not null
+     * @param conjunction
+     *            true when the list is executed for <code>allof</code>,
+     *            false for <code>anyof</code>
+     */
+    ReorderingTestList(List<Test> children, int[] costs, boolean conjunction) {
+        super(children);
+        this.tests = children.toArray(new Test[children.size()]);
+        this.costs = costs;
+        this.conjunction = conjunction;
+        this.executions = new AtomicLongArray(tests.length);
+        this.decisions = new AtomicLongArray(tests.length);
+        this.order = reorder();
+    }
+
+    /**
+     * Gets the indexes of the tests in the current order of execution.
+     * 
+     * @return not null
+     */
+    int[] getOrder() {
+        return order.clone();
+    }
+
+    /**
+     * @see org.apache.jsieve.TestList#allTestsPass(MailAdapter, SieveContext)
+     */
+    @Override
+    public boolean allTestsPass(MailAdapter mail, SieveContext context)
+            throws SieveException {
+        return !decide(mail, context, false);
+    }
+
+    /**
+     * @see org.apache.jsieve.TestList#anyTestsPass(MailAdapter, SieveContext)
+     */
+    @Override
+    public boolean anyTestsPass(MailAdapter mail, SieveContext context)
+            throws SieveException {
+        return decide(mail, context, true);
+    }
+
+    /**
+     * Executes tests until one answers the given result.
+     * 
+     * @return true when a test answered <code>deciding</code>, false
+     *         otherwise
+     */
+    private boolean decide(MailAdapter mail, SieveContext context,
+            boolean deciding) throws SieveException {
+        boolean result = false;
+        for (final int index : order) {
+            final boolean passed = tests[index].isTestPassed(mail, context);
+            executions.incrementAndGet(index);
+            if (passed == deciding) {
+                decisions.incrementAndGet(index);
+                result = true;
+                break;
+            }
+        }
+        if (count.incrementAndGet() % REORDER_INTERVAL == 0) {
+            order = reorder();
+        }
+        return result;
+    }
+
+    /**
+     * Ranks the tests by the expected cost of deciding the result.
+     * 
+     * @return indexes into {@link #tests}, not null
+     */
+    private int[] reorder() {
+        final int length = tests.length;
+        final double[] ranks = new double[length];
+        final int[] results = new int[length];
+        for (int i = 0; i < length; i++) {
+            // Laplace estimate of the probability of deciding the result
+            final double probability = (decisions.get(i) + 1.0)
+                    / (executions.get(i) + 2.0);
+            ranks[i] = costs[i] / probability;
+            results[i] = i;
+        }
+        // Insertion sort is stable and lists are short
+        for (int i = 1; i < length; i++) {
+            final int index = results[i];
+            int j = i;
+            while (j > 0 && ranks[results[j - 1]] > ranks[index]) {
+                results[j] = results[j - 1];
+                j--;
+            }
+            results[j] = index;
+        }
+        return results;
+    }
+
+    public String toString() {
+        return "TEST LIST (" + (conjunction ? "allof" : "anyof")
+                + " reordered): " + getTests();
+    }
+}
@@ -0,0 +1,500 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.apache.jsieve.comparators.AhoCorasick;
+import org.apache.jsieve.comparators.AsciiCasemap;
+import org.apache.jsieve.comparators.Comparator;
+import org.apache.jsieve.comparators.FoldedKey;
+import org.apache.jsieve.comparators.MatchType;
+import org.apache.jsieve.comparators.Octet;
+import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.mail.HeaderIndex;
+import org.apache.jsieve.mail.MailAdapter;
+import org.apache.jsieve.tests.Address;
+import org.apache.jsieve.tests.AddressPart;
+import org.apache.jsieve.tests.Header;
+import org.apache.jsieve.tests.MatchArguments;
+import org.apache.jsieve.tests.optional.Envelope;
+
+/**
+ * <p>
+ * An index of the tests of many compiled scripts, such as the active
+ * scripts of every user of a server, so that a mail delivered to many
+ * recipients is examined once rather than once for each script.
+ * </p>
+ * <p>
+ * Tests whose arguments were bound, other than <code>envelope</code> tests,
+ * are assumed to depend only upon the message. Those of every script with
+ * the same implementation and arguments are merged into a single predicate. The <code>header</code> tests using
+ * <code>:is</code> or <code>:contains</code>, and the <code>address</code>
+ * tests using <code>:is</code>, compared by <code>i;ascii-casemap</code> or
+ * <code>i;octet</code>, are indexed by header. {@link #match(MailAdapter)}
+ * reads each indexed header once, looks up its values in a hash table of
+ * the keys compared for equality, and finds the keys of every
+ * <code>:contains</code> in a single scan by an {@link AhoCorasick}
+ * automaton. Other predicates are executed by the first script to require
+ * them, and the result is shared with the other scripts.
+ * </p>
+ * <p>
+ * Each script is then evaluated by
+ * {@link SieveFactory#evaluate(MailAdapter, CompiledScript, RuleIndex.Matches)},
+ * using the results of its predicates. Scripts which were not indexed may
+ * also be evaluated, without sharing results.
+ * </p>
+ * <p>
+ * The {@link Matches} for a mail are valid only for mail adapters presenting
+ * identical messages. The envelope may differ, as it does for each recipient
+ * of a mail, since <code>envelope</code> tests are never shared. A header
+ * added for a single recipient, such as <code>Delivered-To</code>, makes
+ * the message of each recipient different, so the results of one cannot be
+ * shared with the others.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are immutable once constructed and may be shared by multiple
+ * threads, as may the {@link Matches} for each mail.
+ * </p>
+ */
+public final class RuleIndex {
+
+    /** Indicates that the result of a predicate is not yet known */
+    private static final int UNKNOWN = 0;
+
+    /** Indicates that a predicate failed */
+    private static final int FAILED = 1;
+
+    /** Indicates that a predicate passed */
+    private static final int PASSED = 2;
+
+    /** Index of the predicate of each indexed test, by identity */
+    private final Map<Test, Integer> predicates = new IdentityHashMap<Test, Integer>();
+
+    /** The indexed tests of each script, by identity */
+    private final Map<CompiledScript, Test[]> scripts = new IdentityHashMap<CompiledScript, Test[]>();
+
+    /** The number of distinct predicates */
+    private final int size;
+
+    /** The headers whose values are indexed */
+    private final ValueIndex[] values;
+
+    /**
+     * Constructor for RuleIndex.
+     * 
+     * @param scripts
+     *            the scripts to index, not null
+     */
+    public RuleIndex(Collection<CompiledScript> scripts) {
+        super();
+        final Map<List<Object>, Integer> keys = new HashMap<List<Object>, Integer>();
+        final Map<List<Object>, ValueIndex> indexes = new HashMap<List<Object>, ValueIndex>();
+        for (final CompiledScript script : scripts) {
+            final List<Test> tests = new ArrayList<Test>();
+            collect(script.getBlock(), tests);
+            for (final Test test : tests) {
+                final List<Object> key = TestOptimizer.key(test);
+                Integer predicate = keys.get(key);
+                if (null == predicate) {
+                    predicate = Integer.valueOf(keys.size());
+                    keys.put(key, predicate);
+                    index(test, predicate.intValue(), indexes);
+                }
+                predicates.put(test, predicate);
+            }
+            this.scripts.put(script, tests.toArray(new Test[tests.size()]));
+        }
+        this.size = keys.size();
+        this.values = indexes.values().toArray(new ValueIndex[indexes.size()]);
+        for (final ValueIndex index : values) {
+            index.compile();
+        }
+    }
+
+    /**
+     * Collects the bound tests of the given block and its descendants,
+     * other than tests of the envelope, which differs for each recipient.
+     */
+    private static void collect(Block block, List<Test> tests) {
+        for (final Command command : block.getChildren().getChildren()) {
+            final Arguments arguments = command.getArguments();
+            if (null != arguments && arguments.hasTests()) {
+                collect(arguments.getTestList().getTests(), tests);
+            }
+            if (null != command.getBlock()) {
+                collect(command.getBlock(), tests);
+            }
+        }
+    }
+
+    private static void collect(List<Test> children, List<Test> tests) {
+        for (final Test test : children) {
+            final Arguments arguments = test.getArguments();
+            if (null == arguments) {
+                continue;
+            } else if (arguments.hasTests()) {
+                collect(arguments.getTestList().getTests(), tests);
+            } else if (null != test.getBinding()
+                    && !(test.getExecutable() instanceof Envelope)) {
+                tests.add(test);
+            }
+        }
+    }
+
+    /**
+     * Adds the keys of a test to the indexes of the headers it examines,
+     * when it may be indexed.
+     */
+    private static void index(Test test, int predicate,
+            Map<List<Object>, ValueIndex> indexes) {
+        if (!(test.getBinding() instanceof MatchArguments)) {
+            return;
+        }
+        final MatchArguments arguments = (MatchArguments) test.getBinding();
+        final Class<?> type = test.getExecutable().getClass();
+        final Comparator comparator = arguments.getComparator();
+        final boolean ignoreCase;
+        if (comparator.getClass() == AsciiCasemap.class) {
+            ignoreCase = true;
+        } else if (comparator.getClass() == Octet.class) {
+            ignoreCase = false;
+        } else {
+            return;
+        }
+        final MatchType matchType = arguments.getMatchType();
+        final AddressPart addressPart;
+        if (type == Header.class
+                && (matchType == MatchType.IS || matchType == MatchType.CONTAINS)) {
+            addressPart = null;
+        } else if (type == Address.class && matchType == MatchType.IS) {
+            addressPart = arguments.getAddressPart();
+        } else {
+            return;
+        }
+        for (final String name : arguments.getHeaderNames()) {
+            final List<Object> key = new ArrayList<Object>(3);
+            key.add(null == addressPart ? HeaderIndex.key(name) : name);
+            key.add(addressPart);
+            key.add(Boolean.valueOf(ignoreCase));
+            ValueIndex index = indexes.get(key);
+            if (null == index) {
+                index = new ValueIndex(name, addressPart, ignoreCase);
+                indexes.put(key, index);
+            }
+            for (final String value : arguments.getKeys()) {
+                if (matchType == MatchType.CONTAINS) {
+                    index.addContents(value, predicate);
+                } else if (null == addressPart) {
+                    index.addEqual(value, predicate);
+                } else {
+                    index.addEqual(Address.getMatchKey(addressPart, value),
+                            predicate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of distinct predicates indexed.
+     * 
+     * @return not negative
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Is the given script indexed?
+     * 
+     * @param script
+     *            not null
+     * @return true when the script was indexed, false otherwise
+     */
+    public boolean contains(CompiledScript script) {
+        return scripts.containsKey(script);
+    }
+
+    /**
+     * Matches the indexed headers of the given mail. Headers which cannot be
+     * read are left for each script to read, so that errors are reported by
+     * the evaluation of each script.
+     * 
+     * @param mail
+     *            not null
+     * @return the results of the predicates for the mail, not null
+     */
+    public Matches match(MailAdapter mail) {
+        final BitSet passed = new BitSet(size);
+        final BitSet indexed = new BitSet(size);
+        final BitSet unread = new BitSet(size);
+        for (final ValueIndex index : values) {
+            BitSet target = indexed;
+            try {
+                index.match(mail, passed);
+            } catch (SieveException e) {
+                // Reported on evaluation
+                target = unread;
+            }
+            for (final int predicate : index.predicates) {
+                target.set(predicate);
+            }
+        }
+        // A predicate may examine many headers
+        indexed.andNot(unread);
+        final Matches matches = new Matches();
+        for (int predicate = indexed.nextSetBit(0); predicate >= 0; predicate = indexed
+                .nextSetBit(predicate + 1)) {
+            matches.results.set(predicate, passed.get(predicate) ? PASSED
+                    : FAILED);
+        }
+        return matches;
+    }
+
+    /**
+     * <p>
+     * The keys compared with the values of a single header, or the
+     * addresses it lists.
+     * </p>
+     * <h4>Thread Safety</h4>
+     * <p>
+     * Instances are immutable once compiled.
+     * </p>
+     */
+    private static final class ValueIndex {
+
+        /** The name of the header read */
+        private final String name;
+
+        /** The part of each address compared, or null to compare values */
+        private final AddressPart addressPart;
+
+        /** Are keys compared without regard to case? */
+        private final boolean ignoreCase;
+
+        /** The predicates equal to each key, folded when case is ignored */
+        private final Map<String, int[]> equal = new HashMap<String, int[]>();
+
+        /** The keys to be found in each value */
+        private final List<String> contents = new ArrayList<String>();
+
+        /** The predicate of each of {@link #contents} */
+        private final List<Integer> contentPredicates = new ArrayList<Integer>();
+
+        /** Every predicate examining this header */
+        private int[] predicates;
+
+        /** Finds {@link #contents}, or null when there are none */
+        private AhoCorasick automaton;
+
+        /** The predicate of each key found by {@link #automaton} */
+        private int[] automatonPredicates;
+
+        private ValueIndex(String name, AddressPart addressPart,
+                boolean ignoreCase) {
+            this.name = name;
+            this.addressPart = addressPart;
+            this.ignoreCase = ignoreCase;
+        }
+
+        private void addEqual(String key, int predicate) {
+            final String folded = ignoreCase ? FoldedKey.fold(key) : key;
+            final int[] existing = equal.get(folded);
+            if (null == existing) {
+                equal.put(folded, new int[] { predicate });
+            } else {
+                final int[] merged = new int[existing.length + 1];
+                System.arraycopy(existing, 0, merged, 0, existing.length);
+                merged[existing.length] = predicate;
+                equal.put(folded, merged);
+            }
+        }
+
+        private void addContents(String key, int predicate) {
+            contents.add(key);
+            contentPredicates.add(Integer.valueOf(predicate));
+        }
+
+        private void compile() {
+            final BitSet all = new BitSet();
+            for (final int[] keyPredicates : equal.values()) {
+                for (final int predicate : keyPredicates) {
+                    all.set(predicate);
+                }
+            }
+            automatonPredicates = new int[contents.size()];
+            for (int i = 0; i < automatonPredicates.length; i++) {
+                automatonPredicates[i] = contentPredicates.get(i).intValue();
+                all.set(automatonPredicates[i]);
+            }
+            if (!contents.isEmpty()) {
+                automaton = AhoCorasick.compile(contents, ignoreCase);
+            }
+            predicates = new int[all.cardinality()];
+            int i = 0;
+            for (int predicate = all.nextSetBit(0); predicate >= 0; predicate = all
+                    .nextSetBit(predicate + 1)) {
+                predicates[i++] = predicate;
+            }
+        }
+
+        /**
+         * Marks the predicates passed by the given mail.
+         */
+        private void match(MailAdapter mail, BitSet passed)
+                throws SieveException {
+            if (null == addressPart) {
+                final List<String> headerValues = mail.getMatchingHeader(name);
+                if (headerValues.isEmpty()) {
+                    // As Header, which contains only the empty key
+                    find("", passed);
+                }
+                for (final String value : headerValues) {
+                    lookup(value, passed);
+                    find(value, passed);
+                }
+            } else {
+                for (final MailAdapter.Address address : mail
+                        .parseAddresses(name)) {
+                    lookup(Address.getMatchAddress(addressPart, address),
+                            passed);
+                }
+            }
+        }
+
+        private void lookup(String value, BitSet passed) {
+            if (!equal.isEmpty()) {
+                final int[] keyPredicates = equal.get(ignoreCase ? FoldedKey.fold(value)
+                        : value);
+                if (null != keyPredicates) {
+                    for (final int predicate : keyPredicates) {
+                        passed.set(predicate);
+                    }
+                }
+            }
+        }
+
+        private void find(String value, BitSet passed) {
+            if (null != automaton) {
+                final BitSet found = new BitSet(automatonPredicates.length);
+                automaton.findAll(value, found);
+                for (int key = found.nextSetBit(0); key >= 0; key = found
+                        .nextSetBit(key + 1)) {
+                    passed.set(automatonPredicates[key]);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * The results of the predicates of a {@link RuleIndex} for a single mail,
+     * answered by {@link RuleIndex#match(MailAdapter)}. Results of predicates
+     * which were not indexed are added as scripts are evaluated.
+     * </p>
+     * <h4>Thread Safety</h4>
+     * <p>
+     * Instances may safely be shared by threads evaluating scripts against
+     * the same mail.
+     * </p>
+     */
+    public final class Matches {
+
+        /** The result of each predicate */
+        private final AtomicIntegerArray results = new AtomicIntegerArray(size);
+
+        private Matches() {
+            super();
+        }
+
+        /**
+         * Gets the index whose predicates are matched.
+         * 
+         * @return not null
+         */
+        public RuleIndex getIndex() {
+            return RuleIndex.this;
+        }
+
+        /**
+         * Gets the tests of the given script known to pass, so that only the
+         * remainder of the script need be evaluated.
+         * 
+         * @param script
+         *            not null
+         * @return unmodifiable list, possibly empty, not null
+         */
+        public List<Test> getMatchedTests(CompiledScript script) {
+            final Test[] tests = scripts.get(script);
+            if (null == tests) {
+                return Collections.emptyList();
+            }
+            final List<Test> matched = new ArrayList<Test>();
+            for (final Test test : tests) {
+                if (Boolean.TRUE.equals(get(test))) {
+                    matched.add(test);
+                }
+            }
+            return Collections.unmodifiableList(matched);
+        }
+
+        /**
+         * Gets the result of the predicate of the given test.
+         * 
+         * @param test
+         *            not null
+         * @return <code>Boolean</code>, or null when the test was not
+         *         indexed or its result is not yet known
+         */
+        Boolean get(Test test) {
+            final Integer predicate = predicates.get(test);
+            if (null == predicate) {
+                return null;
+            }
+            final int result = results.get(predicate.intValue());
+            return result == UNKNOWN ? null : Boolean.valueOf(result == PASSED);
+        }
+
+        /**
+         * Shares the result of the given test with the other scripts.
+         * 
+         * @param test
+         *            not null
+         * @param passed
+         *            true when the test passed, false otherwise
+         */
+        void put(Test test, boolean passed) {
+            final Integer predicate = predicates.get(test);
+            if (null != predicate) {
+                results.compareAndSet(predicate.intValue(), UNKNOWN,
+                        passed ? PASSED : FAILED);
+            }
+        }
+    }
+}
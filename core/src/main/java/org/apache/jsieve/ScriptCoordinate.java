@@ -24,9 +24,18 @@ import org.apache.jsieve.exception.CommandException;
 import org.apache.jsieve.exception.SyntaxException;
 
 /**
+ * <p>
  * Specifies the positional extent of an element within the script being
  * executed. In other words, this gives the line and column at which the elment
  * starts and at which it ends.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Coordinates are recorded when a script is compiled and shared by every
+ * evaluation of the script. They must not then be modified:
+ * {@link #withLog(Log)} answers a copy reporting to the log of a single
+ * evaluation.
+ * </p>
  */
 public final class ScriptCoordinate {
 
@@ -50,14 +59,45 @@ public final class ScriptCoordinate {
         this.endColumnNumber = endColumnNumber;
     }
 
+    private ScriptCoordinate(final ScriptCoordinate coordinate, final Log log) {
+        this(coordinate.startLineNumber, coordinate.startColumnNumber,
+                coordinate.endLineNumber, coordinate.endColumnNumber);
+        this.log = log;
+    }
+
     public Log getLog() {
         return log;
     }
 
+    /**
+     * Sets the log to which exceptions created are reported.
+     * 
+     * @param logger
+     *            <code>Log</code>, possibly null
+     * @deprecated coordinates are shared by concurrent evaluations, use
+     *             {@link #withLog(Log)}
+     */
+    @Deprecated
     public void setLog(Log logger) {
         this.log = logger;
     }
 
+    /**
+     * Answers a coordinate for the same position reporting exceptions
+     * created to the given log. This coordinate is not modified.
+     * 
+     * @param logger
+     *            <code>Log</code>, possibly null
+     * @return <code>ScriptCoordinate</code>, this when already reporting to
+     *         the given log, not null
+     */
+    public ScriptCoordinate withLog(Log logger) {
+        if (logger == log) {
+            return this;
+        }
+        return new ScriptCoordinate(this, logger);
+    }
+
     /**
      * Gets the number of the column where the elements ends.
      * 
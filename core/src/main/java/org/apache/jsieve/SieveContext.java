@@ -83,4 +83,21 @@ public abstract class SieveContext {
      * @return log, not null
      */
     public abstract Log getLog();
+
+    /**
+     * Gets the results of tests memoized during the current evaluation.
+     * This implementation does not memoize results.
+     * @return results, or null when results are not memoized
+     */
+    public TestResults getTestResults() {
+        return null;
+    }
+
+    /**
+     * Sets the results of tests memoized during the current evaluation.
+     * This implementation ignores the results.
+     * @param results results, or null when results are not memoized
+     */
+    public void setTestResults(TestResults results) {
+    }
 }
@@ -21,7 +21,11 @@ package org.apache.jsieve;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.jsieve.exception.SieveException;
@@ -31,7 +35,6 @@ import org.apache.jsieve.mail.MailAdapter;
 import org.apache.jsieve.parser.generated.Node;
 import org.apache.jsieve.parser.generated.ParseException;
 import org.apache.jsieve.parser.generated.SieveParser;
-import org.apache.jsieve.parser.generated.SieveParserVisitor;
 import org.apache.jsieve.parser.generated.SimpleNode;
 
 /**
@@ -45,6 +48,15 @@ import org.apache.jsieve.parser.generated.SimpleNode;
  * section 8. The result is the start node of the parsed Sieve script. The start
  * node is resuable. Typically it is stored for reuse in all subsequent
  * evaluations of the script. </dd>
+ * <dt>{@link #compile(Node)}</dt>
+ * <dd> Translate the parse result referenced by the start node into an
+ * immutable {@link CompiledScript}. The compiled script is reusable and is
+ * cheaper to evaluate than the start node, since the executable objects are
+ * built only once. </dd>
+ * <dt>{@link #evaluate(MailAdapter, CompiledScript)}</dt>
+ * <dd> Evaluate an RFC 822 compliant mail message wrapped in a {@link MailAdapter}
+ * against a compiled script. Typically the compiled script is stored for reuse
+ * in all subsequent evaluations of the script. </dd>
  * <dt>{@link #evaluate(MailAdapter, Node)}</dt>
  * <dd> Evaluate an RFC 822 compliant mail message wrapped in a {@link MailAdapter}
  * against the parse result referenced by the start node from the Parse
@@ -63,6 +75,20 @@ import org.apache.jsieve.parser.generated.SimpleNode;
  * (when {@link #SieveFactory(CommandManager, ComparatorManager, TestManager, Log)} 
  * is called) are thread safe.
  * </p>
+ * <p>
+ * A single {@link CompiledScript} may be evaluated by any number of threads
+ * at once, each against its own {@link MailAdapter}. The state of each
+ * evaluation is held by a {@link BaseSieveContext} confined to the
+ * evaluating thread, which is reset and reused by later evaluations on that
+ * thread. Neither the compiled script nor the parsed nodes are modified by
+ * evaluation.
+ * </p>
+ * <p>
+ * Each thread which has evaluated a script therefore retains a context for
+ * every factory it has used, until the thread ends. When threads are pooled
+ * and outlive the factory, call {@link #dispose()} once the factory is
+ * discarded to release the contexts of all threads.
+ * </p>
  */
 public class SieveFactory {
 
@@ -74,17 +100,55 @@ public class SieveFactory {
 
     private final Log log;
 
+    private final boolean reorderTests;
+
+    /** 
+     * Holds the context reused by evaluations on each thread, when not in use.
+     * Each slot is also registered in {@link #slots}.
+     */
+    private final ThreadLocal<AtomicReference<BaseSieveContext>> contexts = new ThreadLocal<AtomicReference<BaseSieveContext>>() {
+        protected AtomicReference<BaseSieveContext> initialValue() {
+            final AtomicReference<BaseSieveContext> slot = new AtomicReference<BaseSieveContext>();
+            slots.add(slot);
+            return slot;
+        }
+    };
+
+    /** The slots of all live threads, so that {@link #dispose()} can empty them */
+    private final Set<AtomicReference<BaseSieveContext>> slots = Collections
+            .synchronizedSet(Collections
+                    .newSetFromMap(new WeakHashMap<AtomicReference<BaseSieveContext>, Boolean>()));
+
+    /** Set once disposed, after which contexts are no longer retained */
+    private volatile boolean disposed = false;
+
     /**
      * Constructor for SieveFactory.
      */
     public SieveFactory(final CommandManager commandManager,
             final ComparatorManager comparatorManager,
             final TestManager testManager, final Log log) {
+        this(commandManager, comparatorManager, testManager, log, false);
+    }
+
+    /**
+     * Constructor for SieveFactory.
+     * 
+     * @param reorderTests
+     *            true when compiled scripts are to execute the side effect
+     *            free tests of <code>allof</code> and <code>anyof</code> in
+     *            order of cost, false to execute them in script order
+     */
+    public SieveFactory(final CommandManager commandManager,
+            final ComparatorManager comparatorManager,
+            final TestManager testManager, final Log log,
+            final boolean reorderTests) {
         super();
         this.commandManager = commandManager;
         this.comparatorManager = comparatorManager;
         this.testManager = testManager;
         this.log = log;
+        this.reorderTests = reorderTests;
     }
 
     /**
@@ -121,6 +185,31 @@ public class SieveFactory {
         }
     }
 
+    /**
+     * Method compile translates the parsed script beginning at the passed
+     * start node into a <code>CompiledScript</code>. The result is
+     * immutable and reusable. Typically it is stored for reuse in subsequent
+     * evaluations of the script.
+     * 
+     * @param startNode
+     * @return CompiledScript, not null
+     * @throws SieveException
+     */
+    public CompiledScript compile(Node startNode) throws SieveException {
+        final SieveContext context = new BaseSieveContext(commandManager,
+                comparatorManager, testManager, log);
+        try {
+            return new SieveParserVisitorImpl(context, reorderTests)
+                    .compile(startNode);
+        } catch (SieveException ex) {
+            if (log.isErrorEnabled())
+                log.error("Compilation failed. Reason: " + ex.getMessage());
+            if (log.isDebugEnabled())
+                log.debug("Compilation failed.", ex);
+            throw ex;
+        }
+    }
+
     /**
      * <p>
      * Method evaluate evaluates an RFC 822 compliant mail message wrapped in a
@@ -130,6 +219,29 @@ public class SieveFactory {
      * <p>
      * 
      * <p>
+     * This is equivalent to compiling the start node and then evaluating the
+     * result. When a script is evaluated repeatedly, prefer storing the result
+     * of {@link #compile(Node)} and calling
+     * {@link #evaluate(MailAdapter, CompiledScript)}.
+     * </p>
+     * 
+     * @param mail
+     * @param startNode
+     * @throws SieveException
+     */
+    public void evaluate(MailAdapter mail, Node startNode)
+            throws SieveException {
+        evaluate(mail, compile(startNode));
+    }
+
+    /**
+     * <p>
+     * Method evaluate evaluates an RFC 822 compliant mail message wrapped in a
+     * MailAdapter against a compiled script. As evaluation proceeds a List of
+     * Actions is added to the MailAdapter.
+     * <p>
+     * 
+     * <p>
      * At the start of evaluation an 'implicitKeep' state is set. This can be
      * cancelled by a Command during evaluation. If 'implicitKeep' is still set
      * at the end of evaluation, a Keep Action is added to the List of Actions.
@@ -138,24 +250,48 @@ public class SieveFactory {
      * </p>
      * 
      * @param mail
-     * @param startNode
+     * @param script
      * @throws SieveException
      */
-    public void evaluate(MailAdapter mail, Node startNode)
+    public void evaluate(MailAdapter mail, CompiledScript script)
             throws SieveException {
-        final SieveContext context = new BaseSieveContext(commandManager,
-                comparatorManager, testManager, log);
+        evaluate(mail, script, null);
+    }
+
+    /**
+     * <p>
+     * Method evaluate evaluates a mail against a compiled script, as
+     * {@link #evaluate(MailAdapter, CompiledScript)}, using the results of
+     * the tests matched by a {@link RuleIndex} of many scripts. Tests of the
+     * script which were not matched by the index are executed, and their
+     * results shared with the other scripts of the index.
+     * </p>
+     * <p>
+     * The matches must have been answered by
+     * {@link RuleIndex#match(MailAdapter)} for the same mail, or for a mail
+     * with the same headers and body.
+     * </p>
+     * 
+     * @param mail
+     * @param script
+     * @param matches
+     *            results of the tests of many scripts for the mail, or null
+     * @throws SieveException
+     */
+    public void evaluate(MailAdapter mail, CompiledScript script,
+            RuleIndex.Matches matches) throws SieveException {
+        final BaseSieveContext context = acquireContext();
         try {
             // Ensure that the context is set on the mail
             mail.setContext(context);
             
-            SieveParserVisitor visitor = new SieveParserVisitorImpl(context);
             try {
-                // Evaluate the Nodes
-                startNode.jjtAccept(visitor, mail);
+                // Evaluate the script
+                script.execute(mail, context, matches);
     
             } catch (StopException ex) {
-                // Stop is OK
+                // Stop is OK. Stop itself completes without throwing, 
+                // but other commands may still throw StopException
             } catch (SieveException ex) {
                 if (log.isErrorEnabled())
                     log.error("Evaluation failed. Reason: " + ex.getMessage());
@@ -184,6 +320,55 @@ public class SieveFactory {
             // Tidy up by ensuring that a reference to the context is not held by the adapter.
             // This prevents leaks when the adapter stores the context in a thread local variable.
             mail.setContext(null);
+            releaseContext(context);
+        }
+    }
+
+    /**
+     * Claims the context of the current thread for an evaluation. A new
+     * context is created when there is none, or when it is in use by an
+     * evaluation which has not completed.
+     * 
+     * @return <code>BaseSieveContext</code>, not null
+     */
+    private BaseSieveContext acquireContext() {
+        final BaseSieveContext context = contexts.get().getAndSet(null);
+        if (context == null) {
+            return new BaseSieveContext(commandManager, comparatorManager,
+                    testManager, log);
+        }
+        return context;
+    }
+
+    /**
+     * Resets a context once its evaluation has completed, and keeps it for
+     * the next evaluation on the current thread.
+     * 
+     * @param context
+     *            not null
+     */
+    private void releaseContext(BaseSieveContext context) {
+        if (disposed) {
+            contexts.remove();
+        } else {
+            context.reset();
+            contexts.get().set(context);
+        }
+    }
+
+    /**
+     * Releases the contexts retained for reuse by every thread. Scripts may
+     * still be evaluated afterwards, but each evaluation then uses a new
+     * context. Call once this factory is discarded, so that pooled threads
+     * do not keep its contexts alive.
+     */
+    public void dispose() {
+        disposed = true;
+        synchronized (slots) {
+            for (final AtomicReference<BaseSieveContext> slot : slots) {
+                slot.set(null);
+            }
+            slots.clear();
         }
     }
 
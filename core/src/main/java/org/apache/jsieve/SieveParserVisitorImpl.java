@@ -20,9 +20,11 @@
 package org.apache.jsieve;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.jsieve.exception.LookupException;
 import org.apache.jsieve.exception.SieveException;
 import org.apache.jsieve.mail.MailAdapter;
 import org.apache.jsieve.parser.generated.ASTargument;
@@ -35,8 +37,11 @@ import org.apache.jsieve.parser.generated.ASTstring;
 import org.apache.jsieve.parser.generated.ASTstring_list;
 import org.apache.jsieve.parser.generated.ASTtest;
 import org.apache.jsieve.parser.generated.ASTtest_list;
+import org.apache.jsieve.parser.generated.Node;
 import org.apache.jsieve.parser.generated.SieveParserVisitor;
 import org.apache.jsieve.parser.generated.SimpleNode;
+import org.apache.jsieve.tests.BindableTest;
+import org.apache.jsieve.tests.ExecutableTest;
 
 /**
  * <p>
@@ -49,7 +54,10 @@ import org.apache.jsieve.parser.generated.SimpleNode;
  * In essence, this class translates between the nodes operated on by the JavaCC
  * generated classes and the Sieve classes operated upon by the Commands, Tests
  * and Comparators. A visit to the start node, ASTstart, triggers evaluation of
- * all of its descendants.
+ * all of its descendants. Alternatively, {@link #compile(Node)} translates the
+ * descendants of the start node without evaluating them, so that the result
+ * may be reused for many evaluations. Tests are optimized as they are
+ * translated, see {@link TestOptimizer}.
  * </p>
  * 
  * <p>
@@ -65,12 +73,35 @@ import org.apache.jsieve.parser.generated.SimpleNode;
 public class SieveParserVisitorImpl implements SieveParserVisitor {
     private final SieveContext context;
 
+    /** Are side effect free tests reordered by cost? */
+    private final boolean reorderTests;
+
+    /** Optimizes the tests of the script being compiled */
+    private TestOptimizer optimizer;
+
     /**
      * Constructor for NodeVisitor.
      */
     public SieveParserVisitorImpl(final SieveContext context) {
+        this(context, false);
+    }
+
+    /**
+     * Constructor for NodeVisitor.
+     * 
+     * @param context
+     *            not null
+     * @param reorderTests
+     *            true when side effect free tests of <code>allof</code> and
+     *            <code>anyof</code> are to be reordered by cost, see
+     *            {@link ReorderingTestList}
+     */
+    public SieveParserVisitorImpl(final SieveContext context,
+            final boolean reorderTests) {
         super();
         this.context = context;
+        this.reorderTests = reorderTests;
+        this.optimizer = new TestOptimizer(reorderTests);
     }
 
     /**
@@ -102,8 +133,9 @@ public class SieveParserVisitorImpl implements SieveParserVisitor {
         if (null != node.getValue()) {
             argument = (Argument) node.getValue();
         } else {
-            argument = new StringListArgument(((List) node.childrenAccept(this,
-                    children)));
+            argument = new StringListArgument(Collections
+                    .unmodifiableList((List<String>) node.childrenAccept(this,
+                            children)));
         }
         ((List) data).add(argument);
 
@@ -135,7 +167,8 @@ public class SieveParserVisitorImpl implements SieveParserVisitor {
             }
         }
 
-        Arguments arguments = new Arguments(argList, testList);
+        Arguments arguments = new Arguments(Collections
+                .unmodifiableList(argList), testList);
         ((List) data).add(arguments);
         return data;
     }
@@ -175,10 +208,12 @@ public class SieveParserVisitorImpl implements SieveParserVisitor {
                 block = (Block) next;
         }
 
-        context.setCoordinate(node.getCoordinate());
-        final ScriptCoordinate coordinate = context.getCoordinate();
+        // The coordinate is shared by every evaluation, and so is not bound
+        // to the log of this context
+        final ScriptCoordinate coordinate = node.getCoordinate();
+        context.setCoordinate(coordinate);
         Command command = new Command(node.getName(), arguments, block,
-                coordinate);
+                coordinate, bindCommand(node.getName()));
         ((List) data).add(command);
         return data;
     }
@@ -189,8 +224,9 @@ public class SieveParserVisitorImpl implements SieveParserVisitor {
     @SuppressWarnings("unchecked")
     public Object visit(ASTcommands node, Object data) throws SieveException {
         List<Command> children = new ArrayList<Command>(node.jjtGetNumChildren());
-        Commands commands = new Commands(((List) node.childrenAccept(this,
-                children)));
+        Commands commands = new Commands(Collections
+                .unmodifiableList((List<Command>) node.childrenAccept(this,
+                        children)));
         ((List) data).add(commands);
         return data;
     }
@@ -207,15 +243,38 @@ public class SieveParserVisitorImpl implements SieveParserVisitor {
                     + (data == null ? "<null>" : data.getClass().getName())
                     + ".");
 
+        // Answer the result of executing the script
+        return compile(node).execute((MailAdapter) data, context);
+    }
+
+    /**
+     * Method compile translates the descendants of the passed start node into
+     * a <code>CompiledScript</code> without evaluating them.
+     * 
+     * @param startNode
+     *            the start node of a parsed script, not null
+     * @return CompiledScript, not null
+     * @throws SieveException
+     */
+    @SuppressWarnings("unchecked")
+    public CompiledScript compile(Node startNode) throws SieveException {
+        optimizer = new TestOptimizer(reorderTests);
         // Start is an implicit Block
         // There will be one child, an instance of Commands
-        List children = new ArrayList(node.jjtGetNumChildren());
-        Commands commands = (Commands) ((List) node.childrenAccept(this,
-                children)).get(0);
-        Block block = new Block(commands);
-        context.setCoordinate(node.getCoordinate());
-        // Answer the result of executing the Block
-        return block.execute((MailAdapter) data, context);
+        final int numChildren = startNode.jjtGetNumChildren();
+        final List children = new ArrayList(numChildren);
+        for (int i = 0; i < numChildren; i++) {
+            startNode.jjtGetChild(i).jjtAccept(this, children);
+        }
+        final Commands commands = (Commands) children.get(0);
+        final ScriptCoordinate coordinate;
+        if (startNode instanceof SimpleNode) {
+            coordinate = ((SimpleNode) startNode).getCoordinate();
+        } else {
+            coordinate = null;
+        }
+        return new CompiledScript(new Block(commands), coordinate, optimizer
+                .getSlots());
     }
 
     /**
@@ -244,8 +303,9 @@ public class SieveParserVisitorImpl implements SieveParserVisitor {
     public Object visit(ASTtest_list node, Object data) throws SieveException {
         // return visitChildren(node, data);
         List<Test> children = new ArrayList<Test>(node.jjtGetNumChildren());
-        TestList testList = new TestList(((List<Test>) node.childrenAccept(this,
-                children)));
+        TestList testList = new TestList(Collections
+                .unmodifiableList((List<Test>) node.childrenAccept(this,
+                        children)));
         ((List) data).add(testList);
         return data;
     }
@@ -268,11 +328,73 @@ public class SieveParserVisitorImpl implements SieveParserVisitor {
         }
 
         context.setCoordinate(node.getCoordinate());
-        Test test = new Test(node.getName(), arguments);
-        ((List) data).add(test);
+        final ExecutableTest executable = bindTest(node.getName());
+        final Test test;
+        if (executable instanceof BindableTest && null != arguments)
+            test = new Test(node.getName(), arguments,
+                    (BindableTest) executable, bindArguments(
+                            (BindableTest) executable, arguments));
+        else
+            test = new Test(node.getName(), arguments, executable);
+        ((List) data).add(optimizer.optimize(test));
         return data;
     }
 
+    /**
+     * Resolves the shared implementation of the named command.
+     * 
+     * @param name
+     *            the command name, not null
+     * @return <code>ExecutableCommand</code> or null when the implementation
+     *         is {@link Stateful} or cannot be found, in which case it is
+     *         looked up (and any error reported) on execution
+     */
+    private ExecutableCommand bindCommand(String name) {
+        try {
+            final ExecutableCommand command = context.getCommandManager()
+                    .getCommand(name);
+            return (command instanceof Stateful ? null : command);
+        } catch (LookupException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Resolves the shared implementation of the named test.
+     * 
+     * @param name
+     *            the test name, not null
+     * @return <code>ExecutableTest</code> or null when the implementation is
+     *         {@link Stateful} or cannot be found, in which case it is looked
+     *         up (and any error reported) on execution
+     */
+    private ExecutableTest bindTest(String name) {
+        try {
+            final ExecutableTest test = context.getTestManager().getTest(name);
+            return (test instanceof Stateful ? null : test);
+        } catch (LookupException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Validates and binds the arguments of a test.
+     * 
+     * @param test
+     *            the test implementation, not null
+     * @param arguments
+     *            the test arguments, not null
+     * @return the bound arguments, or null when they are invalid, in which
+     *         case they are validated (and any error reported) on execution
+     */
+    private Object bindArguments(BindableTest test, Arguments arguments) {
+        try {
+            return test.bind(arguments, context);
+        } catch (SieveException e) {
+            return null;
+        }
+    }
+
     /**
      * @see SieveParserVisitor#visit(SimpleNode, Object)
      */
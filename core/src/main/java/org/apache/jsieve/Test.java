@@ -23,6 +23,7 @@ import org.apache.commons.logging.Log;
 import org.apache.jsieve.exception.LookupException;
 import org.apache.jsieve.exception.SieveException;
 import org.apache.jsieve.mail.MailAdapter;
+import org.apache.jsieve.tests.BindableTest;
 import org.apache.jsieve.tests.ExecutableTest;
 
 /**
@@ -40,6 +41,27 @@ public class Test implements Executable {
     /** The arguments for this Test */
     private Arguments fieldArguments;
 
+    /**
+     * The implementation resolved when the script was compiled, or null when
+     * it must be looked up on each execution.
+     */
+    private ExecutableTest fieldExecutable;
+
+    /**
+     * The arguments bound by the implementation when the script was
+     * compiled, or null when they must be validated on each execution.
+     */
+    private Object fieldBinding;
+
+    /**
+     * The slot in which the result of this test is memoized for each
+     * evaluation, or {@link #NOT_MEMOIZED}.
+     */
+    private int fieldMemoSlot = NOT_MEMOIZED;
+
+    /** Indicates that the result of a test is not memoized */
+    public static final int NOT_MEMOIZED = -1;
+
     /**
      * @see org.apache.jsieve.Executable#execute(MailAdapter, SieveContext)
      */
@@ -61,8 +83,34 @@ public class Test implements Executable {
         if (log.isDebugEnabled()) {
             log.debug(toString());
         }
-        final String name = getName();
-        final ExecutableTest test = context.getTestManager().getTest(name);
+        final TestResults results = context.getTestResults();
+        if (null != results) {
+            final Boolean known = results.get(this);
+            if (null != known)
+                return known.booleanValue();
+            final boolean result = isTestPassedBasic(mail, context);
+            results.put(this, result);
+            return result;
+        }
+        return isTestPassedBasic(mail, context);
+    }
+
+    /**
+     * Executes this test without reference to any memoized result.
+     * @param mail not null
+     * @param context not null
+     * @return true when the test passes, false otherwise
+     * @throws SieveException
+     */
+    @SuppressWarnings("unchecked")
+    private boolean isTestPassedBasic(MailAdapter mail, SieveContext context) throws SieveException {
+        final Object binding = getBinding();
+        if (null != binding)
+            return ((BindableTest) getExecutable()).executeBound(mail, binding,
+                    context);
+        ExecutableTest test = getExecutable();
+        if (null == test)
+            test = context.getTestManager().getTest(getName());
         return test.execute(mail, getArguments(), context);
     }
 
@@ -85,6 +133,40 @@ public class Test implements Executable {
         setArguments(arguments);
     }
 
+    /**
+     * Constructor for Test bound to a resolved implementation.
+     * 
+     * @param name
+     * @param arguments
+     * @param executable
+     *            the implementation of the named test, or null to look it up
+     *            on each execution
+     */
+    public Test(String name, Arguments arguments, ExecutableTest executable) {
+        this(name, arguments);
+        setExecutable(executable);
+    }
+
+    /**
+     * Constructor for Test bound to a resolved implementation and to the
+     * arguments which that implementation bound.
+     * 
+     * @param name
+     * @param arguments
+     * @param executable
+     *            the implementation of the named test, not null
+     * @param binding
+     *            the result of
+     *            {@link BindableTest#bind(Arguments, SieveContext)} for
+     *            <code>executable</code>, or null to validate the arguments
+     *            on each execution
+     */
+    public Test(String name, Arguments arguments, BindableTest executable,
+            Object binding) {
+        this(name, arguments, executable);
+        setBinding(binding);
+    }
+
     /**
      * Returns the arguments.
      * 
@@ -123,6 +205,66 @@ public class Test implements Executable {
         fieldName = name;
     }
 
+    /**
+     * Returns the implementation resolved at compile time.
+     * 
+     * @return ExecutableTest, or null when resolved on each execution
+     */
+    public ExecutableTest getExecutable() {
+        return fieldExecutable;
+    }
+
+    /**
+     * Sets the implementation resolved at compile time.
+     * 
+     * @param executable
+     *            The executable to set
+     */
+    protected void setExecutable(ExecutableTest executable) {
+        fieldExecutable = executable;
+    }
+
+    /**
+     * Returns the arguments bound at compile time.
+     * 
+     * @return Object, or null when the arguments are validated on each
+     *         execution
+     */
+    public Object getBinding() {
+        return fieldBinding;
+    }
+
+    /**
+     * Sets the arguments bound at compile time.
+     * 
+     * @param binding
+     *            The binding to set
+     */
+    protected void setBinding(Object binding) {
+        fieldBinding = binding;
+    }
+
+    /**
+     * Returns the slot in which the result of this test is memoized.
+     * 
+     * @return int, or {@link #NOT_MEMOIZED}
+     */
+    public int getMemoSlot() {
+        return fieldMemoSlot;
+    }
+
+    /**
+     * Sets the slot in which the result of this test is memoized. Tests
+     * sharing a slot must have the same implementation and arguments.
+     * 
+     * @param memoSlot
+     *            index in the {@link TestResults} of each evaluation, or
+     *            {@link #NOT_MEMOIZED}
+     */
+    protected void setMemoSlot(int memoSlot) {
+        fieldMemoSlot = memoSlot;
+    }
+
     /**
      * @see java.lang.Object#toString()
      */
@@ -22,6 +22,7 @@ package org.apache.jsieve;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.jsieve.exception.LookupException;
@@ -29,6 +30,10 @@ import org.apache.jsieve.tests.ExecutableTest;
 
 /**
  * <p>Maps Test names to configured Test implementation classes.</p>
+ * <p>
+ * Test classes are loaded once and a single instance of each is shared
+ * by all callers, unless the implementation is marked {@link Stateful}.
+ * </p>
  * <h4>Thread Safety</h4>
  * <p>
  * Instances may safely be accessed concurrently by multiple threads.
@@ -45,6 +50,12 @@ public class TestManagerImpl implements TestManager {
 
     private final ConcurrentMap<String, String> classNameMap;
 
+    /** Loaded Test classes indexed by class name */
+    private final ConcurrentMap<String, Class> classes = new ConcurrentHashMap<String, Class>();
+
+    /** Shared Test instances indexed by class name */
+    private final ConcurrentMap<String, ExecutableTest> instances = new ConcurrentHashMap<String, ExecutableTest>();
+
     /**
      * TestManager is instanciated with getInstance
      */
@@ -64,24 +75,43 @@ public class TestManagerImpl implements TestManager {
      * @throws LookupException
      */
     public Class lookup(String name) throws LookupException {
-        Class testClass;
+        return lookup(name, getClassName(name));
+    }
 
+    /**
+     * <p>
+     * Method lookup answers the named Test class, loading it when it has not
+     * been loaded before.
+     * </p>
+     * 
+     * @param name -
+     *            The name of the Test
+     * @param className -
+     *            The name of the class to which the Test is mapped
+     * @return Class - The class of the Test
+     * @throws LookupException
+     */
+    private Class lookup(String name, String className) throws LookupException {
+        Class testClass = classes.get(className);
+        if (null != testClass)
+            return testClass;
         try {
-            testClass = getClass().getClassLoader().loadClass(
-                    getClassName(name));
+            testClass = getClass().getClassLoader().loadClass(className);
         } catch (ClassNotFoundException e) {
             throw new LookupException("Test named '" + name + "' not found.");
         }
         if (!ExecutableTest.class.isAssignableFrom(testClass))
             throw new LookupException("Class " + testClass.getName()
                     + " must implement " + ExecutableTest.class.getName());
+        classes.putIfAbsent(className, testClass);
         return testClass;
     }
 
     /**
      * <p>
      * Method newInstance answers an instance of the class to which a Test name
-     * is mapped.
+     * is mapped. The instance is shared unless the class is marked
+     * {@link Stateful}.
      * </p>
      * 
      * @param name -
@@ -90,13 +120,22 @@ public class TestManagerImpl implements TestManager {
      * @throws LookupException
      */
     public ExecutableTest getTest(String name) throws LookupException {
+        final String className = getClassName(name);
+        final ExecutableTest shared = instances.get(className);
+        if (null != shared)
+            return shared;
+        final ExecutableTest test;
         try {
-            return (ExecutableTest) lookup(name).newInstance();
+            test = (ExecutableTest) lookup(name, className).newInstance();
         } catch (InstantiationException e) {
             throw new LookupException(e.getMessage());
         } catch (IllegalAccessException e) {
             throw new LookupException(e.getMessage());
         }
+        if (test instanceof Stateful)
+            return test;
+        final ExecutableTest existing = instances.putIfAbsent(className, test);
+        return (null == existing ? test : existing);
     }
 
     /**
@@ -0,0 +1,294 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jsieve.tests.AllOf;
+import org.apache.jsieve.tests.AnyOf;
+import org.apache.jsieve.tests.CostedTest;
+import org.apache.jsieve.tests.ExecutableTest;
+import org.apache.jsieve.tests.False;
+import org.apache.jsieve.tests.Not;
+import org.apache.jsieve.tests.True;
+
+/**
+ * <p>
+ * Optimizes the {@link Test}s of a script as it is compiled by
+ * {@link SieveParserVisitorImpl#compile(org.apache.jsieve.parser.generated.Node)}.
+ * </p>
+ * <ul>
+ * <li><code>true</code> and <code>false</code> are replaced by a
+ * {@link ConstantTest}, as is <code>not</code> when its test is
+ * constant.</li>
+ * <li>Constant tests are folded into <code>allof</code> and
+ * <code>anyof</code>. Tests which could never be executed are dropped, and
+ * a list reduced to a single test is replaced by that test. Tests preceding
+ * a deciding constant are kept, so that any errors they raise are still
+ * reported.</li>
+ * <li>Tests whose arguments were bound are assumed to depend only upon the
+ * mail. Those with the same implementation and equal arguments share a slot
+ * in the {@link TestResults} of each evaluation, so that each is executed at
+ * most once for each mail.</li>
+ * <li>Optionally, the tests of an <code>allof</code> or <code>anyof</code>
+ * are reordered by cost when all are free of side effects, see
+ * {@link ReorderingTestList}.</li>
+ * </ul>
+ * <p>
+ * Tests whose arguments are invalid are left unchanged, so that errors are
+ * reported on execution exactly as before.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are mutable and should be confined to the thread compiling the
+ * script.
+ * </p>
+ */
+final class TestOptimizer {
+
+    /** The first bound test with each key, see {@link #key(Test)} */
+    private final Map<List<Object>, Test> boundTests = new HashMap<List<Object>, Test>();
+
+    /** The estimated cost of a bound test which is not a {@link CostedTest} */
+    static final int DEFAULT_COST = 10;
+
+    /** The number of memo slots assigned */
+    private int slots;
+
+    /** Are the tests of <code>allof</code> and <code>anyof</code> reordered? */
+    private final boolean reorderTests;
+
+    /**
+     * Constructor for TestOptimizer.
+     * 
+     * @param reorderTests
+     *            true when side effect free tests of <code>allof</code> and
+     *            <code>anyof</code> are to be reordered by cost, false to
+     *            execute them in script order
+     */
+    TestOptimizer(boolean reorderTests) {
+        super();
+        this.reorderTests = reorderTests;
+    }
+
+    /**
+     * Gets the number of memo slots assigned.
+     * 
+     * @return the size of the {@link TestResults} required for each
+     *         evaluation
+     */
+    int getSlots() {
+        return slots;
+    }
+
+    /**
+     * Optimizes a test whose descendants have already been optimized.
+     * 
+     * @param test
+     *            not null
+     * @return the test to be executed in place of the given test, not null
+     */
+    Test optimize(Test test) {
+        if (null != test.getBinding()) {
+            memoize(test);
+            return test;
+        }
+        final ExecutableTest executable = test.getExecutable();
+        final Arguments arguments = test.getArguments();
+        if (null == executable || null == arguments
+                || !arguments.getArgumentList().isEmpty()) {
+            return test;
+        }
+        final List<Test> children;
+        if (arguments.hasTests()) {
+            children = arguments.getTestList().getTests();
+        } else {
+            children = Collections.emptyList();
+        }
+        if (children.isEmpty()) {
+            if (executable instanceof True) {
+                return new ConstantTest(test, true);
+            } else if (executable instanceof False) {
+                return new ConstantTest(test, false);
+            }
+        } else if (executable instanceof Not) {
+            if (children.size() == 1 && children.get(0) instanceof ConstantTest) {
+                return new ConstantTest(test, !((ConstantTest) children.get(0))
+                        .getValue());
+            }
+        } else if (executable instanceof AllOf) {
+            return fold(test, children, true);
+        } else if (executable instanceof AnyOf) {
+            return fold(test, children, false);
+        }
+        return test;
+    }
+
+    /**
+     * Folds constant tests into an <code>allof</code> or <code>anyof</code>.
+     * 
+     * @param test
+     *            not null
+     * @param children
+     *            the tests of the given test, not empty
+     * @param neutral
+     *            true for <code>allof</code>, false for <code>anyof</code>
+     * @return the test to be executed in place of the given test, not null
+     */
+    private Test fold(Test test, List<Test> children, boolean neutral) {
+        final List<Test> remaining = new ArrayList<Test>(children.size());
+        for (final Test child : children) {
+            if (child instanceof ConstantTest) {
+                if (((ConstantTest) child).getValue() != neutral) {
+                    // Later tests are never executed
+                    if (remaining.isEmpty()) {
+                        return new ConstantTest(test, !neutral);
+                    }
+                    remaining.add(child);
+                    break;
+                }
+            } else {
+                remaining.add(child);
+            }
+        }
+        if (remaining.isEmpty()) {
+            return new ConstantTest(test, neutral);
+        } else if (remaining.size() == 1) {
+            return remaining.get(0);
+        }
+        final List<Test> tests = Collections.unmodifiableList(remaining);
+        final TestList testList;
+        if (reorderTests && isFreeOfSideEffects(tests)) {
+            final int[] costs = new int[tests.size()];
+            for (int i = 0; i < costs.length; i++) {
+                costs[i] = estimateCost(tests.get(i));
+            }
+            testList = new ReorderingTestList(tests, costs, neutral);
+        } else if (remaining.size() == children.size()) {
+            return test;
+        } else {
+            testList = new TestList(tests);
+        }
+        return new Test(test.getName(), new Arguments(test.getArguments()
+                .getArgumentList(), testList), test.getExecutable());
+    }
+
+    /**
+     * Are the given tests free of side effects? Tests whose arguments were
+     * bound are assumed to depend only upon the mail, as are constants and
+     * the combination of such tests by <code>not</code>, <code>allof</code>
+     * or <code>anyof</code>.
+     * 
+     * @param tests
+     *            not null
+     * @return true when all tests may be executed in any order, false
+     *         otherwise
+     */
+    private static boolean isFreeOfSideEffects(List<Test> tests) {
+        for (final Test test : tests) {
+            if (test instanceof ConstantTest || null != test.getBinding()) {
+                continue;
+            }
+            final ExecutableTest executable = test.getExecutable();
+            final Arguments arguments = test.getArguments();
+            if (!(executable instanceof Not || executable instanceof AllOf || executable instanceof AnyOf)
+                    || !arguments.getArgumentList().isEmpty()
+                    || !arguments.hasTests()
+                    || !isFreeOfSideEffects(arguments.getTestList().getTests())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estimates the cost of executing a test free of side effects.
+     * 
+     * @param test
+     *            not null
+     * @return relative cost, see {@link CostedTest}
+     */
+    @SuppressWarnings("unchecked")
+    private static int estimateCost(Test test) {
+        if (test instanceof ConstantTest) {
+            return 0;
+        }
+        final ExecutableTest executable = test.getExecutable();
+        final Object binding = test.getBinding();
+        if (null != binding) {
+            if (executable instanceof CostedTest) {
+                return ((CostedTest) executable).estimateCost(binding);
+            }
+            return DEFAULT_COST;
+        }
+        // not, allof or anyof: at worst every test is executed
+        int cost = 0;
+        for (final Test child : test.getArguments().getTestList().getTests()) {
+            cost += estimateCost(child);
+        }
+        return cost;
+    }
+
+    /**
+     * Shares a memo slot between a bound test and any identical test already
+     * compiled.
+     * 
+     * @param test
+     *            bound test, not null
+     */
+    private void memoize(Test test) {
+        if (test.getArguments().hasTests()) {
+            return;
+        }
+        final List<Object> key = key(test);
+        final Test first = boundTests.get(key);
+        if (null == first) {
+            boundTests.put(key, test);
+        } else {
+            if (first.getMemoSlot() < 0) {
+                first.setMemoSlot(slots++);
+            }
+            test.setMemoSlot(first.getMemoSlot());
+        }
+    }
+
+    /**
+     * Computes a key equal for tests with the same implementation and
+     * arguments.
+     * 
+     * @param test
+     *            not null
+     * @return not null
+     */
+    static List<Object> key(Test test) {
+        final List<Argument> arguments = test.getArguments().getArgumentList();
+        final List<Object> key = new ArrayList<Object>(2 * arguments.size() + 1);
+        key.add(test.getExecutable());
+        for (final Argument argument : arguments) {
+            key.add(argument.getClass());
+            key.add(argument.getValue());
+        }
+        return key;
+    }
+}
@@ -0,0 +1,105 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve;
+
+/**
+ * <p>
+ * Results of the {@link Test}s memoized during a single evaluation of a
+ * {@link CompiledScript}. Identical tests occurring more than once in a
+ * script share a slot, assigned when the script is compiled, so that each
+ * is executed at most once for each mail. When the script is evaluated with
+ * the {@link RuleIndex.Matches} of a {@link RuleIndex}, results are also
+ * shared with the other scripts indexed.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are mutable and should be confined to the thread evaluating the
+ * script.
+ * </p>
+ */
+public final class TestResults {
+
+    /** Results indexed by slot, null when not yet known */
+    private final Boolean[] results;
+
+    /** Results shared with other scripts, or null */
+    private final RuleIndex.Matches matches;
+
+    /**
+     * Constructor for TestResults.
+     * 
+     * @param size
+     *            the number of slots
+     */
+    public TestResults(int size) {
+        this(size, null);
+    }
+
+    /**
+     * Constructor for TestResults sharing results with other scripts.
+     * 
+     * @param size
+     *            the number of slots
+     * @param matches
+     *            results shared with the other scripts of an index, or null
+     */
+    public TestResults(int size, RuleIndex.Matches matches) {
+        super();
+        this.results = new Boolean[size];
+        this.matches = matches;
+    }
+
+    /**
+     * Gets the known result of the given test.
+     * 
+     * @param test
+     *            not null
+     * @return <code>Boolean</code>, or null when the test must be executed
+     */
+    public Boolean get(Test test) {
+        Boolean result = null;
+        if (null != matches) {
+            result = matches.get(test);
+        }
+        final int slot = test.getMemoSlot();
+        if (null == result && slot != Test.NOT_MEMOIZED) {
+            result = results[slot];
+        }
+        return result;
+    }
+
+    /**
+     * Records the result of the given test once executed.
+     * 
+     * @param test
+     *            not null
+     * @param passed
+     *            true when the test passed, false otherwise
+     */
+    public void put(Test test, boolean passed) {
+        if (null != matches) {
+            matches.put(test, passed);
+        }
+        final int slot = test.getMemoSlot();
+        if (slot != Test.NOT_MEMOIZED) {
+            results[slot] = Boolean.valueOf(passed);
+        }
+    }
+}
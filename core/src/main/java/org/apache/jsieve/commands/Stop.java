@@ -21,9 +21,9 @@ package org.apache.jsieve.commands;
 
 import org.apache.jsieve.Arguments;
 import org.apache.jsieve.Block;
+import org.apache.jsieve.Completion;
 import org.apache.jsieve.SieveContext;
 import org.apache.jsieve.exception.SieveException;
-import org.apache.jsieve.exception.StopException;
 import org.apache.jsieve.mail.MailAdapter;
 
 /**
@@ -40,7 +40,9 @@ public class Stop extends AbstractControlCommand {
 
     /**
      * <p>
-     * Throws a StopException.
+     * Answers {@link Completion#STOP}, so that no further commands are
+     * executed. Evaluation is ended without throwing a
+     * {@link org.apache.jsieve.exception.StopException}.
      * </p>
      * <p>
      * Also,
@@ -51,7 +53,8 @@ public class Stop extends AbstractControlCommand {
      */
     protected Object executeBasic(MailAdapter mail, Arguments arguments,
             Block block, SieveContext context) throws SieveException {
-        throw new StopException("Stop requested");
+        context.getCommandStateManager().setStopped(true);
+        return Completion.STOP;
     }
 
 }
@@ -0,0 +1,371 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.comparators;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * An Aho-Corasick automaton which answers whether a string contains any of a
+ * set of keys, or which of them it contains. The string is scanned once,
+ * whatever the number of keys.
+ * </p>
+ * <p>
+ * When case is ignored, characters are compared as by
+ * {@link Character#toUpperCase(char)}.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are immutable and may be shared by multiple threads.
+ * </p>
+ */
+public final class AhoCorasick {
+
+    /** The start state */
+    private static final int ROOT = 0;
+
+    /** Should characters be compared without regard to case? */
+    private final boolean ignoreCase;
+
+    /** Is one of the keys empty, and so contained by every string? */
+    private final boolean matchesEmpty;
+
+    /** The sorted characters on the transitions from each state */
+    private final char[][] labels;
+
+    /** The target of each transition, parallel to {@link #labels} */
+    private final int[][] targets;
+
+    /** The state to fall back to when no transition matches */
+    private final int[] failures;
+
+    /** Has a key been found on reaching each state? */
+    private final boolean[] accepting;
+
+    /**
+     * The indexes of the keys found on reaching each accepting state, or
+     * null for other states
+     */
+    private final int[][] outputs;
+
+    /** The indexes of the empty keys */
+    private final int[] emptyKeys;
+
+    private AhoCorasick(boolean ignoreCase, boolean matchesEmpty,
+            char[][] labels, int[][] targets, int[] failures,
+            boolean[] accepting, int[][] outputs, int[] emptyKeys) {
+        this.ignoreCase = ignoreCase;
+        this.matchesEmpty = matchesEmpty;
+        this.labels = labels;
+        this.targets = targets;
+        this.failures = failures;
+        this.accepting = accepting;
+        this.outputs = outputs;
+        this.emptyKeys = emptyKeys;
+    }
+
+    /**
+     * Compiles an automaton for the given keys.
+     * 
+     * @param keys
+     *            not null
+     * @param ignoreCase
+     *            true when characters are to be compared without regard to
+     *            case
+     * @return <code>AhoCorasick</code>, not null
+     */
+    public static AhoCorasick compile(Collection<String> keys,
+            boolean ignoreCase) {
+        // Build the trie of keys
+        final List<TreeMap<Character, Integer>> trie = new ArrayList<TreeMap<Character, Integer>>();
+        final List<List<Integer>> ends = new ArrayList<List<Integer>>();
+        final List<Integer> empty = new ArrayList<Integer>();
+        trie.add(new TreeMap<Character, Integer>());
+        ends.add(null);
+        int index = 0;
+        for (final String key : keys) {
+            if (key.length() == 0) {
+                empty.add(Integer.valueOf(index));
+            }
+            int state = ROOT;
+            for (int i = 0; i < key.length(); i++) {
+                final Character label = Character.valueOf(fold(key.charAt(i),
+                        ignoreCase));
+                Integer next = trie.get(state).get(label);
+                if (null == next) {
+                    next = Integer.valueOf(trie.size());
+                    trie.add(new TreeMap<Character, Integer>());
+                    ends.add(null);
+                    trie.get(state).put(label, next);
+                }
+                state = next.intValue();
+            }
+            if (state != ROOT) {
+                if (null == ends.get(state)) {
+                    ends.set(state, new ArrayList<Integer>(1));
+                }
+                ends.get(state).add(Integer.valueOf(index));
+            }
+            index++;
+        }
+
+        // Flatten into arrays
+        final int size = trie.size();
+        final char[][] labels = new char[size][];
+        final int[][] targets = new int[size][];
+        final boolean[] accepting = new boolean[size];
+        final int[][] outputs = new int[size][];
+        for (int state = 0; state < size; state++) {
+            final TreeMap<Character, Integer> transitions = trie.get(state);
+            labels[state] = new char[transitions.size()];
+            targets[state] = new int[transitions.size()];
+            int i = 0;
+            for (final Map.Entry<Character, Integer> transition : transitions
+                    .entrySet()) {
+                labels[state][i] = transition.getKey().charValue();
+                targets[state][i++] = transition.getValue().intValue();
+            }
+            outputs[state] = toArray(ends.get(state));
+            accepting[state] = null != outputs[state];
+        }
+
+        // Link failures breadth first, so that shorter suffixes are linked
+        // before they are needed
+        final int[] failures = new int[size];
+        final LinkedList<Integer> queue = new LinkedList<Integer>();
+        queue.add(Integer.valueOf(ROOT));
+        while (!queue.isEmpty()) {
+            final int state = queue.removeFirst().intValue();
+            for (int i = 0; i < labels[state].length; i++) {
+                final char label = labels[state][i];
+                final int target = targets[state][i];
+                if (state == ROOT) {
+                    failures[target] = ROOT;
+                } else {
+                    int fallback = failures[state];
+                    int next = transition(labels, targets, fallback, label);
+                    while (next < 0 && fallback != ROOT) {
+                        fallback = failures[fallback];
+                        next = transition(labels, targets, fallback, label);
+                    }
+                    failures[target] = (next < 0 ? ROOT : next);
+                }
+                outputs[target] = merge(outputs[target],
+                        outputs[failures[target]]);
+                accepting[target] |= accepting[failures[target]];
+                queue.add(Integer.valueOf(target));
+            }
+        }
+        return new AhoCorasick(ignoreCase, !empty.isEmpty(), labels, targets,
+                failures, accepting, outputs, toArray(empty));
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        if (null == list) {
+            return null;
+        }
+        final int[] results = new int[list.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = list.get(i).intValue();
+        }
+        return results;
+    }
+
+    private static int[] merge(int[] outputs, int[] inherited) {
+        if (null == inherited) {
+            return outputs;
+        } else if (null == outputs) {
+            return inherited;
+        }
+        final int[] results = new int[outputs.length + inherited.length];
+        System.arraycopy(outputs, 0, results, 0, outputs.length);
+        System.arraycopy(inherited, 0, results, outputs.length,
+                inherited.length);
+        return results;
+    }
+
+    private static char fold(char ch, boolean ignoreCase) {
+        return (ignoreCase ? FoldedKey.fold(ch) : ch);
+    }
+
+    /**
+     * Answers the target of the transition from the given state on the given
+     * character.
+     * 
+     * @return the target state, or -1 when there is no such transition
+     */
+    private static int transition(char[][] labels, int[][] targets,
+            int state, char label) {
+        final char[] stateLabels = labels[state];
+        int low = 0;
+        int high = stateLabels.length - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final char middleLabel = stateLabels[middle];
+            if (middleLabel < label)
+                low = middle + 1;
+            else if (middleLabel > label)
+                high = middle - 1;
+            else
+                return targets[state][middle];
+        }
+        return -1;
+    }
+
+    /**
+     * Are characters compared without regard to case?
+     * 
+     * @return true when case is ignored, false otherwise
+     */
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * Answers whether the given string contains any of the keys.
+     * 
+     * @param container
+     *            not null
+     * @return true when at least one key is contained, false otherwise
+     */
+    public boolean containsAny(CharSequence container) {
+        if (matchesEmpty)
+            return true;
+        final int length = container.length();
+        int state = ROOT;
+        for (int i = 0; i < length; i++) {
+            state = next(state, container.charAt(i));
+            if (accepting[state])
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds every key contained by the given string. The container is
+     * scanned once, whatever the number of keys.
+     * 
+     * @param container
+     *            not null
+     * @param found
+     *            to which is added the index of each key contained, in the
+     *            order the keys were compiled, not null
+     */
+    public void findAll(CharSequence container, BitSet found) {
+        for (final int key : emptyKeys) {
+            found.set(key);
+        }
+        final int length = container.length();
+        int state = ROOT;
+        for (int i = 0; i < length; i++) {
+            state = next(state, container.charAt(i));
+            if (accepting[state]) {
+                for (final int key : outputs[state]) {
+                    found.set(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a search which is fed one character at a time, so that a
+     * container too large to hold in memory may be searched as it is read.
+     * 
+     * @return <code>Search</code>, not null
+     */
+    public Search search() {
+        return new Search();
+    }
+
+    /**
+     * Answers the state reached from the given state on the given character.
+     */
+    private int next(int state, char ch) {
+        final char label = fold(ch, ignoreCase);
+        int next = transition(labels, targets, state, label);
+        while (next < 0 && state != ROOT) {
+            state = failures[state];
+            next = transition(labels, targets, state, label);
+        }
+        return (next < 0 ? ROOT : next);
+    }
+
+    /**
+     * <p>
+     * An incremental search for the keys of the automaton. Only the current
+     * state is retained, so the memory used does not depend upon the length
+     * of the container.
+     * </p>
+     * <h4>Thread Safety</h4>
+     * <p>
+     * Instances are mutable and must be confined to a single thread.
+     * </p>
+     */
+    public final class Search {
+
+        /** The current state */
+        private int state;
+
+        /** Has a key been found? */
+        private boolean found;
+
+        private Search() {
+            reset();
+        }
+
+        /**
+         * Starts searching a new container.
+         */
+        public void reset() {
+            state = ROOT;
+            found = matchesEmpty;
+        }
+
+        /**
+         * Feeds the next character of the container.
+         * 
+         * @param ch
+         *            character
+         * @return true when a key has been found, false otherwise
+         */
+        public boolean next(char ch) {
+            if (!found) {
+                state = AhoCorasick.this.next(state, ch);
+                found = accepting[state];
+            }
+            return found;
+        }
+
+        /**
+         * Has a key been found in the characters fed since the search was
+         * started or reset?
+         * 
+         * @return true when a key has been found, false otherwise
+         */
+        public boolean isFound() {
+            return found;
+        }
+    }
+}
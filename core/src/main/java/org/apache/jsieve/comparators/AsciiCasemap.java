@@ -19,6 +19,8 @@
 
 package org.apache.jsieve.comparators;
 
+import java.util.List;
+
 import org.apache.jsieve.exception.SievePatternException;
 
 /**
@@ -26,8 +28,15 @@ import org.apache.jsieve.exception.SievePatternException;
  * comparator as defined by RFC2244, section 3.4 - "With this function the
  * values "hello" and "HELLO" have the same ordinal value and are considered
  * equal".
+ * <p>
+ * Characters are compared as by {@link Character#toUpperCase(char)}, one at a
+ * time, so that no comparison allocates an upper cased copy of its operands.
+ * Keys may also be folded once, when a script is compiled, see
+ * {@link #foldKey(String)}.
+ * </p>
  */
-public class AsciiCasemap implements Comparator {
+public class AsciiCasemap implements Comparator, BatchContains,
+        FoldingComparator {
 
     /**
      * Constructor for AsciiCasemap.
@@ -40,16 +49,28 @@ public class AsciiCasemap implements Comparator {
      * @see org.apache.jsieve.comparators.Equals#equals(String, String)
      */
     public boolean equals(String string1, String string2) {
-        return ComparatorUtils.equals(string1.toUpperCase(), string2
-                .toUpperCase());
+        return ComparatorUtils.equalsIgnoreCase(string1, string2);
     }
 
     /**
      * @see org.apache.jsieve.comparators.Contains#contains(String, String)
      */
     public boolean contains(String container, String content) {
-        return ComparatorUtils.contains(container.toUpperCase(), content
-                .toUpperCase());
+        return ComparatorUtils.containsIgnoreCase(container, content);
+    }
+
+    /**
+     * @see org.apache.jsieve.comparators.BatchContains#compileContents(List)
+     */
+    public AhoCorasick compileContents(List<String> contents) {
+        return AhoCorasick.compile(contents, true);
+    }
+
+    /**
+     * @see org.apache.jsieve.comparators.FoldingComparator#foldKey(String)
+     */
+    public FoldedKey foldKey(String key) {
+        return new FoldedKey(key);
     }
 
     /**
@@ -57,8 +78,7 @@ public class AsciiCasemap implements Comparator {
      */
     public boolean matches(String string, String glob)
             throws SievePatternException {
-        return ComparatorUtils
-                .matches(string.toUpperCase(), glob.toUpperCase());
+        return Glob.forPattern(glob, true).matches(string);
     }
 
 }
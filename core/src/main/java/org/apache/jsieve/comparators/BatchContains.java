@@ -0,0 +1,44 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.comparators;
+
+import java.util.List;
+
+/**
+ * <p>
+ * A {@link Contains} comparator which can compile a list of contents so that
+ * a container is searched for all of them in a single pass.
+ * </p>
+ * <p>
+ * For every container, the compiled contents must contain any of the
+ * contents exactly when {@link Contains#contains(String, String)} answers
+ * true for at least one of them.
+ * </p>
+ */
+public interface BatchContains extends Contains {
+
+    /**
+     * Compiles the given contents for use with this comparator.
+     * 
+     * @param contents
+     *            not null
+     * @return <code>AhoCorasick</code>, not null
+     */
+    public AhoCorasick compileContents(List<String> contents);
+}
@@ -19,10 +19,6 @@
 
 package org.apache.jsieve.comparators;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
-
 import org.apache.jsieve.SieveContext;
 import org.apache.jsieve.exception.LookupException;
 import org.apache.jsieve.exception.SieveException;
@@ -70,11 +66,41 @@ public class ComparatorUtils {
         return isMatched;
     }
 
+    /**
+     * Method <code>match</code> answers a boolean indicating if the parameter
+     * <code>matchTarget</code> compares to parameter
+     * <code>matchArgument</code> is a match of <code>matchType</code> using
+     * the given <code>comparator</code>.
+     *
+     * @param comparator not null
+     * @param matchType not null
+     * @param matchTarget not null
+     * @param matchArgument not null
+     * @return boolean
+     */
+    public static boolean match(Comparator comparator, MatchType matchType,
+            String matchTarget, String matchArgument) throws SieveException {
+        switch (matchType) {
+        case IS:
+            return comparator.equals(matchTarget, matchArgument);
+        case CONTAINS:
+            return comparator.contains(matchTarget, matchArgument);
+        case MATCHES:
+            return comparator.matches(matchTarget, matchArgument);
+        default:
+            return false;
+        }
+    }
+
     /**
      * <p>
      * Method <code>matches</code> answers a boolean indicating if the
      * parameter <code>string</code> matches the glob pattern described by
      * parameter <code>glob</code>.
+     * </p>
+     * <p>
+     * The compiled pattern is cached, see {@link Glob#forPattern(String, boolean)}.
+     * </p>
      * 
      * @param string
      * @param glob
@@ -83,13 +109,7 @@ public class ComparatorUtils {
      */
     static public boolean matches(String string, String glob)
             throws SievePatternException {
-        try {
-            String regex = sieveToJavaRegex(glob);
-            final Matcher matcher = Pattern.compile(regex).matcher(string);
-            return matcher.matches();
-        } catch (PatternSyntaxException e) {
-            throw new SievePatternException(e.getMessage());
-        }
+        return Glob.forPattern(glob, false).matches(string);
     }
 
     /**
@@ -122,6 +142,58 @@ public class ComparatorUtils {
         return string1.equals(string2);
     }
 
+    /**
+     * <p>
+     * Method <code>equalsIgnoreCase</code> answers a boolean indicating if
+     * the parameter <code>string1</code> is equal to the parameter
+     * <code>string2</code> when characters are compared as by
+     * {@link Character#toUpperCase(char)}. No upper cased copy is made.
+     * </p>
+     * 
+     * @param string1
+     * @param string2
+     * @return boolean
+     */
+    static public boolean equalsIgnoreCase(String string1, String string2) {
+        final int length = string1.length();
+        if (string2.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (FoldedKey.fold(string1.charAt(i)) != FoldedKey.fold(string2
+                    .charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * <p>
+     * Method <code>containsIgnoreCase</code> answers a boolean indicating if
+     * the parameter <code>container</code> contains the parameter
+     * <code>contents</code> when characters are compared as by
+     * {@link Character#toUpperCase(char)}. No upper cased copy is made.
+     * </p>
+     * 
+     * @param container
+     * @param contents
+     * @return boolean
+     */
+    static public boolean containsIgnoreCase(String container, String contents) {
+        final int length = contents.length();
+        final int last = container.length() - length;
+        for (int start = 0; start <= last; start++) {
+            int i = 0;
+            while (i < length
+                    && FoldedKey.fold(container.charAt(start + i)) == FoldedKey
+                            .fold(contents.charAt(i))) {
+                i++;
+            }
+            if (i == length)
+                return true;
+        }
+        return false;
+    }
+
     /**
      * Returns true if the char is a special char for regex
      */
@@ -0,0 +1,190 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.comparators;
+
+import org.apache.jsieve.exception.SievePatternException;
+
+/**
+ * <p>
+ * A key folded once, when a script is compiled, for repeated comparison
+ * without regard to case. Characters are compared as by
+ * {@link Character#toUpperCase(char)}, consistently with {@link Glob} and
+ * {@link AhoCorasick}. Only the value compared is folded, a character at a
+ * time, so no comparison allocates.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are effectively immutable and may be shared by multiple
+ * threads. The <code>:matches</code> pattern is compiled when first used;
+ * threads racing to compile it compile equal patterns.
+ * </p>
+ */
+public final class FoldedKey {
+
+    /** The key as given */
+    private final String key;
+
+    /** The characters of the key, upper cased */
+    private final char[] folded;
+
+    /** The key compiled as a <code>:matches</code> pattern, or null until used */
+    private volatile Glob glob;
+
+    /**
+     * Constructor for FoldedKey.
+     * 
+     * @param key
+     *            not null
+     */
+    public FoldedKey(String key) {
+        super();
+        this.key = key;
+        final int length = key.length();
+        this.folded = new char[length];
+        for (int i = 0; i < length; i++) {
+            folded[i] = fold(key.charAt(i));
+        }
+    }
+
+    /**
+     * Folds a single character.
+     * 
+     * @param ch
+     *            character
+     * @return the character upper cased
+     */
+    static char fold(char ch) {
+        return Character.toUpperCase(ch);
+    }
+
+    /**
+     * Folds each character of a string.
+     * 
+     * @param value
+     *            not null
+     * @return the value upper cased, not null
+     */
+    public static String fold(String value) {
+        final char[] folded = new char[value.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = fold(value.charAt(i));
+        }
+        return new String(folded);
+    }
+
+    /**
+     * Gets the key as given.
+     * 
+     * @return not null
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Answers whether the value is equal to this key.
+     * 
+     * @param value
+     *            not null
+     * @return boolean
+     */
+    public boolean isEqualTo(String value) {
+        final int length = folded.length;
+        if (value.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (fold(value.charAt(i)) != folded[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Answers whether the value contains this key.
+     * 
+     * @param value
+     *            not null
+     * @return boolean
+     */
+    public boolean isContainedIn(String value) {
+        final int length = folded.length;
+        final int last = value.length() - length;
+        for (int start = 0; start <= last; start++) {
+            int i = 0;
+            while (i < length && fold(value.charAt(start + i)) == folded[i]) {
+                i++;
+            }
+            if (i == length)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Answers whether the value is matched by this key using the given match
+     * type.
+     * 
+     * @param matchType
+     *            not null
+     * @param value
+     *            not null
+     * @return boolean
+     * @throws SievePatternException
+     *             when this key is not a valid <code>:matches</code> pattern
+     */
+    public boolean match(MatchType matchType, String value)
+            throws SievePatternException {
+        switch (matchType) {
+        case IS:
+            return isEqualTo(value);
+        case CONTAINS:
+            return isContainedIn(value);
+        case MATCHES:
+            return getGlob().matches(value);
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Gets this key compiled as a <code>:matches</code> pattern. Keys are
+     * only valid patterns when matched by <code>:matches</code>, so the
+     * pattern is compiled when first required.
+     * 
+     * @return not null
+     * @throws SievePatternException
+     *             when this key is not a valid pattern
+     */
+    private Glob getGlob() throws SievePatternException {
+        Glob result = glob;
+        if (null == result) {
+            result = Glob.forPattern(key, true);
+            glob = result;
+        }
+        return result;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "FoldedKey: " + key;
+    }
+}
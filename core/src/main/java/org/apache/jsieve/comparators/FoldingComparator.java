@@ -0,0 +1,43 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.comparators;
+
+/**
+ * <p>
+ * A {@link Comparator} which compares without regard to case, and so can
+ * fold each key once when a script is compiled rather than on every
+ * comparison.
+ * </p>
+ * <p>
+ * For every value, {@link FoldedKey#match(MatchType, String)} on a folded key
+ * must answer as this comparator would for the unfolded key.
+ * </p>
+ */
+public interface FoldingComparator extends Comparator {
+
+    /**
+     * Folds the given key for use with this comparator.
+     * 
+     * @param key
+     *            not null
+     * @return <code>FoldedKey</code>, not null
+     */
+    public FoldedKey foldKey(String key);
+}
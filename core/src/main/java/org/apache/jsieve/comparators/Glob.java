@@ -0,0 +1,230 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.comparators;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * A compiled Sieve <code>:matches</code> pattern, as defined in RFC 3028,
+ * section 2.7.1. "*" matches zero or more characters and "?" matches a single
+ * character. A backslash escapes a following "*", "?" or backslash; any other
+ * backslash matches itself.
+ * </p>
+ * <p>
+ * Matching neither allocates nor backtracks beyond the most recent "*", so
+ * its cost is bounded by the product of the pattern and string lengths.
+ * Compiled patterns are cached by {@link #forPattern(String, boolean)} so that
+ * each distinct pattern is compiled once rather than on every comparison.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are immutable and may be shared by multiple threads.
+ * </p>
+ */
+public final class Glob {
+
+    /** The maximum number of patterns held by each cache */
+    private static final int CACHE_CAPACITY = 1024;
+
+    /** Compiled case sensitive patterns indexed by pattern */
+    private static final ConcurrentMap<String, Glob> EXACT_CACHE = new ConcurrentHashMap<String, Glob>();
+
+    /** Compiled case insensitive patterns indexed by pattern */
+    private static final ConcurrentMap<String, Glob> CASELESS_CACHE = new ConcurrentHashMap<String, Glob>();
+
+    /** Matches the character in {@link #chars} */
+    private static final byte LITERAL = 0;
+
+    /** Matches any single character */
+    private static final byte ANY_CHAR = 1;
+
+    /** Matches zero or more characters */
+    private static final byte ANY_SEQUENCE = 2;
+
+    /** The pattern from which this was compiled */
+    private final String pattern;
+
+    /** Should characters be compared without regard to case? */
+    private final boolean ignoreCase;
+
+    /** The kind of each element */
+    private final byte[] kinds;
+
+    /** The character of each literal element, upper cased when ignoring case */
+    private final char[] chars;
+
+    private Glob(String pattern, boolean ignoreCase, byte[] kinds, char[] chars) {
+        this.pattern = pattern;
+        this.ignoreCase = ignoreCase;
+        this.kinds = kinds;
+        this.chars = chars;
+    }
+
+    /**
+     * Answers the compiled form of the given pattern, compiling it only when
+     * it is not already cached.
+     * 
+     * @param pattern
+     *            the Sieve pattern, not null
+     * @param ignoreCase
+     *            true when characters are to be compared without regard to
+     *            case
+     * @return <code>Glob</code>, not null
+     */
+    public static Glob forPattern(String pattern, boolean ignoreCase) {
+        final ConcurrentMap<String, Glob> cache = (ignoreCase ? CASELESS_CACHE
+                : EXACT_CACHE);
+        Glob glob = cache.get(pattern);
+        if (null == glob) {
+            glob = compile(pattern, ignoreCase);
+            if (cache.size() >= CACHE_CAPACITY)
+                cache.clear();
+            cache.putIfAbsent(pattern, glob);
+        }
+        return glob;
+    }
+
+    /**
+     * Compiles the given pattern.
+     * 
+     * @param pattern
+     *            the Sieve pattern, not null
+     * @param ignoreCase
+     *            true when characters are to be compared without regard to
+     *            case
+     * @return <code>Glob</code>, not null
+     */
+    public static Glob compile(String pattern, boolean ignoreCase) {
+        final int length = pattern.length();
+        final byte[] kinds = new byte[length];
+        final char[] chars = new char[length];
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            final char next = pattern.charAt(i);
+            switch (next) {
+            case '*':
+                // Consecutive stars are equivalent to one
+                if (size == 0 || kinds[size - 1] != ANY_SEQUENCE)
+                    kinds[size++] = ANY_SEQUENCE;
+                break;
+            case '?':
+                kinds[size++] = ANY_CHAR;
+                break;
+            case '\\':
+                kinds[size] = LITERAL;
+                if (i < length - 1 && isSpecial(pattern.charAt(i + 1)))
+                    chars[size++] = pattern.charAt(++i);
+                else
+                    chars[size++] = '\\';
+                break;
+            default:
+                kinds[size] = LITERAL;
+                chars[size++] = (ignoreCase ? Character.toUpperCase(next)
+                        : next);
+                break;
+            }
+        }
+        final byte[] compiledKinds = new byte[size];
+        final char[] compiledChars = new char[size];
+        System.arraycopy(kinds, 0, compiledKinds, 0, size);
+        System.arraycopy(chars, 0, compiledChars, 0, size);
+        return new Glob(pattern, ignoreCase, compiledKinds, compiledChars);
+    }
+
+    /**
+     * Is the character escaped by a preceding backslash?
+     */
+    private static boolean isSpecial(char ch) {
+        return (ch == '*' || ch == '?' || ch == '\\');
+    }
+
+    /**
+     * Gets the pattern from which this was compiled.
+     * 
+     * @return the Sieve pattern, not null
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Are characters compared without regard to case?
+     * 
+     * @return true when case is ignored, false otherwise
+     */
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * Answers whether the whole of the given string is matched by this
+     * pattern.
+     * 
+     * @param string
+     *            not null
+     * @return true when matched, false otherwise
+     */
+    public boolean matches(CharSequence string) {
+        final int length = string.length();
+        final int size = kinds.length;
+        int s = 0;
+        int p = 0;
+        // Position after the most recent star, and the string position
+        // it is currently matched up to
+        int starP = -1;
+        int starS = 0;
+        while (s < length) {
+            if (p < size) {
+                final byte kind = kinds[p];
+                if (kind == ANY_SEQUENCE) {
+                    starP = ++p;
+                    starS = s;
+                    continue;
+                }
+                if (kind == ANY_CHAR || isEqual(chars[p], string.charAt(s))) {
+                    p++;
+                    s++;
+                    continue;
+                }
+            }
+            if (starP < 0)
+                return false;
+            // Let the most recent star consume one more character
+            p = starP;
+            s = ++starS;
+        }
+        while (p < size && kinds[p] == ANY_SEQUENCE)
+            p++;
+        return p == size;
+    }
+
+    private boolean isEqual(char patternChar, char ch) {
+        return patternChar == ch
+                || (ignoreCase && patternChar == Character.toUpperCase(ch));
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "Glob: " + pattern + (ignoreCase ? " (ignoring case)" : "");
+    }
+}
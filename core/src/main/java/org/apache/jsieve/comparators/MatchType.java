@@ -0,0 +1,70 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.comparators;
+
+import static org.apache.jsieve.comparators.MatchTypeTags.CONTAINS_TAG;
+import static org.apache.jsieve.comparators.MatchTypeTags.IS_TAG;
+import static org.apache.jsieve.comparators.MatchTypeTags.MATCHES_TAG;
+
+/**
+ * Enumerates the MATCH-TYPEs defined in RFC 3028, section 2.7.1. Tests
+ * resolve the MATCH-TYPE tag once, when their arguments are bound, so that
+ * evaluation need not compare tag strings.
+ */
+public enum MatchType {
+
+    IS(IS_TAG),
+
+    CONTAINS(CONTAINS_TAG),
+
+    MATCHES(MATCHES_TAG);
+
+    /** The tag which selects this match type */
+    private final String tag;
+
+    private MatchType(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Gets the tag which selects this match type.
+     * 
+     * @return the tag, not null
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * Answers the match type selected by the given tag.
+     * 
+     * @param tag
+     *            not null
+     * @return <code>MatchType</code>, or null when the tag does not select a
+     *         match type
+     */
+    public static MatchType valueOfTag(String tag) {
+        for (final MatchType matchType : values()) {
+            if (matchType.tag.equals(tag)) {
+                return matchType;
+            }
+        }
+        return null;
+    }
+}
@@ -19,6 +19,8 @@
 
 package org.apache.jsieve.comparators;
 
+import java.util.List;
+
 import org.apache.jsieve.exception.SievePatternException;
 
 /**
@@ -27,7 +29,7 @@ import org.apache.jsieve.exception.SievePatternException;
  * equal if they are the same length and contain the same octets in the same
  * order. NIL is equal only to itself".
  */
-public class Octet implements Comparator {
+public class Octet implements Comparator, BatchContains {
 
     /**
      * Constructor for Octet.
@@ -50,6 +52,13 @@ public class Octet implements Comparator {
         return ComparatorUtils.contains(container, content);
     }
 
+    /**
+     * @see org.apache.jsieve.comparators.BatchContains#compileContents(List)
+     */
+    public AhoCorasick compileContents(List<String> contents) {
+        return AhoCorasick.compile(contents, false);
+    }
+
     /**
      * @see org.apache.jsieve.comparators.Matches#matches(String, String)
      */
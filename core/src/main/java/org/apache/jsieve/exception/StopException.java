@@ -21,8 +21,10 @@ package org.apache.jsieve.exception;
 
 /**
  * Class <code>StopException</code> indicates that evaluation should be
- * terminated. Typically, this exception is thrown when a Stop Command is
- * encountered.
+ * terminated. 
+ * The Stop Command now ends evaluation by answering 
+ * {@link org.apache.jsieve.Completion#STOP}. This exception remains
+ * supported for commands which throw it.
  */
 @SuppressWarnings("serial")
 public class StopException extends SieveException {
@@ -0,0 +1,123 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.mail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>
+ * Index of the headers of a mail by name, as matched by
+ * {@link MailAdapter#getMatchingHeader(String)}. Names are compared 
+ * ignoring case and whitespace prefixes and suffixes, as required by 
+ * RFC 3028.
+ * </p>
+ * <p>
+ * Building the index visits every header once. Each lookup then costs 
+ * a single hash probe, rather than the scan of every header name made by
+ * {@link MailUtils#getMatchingHeader(MailAdapter, String)}. Adapters 
+ * typically build an index when first required and discard it when the 
+ * mail changes.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are immutable and may be shared between threads.
+ * </p>
+ */
+public final class HeaderIndex {
+
+    /** An index without headers */
+    public static final HeaderIndex EMPTY = new HeaderIndex(
+            Collections.<String, List<String>> emptyMap());
+
+    /**
+     * Indexes the headers of the given mail.
+     * 
+     * @param mail not null
+     * @return <code>HeaderIndex</code>, not null
+     * @throws SieveMailException
+     */
+    public static HeaderIndex index(MailAdapter mail) throws SieveMailException {
+        final Map<String, List<String>> values = new HashMap<String, List<String>>();
+        for (final String name : mail.getHeaderNames()) {
+            final String key = key(name);
+            List<String> list = values.get(key);
+            if (list == null) {
+                list = new ArrayList<String>(mail.getHeader(name));
+                values.put(key, list);
+            } else {
+                list.addAll(mail.getHeader(name));
+            }
+        }
+        for (final Map.Entry<String, List<String>> entry : values.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return new HeaderIndex(values);
+    }
+
+    /**
+     * Normalises a header name into the key used for matching.
+     * 
+     * @param name header name, not null
+     * @return name without surrounding whitespace, in lower case
+     */
+    public static String key(String name) {
+        return name.trim().toLowerCase(Locale.US);
+    }
+
+    /** Header values indexed by key */
+    private final Map<String, List<String>> values;
+
+    private HeaderIndex(final Map<String, List<String>> values) {
+        this.values = values;
+    }
+
+    /**
+     * Answers the values of all headers matching the given name.
+     * 
+     * @param name header name, not null
+     * @return <code>List</code>, unmodifiable, possibly empty, not null
+     */
+    public List<String> getMatchingHeader(String name) {
+        final List<String> result = values.get(key(name));
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        return result;
+    }
+
+    /**
+     * Is there a header matching the given name?
+     * 
+     * @param name header name, not null
+     * @return true when at least one header matches, false otherwise
+     */
+    public boolean contains(String name) {
+        return values.containsKey(key(name));
+    }
+
+    public String toString() {
+        return "HeaderIndex" + values.keySet();
+    }
+}
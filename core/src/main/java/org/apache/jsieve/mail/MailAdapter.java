@@ -189,6 +189,13 @@ public interface MailAdapter {
      * considered equal.
      * </p>
      * 
+     * <p>
+     * The <code>address</code> test calls this once for each header named,
+     * matching every key against the addresses answered. Implementations may
+     * memoize the addresses parsed from each header, provided that they are
+     * discarded when the message changes.
+     * </p>
+     * 
      * @param headerName
      *            name of the header whose value is to be split
      * @return addresses listed in the given header not null, possibly empty
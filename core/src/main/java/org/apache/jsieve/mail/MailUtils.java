@@ -48,6 +48,11 @@ public class MailUtils {
      * From" and " from " are considered equal.
      * </p>
      * 
+     * <p>
+     * Every header name is visited on each call. Adapters answering many
+     * lookups for the same mail may prefer to build a {@link HeaderIndex}.
+     * </p>
+     * 
      * @param name
      * @return List
      * @throws SieveMailException
@@ -0,0 +1,52 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.mail.optional;
+
+import org.apache.jsieve.exception.SieveException;
+
+/**
+ * Interface BodyAccessors specifies the method signatures required to
+ * support all BODY-TRANSFORMs of the Body Test, as defined in RFC 5173.
+ * Adapters which do not implement it support only
+ * <code>body :contains</code> on the text of the mail, see
+ * {@link org.apache.jsieve.mail.MailAdapter#isInBodyText(String)}.
+ */
+public interface BodyAccessors {
+
+    /**
+     * <p>
+     * Method matchBody answers whether any part of the body selected by the
+     * transform of the given match is matched.
+     * </p>
+     * <p>
+     * For {@link BodyTransform#RAW}, the whole of the undecoded body is
+     * matched as a single part. Otherwise, each part whose content type is
+     * {@link BodyMatch#isSelected(String) selected} is decoded from its
+     * transfer encoding, and from its charset when it has one, and matched
+     * separately. A selected multipart has its preamble and epilogue matched.
+     * </p>
+     * 
+     * @param match
+     *            not null
+     * @return true when a selected part is matched, false otherwise
+     * @throws SieveException
+     */
+    public boolean matchBody(BodyMatch match) throws SieveException;
+}
@@ -0,0 +1,99 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.mail.optional;
+
+import org.apache.jsieve.exception.SieveException;
+
+/**
+ * <p>
+ * Describes a match of the body of a mail, as performed by the
+ * <code>body</code> test. The {@link BodyAccessors} implementation selects
+ * the parts of the body, decodes them, and feeds the text of each to a new
+ * {@link Matcher}. The body is matched when any part is matched.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Implementations are immutable and may be shared by multiple threads.
+ * Since each is bound once for a script, the result of a match may be
+ * memoized by instance for each mail.
+ * </p>
+ */
+public interface BodyMatch {
+
+    /**
+     * Gets the transform selecting the parts of the body to be matched.
+     * 
+     * @return <code>BodyTransform</code>, not null
+     */
+    public BodyTransform getTransform();
+
+    /**
+     * Answers whether a decoded part with the given content type is to be
+     * matched. For a multipart type, this answers whether its preamble and
+     * epilogue are to be matched. Not applicable to {@link BodyTransform#RAW}.
+     * 
+     * @param mimeType
+     *            the type and subtype of the part, not null
+     * @return true when the part is to be matched, false otherwise
+     */
+    public boolean isSelected(String mimeType);
+
+    /**
+     * Starts matching a single part.
+     * 
+     * @return <code>Matcher</code>, not null
+     */
+    public Matcher newMatcher();
+
+    /**
+     * <p>
+     * Matches the text of a single part as it is fed, in order, a buffer at
+     * a time.
+     * </p>
+     * <h4>Thread Safety</h4>
+     * <p>
+     * Instances are mutable and must be confined to a single thread.
+     * </p>
+     */
+    public interface Matcher {
+
+        /**
+         * Feeds the next characters of the part.
+         * 
+         * @param chars
+         *            not null
+         * @param offset
+         *            index of the first character to feed
+         * @param length
+         *            number of characters to feed
+         * @return true when the part is already known to match, so that the
+         *         remainder need not be fed, false otherwise
+         */
+        public boolean append(char[] chars, int offset, int length);
+
+        /**
+         * Answers whether the characters fed are matched.
+         * 
+         * @return true when the part is matched, false otherwise
+         * @throws SieveException
+         */
+        public boolean matches() throws SieveException;
+    }
+}
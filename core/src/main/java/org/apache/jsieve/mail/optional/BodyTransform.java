@@ -0,0 +1,70 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.mail.optional;
+
+/**
+ * Enumerates the BODY-TRANSFORMs defined in RFC 5173, section 5. These
+ * select the parts of the body examined by the <code>body</code> test, and
+ * how they are decoded.
+ */
+public enum BodyTransform {
+
+    /** The undecoded body, including any MIME structure */
+    RAW(":raw"),
+
+    /** The decoded parts with the given content types */
+    CONTENT(":content"),
+
+    /** The decoded text parts */
+    TEXT(":text");
+
+    /** The tag which selects this transform */
+    private final String tag;
+
+    private BodyTransform(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Gets the tag which selects this transform.
+     * 
+     * @return the tag, not null
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * Answers the transform selected by the given tag.
+     * 
+     * @param tag
+     *            not null
+     * @return <code>BodyTransform</code>, or null when the tag does not
+     *         select a transform
+     */
+    public static BodyTransform valueOfTag(String tag) {
+        for (final BodyTransform transform : values()) {
+            if (transform.tag.equals(tag)) {
+                return transform;
+            }
+        }
+        return null;
+    }
+}
@@ -20,12 +20,6 @@
 package org.apache.jsieve.tests;
 
 import static org.apache.jsieve.comparators.ComparatorNames.ASCII_CASEMAP_COMPARATOR;
-import static org.apache.jsieve.comparators.MatchTypeTags.CONTAINS_TAG;
-import static org.apache.jsieve.comparators.MatchTypeTags.IS_TAG;
-import static org.apache.jsieve.comparators.MatchTypeTags.MATCHES_TAG;
-import static org.apache.jsieve.tests.AddressPartTags.ALL_TAG;
-import static org.apache.jsieve.tests.AddressPartTags.DOMAIN_TAG;
-import static org.apache.jsieve.tests.AddressPartTags.LOCALPART_TAG;
 import static org.apache.jsieve.tests.ComparatorTags.COMPARATOR_TAG;
 
 import java.util.List;
@@ -36,18 +30,38 @@ import org.apache.jsieve.Arguments;
 import org.apache.jsieve.SieveContext;
 import org.apache.jsieve.StringListArgument;
 import org.apache.jsieve.TagArgument;
+import org.apache.jsieve.comparators.MatchType;
 import org.apache.jsieve.exception.SieveException;
 import org.apache.jsieve.exception.SyntaxException;
 import org.apache.jsieve.mail.MailAdapter;
 import org.apache.jsieve.mail.SieveMailException;
 
 
-public abstract class AbstractComparatorTest extends AbstractTest {
+public abstract class AbstractComparatorTest extends AbstractTest implements
+        CostedTest<MatchArguments> {
 
     public AbstractComparatorTest() {
         super();
     }
 
+    /**
+     * @see org.apache.jsieve.tests.AbstractTest#executeBasic(MailAdapter,
+     *      Arguments, SieveContext)
+     */
+    protected boolean executeBasic(MailAdapter mail, Arguments arguments,
+            SieveContext context) throws SieveException {
+        return executeBound(mail, bindBasic(arguments, context), context);
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.BindableTest#bind(Arguments, SieveContext)
+     */
+    public MatchArguments bind(Arguments arguments, SieveContext context)
+            throws SieveException {
+        validateArguments(arguments, context);
+        return bindBasic(arguments, context);
+    }
+
     /**
      * <p>
      * From RFC 3028, Section 5.1...
@@ -62,14 +76,16 @@ public abstract class AbstractComparatorTest extends AbstractTest {
      * optional parts is optional too!
      * </p>
      * 
-     * @see org.apache.jsieve.tests.AbstractTest#executeBasic(MailAdapter,
-     *      Arguments, SieveContext)
+     * @param arguments
+     * @param context not null
+     * @return MatchArguments, not null
+     * @throws SieveException
      */
-    protected boolean executeBasic(MailAdapter mail, Arguments arguments,
+    protected MatchArguments bindBasic(Arguments arguments,
             SieveContext context) throws SieveException {
-        String addressPart = null;
+        AddressPart addressPart = null;
         String comparator = null;
-        String matchType = null;
+        MatchType matchType = null;
         List<String> headerNames = null;
         List<String> keys = null;
 
@@ -84,9 +100,8 @@ public abstract class AbstractComparatorTest extends AbstractTest {
 
                 // [ADDRESS-PART]?
                 if (null == addressPart
-                        && (tag.equals(LOCALPART_TAG) || tag.equals(DOMAIN_TAG) || tag
-                                .equals(ALL_TAG)))
-                    addressPart = tag;
+                        && null != AddressPart.valueOfTag(tag))
+                    addressPart = AddressPart.valueOfTag(tag);
                 // [COMPARATOR]?
                 else if (null == comparator && tag.equals(COMPARATOR_TAG)) {
                     // The next argument must be a stringlist
@@ -105,9 +120,8 @@ public abstract class AbstractComparatorTest extends AbstractTest {
                 }
                 // [MATCH-TYPE]?
                 else if (null == matchType
-                        && (tag.equals(IS_TAG) || tag.equals(CONTAINS_TAG) || tag
-                                .equals(MATCHES_TAG)))
-                    matchType = tag;
+                        && null != MatchType.valueOfTag(tag))
+                    matchType = MatchType.valueOfTag(tag);
                 else
                     throw context.getCoordinate().syntaxException(
                             "Found unexpected TagArgument");
@@ -140,10 +154,62 @@ public abstract class AbstractComparatorTest extends AbstractTest {
             throw context.getCoordinate().syntaxException(
                     "Found unexpected arguments");
 
-        return match(mail, (addressPart == null ? ALL_TAG : addressPart),
-                (comparator == null ? ASCII_CASEMAP_COMPARATOR : comparator),
-                (matchType == null ? IS_TAG : matchType), headerNames, keys,
-                context);
+        if (null == comparator)
+            comparator = ASCII_CASEMAP_COMPARATOR;
+        return new MatchArguments(
+                (addressPart == null ? AddressPart.ALL : addressPart),
+                comparator, context.getComparatorManager().getComparator(
+                        comparator), (matchType == null ? MatchType.IS
+                        : matchType), headerNames, keys);
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.CostedTest#estimateCost(Object)
+     */
+    public int estimateCost(MatchArguments arguments) {
+        return arguments.estimateCost();
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.BindableTest#executeBound(MailAdapter,
+     *      Object, SieveContext)
+     */
+    public boolean executeBound(MailAdapter mail, MatchArguments arguments,
+            SieveContext context) throws SieveException {
+        // Iterate over the header names and keys looking for a match
+        final List<String> keys = arguments.getKeys();
+        for (final String headerName : arguments.getHeaderNames()) {
+            for (final String key : keys) {
+                if (match(mail, arguments, headerName, key, context)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method match answers whether the values named <code>headerName</code>
+     * match <code>key</code> as described by the bound
+     * <code>arguments</code>. Subclasses should override this method to use
+     * the bound comparator and match type directly. The default
+     * implementation delegates to
+     * {@link #match(MailAdapter, String, String, String, String, String, SieveContext)}.
+     * 
+     * @param mail not null
+     * @param arguments not null
+     * @param headerName not null
+     * @param key not null
+     * @param context not null
+     * @return boolean
+     * @throws SieveException
+     */
+    protected boolean match(MailAdapter mail, MatchArguments arguments,
+            String headerName, String key, SieveContext context)
+            throws SieveException {
+        return match(mail, arguments.getAddressPart().getTag(), arguments
+                .getComparatorName(), arguments.getMatchType().getTag(),
+                headerName, key, context);
     }
 
     /**
@@ -158,7 +224,10 @@ public abstract class AbstractComparatorTest extends AbstractTest {
      * @param context not null
      * @return boolean
      * @throws SieveMailException
+     * @deprecated no longer called when evaluating a script, see
+     *             {@link #executeBound(MailAdapter, MatchArguments, SieveContext)}
      */
+    @Deprecated
     protected boolean match(MailAdapter mail, String addressPart,
             String comparator, String matchType, List<String> headerNames, List<String> keys,
             SieveContext context) throws SieveException {
@@ -186,7 +255,10 @@ public abstract class AbstractComparatorTest extends AbstractTest {
      * @param context not null
      * @return boolean
      * @throws SieveMailException
+     * @deprecated no longer called when evaluating a script, see
+     *             {@link #executeBound(MailAdapter, MatchArguments, SieveContext)}
      */
+    @Deprecated
     protected boolean match(MailAdapter mail, String addressPart,
             String comparator, String matchType, String headerName, List<String> keys,
             SieveContext context) throws SieveException {
@@ -19,11 +19,12 @@
 
 package org.apache.jsieve.tests;
 
-import static org.apache.jsieve.tests.AddressPartTags.DOMAIN_TAG;
-import static org.apache.jsieve.tests.AddressPartTags.LOCALPART_TAG;
+import java.util.List;
 
 import org.apache.jsieve.SieveContext;
+import org.apache.jsieve.comparators.Comparator;
 import org.apache.jsieve.comparators.ComparatorUtils;
+import org.apache.jsieve.comparators.MatchType;
 import org.apache.jsieve.exception.InternetAddressException;
 import org.apache.jsieve.exception.SieveException;
 import org.apache.jsieve.mail.MailAdapter;
@@ -41,16 +42,60 @@ public class Address extends AbstractComparatorTest {
         super();
     }
 
+    /**
+     * @see org.apache.jsieve.tests.AbstractComparatorTest#match(MailAdapter,
+     *      String, String, String, String, String, SieveContext)
+     * @deprecated no longer called when evaluating a script, see
+     *             {@link #executeBound(MailAdapter, MatchArguments, SieveContext)}
+     */
+    @Deprecated
     protected boolean match(MailAdapter mail, String addressPart,
             String comparator, String matchType, String headerName, String key,
             SieveContext context) throws SieveException {
+        return match(mail, AddressPart.valueOfTag(addressPart), context
+                .getComparatorManager().getComparator(comparator), MatchType
+                .valueOfTag(matchType), headerName, key);
+    }
+
+    /**
+     * Not called by {@link #executeBound(MailAdapter, MatchArguments, SieveContext)},
+     * which matches every key against each parsed address itself.
+     * 
+     * @see org.apache.jsieve.tests.AbstractComparatorTest#match(MailAdapter,
+     *      MatchArguments, String, String, SieveContext)
+     */
+    protected boolean match(MailAdapter mail, MatchArguments arguments,
+            String headerName, String key, SieveContext context)
+            throws SieveException {
+        return match(mail, arguments.getAddressPart(), arguments
+                .getComparator(), arguments.getMatchType(), headerName, key);
+    }
+
+    /**
+     * Method match answers whether any address in the named header matches
+     * the key. Not called by
+     * {@link #executeBound(MailAdapter, MatchArguments, SieveContext)}: a
+     * subclass changing how addresses match must override that method too.
+     * 
+     * @param mail not null
+     * @param addressPart not null
+     * @param comparator not null
+     * @param matchType not null
+     * @param headerName not null
+     * @param key not null
+     * @return boolean
+     * @throws SieveException
+     */
+    protected boolean match(MailAdapter mail, AddressPart addressPart,
+            Comparator comparator, MatchType matchType, String headerName,
+            String key) throws SieveException {
         final MailAdapter.Address[] addresses = getMatchingValues(mail, headerName);
         final int length = addresses.length;
         int i = 0;
         boolean isMatched = false;
         while (!isMatched && i < length) {
             isMatched = match(addressPart, comparator, matchType,
-                    addresses[i++], key, context);
+                    addresses[i++], key);
         }
         return isMatched;
     }
@@ -61,31 +106,111 @@ public class Address extends AbstractComparatorTest {
         return mail.parseAddresses(valueName);
     }
 
+    /**
+     * @deprecated no longer called when evaluating a script, see
+     *             {@link #executeBound(MailAdapter, MatchArguments, SieveContext)}
+     */
+    @Deprecated
     protected boolean match(String addressPart, String comparator,
             String matchType, MailAdapter.Address address, String key,
             SieveContext context) throws SieveException {
-        final String localPart = address.getLocalPart();
-        final String domain = address.getDomain();
+        return match(AddressPart.valueOfTag(addressPart), context
+                .getComparatorManager().getComparator(comparator), MatchType
+                .valueOfTag(matchType), address, key);
+    }
 
-        // Extract the part of the address we are matching on
-        final String matchAddress;
-        if (addressPart.equals(":all"))
-            matchAddress = localPart + "@" + domain;
-        else {
-            matchAddress = (addressPart.equals(LOCALPART_TAG) ? localPart
-                    : domain.toLowerCase());
+    /**
+     * Method match answers whether the address matches the key. Not called by
+     * {@link #executeBound(MailAdapter, MatchArguments, SieveContext)}.
+     * 
+     * @param addressPart not null
+     * @param comparator not null
+     * @param matchType not null
+     * @param address not null
+     * @param key not null
+     * @return boolean
+     * @throws SieveException
+     */
+    protected boolean match(AddressPart addressPart, Comparator comparator,
+            MatchType matchType, MailAdapter.Address address, String key)
+            throws SieveException {
+        // Match using the specified comparator
+        return ComparatorUtils.match(comparator, matchType, getMatchAddress(
+                addressPart, address), getMatchKey(addressPart, key));
+    }
+
+    /**
+     * Addresses must be parsed before they are matched.
+     * 
+     * @see org.apache.jsieve.tests.CostedTest#estimateCost(Object)
+     */
+    public int estimateCost(MatchArguments arguments) {
+        return 4 * arguments.estimateCost();
+    }
+
+    /**
+     * Parses each header once, and matches every key against each of its
+     * addresses, rather than parsing the header again for each key.
+     * 
+     * @see org.apache.jsieve.tests.AbstractComparatorTest#executeBound(MailAdapter,
+     *      MatchArguments, SieveContext)
+     */
+    public boolean executeBound(MailAdapter mail, MatchArguments arguments,
+            SieveContext context) throws SieveException {
+        final List<String> keys = arguments.getKeys();
+        if (keys.isEmpty())
+            return false;
+        final AddressPart addressPart = arguments.getAddressPart();
+        final Comparator comparator = arguments.getComparator();
+        final MatchType matchType = arguments.getMatchType();
+        final String[] matchKeys = new String[keys.size()];
+        for (int i = 0; i < matchKeys.length; i++) {
+            matchKeys[i] = getMatchKey(addressPart, keys.get(i));
         }
+        for (final String headerName : arguments.getHeaderNames()) {
+            for (final MailAdapter.Address address : getMatchingValues(mail,
+                    headerName)) {
+                final String matchAddress = getMatchAddress(addressPart,
+                        address);
+                for (final String matchKey : matchKeys) {
+                    if (ComparatorUtils.match(comparator, matchType,
+                            matchAddress, matchKey)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
 
-        // domain matches MUST ignore case, others should not
-        String matchKey = null;
-        if (addressPart.equals(DOMAIN_TAG)) {
-            matchKey = key.toLowerCase();
-        } else {
-            matchKey = key;
+    /**
+     * Extracts the part of the address we are matching on. Domain matches
+     * MUST ignore case, others should not.
+     * 
+     * @param addressPart not null
+     * @param address not null
+     * @return the value compared with each key, not null
+     */
+    public static String getMatchAddress(AddressPart addressPart,
+            MailAdapter.Address address) {
+        switch (addressPart) {
+        case LOCALPART:
+            return address.getLocalPart();
+        case DOMAIN:
+            return address.getDomain().toLowerCase();
+        default:
+            return address.getLocalPart() + "@" + address.getDomain();
         }
+    }
 
-        // Match using the specified comparator
-        return ComparatorUtils.match(comparator, matchType, matchAddress,
-                matchKey, context);
+    /**
+     * Answers the key to match against the given part of an address.
+     * 
+     * @param addressPart not null
+     * @param key not null
+     * @return the key compared with each value, not null
+     */
+    public static String getMatchKey(AddressPart addressPart, String key) {
+        return addressPart == AddressPart.DOMAIN ? key.toLowerCase() : key;
     }
 }
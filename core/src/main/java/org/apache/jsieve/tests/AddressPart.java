@@ -0,0 +1,70 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.tests;
+
+import static org.apache.jsieve.tests.AddressPartTags.ALL_TAG;
+import static org.apache.jsieve.tests.AddressPartTags.DOMAIN_TAG;
+import static org.apache.jsieve.tests.AddressPartTags.LOCALPART_TAG;
+
+/**
+ * Enumerates the ADDRESS-PARTs defined in RFC 3028, section 2.7.4. Tests
+ * resolve the ADDRESS-PART tag once, when their arguments are bound, so that
+ * evaluation need not compare tag strings.
+ */
+public enum AddressPart {
+
+    ALL(ALL_TAG),
+
+    LOCALPART(LOCALPART_TAG),
+
+    DOMAIN(DOMAIN_TAG);
+
+    /** The tag which selects this address part */
+    private final String tag;
+
+    private AddressPart(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Gets the tag which selects this address part.
+     * 
+     * @return the tag, not null
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * Answers the address part selected by the given tag.
+     * 
+     * @param tag
+     *            not null
+     * @return <code>AddressPart</code>, or null when the tag does not select
+     *         an address part
+     */
+    public static AddressPart valueOfTag(String tag) {
+        for (final AddressPart addressPart : values()) {
+            if (addressPart.tag.equals(tag)) {
+                return addressPart;
+            }
+        }
+        return null;
+    }
+}
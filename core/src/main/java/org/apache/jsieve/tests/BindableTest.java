@@ -0,0 +1,77 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.tests;
+
+import org.apache.jsieve.Arguments;
+import org.apache.jsieve.SieveContext;
+import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.mail.MailAdapter;
+
+/**
+ * <p>
+ * A Test whose arguments may be validated and resolved once, when the script
+ * is compiled, rather than on every execution.
+ * </p>
+ * <p>
+ * {@link #bind(Arguments, SieveContext)} answers an immutable description of
+ * the arguments which is then passed to
+ * {@link #executeBound(MailAdapter, Object, SieveContext)} for each mail.
+ * Executing a bound description must be equivalent to
+ * {@link ExecutableTest#execute(MailAdapter, Arguments, SieveContext)} with
+ * the original arguments.
+ * </p>
+ * 
+ * @param <T>
+ *            the type of the bound description
+ */
+public interface BindableTest<T> extends ExecutableTest {
+
+    /**
+     * Validates the arguments and resolves them into an immutable
+     * description.
+     * 
+     * @param arguments
+     *            not null
+     * @param context
+     *            <code>SieveContext</code> giving contextual information, not
+     *            null
+     * @return the bound description, not null
+     * @throws SieveException
+     *             when the arguments are invalid
+     */
+    public T bind(Arguments arguments, SieveContext context)
+            throws SieveException;
+
+    /**
+     * Executes the Test using a description previously answered by
+     * {@link #bind(Arguments, SieveContext)}.
+     * 
+     * @param mail
+     *            not null
+     * @param binding
+     *            not null
+     * @param context
+     *            <code>SieveContext</code> giving contextual information, not
+     *            null
+     * @return boolean
+     * @throws SieveException
+     */
+    public boolean executeBound(MailAdapter mail, T binding,
+            SieveContext context) throws SieveException;
+}
@@ -0,0 +1,49 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.tests;
+
+/**
+ * <p>
+ * A {@link BindableTest} able to estimate the cost of its execution.
+ * </p>
+ * <p>
+ * When tests are reordered, see
+ * {@link org.apache.jsieve.ConfigurationManager#setReorderTests(boolean)},
+ * the cheaper tests in an <code>allof</code> or <code>anyof</code> are
+ * executed first. Costs are relative: examining a single header costs about
+ * 1; tests examining the body should cost hundreds.
+ * </p>
+ * 
+ * @param <T>
+ *            the type of the bound description
+ */
+public interface CostedTest<T> extends BindableTest<T> {
+
+    /**
+     * Estimates the cost of executing this test with the given description.
+     * 
+     * @param binding
+     *            the description answered by
+     *            {@link #bind(org.apache.jsieve.Arguments, org.apache.jsieve.SieveContext)},
+     *            not null
+     * @return relative cost, not negative
+     */
+    public int estimateCost(T binding);
+}
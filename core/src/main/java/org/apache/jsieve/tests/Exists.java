@@ -31,7 +31,7 @@ import org.apache.jsieve.mail.MailAdapter;
 /**
  * Class Exists implements the Exists Test as defined in RFC 3028, section 5.5.
  */
-public class Exists extends AbstractTest {
+public class Exists extends AbstractTest implements CostedTest<List<String>> {
 
     /**
      * Constructor for Exists.
@@ -46,12 +46,38 @@ public class Exists extends AbstractTest {
      */
     protected boolean executeBasic(MailAdapter mail, Arguments arguments,
             SieveContext context) throws SieveException {
+        return executeBound(mail, bindBasic(arguments), context);
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.BindableTest#bind(Arguments, SieveContext)
+     */
+    public List<String> bind(Arguments arguments, SieveContext context)
+            throws SieveException {
+        validateArguments(arguments, context);
+        return bindBasic(arguments);
+    }
+
+    private List<String> bindBasic(Arguments arguments) {
+        return ((StringListArgument) arguments.getArgumentList().get(0))
+                .getList();
+    }
 
-        final List<String> argumentList = ((StringListArgument) arguments
-                                .getArgumentList().get(0)).getList();
-        
+    /**
+     * @see org.apache.jsieve.tests.CostedTest#estimateCost(Object)
+     */
+    public int estimateCost(List<String> headerNames) {
+        return headerNames.size();
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.BindableTest#executeBound(MailAdapter,
+     *      Object, SieveContext)
+     */
+    public boolean executeBound(MailAdapter mail, List<String> headerNames,
+            SieveContext context) throws SieveException {
         boolean found = true;
-        for (final String arg:argumentList) {
+        for (final String arg:headerNames) {
             List<String> headers = mail.getMatchingHeader(arg);
             found = !headers.isEmpty();
             if (!found) {
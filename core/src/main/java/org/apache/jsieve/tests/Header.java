@@ -20,13 +20,9 @@
 package org.apache.jsieve.tests;
 
 import static org.apache.jsieve.comparators.ComparatorNames.ASCII_CASEMAP_COMPARATOR;
-import static org.apache.jsieve.comparators.MatchTypeTags.CONTAINS_TAG;
-import static org.apache.jsieve.comparators.MatchTypeTags.IS_TAG;
-import static org.apache.jsieve.comparators.MatchTypeTags.MATCHES_TAG;
 import static org.apache.jsieve.tests.ComparatorTags.COMPARATOR_TAG;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -35,14 +31,19 @@ import org.apache.jsieve.Arguments;
 import org.apache.jsieve.SieveContext;
 import org.apache.jsieve.StringListArgument;
 import org.apache.jsieve.TagArgument;
+import org.apache.jsieve.comparators.AhoCorasick;
+import org.apache.jsieve.comparators.Comparator;
 import org.apache.jsieve.comparators.ComparatorUtils;
+import org.apache.jsieve.comparators.FoldedKey;
+import org.apache.jsieve.comparators.MatchType;
 import org.apache.jsieve.exception.SieveException;
 import org.apache.jsieve.mail.MailAdapter;
 
 /**
  * Class Header implements the Header Test as defined in RFC 3028, section 5.7.
  */
-public class Header extends AbstractTest {
+public class Header extends AbstractTest implements
+        CostedTest<MatchArguments> {
 
     /**
      * Constructor for Header.
@@ -51,6 +52,24 @@ public class Header extends AbstractTest {
         super();
     }
 
+    /**
+     * @see org.apache.jsieve.tests.AbstractTest#executeBasic(MailAdapter,
+     *      Arguments, SieveContext)
+     */
+    protected boolean executeBasic(MailAdapter mail, Arguments arguments,
+            SieveContext context) throws SieveException {
+        return executeBound(mail, bindBasic(arguments, context), context);
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.BindableTest#bind(Arguments, SieveContext)
+     */
+    public MatchArguments bind(Arguments arguments, SieveContext context)
+            throws SieveException {
+        validateArguments(arguments, context);
+        return bindBasic(arguments, context);
+    }
+
     /**
      * <p>
      * From RFC 3028, Section 5.7...
@@ -65,13 +84,15 @@ public class Header extends AbstractTest {
      * too!
      * </p>
      * 
-     * @see org.apache.jsieve.tests.AbstractTest#executeBasic(MailAdapter,
-     *      Arguments, SieveContext)
+     * @param arguments
+     * @param context not null
+     * @return MatchArguments, not null
+     * @throws SieveException
      */
-    protected boolean executeBasic(MailAdapter mail, Arguments arguments,
+    protected MatchArguments bindBasic(Arguments arguments,
             SieveContext context) throws SieveException {
         String comparator = null;
-        String matchType = null;
+        MatchType matchType = null;
         List<String> headerNames = null;
         List<String> keys = null;
 
@@ -102,9 +123,8 @@ public class Header extends AbstractTest {
                 }
                 // [MATCH-TYPE]?
                 else if (null == matchType
-                        && (tag.equals(IS_TAG) || tag.equals(CONTAINS_TAG) || tag
-                                .equals(MATCHES_TAG)))
-                    matchType = tag;
+                        && null != MatchType.valueOfTag(tag))
+                    matchType = MatchType.valueOfTag(tag);
                 else
                     throw context.getCoordinate().syntaxException(
                             "Found unexpected TagArgument: \"" + tag + "\"");
@@ -139,9 +159,97 @@ public class Header extends AbstractTest {
             throw context.getCoordinate().syntaxException(
                     "Found unexpected arguments");
 
-        return match(mail, (comparator == null ? ASCII_CASEMAP_COMPARATOR
-                : comparator), (matchType == null ? IS_TAG : matchType),
-                headerNames, keys, context);
+        if (null == comparator)
+            comparator = ASCII_CASEMAP_COMPARATOR;
+        return new MatchArguments(null, comparator, context
+                .getComparatorManager().getComparator(comparator),
+                (matchType == null ? MatchType.IS : matchType), headerNames,
+                keys);
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.CostedTest#estimateCost(Object)
+     */
+    public int estimateCost(MatchArguments arguments) {
+        return arguments.estimateCost();
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.BindableTest#executeBound(MailAdapter,
+     *      Object, SieveContext)
+     */
+    public boolean executeBound(MailAdapter mail, MatchArguments arguments,
+            SieveContext context) throws SieveException {
+        // Iterate over the header names looking for a match
+        for (final String headerName : arguments.getHeaderNames()) {
+            if (match(arguments, mail.getMatchingHeader(headerName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method match.
+     * 
+     * @param arguments not null
+     * @param headerValues not null
+     * @return boolean
+     * @throws SieveException
+     */
+    protected boolean match(MatchArguments arguments, List<String> headerValues)
+            throws SieveException {
+        // Special case for empty values
+        // If the matchType is :contains
+        // match the headerValue of a null string
+        // else
+        // not matched
+        if (headerValues.isEmpty())
+            return arguments.getMatchType() == MatchType.CONTAINS
+                    && match(arguments, "");
+        // Iterate over the header values looking for a match
+        for (final String headerValue : headerValues) {
+            if (match(arguments, headerValue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method match.
+     * 
+     * @param arguments not null
+     * @param headerValue not null
+     * @return boolean
+     * @throws SieveException
+     */
+    protected boolean match(MatchArguments arguments, String headerValue)
+            throws SieveException {
+        // Search for all keys at once when they have been compiled
+        final AhoCorasick contents = arguments.getContents();
+        if (null != contents)
+            return contents.containsAny(headerValue);
+        // Use the keys folded when the script was compiled
+        final List<FoldedKey> foldedKeys = arguments.getFoldedKeys();
+        if (null != foldedKeys) {
+            final MatchType matchType = arguments.getMatchType();
+            for (final FoldedKey key : foldedKeys) {
+                if (key.match(matchType, headerValue)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        // Iterate over the keys looking for a match
+        final Comparator comparator = arguments.getComparator();
+        final MatchType matchType = arguments.getMatchType();
+        for (final String key : arguments.getKeys()) {
+            if (ComparatorUtils.match(comparator, matchType, headerValue, key)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -155,19 +263,16 @@ public class Header extends AbstractTest {
      * @param context not null
      * @return boolean
      * @throws SieveException
+     * @deprecated no longer called when evaluating a script, use
+     *             {@link #executeBound(MailAdapter, MatchArguments, SieveContext)}
      */
+    @Deprecated
     protected boolean match(MailAdapter mail, String comparator,
-            String matchType, List<String> headerNames, List<String> keys, SieveContext context)
-            throws SieveException {
-        // Iterate over the header names looking for a match
-        boolean isMatched = false;
-        Iterator headerNamesIter = headerNames.iterator();
-        while (!isMatched && headerNamesIter.hasNext()) {
-            isMatched = match(comparator, matchType, mail
-                    .getMatchingHeader((String) headerNamesIter.next()), keys,
-                    context);
-        }
-        return isMatched;
+            String matchType, List<String> headerNames, List<String> keys,
+            SieveContext context) throws SieveException {
+        final MatchArguments arguments = toArguments(comparator, matchType,
+                headerNames, keys, context);
+        return null != arguments && executeBound(mail, arguments, context);
     }
 
     /**
@@ -180,31 +285,16 @@ public class Header extends AbstractTest {
      * @param context not null
      * @return boolean
      * @throws SieveException
+     * @deprecated no longer called when evaluating a script, use
+     *             {@link #match(MatchArguments, List)}
      */
+    @Deprecated
     protected boolean match(String comparator, String matchType,
             List<String> headerValues, List<String> keys, SieveContext context)
             throws SieveException {
-        // Special case for empty values
-        // If the matchType is :contains
-        // add the headerValue of a null string
-        // else
-        // not matched
-        if (headerValues.isEmpty())
-            if (matchType.equals(CONTAINS_TAG)) {
-                // header values may be immutable
-                headerValues = new ArrayList<String>(headerValues);
-                headerValues.add("");
-            } else {
-                return false;
-            }
-        // Iterate over the header values looking for a match
-        boolean isMatched = false;
-        Iterator headerValuesIter = headerValues.iterator();
-        while (!isMatched && headerValuesIter.hasNext()) {
-            isMatched = match(comparator, matchType, (String) headerValuesIter
-                    .next(), keys, context);
-        }
-        return isMatched;
+        final MatchArguments arguments = toArguments(comparator, matchType,
+                Collections.<String> emptyList(), keys, context);
+        return null != arguments && match(arguments, headerValues);
     }
 
     /**
@@ -217,20 +307,33 @@ public class Header extends AbstractTest {
      * @param context not null
      * @return boolean
      * @throws SieveException
+     * @deprecated no longer called when evaluating a script, use
+     *             {@link #match(MatchArguments, String)}
      */
+    @Deprecated
     protected boolean match(String comparator, String matchType,
             String headerValue, List<String> keys, SieveContext context)
             throws SieveException {
-        // Iterate over the keys looking for a match
-        boolean isMatched = false;
-        for (final String key: keys) {
-            isMatched = ComparatorUtils.match(comparator, matchType,
-                    headerValue, key, context);
-            if (isMatched) {
-                break;
-            }
-        }
-        return isMatched;
+        final MatchArguments arguments = toArguments(comparator, matchType,
+                Collections.<String> emptyList(), keys, context);
+        return null != arguments && match(arguments, headerValue);
+    }
+
+    /**
+     * Describes the string based arguments of the deprecated match methods.
+     * 
+     * @return <code>MatchArguments</code>, or null when the match type is
+     *         unknown and so nothing matches
+     */
+    private MatchArguments toArguments(String comparator, String matchType,
+            List<String> headerNames, List<String> keys, SieveContext context)
+            throws SieveException {
+        final MatchType type = MatchType.valueOfTag(matchType);
+        if (null == type)
+            return null;
+        return new MatchArguments(null, comparator, context
+                .getComparatorManager().getComparator(comparator), type,
+                headerNames, keys);
     }
 
     /**
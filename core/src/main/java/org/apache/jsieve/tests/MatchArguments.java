@@ -0,0 +1,219 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jsieve.comparators.AhoCorasick;
+import org.apache.jsieve.comparators.BatchContains;
+import org.apache.jsieve.comparators.Comparator;
+import org.apache.jsieve.comparators.FoldedKey;
+import org.apache.jsieve.comparators.FoldingComparator;
+import org.apache.jsieve.comparators.MatchType;
+
+/**
+ * <p>
+ * The bound arguments of a Test which matches values from the mail against
+ * a list of keys, such as <code>header</code>, <code>address</code> and
+ * <code>envelope</code>.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are immutable and may be shared by multiple threads.
+ * </p>
+ */
+public final class MatchArguments {
+
+    /** The part of each address to match, or null when not applicable */
+    private final AddressPart addressPart;
+
+    /** The logical name of the comparator */
+    private final String comparatorName;
+
+    /** The comparator instance */
+    private final Comparator comparator;
+
+    /** The match type */
+    private final MatchType matchType;
+
+    /** The names of the headers whose values are to be matched */
+    private final List<String> headerNames;
+
+    /** The keys to match against */
+    private final List<String> keys;
+
+    /**
+     * The keys compiled for a single pass search, or null when each key is
+     * searched for separately
+     */
+    private final AhoCorasick contents;
+
+    /**
+     * The keys folded by the comparator, or null when the comparator does not
+     * fold keys
+     */
+    private final List<FoldedKey> foldedKeys;
+
+    /**
+     * Constructor for MatchArguments.
+     * 
+     * @param addressPart
+     *            the part of each address to match, or null when the test
+     *            does not match addresses
+     * @param comparatorName
+     *            not null
+     * @param comparator
+     *            the instance for <code>comparatorName</code>, not null
+     * @param matchType
+     *            not null
+     * @param headerNames
+     *            unmodifiable, not null
+     * @param keys
+     *            unmodifiable, not null
+     */
+    public MatchArguments(AddressPart addressPart, String comparatorName,
+            Comparator comparator, MatchType matchType,
+            List<String> headerNames, List<String> keys) {
+        super();
+        this.addressPart = addressPart;
+        this.comparatorName = comparatorName;
+        this.comparator = comparator;
+        this.matchType = matchType;
+        this.headerNames = headerNames;
+        this.keys = keys;
+        if (matchType == MatchType.CONTAINS && keys.size() > 1
+                && comparator instanceof BatchContains)
+            this.contents = ((BatchContains) comparator).compileContents(keys);
+        else
+            this.contents = null;
+        if (comparator instanceof FoldingComparator)
+            this.foldedKeys = fold((FoldingComparator) comparator, keys);
+        else
+            this.foldedKeys = null;
+    }
+
+    private static List<FoldedKey> fold(FoldingComparator comparator,
+            List<String> keys) {
+        final List<FoldedKey> results = new ArrayList<FoldedKey>(keys.size());
+        for (final String key : keys) {
+            results.add(comparator.foldKey(key));
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Gets the part of each address to match.
+     * 
+     * @return <code>AddressPart</code>, or null when not applicable
+     */
+    public AddressPart getAddressPart() {
+        return addressPart;
+    }
+
+    /**
+     * Gets the logical name of the comparator.
+     * 
+     * @return not null
+     */
+    public String getComparatorName() {
+        return comparatorName;
+    }
+
+    /**
+     * Gets the comparator.
+     * 
+     * @return not null
+     */
+    public Comparator getComparator() {
+        return comparator;
+    }
+
+    /**
+     * Gets the match type.
+     * 
+     * @return not null
+     */
+    public MatchType getMatchType() {
+        return matchType;
+    }
+
+    /**
+     * Gets the names of the headers whose values are to be matched.
+     * 
+     * @return not null
+     */
+    public List<String> getHeaderNames() {
+        return headerNames;
+    }
+
+    /**
+     * Gets the keys to match against.
+     * 
+     * @return not null
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Gets the keys compiled for a single pass search. These are available
+     * when more than one key is to be found by a comparator implementing
+     * {@link BatchContains}.
+     * 
+     * @return <code>AhoCorasick</code>, or null when each key is to be
+     *         searched for separately
+     */
+    public AhoCorasick getContents() {
+        return contents;
+    }
+
+    /**
+     * Gets the keys folded by the comparator, in the order of
+     * {@link #getKeys()}. These are available when the comparator implements
+     * {@link FoldingComparator}.
+     * 
+     * @return unmodifiable list, or null when each key is to be compared by
+     *         the comparator
+     */
+    public List<FoldedKey> getFoldedKeys() {
+        return foldedKeys;
+    }
+
+    /**
+     * Estimates the relative cost of matching the values of each named header
+     * against the keys, see {@link CostedTest}. Pattern matching is costed
+     * higher than comparison.
+     * 
+     * @return relative cost, not negative
+     */
+    public int estimateCost() {
+        return headerNames.size() * (matchType == MatchType.MATCHES ? 4 : 1);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "MatchArguments: " + (addressPart == null ? "" : addressPart.getTag() + " ")
+                + comparatorName + " " + matchType.getTag() + " "
+                + headerNames + " " + keys;
+    }
+}
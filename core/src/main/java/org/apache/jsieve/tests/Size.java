@@ -34,7 +34,7 @@ import org.apache.jsieve.mail.SieveMailException;
 /**
  * Class Size implements the Size Test as defined in RFC 3028, section 5.9.
  */
-public class Size extends AbstractTest {
+public class Size extends AbstractTest implements CostedTest<SizeArguments> {
 
     /**
      * Constructor for Size.
@@ -55,6 +55,14 @@ public class Size extends AbstractTest {
      */
     protected boolean executeBasic(MailAdapter mail, Arguments arguments,
             SieveContext context) throws SyntaxException, SieveMailException {
+        return executeBound(mail, bind(arguments, context), context);
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.BindableTest#bind(Arguments, SieveContext)
+     */
+    public SizeArguments bind(Arguments arguments, SieveContext context)
+            throws SyntaxException {
         String comparator = null;
         Integer size = null;
         ListIterator<Argument> argumentsIter = arguments.getArgumentList().listIterator();
@@ -88,7 +96,26 @@ public class Size extends AbstractTest {
             throw context.getCoordinate().syntaxException(
                     "Found unexpected argument(s)");
 
-        return test(mail, comparator, size);
+        return new SizeArguments(comparator.equals(":over"), size);
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.CostedTest#estimateCost(Object)
+     */
+    public int estimateCost(SizeArguments arguments) {
+        return 1;
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.BindableTest#executeBound(MailAdapter,
+     *      Object, SieveContext)
+     */
+    public boolean executeBound(MailAdapter mail, SizeArguments arguments,
+            SieveContext context) throws SieveMailException {
+        if (arguments.isOver())
+            return testOver(mail, arguments.getLimit());
+        else
+            return testUnder(mail, arguments.getLimit());
     }
 
     /**
@@ -142,7 +169,7 @@ public class Size extends AbstractTest {
      */
     protected void validateArguments(Arguments arguments, SieveContext context)
             throws SieveException {
-        // All done in executeBasic()
+        // All done in bind()
     }
 
 }
@@ -0,0 +1,76 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.tests;
+
+/**
+ * <p>
+ * The bound arguments of the <code>size</code> Test.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are immutable and may be shared by multiple threads.
+ * </p>
+ */
+public final class SizeArguments {
+
+    /** True for <code>:over</code>, false for <code>:under</code> */
+    private final boolean over;
+
+    /** The size limit */
+    private final int limit;
+
+    /**
+     * Constructor for SizeArguments.
+     * 
+     * @param over
+     *            true for <code>:over</code>, false for <code>:under</code>
+     * @param limit
+     *            the size limit
+     */
+    public SizeArguments(boolean over, int limit) {
+        super();
+        this.over = over;
+        this.limit = limit;
+    }
+
+    /**
+     * Is the test passed by mail over the limit?
+     * 
+     * @return true for <code>:over</code>, false for <code>:under</code>
+     */
+    public boolean isOver() {
+        return over;
+    }
+
+    /**
+     * Gets the size limit.
+     * 
+     * @return the limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "SizeArguments: " + (over ? ":over " : ":under ") + limit;
+    }
+}
@@ -19,65 +19,204 @@
 
 package org.apache.jsieve.tests.optional;
 
+import static org.apache.jsieve.comparators.ComparatorNames.ASCII_CASEMAP_COMPARATOR;
+import static org.apache.jsieve.tests.ComparatorTags.COMPARATOR_TAG;
+
+import java.util.Collections;
 import java.util.List;
+import java.util.ListIterator;
 
 import org.apache.jsieve.Argument;
 import org.apache.jsieve.Arguments;
 import org.apache.jsieve.SieveContext;
 import org.apache.jsieve.StringListArgument;
 import org.apache.jsieve.TagArgument;
+import org.apache.jsieve.comparators.MatchType;
 import org.apache.jsieve.exception.SieveException;
-import org.apache.jsieve.exception.SyntaxException;
 import org.apache.jsieve.mail.MailAdapter;
 import org.apache.jsieve.mail.SieveMailException;
+import org.apache.jsieve.mail.optional.BodyAccessors;
+import org.apache.jsieve.mail.optional.BodyTransform;
 import org.apache.jsieve.tests.AbstractTest;
+import org.apache.jsieve.tests.CostedTest;
 
 /**
+ * <p>
  * Implementation of body extension defined in
  * <a href='http://tools.ietf.org/html/rfc5173'>RFC5173</a>.
+ * </p>
+ * <p>
+ * Every BODY-TRANSFORM, MATCH-TYPE and COMPARATOR is supported when the mail
+ * implements {@link BodyAccessors}. Otherwise only <code>:contains</code>
+ * matches of the <code>:text</code> of the mail with the default comparator
+ * are supported, through {@link MailAdapter#isInBodyText(String)}.
+ * </p>
  */
-public class Body extends AbstractTest {
-    private StringListArgument strings;
+public class Body extends AbstractTest implements CostedTest<BodyArguments> {
 
+    /**
+     * Constructor for Body.
+     */
     public Body() {
         super();
-        strings = null;
     }
 
-    // TODO: Check how complete this is of the body specification
-    // Validate (sorta); we're only implementing part of the spec
-    protected void validateArguments(Arguments args, SieveContext ctx)
+    /**
+     * @see org.apache.jsieve.tests.AbstractTest#executeBasic(MailAdapter,
+     *      Arguments, SieveContext)
+     */
+    protected boolean executeBasic(MailAdapter mail, Arguments arguments,
+            SieveContext context) throws SieveException {
+        return executeBound(mail, bindBasic(arguments, context), context);
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.BindableTest#bind(Arguments, SieveContext)
+     */
+    public BodyArguments bind(Arguments arguments, SieveContext context)
             throws SieveException {
+        validateArguments(arguments, context);
+        return bindBasic(arguments, context);
+    }
 
-        final List<Argument> arglist = args.getArgumentList();
-        if (arglist.size() != 2) {
-            throw new SyntaxException(
-                    "Currently body-test can only two arguments");
-        }
+    /**
+     * <p>
+     * From RFC 5173, Section 5...
+     * </p>
+     * <code>  
+     * Syntax: body [COMPARATOR] [MATCH-TYPE] [BODY-TRANSFORM]
+     *       &lt;key-list: string-list&gt;
+     * </code>
+     * <p>
+     * As with the other tests, the optional parts may be given in any order.
+     * </p>
+     * 
+     * @param arguments
+     * @param context not null
+     * @return BodyArguments, not null
+     * @throws SieveException
+     */
+    protected BodyArguments bindBasic(Arguments arguments, SieveContext context)
+            throws SieveException {
+        String comparator = null;
+        MatchType matchType = null;
+        BodyTransform transform = null;
+        List<String> contentTypes = Collections.emptyList();
+        List<String> keys = null;
 
-        // TODO: FIXME: As this is a limited implementation force the use of
-        // ':contains'.
-        Argument arg = arglist.get(0);
-        if (!(arg instanceof TagArgument)) {
-            throw new SyntaxException("Body expects a :contains tag");
-        }
+        ListIterator<Argument> argumentsIter = arguments.getArgumentList().listIterator();
+        boolean stop = false;
+
+        // Tag processing
+        while (!stop && argumentsIter.hasNext()) {
+            Argument argument = argumentsIter.next();
+            if (argument instanceof TagArgument) {
+                final String tag = ((TagArgument) argument).getTag();
 
-        if (!((TagArgument) arg).getTag().equals(":contains")) {
-            throw new SyntaxException("Body expects a :contains tag");
+                if (null == comparator && tag.equals(COMPARATOR_TAG)) {
+                    // The next argument must be a stringlist
+                    if (argumentsIter.hasNext()) {
+                        argument = argumentsIter.next();
+                        if (argument instanceof StringListArgument) {
+                            List<String> stringList = ((StringListArgument) argument)
+                                    .getList();
+                            if (stringList.size() != 1)
+                                throw context.getCoordinate().syntaxException(
+                                        "Expecting exactly one String");
+                            comparator = stringList.get(0);
+                        } else
+                            throw context.getCoordinate().syntaxException(
+                                    "Expecting a StringList");
+                    }
+                }
+                // [MATCH-TYPE]?
+                else if (null == matchType
+                        && null != MatchType.valueOfTag(tag))
+                    matchType = MatchType.valueOfTag(tag);
+                // [BODY-TRANSFORM]?
+                else if (null == transform
+                        && null != BodyTransform.valueOfTag(tag)) {
+                    transform = BodyTransform.valueOfTag(tag);
+                    // :content must be followed by a string-list of types
+                    if (transform == BodyTransform.CONTENT) {
+                        argument = argumentsIter.hasNext() ? argumentsIter
+                                .next() : null;
+                        if (!(argument instanceof StringListArgument))
+                            throw context.getCoordinate().syntaxException(
+                                    "Expecting a StringList of content types");
+                        contentTypes = ((StringListArgument) argument)
+                                .getList();
+                    }
+                } else
+                    throw context.getCoordinate().syntaxException(
+                            "Found unexpected TagArgument: \"" + tag + "\"");
+            } else {
+                // Stop when a non-tag argument is encountered
+                argumentsIter.previous();
+                stop = true;
+            }
         }
 
-        // Get list of strings to search for
-        arg = arglist.get(1);
-        if (!(arg instanceof StringListArgument)) {
-            throw new SyntaxException("Body expects a list of strings");
+        // The next argument MUST be a string-list of keys
+        if (argumentsIter.hasNext()) {
+            final Argument argument = argumentsIter.next();
+            if (argument instanceof StringListArgument)
+                keys = ((StringListArgument) argument).getList();
         }
-        strings = (StringListArgument) args.getArgumentList().get(1);
+        if (null == keys)
+            throw context.getCoordinate().syntaxException(
+                    "Expecting a StringList of keys");
+
+        if (argumentsIter.hasNext())
+            throw context.getCoordinate().syntaxException(
+                    "Found unexpected arguments");
+
+        if (null == comparator)
+            comparator = ASCII_CASEMAP_COMPARATOR;
+        return new BodyArguments(comparator, context.getComparatorManager()
+                .getComparator(comparator), (matchType == null ? MatchType.IS
+                : matchType), (transform == null ? BodyTransform.TEXT
+                : transform), contentTypes, keys);
+    }
+
+    /**
+     * The whole of the body may be decoded and scanned.
+     * 
+     * @see org.apache.jsieve.tests.CostedTest#estimateCost(Object)
+     */
+    public int estimateCost(BodyArguments arguments) {
+        return 500;
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.BindableTest#executeBound(MailAdapter,
+     *      Object, SieveContext)
+     */
+    public boolean executeBound(MailAdapter mail, BodyArguments arguments,
+            SieveContext context) throws SieveException {
+        if (mail instanceof BodyAccessors)
+            return ((BodyAccessors) mail).matchBody(arguments);
+        return matchBodyText(mail, arguments);
     }
 
-    // This implement body tests of the form
-    // "body :contains ['string' 'string' ....]"
-    protected boolean executeBasic(MailAdapter mail, Arguments args,
-            SieveContext ctx) throws SieveException {
+    /**
+     * Matches the body of a mail which does not implement
+     * {@link BodyAccessors}, using {@link MailAdapter#isInBodyText(String)}.
+     * 
+     * @param mail not null
+     * @param arguments not null
+     * @return boolean
+     * @throws SieveException
+     */
+    protected boolean matchBodyText(MailAdapter mail, BodyArguments arguments)
+            throws SieveException {
+        if (arguments.getTransform() != BodyTransform.TEXT
+                || arguments.getMatchType() != MatchType.CONTAINS
+                || !ASCII_CASEMAP_COMPARATOR.equals(arguments
+                        .getComparatorName()))
+            throw new SieveMailException("Mail adapter supports only "
+                    + "body :contains with the default comparator");
+
         // Attempt to fetch content as a string. If we can't do this it's
         // not a message we can handle.
         if (mail.getContentType().indexOf("text/") != 0) {
@@ -85,7 +224,7 @@ public class Body extends AbstractTest {
         }
 
         // Compare each test string with body, ignoring case
-        for (final String phrase:strings.getList()) {
+        for (final String phrase : arguments.getKeys()) {
             if (mail.isInBodyText(phrase)) {
                 return true;
             }
@@ -93,4 +232,14 @@ public class Body extends AbstractTest {
         return false;
     }
 
+    /**
+     * @see org.apache.jsieve.tests.AbstractTest#validateArguments(Arguments,
+     *      SieveContext)
+     */
+    protected void validateArguments(Arguments arguments, SieveContext context)
+            throws SieveException {
+        if (arguments.hasTests())
+            throw context.getCoordinate().syntaxException(
+                    "Found unexpected tests");
+    }
 }
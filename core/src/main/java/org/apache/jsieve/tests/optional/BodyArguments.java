@@ -0,0 +1,312 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.tests.optional;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.jsieve.comparators.AhoCorasick;
+import org.apache.jsieve.comparators.AsciiCasemap;
+import org.apache.jsieve.comparators.BatchContains;
+import org.apache.jsieve.comparators.Comparator;
+import org.apache.jsieve.comparators.ComparatorUtils;
+import org.apache.jsieve.comparators.MatchType;
+import org.apache.jsieve.comparators.Octet;
+import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.mail.optional.BodyMatch;
+import org.apache.jsieve.mail.optional.BodyTransform;
+
+/**
+ * <p>
+ * The bound arguments of the <code>body</code> test, as defined in RFC 5173.
+ * </p>
+ * <p>
+ * <code>:contains</code> matches using a comparator implementing
+ * {@link BatchContains} are made as each part is streamed, so that no part
+ * is held in memory. Other matches compare against the whole text of each
+ * part, which is therefore collected. For <code>:is</code> using
+ * <code>i;ascii-casemap</code> or <code>i;octet</code>, collection stops
+ * once the text is longer than every key, since it can then equal none.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are immutable and may be shared by multiple threads.
+ * </p>
+ */
+public final class BodyArguments implements BodyMatch {
+
+    /** The logical name of the comparator */
+    private final String comparatorName;
+
+    /** The comparator instance */
+    private final Comparator comparator;
+
+    /** The match type */
+    private final MatchType matchType;
+
+    /** The transform selecting the parts to match */
+    private final BodyTransform transform;
+
+    /** The content types selected by {@link BodyTransform#CONTENT} */
+    private final List<String> contentTypes;
+
+    /** The keys to match against */
+    private final List<String> keys;
+
+    /**
+     * The keys compiled for a streaming search, or null when the text of each
+     * part is collected
+     */
+    private final AhoCorasick contents;
+
+    /**
+     * The length of the longest key, when only text of at most that length
+     * can be matched, otherwise -1
+     */
+    private final int longestKey;
+
+    /**
+     * Constructor for BodyArguments.
+     * 
+     * @param comparatorName
+     *            not null
+     * @param comparator
+     *            the instance for <code>comparatorName</code>, not null
+     * @param matchType
+     *            not null
+     * @param transform
+     *            not null
+     * @param contentTypes
+     *            unmodifiable, the content types for
+     *            {@link BodyTransform#CONTENT}, otherwise empty, not null
+     * @param keys
+     *            unmodifiable, not null
+     */
+    public BodyArguments(String comparatorName, Comparator comparator,
+            MatchType matchType, BodyTransform transform,
+            List<String> contentTypes, List<String> keys) {
+        super();
+        this.comparatorName = comparatorName;
+        this.comparator = comparator;
+        this.matchType = matchType;
+        this.transform = transform;
+        this.contentTypes = contentTypes;
+        this.keys = keys;
+        if (matchType == MatchType.CONTAINS
+                && comparator instanceof BatchContains)
+            this.contents = ((BatchContains) comparator).compileContents(keys);
+        else
+            this.contents = null;
+        if (matchType == MatchType.IS
+                && (comparator.getClass() == AsciiCasemap.class || comparator
+                        .getClass() == Octet.class)) {
+            // These compare equal only strings of equal length
+            int longest = 0;
+            for (final String key : keys) {
+                longest = Math.max(longest, key.length());
+            }
+            this.longestKey = longest;
+        } else {
+            this.longestKey = -1;
+        }
+    }
+
+    /**
+     * Gets the logical name of the comparator.
+     * 
+     * @return not null
+     */
+    public String getComparatorName() {
+        return comparatorName;
+    }
+
+    /**
+     * Gets the comparator.
+     * 
+     * @return not null
+     */
+    public Comparator getComparator() {
+        return comparator;
+    }
+
+    /**
+     * Gets the match type.
+     * 
+     * @return not null
+     */
+    public MatchType getMatchType() {
+        return matchType;
+    }
+
+    /**
+     * @see org.apache.jsieve.mail.optional.BodyMatch#getTransform()
+     */
+    public BodyTransform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Gets the content types selected by {@link BodyTransform#CONTENT}.
+     * 
+     * @return not null, empty for other transforms
+     */
+    public List<String> getContentTypes() {
+        return contentTypes;
+    }
+
+    /**
+     * Gets the keys to match against.
+     * 
+     * @return not null
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * <p>
+     * From RFC 5173, Section 5.2: an empty content type selects every part.
+     * One containing a slash selects only that type and subtype; otherwise
+     * it selects every subtype of that type. One which begins or ends with a
+     * slash, or contains more than one, selects no part.
+     * </p>
+     * <p>
+     * {@link BodyTransform#TEXT} selects every subtype of <code>text</code>.
+     * </p>
+     * 
+     * @see org.apache.jsieve.mail.optional.BodyMatch#isSelected(String)
+     */
+    public boolean isSelected(String mimeType) {
+        switch (transform) {
+        case TEXT:
+            return isSelected("text", mimeType);
+        case CONTENT:
+            for (final String contentType : contentTypes) {
+                if (isSelected(contentType, mimeType)) {
+                    return true;
+                }
+            }
+            return false;
+        default:
+            return true;
+        }
+    }
+
+    private static boolean isSelected(String contentType, String mimeType) {
+        final int slash = contentType.indexOf('/');
+        if (contentType.length() == 0)
+            return true;
+        else if (slash < 0)
+            return mimeType.length() > contentType.length()
+                    && mimeType.charAt(contentType.length()) == '/'
+                    && mimeType.regionMatches(true, 0, contentType, 0,
+                            contentType.length());
+        else if (slash == 0 || slash == contentType.length() - 1
+                || contentType.indexOf('/', slash + 1) >= 0)
+            return false;
+        else
+            return contentType.toLowerCase(Locale.US).equals(
+                    mimeType.toLowerCase(Locale.US));
+    }
+
+    /**
+     * @see org.apache.jsieve.mail.optional.BodyMatch#newMatcher()
+     */
+    public Matcher newMatcher() {
+        if (null != contents)
+            return new SearchMatcher(contents.search());
+        return new TextMatcher();
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "BodyArguments: " + comparatorName + " " + matchType.getTag()
+                + " " + transform.getTag() + " "
+                + (transform == BodyTransform.CONTENT ? contentTypes + " " : "")
+                + keys;
+    }
+
+    /**
+     * Searches for the keys as the part is fed.
+     */
+    private static final class SearchMatcher implements Matcher {
+
+        private final AhoCorasick.Search search;
+
+        SearchMatcher(AhoCorasick.Search search) {
+            this.search = search;
+        }
+
+        public boolean append(char[] chars, int offset, int length) {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                if (search.next(chars[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean matches() {
+            return search.isFound();
+        }
+    }
+
+    /**
+     * Collects the text of the part, and matches each key against it.
+     * Text longer than {@link BodyArguments#longestKey} is discarded.
+     */
+    private final class TextMatcher implements Matcher {
+
+        private final StringBuilder text = new StringBuilder();
+
+        /** Is the text longer than any key it could equal? */
+        private boolean overlong;
+
+        public boolean append(char[] chars, int offset, int length) {
+            if (overlong) {
+                return false;
+            }
+            if (longestKey >= 0 && text.length() + length > longestKey) {
+                overlong = true;
+                text.setLength(0);
+                text.trimToSize();
+            } else {
+                text.append(chars, offset, length);
+            }
+            return false;
+        }
+
+        public boolean matches() throws SieveException {
+            if (overlong) {
+                return false;
+            }
+            final String value = text.toString();
+            for (final String key : keys) {
+                if (ComparatorUtils.match(comparator, matchType, value, key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -19,19 +19,19 @@
 
 package org.apache.jsieve.tests.optional;
 
-
-import static org.apache.jsieve.tests.AddressPartTags.DOMAIN_TAG;
-import static org.apache.jsieve.tests.AddressPartTags.LOCALPART_TAG;
-
 import java.util.List;
 
 import org.apache.jsieve.SieveContext;
+import org.apache.jsieve.comparators.Comparator;
 import org.apache.jsieve.comparators.ComparatorUtils;
+import org.apache.jsieve.comparators.MatchType;
 import org.apache.jsieve.exception.SieveException;
 import org.apache.jsieve.mail.MailAdapter;
 import org.apache.jsieve.mail.SieveMailException;
 import org.apache.jsieve.mail.optional.EnvelopeAccessors;
 import org.apache.jsieve.tests.AbstractComparatorTest;
+import org.apache.jsieve.tests.AddressPart;
+import org.apache.jsieve.tests.MatchArguments;
 
 /**
  * Class Envelope implements the optional Envelope Test as defined in RFC 3028,
@@ -62,14 +62,36 @@ public class Envelope extends AbstractComparatorTest {
      * @param context not null
      * @return boolean
      * @throws SieveMailException
+     * @deprecated no longer called when evaluating a script, use
+     *             {@link #match(AddressPart, Comparator, MatchType, String, String)}
      */
+    @Deprecated
     protected boolean match(String addressPart, String comparator,
             String matchType, String headerValue, String key,
             SieveContext context) throws SieveException {
+        return match(AddressPart.valueOfTag(addressPart), context
+                .getComparatorManager().getComparator(comparator), MatchType
+                .valueOfTag(matchType), headerValue, key);
+    }
+
+    /**
+     * Method match.
+     * 
+     * @param addressPart not null
+     * @param comparator not null
+     * @param matchType not null
+     * @param headerValue not null
+     * @param key not null
+     * @return boolean
+     * @throws SieveException
+     */
+    protected boolean match(AddressPart addressPart, Comparator comparator,
+            MatchType matchType, String headerValue, String key)
+            throws SieveException {
 
         // Extract the part of the address we are matching on
         String matchAddress = null;
-        if (addressPart.equals(":all"))
+        if (addressPart == AddressPart.ALL)
             matchAddress = headerValue;
         else {
             int localStart = 0;
@@ -85,14 +107,14 @@ public class Envelope extends AbstractComparatorTest {
                 localEnd = splitIndex;
                 domainStart = splitIndex + 1;
             }
-            matchAddress = (addressPart.equals(LOCALPART_TAG) ? headerValue
+            matchAddress = (addressPart == AddressPart.LOCALPART ? headerValue
                     .substring(localStart, localEnd) : headerValue.substring(
                     domainStart, domainEnd));
         }
 
         // domain matches MUST ignore case, others should not
         String matchKey = null;
-        if (addressPart.equals(DOMAIN_TAG)) {
+        if (addressPart == AddressPart.DOMAIN) {
             matchKey = key.toLowerCase();
             matchAddress = matchAddress.toLowerCase();
         } else
@@ -100,21 +122,62 @@ public class Envelope extends AbstractComparatorTest {
 
         // Match using the specified comparator
         return ComparatorUtils.match(comparator, matchType, matchAddress,
-                matchKey, context);
+                matchKey);
     }
 
+    /**
+     * Bound scripts are matched through
+     * {@link #match(MailAdapter, MatchArguments, String, String, SieveContext)}
+     * instead.
+     * 
+     * @see org.apache.jsieve.tests.AbstractComparatorTest#match(MailAdapter,
+     *      String, String, String, String, String, SieveContext)
+     * @deprecated no longer called when evaluating a script, use
+     *             {@link #match(MailAdapter, AddressPart, Comparator, MatchType, String, String)}
+     */
+    @Deprecated
     protected boolean match(MailAdapter mail, String addressPart,
             String comparator, String matchType, String headerName, String key,
             SieveContext context) throws SieveException {
+        return match(mail, AddressPart.valueOfTag(addressPart), context
+                .getComparatorManager().getComparator(comparator), MatchType
+                .valueOfTag(matchType), headerName, key);
+    }
+
+    /**
+     * @see org.apache.jsieve.tests.AbstractComparatorTest#match(MailAdapter,
+     *      MatchArguments, String, String, SieveContext)
+     */
+    protected boolean match(MailAdapter mail, MatchArguments arguments,
+            String headerName, String key, SieveContext context)
+            throws SieveException {
+        return match(mail, arguments.getAddressPart(), arguments
+                .getComparator(), arguments.getMatchType(), headerName, key);
+    }
+
+    /**
+     * Method match answers whether any value of the named envelope part
+     * matches the key.
+     * 
+     * @param mail not null
+     * @param addressPart not null
+     * @param comparator not null
+     * @param matchType not null
+     * @param headerName not null
+     * @param key not null
+     * @return boolean
+     * @throws SieveException
+     */
+    protected boolean match(MailAdapter mail, AddressPart addressPart,
+            Comparator comparator, MatchType matchType, String headerName,
+            String key) throws SieveException {
         final List<String> headerValues = getMatchingValues(mail, headerName);
-        boolean isMatched = false;
-        for (final String value:headerValues) {
-            isMatched = match(addressPart, comparator, matchType, value, key, context);
-            if (isMatched) {
-                break;
+        for (final String value : headerValues) {
+            if (match(addressPart, comparator, matchType, value, key)) {
+                return true;
             }
         }
-        return isMatched;
+        return false;
     }
 
 }
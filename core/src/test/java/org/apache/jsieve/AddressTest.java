@@ -21,6 +21,7 @@ package org.apache.jsieve;
 
 import org.apache.jsieve.commands.ThrowTestException;
 import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.mail.SieveMailException;
 import org.apache.jsieve.parser.generated.ParseException;
 import org.apache.jsieve.utils.JUnitUtils;
 import org.apache.jsieve.utils.SieveMailAdapter;
@@ -552,4 +553,29 @@ public class AddressTest {
         Assert.assertTrue(isTestPassed);
     }
 
+    /**
+     * Each header is parsed once, however many keys are matched
+     */
+    @Test
+    public void testHeaderParsedOncePerKeyList() throws Exception {
+        final int[] parses = { 0 };
+        SieveMailAdapter mail = new SieveMailAdapter(JUnitUtils
+                .createMimeMessage()) {
+            public Address[] parseAddresses(String headerName)
+                    throws SieveMailException {
+                parses[0]++;
+                return super.parseAddresses(headerName);
+            }
+        };
+        mail.getMessage().addHeader("From", "user@c.com");
+        boolean isMatched = false;
+        try {
+            JUnitUtils.interpret(mail, "if address :domain :is \"From\" "
+                    + "[\"a.com\", \"b.com\", \"C.COM\"] {throwTestException;}");
+        } catch (ThrowTestException.TestException e) {
+            isMatched = true;
+        }
+        Assert.assertTrue(isMatched);
+        Assert.assertEquals(1, parses[0]);
+    }
 }
@@ -26,6 +26,7 @@ import junit.framework.TestCase;
 
 import org.apache.jsieve.commands.ThrowTestException;
 import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.exception.SyntaxException;
 import org.apache.jsieve.parser.generated.ParseException;
 import org.apache.jsieve.utils.JUnitUtils;
 import org.apache.jsieve.utils.SieveMailAdapter;
@@ -87,7 +88,8 @@ public class BodyTest {
     }
 
     /**
-     * Test for Test 'body'
+     * Test for Test 'body'. Without a MATCH-TYPE the body must be equal to
+     * a key, which the mock adapter does not support.
      */
     @Test
     public void testBodyNoContains() {
@@ -104,6 +106,92 @@ public class BodyTest {
         Assert.assertTrue(isTestPassed);
     }
 
+    private static final String MULTIPART = "From: sender@example.org\r\n"
+            + "Subject: Report\r\n"
+            + "MIME-Version: 1.0\r\n"
+            + "Content-Type: multipart/alternative; boundary=\"XX\"\r\n"
+            + "\r\n"
+            + "Multipart preamble\r\n"
+            + "--XX\r\n"
+            + "Content-Type: text/plain; charset=us-ascii\r\n"
+            + "\r\n"
+            + "Plain Wibble\r\n"
+            + "--XX\r\n"
+            + "Content-Type: text/html; charset=us-ascii\r\n"
+            + "Content-Transfer-Encoding: quoted-printable\r\n"
+            + "\r\n"
+            + "<p>Html=20Wobble</p>\r\n"
+            + "--XX\r\n"
+            + "Content-Type: application/octet-stream\r\n"
+            + "Content-Transfer-Encoding: base64\r\n"
+            + "\r\n"
+            + "QmluYXJ5IEZsb2I=\r\n"
+            + "--XX--\r\n";
+
+    private boolean isMatched(String script) throws Exception {
+        try {
+            JUnitUtils.interpret(JUnitUtils.createBodyMail(MULTIPART), script);
+        } catch (ThrowTestException.TestException e) {
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * :text searches only the decoded text parts
+     */
+    @Test
+    public void testText() throws Exception {
+        Assert.assertTrue(isMatched("if body :contains \"wibble\" {throwTestException;}"));
+        Assert.assertTrue(isMatched("if body :text :contains \"HTML WOBBLE\" {throwTestException;}"));
+        Assert.assertFalse(isMatched("if body :contains \"Binary\" {throwTestException;}"));
+        Assert.assertFalse(isMatched("if body :contains \"preamble\" {throwTestException;}"));
+    }
+
+    /**
+     * :content selects parts by type, or by type and subtype
+     */
+    @Test
+    public void testContent() throws Exception {
+        Assert.assertTrue(isMatched("if body :content \"text\" :contains \"Wobble\" {throwTestException;}"));
+        Assert.assertFalse(isMatched("if body :content \"text/plain\" :contains \"Wobble\" {throwTestException;}"));
+        Assert.assertTrue(isMatched("if body :content \"application/octet-stream\" :contains \"Binary Flob\" {throwTestException;}"));
+        Assert.assertTrue(isMatched("if body :content \"multipart\" :contains \"preamble\" {throwTestException;}"));
+        Assert.assertTrue(isMatched("if body :content \"\" :contains \"Flob\" {throwTestException;}"));
+        Assert.assertFalse(isMatched("if body :content \"text/\" :contains \"Wibble\" {throwTestException;}"));
+    }
+
+    /**
+     * :raw searches the undecoded body
+     */
+    @Test
+    public void testRaw() throws Exception {
+        Assert.assertTrue(isMatched("if body :raw :contains \"QmluYXJ5IEZsb2I=\" {throwTestException;}"));
+        Assert.assertTrue(isMatched("if body :raw :contains \"Html=20Wobble\" {throwTestException;}"));
+        Assert.assertFalse(isMatched("if body :raw :contains \"Binary Flob\" {throwTestException;}"));
+    }
+
+    /**
+     * Every MATCH-TYPE and COMPARATOR is applied to the text of each part
+     */
+    @Test
+    public void testMatchTypesAndComparators() throws Exception {
+        Assert.assertTrue(isMatched("if body :content \"text/plain\" :is \"plain wibble\" {throwTestException;}"));
+        Assert.assertFalse(isMatched("if body :content \"text/plain\" :is \"wibble\" {throwTestException;}"));
+        Assert.assertTrue(isMatched("if body :content \"text/plain\" :matches \"plain wibble*\" {throwTestException;}"));
+        Assert.assertTrue(isMatched("if body :content \"text/html\" :matches \"*html?wobble*\" {throwTestException;}"));
+        Assert.assertFalse(isMatched("if body :comparator \"i;octet\" :contains \"wibble\" {throwTestException;}"));
+        Assert.assertTrue(isMatched("if body :comparator \"i;octet\" :contains \"Wibble\" {throwTestException;}"));
+    }
+
+    /**
+     * :content requires a list of content types before the keys
+     */
+    @Test(expected = SyntaxException.class)
+    public void testContentRequiresTypes() throws Exception {
+        isMatched("if body :content :contains \"Wibble\" {throwTestException;}");
+    }
+
     /**
      * Test for Test 'body'
      */
@@ -0,0 +1,185 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jsieve.comparators.MatchType;
+import org.apache.jsieve.exception.SyntaxException;
+import org.apache.jsieve.mail.ActionFileInto;
+import org.apache.jsieve.mail.ActionKeep;
+import org.apache.jsieve.tests.MatchArguments;
+import org.apache.jsieve.utils.JUnitUtils;
+import org.apache.jsieve.utils.SieveMailAdapter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class CompiledScriptTest
+ */
+public class CompiledScriptTest {
+
+    private static final String SCRIPT = "require \"fileinto\";"
+            + "if header :contains \"Subject\" \"jsieve\" {fileinto \"jsieve\"; stop;}";
+
+    private SieveFactory factory;
+
+    private CompiledScript script;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = new ConfigurationManager().build();
+        script = factory.compile(factory.parse(new ByteArrayInputStream(
+                SCRIPT.getBytes())));
+    }
+
+    /**
+     * A compiled script is reusable for many mails
+     */
+    @Test
+    public void testCompiledScriptIsReusable() throws Exception {
+        SieveMailAdapter matching = (SieveMailAdapter) JUnitUtils.createMail();
+        matching.getMessage().setSubject("About jsieve");
+        SieveMailAdapter other = (SieveMailAdapter) JUnitUtils.createMail();
+        other.getMessage().setSubject("Something else");
+        SieveMailAdapter another = (SieveMailAdapter) JUnitUtils.createMail();
+        another.getMessage().setSubject("More jsieve");
+
+        factory.evaluate(matching, script);
+        factory.evaluate(other, script);
+        factory.evaluate(another, script);
+
+        Assert.assertEquals(1, matching.getActions().size());
+        Assert.assertTrue(matching.getActions().get(0) instanceof ActionFileInto);
+        Assert.assertEquals(1, another.getActions().size());
+        Assert.assertTrue(another.getActions().get(0) instanceof ActionFileInto);
+        Assert.assertEquals(1, other.getActions().size());
+        Assert.assertTrue(other.getActions().get(0) instanceof ActionKeep);
+    }
+
+    /**
+     * Test arguments are bound once when the script is compiled
+     */
+    @Test
+    public void testTestArgumentsAreBound() throws Exception {
+        Command command = script.getBlock().getChildren().getChildren().get(1);
+        Assert.assertEquals("if", command.getName());
+        org.apache.jsieve.Test test = command.getArguments().getTestList()
+                .getTests().get(0);
+        Assert.assertTrue(test.getBinding() instanceof MatchArguments);
+        MatchArguments arguments = (MatchArguments) test.getBinding();
+        Assert.assertEquals(MatchType.CONTAINS, arguments.getMatchType());
+        Assert.assertEquals("i;ascii-casemap", arguments.getComparatorName());
+        Assert.assertEquals(Collections.singletonList("Subject"), arguments
+                .getHeaderNames());
+        Assert.assertEquals(Collections.singletonList("jsieve"), arguments
+                .getKeys());
+    }
+
+    /**
+     * Invalid test arguments are still reported when evaluated
+     */
+    @Test(expected = SyntaxException.class)
+    public void testInvalidArgumentsAreReportedOnEvaluation() throws Exception {
+        CompiledScript invalid = factory.compile(factory
+                .parse(new ByteArrayInputStream(
+                        "if header :contains \"Subject\" {stop;}".getBytes())));
+        factory.evaluate(JUnitUtils.createMail(), invalid);
+    }
+
+    /**
+     * The compiled tree must not be modifiable by commands or tests
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCompiledScriptIsUnmodifiable() throws Exception {
+        script.getBlock().getChildren().getChildren().clear();
+    }
+
+    /**
+     * Evaluation must not modify the coordinates shared by the compiled script
+     */
+    @Test
+    public void testCoordinatesAreNotModified() throws Exception {
+        CompiledScript invalid = factory.compile(factory
+                .parse(new ByteArrayInputStream(
+                        "if header :contains \"Subject\" {stop;}".getBytes())));
+        Command command = invalid.getBlock().getChildren().getChildren().get(0);
+        try {
+            factory.evaluate(JUnitUtils.createMail(), invalid);
+            Assert.fail("Expected a syntax exception");
+        } catch (SyntaxException e) {
+            // Expected
+        }
+        Assert.assertNull(command.getCoordinate().getLog());
+    }
+
+    /**
+     * A compiled script may be evaluated concurrently, and the context of
+     * each thread is reset between evaluations
+     */
+    @Test
+    public void testConcurrentEvaluation() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 400; i++) {
+                final boolean matching = i % 3 == 0;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        SieveMailAdapter mail = (SieveMailAdapter) JUnitUtils.createMail();
+                        mail.getMessage().setSubject(matching ? "About jsieve" : "Other");
+                        factory.evaluate(mail, script);
+                        return mail.getActions().size() == 1
+                                && (matching ? mail.getActions().get(0) instanceof ActionFileInto
+                                        : mail.getActions().get(0) instanceof ActionKeep);
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A disposed factory still evaluates, without retaining contexts
+     */
+    @Test
+    public void testEvaluationAfterDispose() throws Exception {
+        factory.evaluate(JUnitUtils.createMail(), script);
+        factory.dispose();
+        SieveMailAdapter mail = (SieveMailAdapter) JUnitUtils.createMail();
+        mail.getMessage().setSubject("About jsieve");
+        factory.evaluate(mail, script);
+        factory.evaluate(JUnitUtils.createMail(), script);
+        Assert.assertEquals(1, mail.getActions().size());
+        Assert.assertTrue(mail.getActions().get(0) instanceof ActionFileInto);
+    }
+}
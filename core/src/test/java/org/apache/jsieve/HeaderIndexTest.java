@@ -0,0 +1,94 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.jsieve.mail.HeaderIndex;
+import org.apache.jsieve.mail.MailUtils;
+import org.apache.jsieve.utils.JUnitUtils;
+import org.apache.jsieve.utils.SieveMailAdapter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class HeaderIndexTest
+ */
+public class HeaderIndexTest {
+
+    private SieveMailAdapter mail;
+
+    @Before
+    public void setUp() throws Exception {
+        mail = (SieveMailAdapter) JUnitUtils.createMail();
+        mail.getMessage().addHeader("X-Trace", "from a");
+        mail.getMessage().addHeader("X-Spam", "yes");
+        mail.getMessage().addHeader("X-Trace", "from b");
+    }
+
+    /**
+     * Names match ignoring case and surrounding whitespace
+     */
+    @Test
+    public void testMatchingHeader() throws Exception {
+        HeaderIndex index = HeaderIndex.index(mail);
+        Assert.assertEquals(Arrays.asList("from a", "from b"), index
+                .getMatchingHeader("X-Trace"));
+        Assert.assertEquals(Arrays.asList("from a", "from b"), index
+                .getMatchingHeader(" X-TRACE "));
+        Assert.assertEquals(Collections.singletonList("yes"), index
+                .getMatchingHeader("x-spam"));
+        Assert.assertTrue(index.contains("X-SPAM"));
+    }
+
+    /**
+     * The index agrees with a scan of every header
+     */
+    @Test
+    public void testAgreesWithScan() throws Exception {
+        HeaderIndex index = HeaderIndex.index(mail);
+        for (String name : new String[] { "X-Trace", "x-spam", "From", "" }) {
+            Assert.assertEquals(MailUtils.getMatchingHeader(mail, name), index
+                    .getMatchingHeader(name));
+        }
+    }
+
+    /**
+     * Missing headers answer an empty list
+     */
+    @Test
+    public void testMissingHeader() throws Exception {
+        HeaderIndex index = HeaderIndex.index(mail);
+        Assert.assertTrue(index.getMatchingHeader("Subject").isEmpty());
+        Assert.assertFalse(index.contains("Subject"));
+        Assert.assertTrue(HeaderIndex.EMPTY.getMatchingHeader("X-Trace")
+                .isEmpty());
+    }
+
+    /**
+     * The indexed values may not be altered
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiable() throws Exception {
+        HeaderIndex.index(mail).getMatchingHeader("X-Trace").clear();
+    }
+}
@@ -236,6 +236,46 @@ public class HeaderTest {
         Assert.assertTrue(isTestPassed);
     }
 
+    /**
+     * Test for Test 'header' with many keys
+     */
+    @Test
+    public void testHeaderContainsManyKeysTrue() {
+        boolean isTestPassed = false;
+        String script = "if header :contains \"Subject\" [\"lottery\", \"viagra\", \"prize\"] {throwTestException;}";
+        try {
+            SieveMailAdapter mail = (SieveMailAdapter) JUnitUtils.createMail();
+            mail.getMessage().addHeader("Subject", "You have won a PRIZE");
+            JUnitUtils.interpret(mail, script);
+        } catch (MessagingException e) {
+        } catch (ThrowTestException.TestException e) {
+            isTestPassed = true;
+        } catch (ParseException e) {
+        } catch (SieveException e) {
+        }
+        Assert.assertTrue(isTestPassed);
+    }
+
+    /**
+     * Test for Test 'header' with many keys
+     */
+    @Test
+    public void testHeaderContainsManyKeysFalse() {
+        boolean isTestPassed = false;
+        String script = "if header :comparator \"i;octet\" :contains \"Subject\" [\"lottery\", \"viagra\", \"prize\"] {throwTestException;}";
+        try {
+            SieveMailAdapter mail = (SieveMailAdapter) JUnitUtils.createMail();
+            mail.getMessage().addHeader("Subject", "You have won a PRIZE");
+            JUnitUtils.interpret(mail, script);
+            isTestPassed = true;
+        } catch (MessagingException e) {
+        } catch (ThrowTestException.TestException e) {
+        } catch (ParseException e) {
+        } catch (SieveException e) {
+        }
+        Assert.assertTrue(isTestPassed);
+    }
+
     /**
      * Test for Test 'header'
      */
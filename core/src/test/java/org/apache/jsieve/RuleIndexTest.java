@@ -0,0 +1,156 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jsieve.mail.ActionKeep;
+import org.apache.jsieve.mail.SieveMailException;
+import org.apache.jsieve.utils.JUnitUtils;
+import org.apache.jsieve.utils.SieveEnvelopeMailAdapter;
+import org.apache.jsieve.utils.SieveMailAdapter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class RuleIndexTest
+ */
+public class RuleIndexTest {
+
+    private SieveFactory factory;
+
+    private int lookups;
+
+    private SieveMailAdapter mail;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = new ConfigurationManager().build();
+        lookups = 0;
+        mail = new SieveMailAdapter(JUnitUtils.createMimeMessage()) {
+            public List<String> getMatchingHeader(String name)
+                    throws SieveMailException {
+                lookups++;
+                return super.getMatchingHeader(name);
+            }
+        };
+        mail.getMessage().addHeader("X-Spam-Flag", "YES");
+        mail.getMessage().addHeader("From", "Boss <boss@example.com>");
+        mail.getMessage().addHeader("X-List", "jsieve users");
+    }
+
+    private CompiledScript compile(String script) throws Exception {
+        return factory.compile(factory.parse(new ByteArrayInputStream(script
+                .getBytes())));
+    }
+
+    /**
+     * Predicates of many scripts are matched by a single pass over the mail
+     */
+    @Test
+    public void testPredicatesAreShared() throws Exception {
+        CompiledScript spam = compile("if header :contains \"X-Spam-Flag\" \"yes\" {discard;}");
+        CompiledScript otherSpam = compile("if header :contains \"x-spam-flag\" \"YES\" {discard;}");
+        CompiledScript boss = compile("if address :is \"From\" \"BOSS@example.com\" {keep;}"
+                + "if header :matches \"X-List\" \"*users\" {discard;}");
+        CompiledScript list = compile("if header :matches \"X-List\" \"*users\" {discard;}"
+                + "if header :is \"X-List\" \"jsieve developers\" {keep;}");
+        RuleIndex index = new RuleIndex(Arrays.asList(spam, otherSpam, boss, list));
+        Assert.assertEquals(5, index.size());
+        Assert.assertTrue(index.contains(spam));
+
+        RuleIndex.Matches matches = index.match(mail);
+        Assert.assertEquals(2, lookups);
+        Assert.assertEquals(1, matches.getMatchedTests(spam).size());
+        Assert.assertEquals(1, matches.getMatchedTests(otherSpam).size());
+        Assert.assertEquals(1, matches.getMatchedTests(boss).size());
+        Assert.assertEquals(0, matches.getMatchedTests(list).size());
+
+        factory.evaluate(mail, spam, matches);
+        factory.evaluate(mail, otherSpam, matches);
+        factory.evaluate(mail, boss, matches);
+        factory.evaluate(mail, list, matches);
+        // :matches is executed once, for the first script requiring it
+        Assert.assertEquals(3, lookups);
+        Assert.assertEquals(1, matches.getMatchedTests(list).size());
+        Assert.assertEquals(1, mail.getActions().size());
+        Assert.assertTrue(mail.getActions().get(0) instanceof ActionKeep);
+    }
+
+    /**
+     * Indexed predicates answer as the tests they replace
+     */
+    @Test
+    public void testIndexedResultsAgreeWithTests() throws Exception {
+        String[] tests = { "header :contains \"X-Missing\" \"\"",
+                "header :is \"X-Missing\" \"\"",
+                "header :is [\"X-Missing\", \"X-List\"] \"JSIEVE USERS\"",
+                "header :comparator \"i;octet\" :is \"X-List\" \"JSIEVE USERS\"",
+                "header :comparator \"i;octet\" :contains \"X-List\" \"users\"",
+                "address :domain :is \"From\" \"EXAMPLE.COM\"",
+                "address :comparator \"i;octet\" :domain :is \"From\" \"EXAMPLE.COM\"",
+                "address :localpart :comparator \"i;octet\" :is \"From\" \"Boss\"",
+                "address :all :is \"From\" [\"someone@example.com\", \"boss@EXAMPLE.com\"]" };
+        boolean[] expected = { true, false, true, false, true, true, true,
+                false, true };
+        CompiledScript[] scripts = new CompiledScript[tests.length];
+        for (int i = 0; i < tests.length; i++) {
+            scripts[i] = compile("if " + tests[i] + " {discard;}");
+        }
+        RuleIndex.Matches matches = new RuleIndex(Arrays.asList(scripts))
+                .match(mail);
+        for (int i = 0; i < tests.length; i++) {
+            Assert.assertEquals(tests[i], expected[i], !matches
+                    .getMatchedTests(scripts[i]).isEmpty());
+            SieveMailAdapter other = (SieveMailAdapter) JUnitUtils.createMail();
+            other.getMessage().addHeader("From", "Boss <boss@example.com>");
+            other.getMessage().addHeader("X-List", "jsieve users");
+            factory.evaluate(other, scripts[i]);
+            Assert.assertEquals(tests[i], expected[i], other.getActions()
+                    .isEmpty());
+        }
+    }
+
+    /**
+     * Envelope tests are not shared between mails whose envelopes differ
+     */
+    @Test
+    public void testEnvelopeIsNotShared() throws Exception {
+        String script = "if envelope :is \"to\" \"bob@example.org\" {discard;}";
+        CompiledScript bobScript = compile(script);
+        CompiledScript carolScript = compile(script);
+        RuleIndex index = new RuleIndex(Arrays.asList(bobScript, carolScript));
+        Assert.assertEquals(0, index.size());
+
+        SieveEnvelopeMailAdapter bob = JUnitUtils.createEnvelopeMail();
+        bob.setEnvelopeTo("bob@example.org");
+        SieveEnvelopeMailAdapter carol = JUnitUtils.createEnvelopeMail();
+        carol.setEnvelopeTo("carol@example.org");
+        RuleIndex.Matches matches = index.match(bob);
+        factory.evaluate(bob, bobScript, matches);
+        factory.evaluate(carol, carolScript, matches);
+        Assert.assertTrue(bob.getActions().isEmpty());
+        Assert.assertEquals(1, carol.getActions().size());
+        Assert.assertTrue(carol.getActions().get(0) instanceof ActionKeep);
+    }
+}
@@ -0,0 +1,84 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve;
+
+import org.apache.jsieve.tests.False;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class SharedInstanceTest
+ */
+public class SharedInstanceTest {
+
+    private ConfigurationManager configurationManager;
+
+    @Before
+    public void setUp() throws Exception {
+        configurationManager = new ConfigurationManager();
+    }
+
+    /**
+     * Stateless commands are shared
+     */
+    @Test
+    public void testCommandIsShared() throws Exception {
+        CommandManager manager = configurationManager.getCommandManager();
+        Assert.assertSame(manager.getCommand("keep"), manager
+                .getCommand("KEEP"));
+    }
+
+    /**
+     * Stateless tests are shared
+     */
+    @Test
+    public void testTestIsShared() throws Exception {
+        TestManager manager = configurationManager.getTestManager();
+        Assert.assertSame(manager.getTest("header"), manager
+                .getTest("header"));
+    }
+
+    /**
+     * Stateless comparators are shared
+     */
+    @Test
+    public void testComparatorIsShared() throws Exception {
+        ComparatorManager manager = configurationManager
+                .getComparatorManager();
+        Assert.assertSame(manager.getComparator("i;ascii-casemap"), manager
+                .getComparator("i;ascii-casemap"));
+    }
+
+    /**
+     * Stateful tests are never shared
+     */
+    @Test
+    public void testStatefulTestIsNotShared() throws Exception {
+        configurationManager.getTestMap().put("stateful",
+                StatefulTest.class.getName());
+        TestManager manager = configurationManager.getTestManager();
+        Assert.assertNotSame(manager.getTest("stateful"), manager
+                .getTest("stateful"));
+    }
+
+    public static class StatefulTest extends False implements Stateful {
+    }
+}
@@ -55,6 +55,46 @@ public class StopTest {
         Assert.assertTrue(isTestPassed);
     }
 
+    /**
+     * Test for Command 'stop' within nested blocks
+     */
+    @Test
+    public void testStopInNestedBlock() {
+        boolean isTestPassed = false;
+        String script = "if true { if true { stop; } throwTestException; } "
+                + "else { throwTestException; } throwTestException;";
+
+        try {
+            MailAdapter mail = JUnitUtils.createMail();
+            JUnitUtils.interpret(mail, script);
+            Assert.assertTrue(mail.getActions().size() == 1);
+            Assert.assertTrue(mail.getActions().get(0) instanceof ActionKeep);
+            isTestPassed = true;
+        } catch (ThrowTestException.TestException e) {
+        } catch (ParseException e) {
+        } catch (SieveException e) {
+        }
+        Assert.assertTrue(isTestPassed);
+    }
+
+    /**
+     * Test for Command 'stop' within elsif and else blocks
+     */
+    @Test
+    public void testStopInElsifAndElse() throws Exception {
+        String[] scripts = {
+                "if false { throwTestException; } elsif true { stop; } "
+                        + "throwTestException;",
+                "if false { throwTestException; } else { stop; } "
+                        + "throwTestException;" };
+        for (String script : scripts) {
+            MailAdapter mail = JUnitUtils.createMail();
+            JUnitUtils.interpret(mail, script);
+            Assert.assertEquals(1, mail.getActions().size());
+            Assert.assertTrue(mail.getActions().get(0) instanceof ActionKeep);
+        }
+    }
+
     /**
      * Test for Command 'stop' with invalid arguments
      */
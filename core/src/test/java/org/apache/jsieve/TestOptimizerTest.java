@@ -0,0 +1,210 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import org.apache.jsieve.mail.ActionKeep;
+import org.apache.jsieve.mail.SieveMailException;
+import org.apache.jsieve.tests.AllOf;
+import org.apache.jsieve.tests.Header;
+import org.apache.jsieve.utils.JUnitUtils;
+import org.apache.jsieve.utils.SieveMailAdapter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class TestOptimizerTest
+ */
+public class TestOptimizerTest {
+
+    private SieveFactory factory;
+
+    private int lookups;
+
+    private SieveMailAdapter mail;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = new ConfigurationManager().build();
+        lookups = 0;
+        mail = new SieveMailAdapter(JUnitUtils.createMimeMessage()) {
+            public List<String> getMatchingHeader(String name)
+                    throws SieveMailException {
+                lookups++;
+                return super.getMatchingHeader(name);
+            }
+        };
+        mail.getMessage().addHeader("X-A", "a");
+    }
+
+    private CompiledScript compile(String script) throws Exception {
+        return factory.compile(factory.parse(new ByteArrayInputStream(script
+                .getBytes())));
+    }
+
+    private org.apache.jsieve.Test getTest(CompiledScript script) {
+        final Command command = script.getBlock().getChildren().getChildren()
+                .get(0);
+        return command.getArguments().getTestList().getTests().get(0);
+    }
+
+    /**
+     * Identical tests are executed once for each evaluation
+     */
+    @Test
+    public void testIdenticalTestsAreMemoized() throws Exception {
+        CompiledScript script = compile("if header :is \"X-A\" \"a\" {keep;}"
+                + "if not header :is \"X-A\" \"a\" {discard;}"
+                + "if anyof(false, header :is \"X-A\" \"a\") {keep;}");
+        Assert.assertEquals(1, script.getMemoSlots());
+        factory.evaluate(mail, script);
+        Assert.assertEquals(1, lookups);
+        Assert.assertEquals(2, mail.getActions().size());
+        Assert.assertTrue(mail.getActions().get(0) instanceof ActionKeep);
+
+        factory.evaluate(mail, script);
+        Assert.assertEquals(2, lookups);
+    }
+
+    /**
+     * Tests with different arguments are executed separately
+     */
+    @Test
+    public void testDifferentTestsAreNotMemoized() throws Exception {
+        CompiledScript script = compile("if header :is \"X-A\" \"a\" {keep;}"
+                + "if header :is \"X-A\" \"b\" {keep;}"
+                + "if header :contains \"X-A\" \"a\" {keep;}");
+        Assert.assertEquals(0, script.getMemoSlots());
+        factory.evaluate(mail, script);
+        Assert.assertEquals(3, lookups);
+    }
+
+    /**
+     * Constant tests are folded when compiled
+     */
+    @Test
+    public void testConstantsAreFolded() throws Exception {
+        org.apache.jsieve.Test test = getTest(compile("if anyof(false, not true) {keep;}"));
+        Assert.assertTrue(test instanceof ConstantTest);
+        Assert.assertFalse(((ConstantTest) test).getValue());
+
+        test = getTest(compile("if allof(true, not false, true) {keep;}"));
+        Assert.assertTrue(test instanceof ConstantTest);
+        Assert.assertTrue(((ConstantTest) test).getValue());
+
+        test = getTest(compile("if allof(true, header :is \"X-A\" \"a\") {keep;}"));
+        Assert.assertTrue(test.getExecutable() instanceof Header);
+
+        test = getTest(compile("if allof(false, header :is \"X-A\" \"a\") {keep;}"));
+        Assert.assertTrue(test instanceof ConstantTest);
+        Assert.assertFalse(((ConstantTest) test).getValue());
+    }
+
+    /**
+     * Tests preceding a deciding constant are still executed
+     */
+    @Test
+    public void testTestsBeforeConstantAreKept() throws Exception {
+        CompiledScript script = compile("if allof(header :is \"X-A\" \"a\", "
+                + "true, false, header :is \"X-A\" \"b\") {discard;}");
+        org.apache.jsieve.Test test = getTest(script);
+        Assert.assertTrue(test.getExecutable() instanceof AllOf);
+        List<org.apache.jsieve.Test> tests = test.getArguments().getTestList()
+                .getTests();
+        Assert.assertEquals(2, tests.size());
+        Assert.assertTrue(tests.get(0).getExecutable() instanceof Header);
+        Assert.assertTrue(tests.get(1) instanceof ConstantTest);
+
+        factory.evaluate(mail, script);
+        Assert.assertEquals(1, lookups);
+        Assert.assertEquals(1, mail.getActions().size());
+        Assert.assertTrue(mail.getActions().get(0) instanceof ActionKeep);
+    }
+
+    /**
+     * Invalid arguments are still reported when evaluated
+     */
+    @Test(expected = org.apache.jsieve.exception.SyntaxException.class)
+    public void testInvalidTestsAreNotFolded() throws Exception {
+        factory.evaluate(mail, compile("if allof(true, header :is \"X-A\") {keep;}"));
+    }
+
+    private CompiledScript compileReordered(String script) throws Exception {
+        ConfigurationManager configurationManager = new ConfigurationManager();
+        configurationManager.setReorderTests(true);
+        factory = configurationManager.build();
+        return compile(script);
+    }
+
+    /**
+     * Cheap tests are executed first when tests are reordered
+     */
+    @Test
+    public void testTestsAreOrderedByCost() throws Exception {
+        CompiledScript script = compileReordered("if allof(body :text :contains \"x\", "
+                + "header :matches \"X-A\" \"*a*\", size :over 1, exists \"X-A\") {discard;}");
+        TestList testList = getTest(script).getArguments().getTestList();
+        Assert.assertTrue(testList instanceof ReorderingTestList);
+        Assert.assertArrayEquals(new int[] { 2, 3, 1, 0 },
+                ((ReorderingTestList) testList).getOrder());
+        Assert.assertEquals(4, testList.getTests().size());
+        Assert.assertTrue(testList.getTests().get(0).getExecutable() instanceof org.apache.jsieve.tests.optional.Body);
+    }
+
+    /**
+     * Tests which decide the result more often are executed first
+     */
+    @Test
+    public void testTestsAreOrderedBySelectivity() throws Exception {
+        CompiledScript script = compileReordered("if anyof(header :is \"X-A\" \"b\", "
+                + "header :is \"X-A\" \"a\") {discard;}");
+        ReorderingTestList testList = (ReorderingTestList) getTest(script)
+                .getArguments().getTestList();
+        Assert.assertArrayEquals(new int[] { 0, 1 }, testList.getOrder());
+        for (int i = 0; i < ReorderingTestList.REORDER_INTERVAL; i++) {
+            factory.evaluate(mail, script);
+        }
+        Assert.assertEquals(2 * ReorderingTestList.REORDER_INTERVAL, lookups);
+        Assert.assertArrayEquals(new int[] { 1, 0 }, testList.getOrder());
+
+        factory.evaluate(mail, script);
+        Assert.assertEquals(2 * ReorderingTestList.REORDER_INTERVAL + 1, lookups);
+    }
+
+    /**
+     * Lists including tests which were not bound are executed in script order
+     */
+    @Test
+    public void testUnboundTestsAreNotReordered() throws Exception {
+        CompiledScript script = compileReordered("if allof(header :is \"X-A\" \"a\", "
+                + "header :is \"X-A\") {keep;}");
+        Assert.assertFalse(getTest(script).getArguments().getTestList() instanceof ReorderingTestList);
+
+        script = compile("if allof(size :over 1, exists \"X-A\") {keep;}");
+        Assert.assertTrue(getTest(script).getArguments().getTestList() instanceof ReorderingTestList);
+
+        factory = new ConfigurationManager().build();
+        script = compile("if allof(size :over 1, exists \"X-A\") {keep;}");
+        Assert.assertFalse(getTest(script).getArguments().getTestList() instanceof ReorderingTestList);
+    }
+}
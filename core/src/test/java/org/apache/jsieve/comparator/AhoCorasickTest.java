@@ -0,0 +1,108 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.comparator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+
+import org.apache.jsieve.comparators.AhoCorasick;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AhoCorasickTest {
+
+    @Test
+    public void testContainsAny() {
+        AhoCorasick automaton = AhoCorasick.compile(Arrays.asList("he",
+                "she", "his", "hers"), false);
+        Assert.assertTrue(automaton.containsAny("ushers"));
+        Assert.assertTrue(automaton.containsAny("this"));
+        Assert.assertTrue(automaton.containsAny("he"));
+        Assert.assertFalse(automaton.containsAny("h"));
+        Assert.assertFalse(automaton.containsAny("HERS"));
+        Assert.assertFalse(automaton.containsAny(""));
+    }
+
+    @Test
+    public void testFailureLinks() {
+        AhoCorasick automaton = AhoCorasick.compile(Arrays.asList("abcd",
+                "bce", "cf"), false);
+        Assert.assertTrue(automaton.containsAny("xabcf"));
+        Assert.assertTrue(automaton.containsAny("abce"));
+        Assert.assertFalse(automaton.containsAny("abcxd"));
+    }
+
+    @Test
+    public void testIgnoreCase() {
+        AhoCorasick automaton = AhoCorasick.compile(Arrays.asList("Viagra",
+                "lottery"), true);
+        Assert.assertTrue(automaton.containsAny("Win the LOTTERY now"));
+        Assert.assertTrue(automaton.containsAny("cheap vIAGRA"));
+        Assert.assertFalse(automaton.containsAny("lotter y"));
+    }
+
+    @Test
+    public void testEmptyKey() {
+        AhoCorasick automaton = AhoCorasick.compile(Arrays.asList("x", ""),
+                false);
+        Assert.assertTrue(automaton.containsAny(""));
+        Assert.assertTrue(automaton.containsAny("abc"));
+    }
+
+    @Test
+    public void testNoKeys() {
+        AhoCorasick automaton = AhoCorasick.compile(Collections
+                .<String> emptyList(), false);
+        Assert.assertFalse(automaton.containsAny("abc"));
+    }
+
+    @Test
+    public void testSearchAcrossFeeds() {
+        AhoCorasick automaton = AhoCorasick.compile(Arrays.asList("lottery",
+                "viagra"), true);
+        AhoCorasick.Search search = automaton.search();
+        String first = "Win the LOT";
+        String second = "TERY now";
+        for (int i = 0; i < first.length(); i++) {
+            Assert.assertFalse(search.next(first.charAt(i)));
+        }
+        boolean found = false;
+        for (int i = 0; i < second.length(); i++) {
+            found = search.next(second.charAt(i));
+        }
+        Assert.assertTrue(found);
+        Assert.assertTrue(search.isFound());
+        search.reset();
+        Assert.assertFalse(search.isFound());
+        Assert.assertFalse(search.next('v'));
+    }
+
+    @Test
+    public void testFindAll() {
+        AhoCorasick automaton = AhoCorasick.compile(Arrays.asList("he",
+                "she", "his", "hers", "", "HE"), true);
+        BitSet found = new BitSet();
+        automaton.findAll("usHers", found);
+        Assert.assertEquals("{0, 1, 3, 4, 5}", found.toString());
+        found.clear();
+        automaton.findAll("x", found);
+        Assert.assertEquals("{4}", found.toString());
+    }
+}
@@ -0,0 +1,78 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.comparator;
+
+import org.apache.jsieve.comparators.AsciiCasemap;
+import org.apache.jsieve.comparators.FoldedKey;
+import org.apache.jsieve.comparators.MatchType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FoldedKeyTest {
+
+    private final AsciiCasemap casemap = new AsciiCasemap();
+
+    @Test
+    public void testIsEqualTo() {
+        FoldedKey key = casemap.foldKey("Hello");
+        Assert.assertTrue(key.isEqualTo("hello"));
+        Assert.assertTrue(key.isEqualTo("HELLO"));
+        Assert.assertFalse(key.isEqualTo("hell"));
+        Assert.assertFalse(key.isEqualTo("hello!"));
+        Assert.assertTrue(casemap.foldKey("").isEqualTo(""));
+    }
+
+    @Test
+    public void testIsContainedIn() {
+        FoldedKey key = casemap.foldKey("JSieve");
+        Assert.assertTrue(key.isContainedIn("about jsieve"));
+        Assert.assertTrue(key.isContainedIn("JSIEVE"));
+        Assert.assertTrue(key.isContainedIn("jjsieveve"));
+        Assert.assertFalse(key.isContainedIn("jsiev"));
+        Assert.assertFalse(key.isContainedIn(""));
+        Assert.assertTrue(casemap.foldKey("").isContainedIn(""));
+    }
+
+    @Test
+    public void testMatch() throws Exception {
+        Assert.assertTrue(casemap.foldKey("*SIEVE*").match(MatchType.MATCHES,
+                "about jsieve here"));
+        Assert.assertTrue(casemap.foldKey("sieve").match(MatchType.CONTAINS,
+                "about jsieve here"));
+        Assert.assertFalse(casemap.foldKey("sieve").match(MatchType.IS,
+                "about jsieve here"));
+    }
+
+    @Test
+    public void testComparatorAgreesWithFoldedKey() throws Exception {
+        String[] values = { "", "a", "A", "ab", "Abc", "xABCx", "abd", "éTé" };
+        for (String value : values) {
+            for (String key : values) {
+                FoldedKey folded = casemap.foldKey(key);
+                Assert.assertEquals(casemap.equals(value, key), folded
+                        .isEqualTo(value));
+                Assert.assertEquals(casemap.contains(value, key), folded
+                        .isContainedIn(value));
+                Assert.assertEquals(value.toUpperCase().contains(key.toUpperCase()),
+                        folded.isContainedIn(value));
+            }
+        }
+    }
+}
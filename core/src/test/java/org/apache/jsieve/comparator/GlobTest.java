@@ -0,0 +1,97 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.comparator;
+
+import org.apache.jsieve.comparators.Glob;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GlobTest {
+
+    @Test
+    public void testLiteral() {
+        Glob glob = Glob.compile("jsieve", false);
+        Assert.assertTrue(glob.matches("jsieve"));
+        Assert.assertFalse(glob.matches("jsiev"));
+        Assert.assertFalse(glob.matches("jsieves"));
+        Assert.assertFalse(glob.matches("JSIEVE"));
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertTrue(Glob.compile("", false).matches(""));
+        Assert.assertFalse(Glob.compile("", false).matches("a"));
+        Assert.assertTrue(Glob.compile("*", false).matches(""));
+        Assert.assertFalse(Glob.compile("?", false).matches(""));
+    }
+
+    @Test
+    public void testAnyChar() {
+        Glob glob = Glob.compile("a?c", false);
+        Assert.assertTrue(glob.matches("abc"));
+        Assert.assertTrue(glob.matches("a\nc"));
+        Assert.assertFalse(glob.matches("ac"));
+        Assert.assertFalse(glob.matches("abbc"));
+    }
+
+    @Test
+    public void testAnySequence() {
+        Glob glob = Glob.compile("*@*.example.org", false);
+        Assert.assertTrue(glob.matches("user@mail.example.org"));
+        Assert.assertTrue(glob.matches("@.example.org"));
+        Assert.assertTrue(glob.matches("user@a.example.org.example.org"));
+        Assert.assertFalse(glob.matches("user@example.org"));
+        Assert.assertFalse(glob.matches("user@mail.example.com"));
+    }
+
+    @Test
+    public void testBacktracking() {
+        Assert.assertTrue(Glob.compile("*a*b", false).matches("xaxxaxxb"));
+        Assert.assertFalse(Glob.compile("*a*b", false).matches("xaxxaxxbx"));
+        Assert.assertTrue(Glob.compile("**?**", false).matches("x"));
+        Assert.assertFalse(Glob.compile("*aa", false).matches("aaaaaaaaab"));
+    }
+
+    @Test
+    public void testEscapes() {
+        Assert.assertTrue(Glob.compile("a\\*", false).matches("a*"));
+        Assert.assertFalse(Glob.compile("a\\*", false).matches("ab"));
+        Assert.assertTrue(Glob.compile("a\\?", false).matches("a?"));
+        Assert.assertFalse(Glob.compile("a\\?", false).matches("ab"));
+        Assert.assertTrue(Glob.compile("a\\\\b", false).matches("a\\b"));
+        Assert.assertTrue(Glob.compile("a\\b", false).matches("a\\b"));
+        Assert.assertTrue(Glob.compile("a\\", false).matches("a\\"));
+    }
+
+    @Test
+    public void testIgnoreCase() {
+        Glob glob = Glob.compile("*JSieve?", true);
+        Assert.assertTrue(glob.matches("about jsieve!"));
+        Assert.assertTrue(glob.matches("ABOUT JSIEVE!"));
+        Assert.assertFalse(glob.matches("about jsieve"));
+    }
+
+    @Test
+    public void testCache() {
+        Assert.assertSame(Glob.forPattern("*cached*", false), Glob
+                .forPattern("*cached*", false));
+        Assert.assertNotSame(Glob.forPattern("*cached*", false), Glob
+                .forPattern("*cached*", true));
+    }
+}
@@ -24,7 +24,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.mail.Header;
 import javax.mail.Message;
@@ -33,8 +35,8 @@ import javax.mail.MessagingException;
 import org.apache.jsieve.SieveContext;
 import org.apache.jsieve.exception.SieveException;
 import org.apache.jsieve.mail.Action;
+import org.apache.jsieve.mail.HeaderIndex;
 import org.apache.jsieve.mail.MailAdapter;
-import org.apache.jsieve.mail.MailUtils;
 import org.apache.jsieve.mail.SieveMailException;
 import org.apache.jsieve.parser.address.SieveAddressBuilder;
 
@@ -51,6 +53,16 @@ public class ScriptCheckMailAdapter implements MailAdapter {
 
     private Message mail = null;
 
+    /**
+     * Index of the headers of the mail, built when first required
+     */
+    private HeaderIndex headerIndex = null;
+
+    /**
+     * Addresses parsed from the mail indexed by header name
+     */
+    private final Map<String, Address[]> addresses = new HashMap<String, Address[]>();
+
     public ScriptCheckMailAdapter() {
         actions = new ArrayList<Action>();
         executedActions = new ArrayList<Action>();
@@ -124,6 +136,8 @@ public class ScriptCheckMailAdapter implements MailAdapter {
     public void reset() {
         executedActions.clear();
         actions.clear();
+        headerIndex = null;
+        addresses.clear();
     }
 
     /**
@@ -202,7 +216,10 @@ public class ScriptCheckMailAdapter implements MailAdapter {
     public List<String> getMatchingHeader(String name) throws SieveMailException {
         List<String> result = Collections.EMPTY_LIST;
         if (mail != null) {
-            result = MailUtils.getMatchingHeader(this, name);
+            if (headerIndex == null) {
+                headerIndex = HeaderIndex.index(this);
+            }
+            result = headerIndex.getMatchingHeader(name);
         }
         return result;
     }
@@ -260,7 +277,12 @@ public class ScriptCheckMailAdapter implements MailAdapter {
 
     public Address[] parseAddresses(String headerName)
             throws SieveMailException {
-        return parseAddresses(headerName, mail);
+        Address[] results = addresses.get(headerName);
+        if (results == null) {
+            results = parseAddresses(headerName, mail);
+            addresses.put(headerName, results);
+        }
+        return results;
     }
 
     /**
@@ -295,6 +317,10 @@ public class ScriptCheckMailAdapter implements MailAdapter {
         }
     }
 
-    public void setContext(SieveContext context) {}
+    public void setContext(SieveContext context) {
+        // The mail may have changed since the last evaluation
+        headerIndex = null;
+        addresses.clear();
+    }
 
 }
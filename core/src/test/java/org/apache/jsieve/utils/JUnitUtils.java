@@ -82,6 +82,22 @@ public class JUnitUtils {
         return new SieveMailAdapter(createMimeMessage());
     }
 
+    /**
+     * Method createBodyMail answers a SieveBodyMailAdapter wrapping a
+     * MimeMessage read from the given source.
+     * 
+     * @param source
+     *            the message, including its headers
+     * @return SieveBodyMailAdapter
+     * @throws MessagingException
+     */
+    static public SieveBodyMailAdapter createBodyMail(String source)
+            throws MessagingException {
+        return new SieveBodyMailAdapter(new MimeMessage(Session
+                .getDefaultInstance(System.getProperties()),
+                new ByteArrayInputStream(source.getBytes())));
+    }
+
     /**
      * Method createEnvelopeMail answers a SieveEnvelopeMailAdapter wrapping an
      * empty MimeMessage.
@@ -0,0 +1,120 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.jsieve.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.mail.MessagingException;
+import javax.mail.Part;
+import javax.mail.internet.ContentType;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+
+import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.mail.SieveMailException;
+import org.apache.jsieve.mail.optional.BodyAccessors;
+import org.apache.jsieve.mail.optional.BodyMatch;
+import org.apache.jsieve.mail.optional.BodyTransform;
+
+/**
+ * <p>
+ * Class SieveBodyMailAdapter extends class SieveMailAdapter, a mock
+ * implementation of a MailAdapter, to add support for BodyAccessors.
+ * </p>
+ * 
+ * <p>
+ * Each part is read whole through JavaMail, which is simple rather than
+ * economical. The message must have been read from a stream so that its raw
+ * body is available.
+ * </p>
+ */
+public class SieveBodyMailAdapter extends SieveMailAdapter implements
+        BodyAccessors {
+
+    /**
+     * Constructor for SieveBodyMailAdapter.
+     * 
+     * @param message
+     */
+    public SieveBodyMailAdapter(MimeMessage message) {
+        super(message);
+    }
+
+    /**
+     * @see org.apache.jsieve.mail.optional.BodyAccessors#matchBody(BodyMatch)
+     */
+    public boolean matchBody(BodyMatch match) throws SieveException {
+        try {
+            if (match.getTransform() == BodyTransform.RAW)
+                return matches(match, read(getMessage().getRawInputStream(),
+                        "UTF-8"));
+            return matchPart(match, getMessage());
+        } catch (MessagingException ex) {
+            throw new SieveMailException(ex);
+        } catch (IOException ex) {
+            throw new SieveMailException(ex);
+        }
+    }
+
+    private boolean matchPart(BodyMatch match, Part part)
+            throws MessagingException, IOException, SieveException {
+        final String mimeType = new ContentType(part.getContentType())
+                .getBaseType().toLowerCase();
+        final Object content = part.getContent();
+        if (content instanceof MimeMultipart) {
+            final MimeMultipart multipart = (MimeMultipart) content;
+            if (match.getTransform() == BodyTransform.CONTENT
+                    && match.isSelected(mimeType)
+                    && null != multipart.getPreamble()
+                    && matches(match, multipart.getPreamble()))
+                return true;
+            for (int i = 0; i < multipart.getCount(); i++) {
+                if (matchPart(match, multipart.getBodyPart(i)))
+                    return true;
+            }
+            return false;
+        }
+        if (!match.isSelected(mimeType))
+            return false;
+        if (content instanceof String)
+            return matches(match, (String) content);
+        return matches(match, read(part.getInputStream(), "ISO-8859-1"));
+    }
+
+    private static boolean matches(BodyMatch match, String text)
+            throws SieveException {
+        final BodyMatch.Matcher matcher = match.newMatcher();
+        return matcher.append(text.toCharArray(), 0, text.length())
+                || matcher.matches();
+    }
+
+    private static String read(InputStream in, String charset)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString(charset);
+    }
+}
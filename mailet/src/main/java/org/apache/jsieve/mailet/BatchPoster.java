@@ -0,0 +1,47 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.util.List;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Experimental interface. 
+ * A {@link Poster} able to deliver one message to many mailboxes at once,
+ * for example within a single transaction.
+ */
+public interface BatchPoster extends Poster {
+
+    /**
+     * Experimental mail delivery.
+     * Attaches a message to each of the collections indicated by the 
+     * given deliveries. Each delivery carries its own message, usually
+     * an {@link OverlayMessage} sharing a single copy of the given message.
+     * A delivery which fails does not prevent the others being made.
+     * 
+     * @param message the message delivered, not null
+     * @param deliveries in order of delivery, not null
+     * @return the deliveries which could not be made, in order, 
+     * not null and empty when all were made
+     * @throws MessagingException when the message cannot be delivered at all
+     */
+    public List<Delivery> post(MimeMessage message, List<Delivery> deliveries) throws MessagingException;
+}
@@ -0,0 +1,90 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * <p>Adapts a {@link Poster} to {@link BatchPoster}.</p>
+ * <p>
+ * A plain poster cannot deliver to many mailboxes at once, so each
+ * delivery in a batch is posted in turn. A delivery which fails is 
+ * reported, and the remaining deliveries are still posted.
+ * </p>
+ */
+public class BatchPosterAdapter implements BatchPoster {
+
+    private final Poster poster;
+
+    /**
+     * Constructs an adapter.
+     * @param poster not null
+     */
+    public BatchPosterAdapter(Poster poster) {
+        this.poster = poster;
+    }
+
+    /**
+     * Answers the given poster as a batch poster, adapting it when
+     * necessary.
+     * @param poster possibly null
+     * @return the poster when batch capable, an adapter for the poster 
+     * otherwise, or null when the poster is null
+     */
+    public static BatchPoster adapt(Poster poster) {
+        if (poster == null || poster instanceof BatchPoster) {
+            return (BatchPoster) poster;
+        }
+        return new BatchPosterAdapter(poster);
+    }
+
+    /**
+     * @see Poster#post(String, MimeMessage)
+     */
+    public void post(String uri, MimeMessage mail) throws MessagingException {
+        poster.post(uri, mail);
+    }
+
+    /**
+     * Posts each delivery in turn, continuing past failures.
+     * @see BatchPoster#post(MimeMessage, List)
+     */
+    public List<Delivery> post(MimeMessage message, List<Delivery> deliveries) {
+        List<Delivery> failures = null;
+        for (final Delivery delivery : deliveries) {
+            try {
+                poster.post(delivery.getUri(), delivery.getMessage());
+            } catch (MessagingException ex) {
+                if (failures == null) {
+                    failures = new ArrayList<Delivery>();
+                }
+                failures.add(delivery);
+            }
+        }
+        if (failures == null) {
+            return Collections.emptyList();
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,284 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.Enumeration;
+import java.util.LinkedList;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.james.mime4j.MimeException;
+import org.apache.james.mime4j.stream.BodyDescriptor;
+import org.apache.james.mime4j.stream.EntityState;
+import org.apache.james.mime4j.stream.MimeConfig;
+import org.apache.james.mime4j.stream.MimeTokenStream;
+import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.mail.optional.BodyMatch;
+import org.apache.jsieve.mail.optional.BodyTransform;
+
+/**
+ * <p>
+ * Matches the parts of a message selected by a {@link BodyMatch} while
+ * the message is streamed, in a single pass, through the Mime4J parser. 
+ * Only selected parts are decoded, according to their transfer encoding and 
+ * charset, and each is fed a buffer at a time to a 
+ * {@link BodyMatch.Matcher}. The memory used therefore depends upon the 
+ * size of the message only when the matcher collects the text of a part.
+ * </p>
+ * <p>
+ * At most the given number of bytes are matched, in total, across 
+ * all parts. The remainder of a message exceeding this limit is 
+ * treated as though it were absent.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are mutable and must be confined to a single thread.
+ * Each instance scans a single message.
+ * </p>
+ */
+final class BodyScanner {
+
+    /** Charset used when a part names no charset, or an unsupported one */
+    private static final Charset FALLBACK_CHARSET = Charset.forName("ISO-8859-1");
+
+    /** Charset of the undecoded body, in which the keys are given by the script */
+    private static final Charset RAW_CHARSET = Charset.forName("UTF-8");
+
+    /** Body parts are read unchecked, since JavaMail has already accepted the message */
+    private static final MimeConfig CONFIG = new MimeConfig.Builder()
+            .setMaxLineLen(-1)
+            .setMaxHeaderLen(-1)
+            .setMaxHeaderCount(-1)
+            .build();
+
+    /** The match made */
+    private final BodyMatch match;
+
+    /** Bytes remaining to be matched, or negative for no limit */
+    private long remaining;
+
+    /**
+     * Constructs a scanner.
+     * @param match not null
+     * @param limit maximum number of bytes to match, or negative for no limit
+     */
+    BodyScanner(BodyMatch match, long limit) {
+        this.match = match;
+        this.remaining = limit;
+    }
+
+    /**
+     * Answers whether any selected part of the given message is matched.
+     * @param message not null
+     * @return true when a part is matched, false otherwise
+     * @throws MessagingException when the message cannot be parsed
+     * @throws IOException when the message cannot be read
+     * @throws SieveException when the match cannot be made
+     */
+    boolean scan(MimeMessage message) throws MessagingException, IOException, SieveException {
+        if (match.getTransform() == BodyTransform.RAW) {
+            return scan(body(message), RAW_CHARSET);
+        }
+        final MimeTokenStream stream = new MimeTokenStream(CONFIG);
+        stream.parse(open(message));
+        // Types of the enclosing multiparts, innermost first
+        final LinkedList<String> multiparts = new LinkedList<String>();
+        try {
+            for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM; state = stream.next()) {
+                final boolean matched;
+                switch (state) {
+                case T_START_MULTIPART:
+                    multiparts.addFirst(stream.getBodyDescriptor().getMimeType());
+                    matched = false;
+                    break;
+                case T_END_MULTIPART:
+                    multiparts.removeFirst();
+                    matched = false;
+                    break;
+                case T_PREAMBLE:
+                case T_EPILOGUE:
+                    matched = match.getTransform() == BodyTransform.CONTENT 
+                            && !multiparts.isEmpty() && match.isSelected(multiparts.getFirst())
+                            && scan(stream.getInputStream(), FALLBACK_CHARSET);
+                    break;
+                case T_BODY:
+                    final BodyDescriptor descriptor = stream.getBodyDescriptor();
+                    matched = match.isSelected(descriptor.getMimeType()) 
+                            && scan(stream.getDecodedInputStream(), charset(descriptor));
+                    break;
+                default:
+                    matched = false;
+                }
+                if (matched) {
+                    return true;
+                }
+                if (remaining == 0) {
+                    break;
+                }
+            }
+        } catch (MimeException e) {
+            throw new MessagingException("Cannot parse message body", e);
+        }
+        return false;
+    }
+
+    private boolean scan(InputStream part, Charset charset) throws IOException, SieveException {
+        final BodyMatch.Matcher matcher = match.newMatcher();
+        final Reader reader = new InputStreamReader(new LimitedInputStream(part), charset);
+        final char[] buffer = new char[4096];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            if (matcher.append(buffer, 0, read)) {
+                return true;
+            }
+        }
+        return matcher.matches();
+    }
+
+    private static Charset charset(BodyDescriptor descriptor) {
+        final String name = descriptor.getCharset();
+        try {
+            if (name != null && Charset.isSupported(name)) {
+                return Charset.forName(name);
+            }
+        } catch (IllegalArgumentException e) {
+            // Illegal name, fall back
+        }
+        return FALLBACK_CHARSET;
+    }
+
+    /**
+     * Opens the message for parsing. The stored content is read directly when 
+     * available; a message built in memory is written out.
+     */
+    private static InputStream open(MimeMessage message) throws MessagingException, IOException {
+        final InputStream content;
+        try {
+            content = message.getRawInputStream();
+        } catch (MessagingException e) {
+            return new ByteArrayInputStream(write(message));
+        }
+        return new SequenceInputStream(headers(message), content);
+    }
+
+    /**
+     * Opens the undecoded body of the message.
+     */
+    private static InputStream body(MimeMessage message) throws MessagingException, IOException {
+        try {
+            return message.getRawInputStream();
+        } catch (MessagingException e) {
+            final byte[] bytes = write(message);
+            final int start = bodyStart(bytes);
+            return new ByteArrayInputStream(bytes, start, bytes.length - start);
+        }
+    }
+
+    /**
+     * Writes out a message built in memory, which has no stored content.
+     */
+    private static byte[] write(MimeMessage message) throws MessagingException, IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Finds the start of the body, following the first empty line.
+     */
+    private static int bodyStart(byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                if (i + 1 < bytes.length && bytes[i + 1] == '\n') {
+                    return i + 2;
+                }
+                if (i + 2 < bytes.length && bytes[i + 1] == '\r' && bytes[i + 2] == '\n') {
+                    return i + 3;
+                }
+            }
+        }
+        return bytes.length;
+    }
+
+    /**
+     * Reads the header of the message, which JavaMail holds separately from the body.
+     */
+    private static InputStream headers(MimeMessage message) throws MessagingException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Enumeration lines = message.getAllHeaderLines();
+        while (lines.hasMoreElements()) {
+            writeLine(out, (String) lines.nextElement());
+        }
+        writeLine(out, "");
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    private static void writeLine(ByteArrayOutputStream out, String line) {
+        final int length = line.length();
+        for (int i = 0; i < length; i++) {
+            out.write(line.charAt(i));
+        }
+        out.write('\r');
+        out.write('\n');
+    }
+
+    /**
+     * Ends each part once the remaining bytes have been read.
+     */
+    private final class LimitedInputStream extends FilterInputStream {
+
+        LimitedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            final int result = super.read();
+            if (result >= 0 && remaining > 0) {
+                remaining--;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            final int result = super.read(b, off, remaining > 0 ? (int) Math.min(len, remaining) : len);
+            if (result > 0 && remaining > 0) {
+                remaining -= result;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import org.apache.jsieve.CompiledScript;
+
+/**
+ * <p>A compiled Sieve script held by {@link ScriptCache} together with
+ * the version of the source from which it was compiled.</p>
+ * <p>
+ * A script which cannot be compiled is held as quarantined, together with 
+ * the cause of its failure, so that the same version is not compiled again.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are immutable and may be shared by multiple threads.
+ * </p>
+ */
+public final class CachedScript {
+
+    /** Version reported by the locator, possibly null */
+    private final String version;
+
+    /** The length of the script source in bytes */
+    private final int weight;
+
+    /** The compiled script, or null when quarantined */
+    private final CompiledScript script;
+
+    /** The cause of the failure to compile the script, or null */
+    private final Exception failure;
+
+    /**
+     * Constructs an entry.
+     * @param version version reported by the locator, 
+     * or null when unknown
+     * @param weight the length of the script source in bytes
+     * @param script the compiled script, not null
+     */
+    public CachedScript(String version, int weight, CompiledScript script) {
+        this.version = version;
+        this.weight = weight;
+        this.script = script;
+        this.failure = null;
+    }
+
+    /**
+     * Constructs a quarantined entry for a script which cannot be compiled.
+     * @param version version reported by the locator, 
+     * or null when unknown
+     * @param weight the length of the script source in bytes
+     * @param failure the cause of the failure to compile the script, not null
+     */
+    public CachedScript(String version, int weight, Exception failure) {
+        this.version = version;
+        this.weight = weight;
+        this.script = null;
+        this.failure = failure;
+    }
+
+    /**
+     * Gets the version reported by the locator when the script was read.
+     * @return version token, or null when unknown
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the compiled script.
+     * @return the compiled script, or null when quarantined
+     */
+    public CompiledScript getScript() {
+        return script;
+    }
+
+    /**
+     * Is this version of the script quarantined, having failed to compile?
+     * @return true when quarantined, false when compiled
+     */
+    public boolean isQuarantined() {
+        return failure != null;
+    }
+
+    /**
+     * Gets the cause of the failure to compile the script.
+     * @return the cause, or null when compiled
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    /**
+     * Gets the weight of this entry, used to bound the size of the cache.
+     * @return the length of the script source in bytes
+     */
+    public int getWeight() {
+        return weight;
+    }
+}
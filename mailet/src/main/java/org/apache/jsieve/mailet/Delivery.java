@@ -0,0 +1,78 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import javax.mail.internet.MimeMessage;
+
+import org.apache.mailet.MailAddress;
+
+/**
+ * A single delivery within a batch, see {@link BatchPoster}.
+ * <h4>Thread Safety</h4>
+ * <p>Instances are immutable and so may be safely shared between threads.</p>
+ */
+public final class Delivery {
+
+    private final MailAddress recipient;
+
+    private final String uri;
+
+    private final MimeMessage message;
+
+    /**
+     * Constructs a delivery.
+     * @param recipient the recipient for whom the message is delivered, not null
+     * @param uri indicates the destination, as for {@link Poster#post(String, MimeMessage)}
+     * @param message the message delivered, not null
+     */
+    public Delivery(MailAddress recipient, String uri, MimeMessage message) {
+        this.recipient = recipient;
+        this.uri = uri;
+        this.message = message;
+    }
+
+    /**
+     * Gets the recipient for whom the message is delivered.
+     * @return not null
+     */
+    public MailAddress getRecipient() {
+        return recipient;
+    }
+
+    /**
+     * Gets the destination.
+     * @return not null
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * Gets the message delivered.
+     * @return not null
+     */
+    public MimeMessage getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "Delivery to " + uri + " for " + recipient;
+    }
+}
@@ -29,6 +29,8 @@ import org.apache.mailet.MailAddress;
 
 /**
  * Performs the filing of a mail into a specified destination. 
+ * Each destination is posted an {@link OverlayMessage} sharing the body 
+ * of the mail, so that only the headers are copied.
  * <h4>Thread Safety</h4>
  * <p>An instance maybe safe accessed concurrently by multiple threads.</p>
  */
@@ -92,7 +94,6 @@ public class FileIntoAction implements MailAction {
                 host = "@localhost/";
             }
             final String url = "mailbox://" + recipient.getUser() + host + mailbox;
-            //TODO: copying this message so many times seems a waste
             context.post(url, localMessage);
             delivered = true;
         }
@@ -124,19 +125,9 @@ public class FileIntoAction implements MailAction {
     private static MimeMessage createMimeMessage(Mail aMail, MailAddress recipient) throws MessagingException {
         // Adapted from LocalDelivery Mailet
         // Add qmail's de facto standard Delivered-To header
-        MimeMessage localMessage = new MimeMessage(aMail.getMessage())
-        {
-            protected void updateHeaders() throws MessagingException
-            {
-                if (getMessageID() == null)
-                    super.updateHeaders();
-                else
-                    modified = false;
-            }
-        };
+        // to an overlay sharing the body of the message
+        final MimeMessage localMessage = new OverlayMessage(aMail.getMessage());
         localMessage.addHeader("Delivered-To", recipient.toString());
-
-        localMessage.saveChanges();
         return localMessage;
     }
 }
@@ -0,0 +1,126 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>Locates Sieve scripts stored as files in a directory.</p>
+ * <p>
+ * The script <code>//<em>user</em>@<em>host</em>/<em>name</em></code> 
+ * is resolved to the file <code><em>user</em>@<em>host</em>.<em>name</em></code>
+ * in the directory. For example, <code>//john.smith@localhost/sieve</code> 
+ * is resolved to <code>john.smith@localhost.sieve</code>.
+ * </p><p>
+ * The version of a script is derived from the last modification time 
+ * and the length of its file, so checking for changes needs no I/O 
+ * beyond reading the file attributes.
+ * </p>
+ */
+public class FileSystemResourceLocator implements VersionedResourceLocator {
+
+    private final File directory;
+
+    /**
+     * Constructs a locator.
+     * @param directory the directory containing the scripts, not null
+     */
+    public FileSystemResourceLocator(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the directory containing the scripts.
+     * @return not null
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @see ResourceLocator#get(String)
+     */
+    public InputStream get(String uri) throws IOException {
+        return new FileInputStream(resolve(uri));
+    }
+
+    /**
+     * @see VersionedResourceLocator#getVersion(String)
+     */
+    public String getVersion(String uri) throws IOException {
+        return version(resolve(uri));
+    }
+
+    /**
+     * @see VersionedResourceLocator#getResource(String)
+     */
+    public Resource getResource(String uri) throws IOException {
+        final File file = resolve(uri);
+        final String version = version(file);
+        return new Resource(new FileInputStream(file), version);
+    }
+
+    /**
+     * @see VersionedResourceLocator#getIfModified(String, String)
+     */
+    public Resource getIfModified(String uri, String version) throws IOException {
+        final File file = resolve(uri);
+        final String current = version(file);
+        if (version != null && version.equals(current)) {
+            return null;
+        }
+        return new Resource(new FileInputStream(file), current);
+    }
+
+    /**
+     * Resolves a script URI to a file in the directory.
+     * @param uri identifies the Sieve script, not null
+     * @return not null
+     * @throws IOException when the URI does not name a script 
+     * in the directory
+     */
+    protected File resolve(String uri) throws IOException {
+        if (!uri.startsWith("//")) {
+            throw new IOException("Unsupported script URI: " + uri);
+        }
+        final int separator = uri.indexOf('/', 2);
+        if (separator < 0) {
+            throw new IOException("Unsupported script URI: " + uri);
+        }
+        final String name = uri.substring(2, separator) + "." + uri.substring(separator + 1);
+        // Names must be normalised so that they cannot escape the directory
+        if (name.indexOf('/') >= 0 || name.indexOf('\\') >= 0 || name.startsWith(".")
+                || name.indexOf(File.separatorChar) >= 0) {
+            throw new IOException("Unsupported script URI: " + uri);
+        }
+        return new File(directory, name);
+    }
+
+    private String version(File file) throws FileNotFoundException {
+        final long lastModified = file.lastModified();
+        if (lastModified == 0L) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        return lastModified + "-" + file.length();
+    }
+}
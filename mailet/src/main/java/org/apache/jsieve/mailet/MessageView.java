@@ -0,0 +1,321 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.mail.Header;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.james.mime4j.dom.address.AddressList;
+import org.apache.james.mime4j.dom.address.Mailbox;
+import org.apache.james.mime4j.dom.address.MailboxList;
+import org.apache.james.mime4j.dom.field.ParseException;
+import org.apache.james.mime4j.field.address.DefaultAddressParser;
+import org.apache.jsieve.exception.InternetAddressException;
+import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.mail.AddressImpl;
+import org.apache.jsieve.mail.HeaderIndex;
+import org.apache.jsieve.mail.MailAdapter;
+import org.apache.jsieve.mail.optional.BodyMatch;
+
+/**
+ * <p>
+ * Read only view of the parts of a message examined by Sieve tests. 
+ * Headers are indexed when the view is constructed; addresses are 
+ * extracted and the body matched when first required. All are then reused
+ * by every evaluation sharing the view. A message delivered to many recipients need
+ * therefore be examined only once. The body is never held in memory, 
+ * see {@link BodyScanner}.
+ * </p>
+ * <p>
+ * Headers added for a single recipient, such as <code>Delivered-To</code>, 
+ * are overlaid by {@link #withHeader(String, String)} rather than 
+ * added to the shared view.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances may safely be accessed concurrently by multiple threads,
+ * provided that the message is not modified while it is being viewed.
+ * </p>
+ */
+public final class MessageView {
+
+    /** The message viewed */
+    private final MimeMessage message;
+
+    /** The view overlaid by this, or null */
+    private final MessageView parent;
+
+    /** 
+     * Key of the header added to the parent, see {@link HeaderIndex#key(String)},
+     * or null when there is no parent
+     */
+    private final String overlaid;
+
+    /** Header values indexed by lower case name */
+    private final Map<String, List<String>> headers;
+
+    /** 
+     * Header values indexed by name without surrounding whitespace in lower case,
+     * see {@link HeaderIndex#key(String)} 
+     */
+    private final Map<String, List<String>> matching;
+
+    /** Distinct header names in message order */
+    private final List<String> headerNames;
+
+    /** Indicates that the whole of the body should be matched */
+    public static final long UNLIMITED = -1;
+
+    /** The maximum number of bytes of body matched, or negative for no limit */
+    private final long bodyLimit;
+
+    /** Results of matches of the body indexed by match */
+    private final ConcurrentMap<BodyMatch, Boolean> bodyMatches = new ConcurrentHashMap<BodyMatch, Boolean>();
+
+    /** Parsed addresses indexed by {@link HeaderIndex#key(String)} */
+    private final ConcurrentMap<String, MailAdapter.Address[]> addresses = new ConcurrentHashMap<String, MailAdapter.Address[]>();
+
+    /**
+     * Constructs a view of the given message, reading its headers.
+     * The whole of the body is matched.
+     * @param message not null
+     * @throws MessagingException when the headers cannot be read
+     */
+    public MessageView(MimeMessage message) throws MessagingException {
+        this(message, UNLIMITED);
+    }
+
+    /**
+     * Constructs a view of the given message, reading its headers.
+     * @param message not null
+     * @param bodyLimit maximum number of bytes of body matched, 
+     * or {@link #UNLIMITED}
+     * @throws MessagingException when the headers cannot be read
+     */
+    public MessageView(MimeMessage message, long bodyLimit) throws MessagingException {
+        this.message = message;
+        this.parent = null;
+        this.overlaid = null;
+        this.bodyLimit = bodyLimit;
+        final Map<String, List<String>> index = new LinkedHashMap<String, List<String>>();
+        final Map<String, List<String>> matchingIndex = new HashMap<String, List<String>>();
+        final List<String> names = new ArrayList<String>();
+        final Enumeration allHeaders = message.getAllHeaders();
+        while (allHeaders.hasMoreElements()) {
+            final Header header = (Header) allHeaders.nextElement();
+            add(index, matchingIndex, names, header.getName(), header.getValue());
+        }
+        this.headers = freeze(index);
+        this.matching = freeze(matchingIndex);
+        this.headerNames = Collections.unmodifiableList(names);
+    }
+
+    private MessageView(MessageView parent, String name, String value) {
+        this.message = parent.message;
+        this.parent = parent;
+        this.overlaid = HeaderIndex.key(name);
+        this.bodyLimit = parent.bodyLimit;
+        final Map<String, List<String>> index = copy(parent.headers);
+        final Map<String, List<String>> matchingIndex = copy(parent.matching);
+        final List<String> names = new ArrayList<String>(parent.headerNames);
+        add(index, matchingIndex, names, name, value);
+        this.headers = freeze(index);
+        this.matching = freeze(matchingIndex);
+        this.headerNames = Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Answers a view with an additional header. The headers of this view
+     * are not altered. Matches of the body, and addresses in all but
+     * the added header, are shared.
+     * @param name header name, not null
+     * @param value header value, not null
+     * @return not null
+     */
+    public MessageView withHeader(String name, String value) {
+        return new MessageView(this, name, value);
+    }
+
+    /**
+     * Gets the message viewed.
+     * @return not null
+     */
+    public MimeMessage getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the distinct names of the headers of the message.
+     * @return unmodifiable list, not null
+     */
+    public List<String> getHeaderNames() {
+        return headerNames;
+    }
+
+    /**
+     * Gets all values of the named header. 
+     * As with {@link MimeMessage#getHeader(String)}, names are compared
+     * without regard to case.
+     * @param name header name, not null
+     * @return unmodifiable list, possibly empty, not null
+     */
+    public List<String> getHeader(String name) {
+        final List<String> values = headers.get(name.toLowerCase(Locale.US));
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        return values;
+    }
+
+    /**
+     * Gets all values of the headers matching the given name,
+     * as {@link MailAdapter#getMatchingHeader(String)}.
+     * @param name header name, not null
+     * @return unmodifiable list, possibly empty, not null
+     */
+    public List<String> getMatchingHeader(String name) {
+        final List<String> values = matching.get(HeaderIndex.key(name));
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        return values;
+    }
+
+    private static Map<String, List<String>> copy(Map<String, List<String>> index) {
+        final Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+        for (final Map.Entry<String, List<String>> entry : index.entrySet()) {
+            result.put(entry.getKey(), new ArrayList<String>(entry.getValue()));
+        }
+        return result;
+    }
+
+    private static Map<String, List<String>> freeze(Map<String, List<String>> index) {
+        for (final Map.Entry<String, List<String>> entry : index.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return index;
+    }
+
+    private static void add(Map<String, List<String>> index, Map<String, List<String>> matchingIndex,
+            List<String> names, String name, String value) {
+        add(index, name.toLowerCase(Locale.US), value);
+        add(matchingIndex, HeaderIndex.key(name), value);
+        if (!names.contains(name)) {
+            names.add(name);
+        }
+    }
+
+    private static void add(Map<String, List<String>> index, String key, String value) {
+        List<String> values = index.get(key);
+        if (values == null) {
+            values = new ArrayList<String>(1);
+            index.put(key, values);
+        }
+        values.add(value);
+    }
+
+    /**
+     * Answers whether the parts of the message selected by the given match
+     * are matched. Results are memoized by match instance.
+     * @param match not null
+     * @return true when a part is matched, false otherwise
+     * @throws MessagingException
+     * @throws IOException
+     * @throws SieveException
+     * @see BodyScanner
+     */
+    public boolean matchBody(BodyMatch match) throws MessagingException, IOException, SieveException {
+        if (parent != null) {
+            return parent.matchBody(match);
+        }
+        Boolean result = bodyMatches.get(match);
+        if (result == null) {
+            result = Boolean.valueOf(new BodyScanner(match, bodyLimit).scan(message));
+            bodyMatches.putIfAbsent(match, result);
+        }
+        return result.booleanValue();
+    }
+
+    /**
+     * Answers whether the parts of the message selected by the given match
+     * are matched, scanning the body without memoizing the result. 
+     * Suits matches made once, which would only fill the memo.
+     * @param match not null
+     * @return true when a part is matched, false otherwise
+     * @throws MessagingException
+     * @throws IOException
+     * @throws SieveException
+     * @see #matchBody(BodyMatch)
+     */
+    public boolean scanBody(BodyMatch match) throws MessagingException, IOException, SieveException {
+        return new BodyScanner(match, bodyLimit).scan(message);
+    }
+
+    /**
+     * Gets the addresses in all headers with the given name. 
+     * Header names are compared without regard to case or 
+     * surrounding whitespace.
+     * @param headerName not null
+     * @return addresses, not null possibly empty
+     * @throws MessagingException
+     * @throws InternetAddressException when a value cannot be parsed
+     */
+    public MailAdapter.Address[] getAddresses(String headerName) throws MessagingException, InternetAddressException {
+        final String key = HeaderIndex.key(headerName);
+        if (parent != null && !key.equals(overlaid)) {
+            return parent.getAddresses(headerName);
+        }
+        MailAdapter.Address[] results = addresses.get(key);
+        if (results == null) {
+            final List<MailAdapter.Address> parsed = new ArrayList<MailAdapter.Address>();
+            for (final String value : getMatchingHeader(headerName)) {
+                parse(value, parsed);
+            }
+            results = parsed.toArray(new MailAdapter.Address[parsed.size()]);
+            addresses.putIfAbsent(key, results);
+        }
+        return results;
+    }
+
+    private void parse(String value, List<MailAdapter.Address> results) throws InternetAddressException {
+        try {
+            final MailboxList list = new AddressList(DefaultAddressParser.DEFAULT.parseAddressList(value), true).flatten();
+            final int size = list.size();
+            for (int i = 0; i < size; i++) {
+                final Mailbox mailbox = list.get(i);
+                results.add(new AddressImpl(mailbox.getLocalPart(), mailbox.getDomain()));
+            }
+        } catch (ParseException e) {
+            throw new InternetAddressException(e);
+        }
+    }
+}
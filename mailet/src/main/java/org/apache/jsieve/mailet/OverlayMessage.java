@@ -0,0 +1,182 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+
+import javax.activation.DataHandler;
+import javax.mail.IllegalWriteException;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * <p>
+ * A message delivered to a single destination, sharing the body of
+ * another message. The headers of the shared message are copied when the
+ * overlay is constructed, and may then be added to, as for a 
+ * <code>Delivered-To</code> header, without altering the shared message. 
+ * The body is neither copied nor parsed: it is read from the shared 
+ * message each time it is required.
+ * </p>
+ * <p>
+ * The message overlaid is copied once, as by 
+ * {@link MimeMessage#MimeMessage(MimeMessage)}, and the body of the copy is
+ * shared. The stored body of a message cannot be trusted, since it is 
+ * retained when the content is replaced. An overlay of an overlay shares
+ * the same copy, so a message delivered to many destinations is copied 
+ * once by overlaying a single overlay of it.
+ * </p>
+ * <p>
+ * The cost of each further delivery is therefore proportional to the 
+ * size of the headers rather than that of the whole message. A {@link Poster} able to store a body once for many deliveries
+ * may use {@link #getSharedMessage()} to recognise that bodies are shared.
+ * </p>
+ * <p>
+ * The body is immutable: setting the content fails with an 
+ * {@link IllegalWriteException}.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances are not safe for concurrent modification. Overlays of the same
+ * message may be used concurrently by multiple threads, provided that the 
+ * body of the shared message is not modified.
+ * </p>
+ */
+public final class OverlayMessage extends MimeMessage {
+
+    /** Size of the buffer used when writing the body */
+    private static final int BUFFER_SIZE = 4096;
+
+    /** The message whose body is shared */
+    private final MimeMessage shared;
+
+    /**
+     * Constructs an overlay with the headers of the given message.
+     * When the given message is itself an overlay, the body of the message
+     * it overlays is shared, so that overlays are never chained. Otherwise
+     * the given message is copied.
+     * @param message not null
+     * @throws MessagingException when the message cannot be read
+     */
+    public OverlayMessage(MimeMessage message) throws MessagingException {
+        super((Session) null);
+        if (message instanceof OverlayMessage) {
+            this.shared = ((OverlayMessage) message).shared;
+        } else {
+            this.shared = new MimeMessage(message);
+        }
+        final Enumeration lines = message.getAllHeaderLines();
+        while (lines.hasMoreElements()) {
+            headers.addHeaderLine((String) lines.nextElement());
+        }
+        if (getMessageID() == null) {
+            updateMessageID();
+        }
+        modified = false;
+        saved = true;
+    }
+
+    /**
+     * Gets the message whose body is shared, a copy of the message 
+     * first overlaid.
+     * @return not null
+     */
+    public MimeMessage getSharedMessage() {
+        return shared;
+    }
+
+    /**
+     * Reads the body of the shared message.
+     * @see javax.mail.internet.MimeMessage#getContentStream()
+     */
+    @Override
+    protected InputStream getContentStream() throws MessagingException {
+        return shared.getRawInputStream();
+    }
+
+    /**
+     * @see javax.mail.internet.MimeMessage#getSize()
+     */
+    @Override
+    public int getSize() throws MessagingException {
+        return shared.getSize();
+    }
+
+    /**
+     * @see javax.mail.internet.MimeMessage#getLineCount()
+     */
+    @Override
+    public int getLineCount() throws MessagingException {
+        return shared.getLineCount();
+    }
+
+    /**
+     * The body is shared and so cannot be set.
+     * @throws IllegalWriteException always
+     */
+    @Override
+    public void setDataHandler(DataHandler handler) throws MessagingException {
+        throw new IllegalWriteException("The body of an overlay is shared and cannot be set.");
+    }
+
+    /**
+     * Only a missing <code>Message-ID</code> is supplied; other headers
+     * describe the shared body and are left unaltered.
+     * @see javax.mail.internet.MimeMessage#updateHeaders()
+     */
+    @Override
+    protected void updateHeaders() throws MessagingException {
+        if (getMessageID() == null) {
+            updateMessageID();
+        }
+    }
+
+    /**
+     * Writes the headers of this overlay followed by the unaltered 
+     * body of the shared message.
+     * @see javax.mail.internet.MimeMessage#writeTo(java.io.OutputStream, java.lang.String[])
+     */
+    @Override
+    public void writeTo(OutputStream out, String[] ignoreList) throws MessagingException, IOException {
+        final Enumeration lines = ignoreList == null ? headers.getAllHeaderLines() 
+                : headers.getNonMatchingHeaderLines(ignoreList);
+        while (lines.hasMoreElements()) {
+            out.write(((String) lines.nextElement()).getBytes("ISO-8859-1"));
+            out.write('\r');
+            out.write('\n');
+        }
+        out.write('\r');
+        out.write('\n');
+        final InputStream body = shared.getRawInputStream();
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            body.close();
+        }
+        out.flush();
+    }
+}
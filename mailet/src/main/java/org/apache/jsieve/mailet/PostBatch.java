@@ -0,0 +1,118 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.mailet.MailAddress;
+
+/**
+ * <p>
+ * Collects the deliveries made for all the recipients of a message,
+ * so that they may be posted in a single call to a {@link BatchPoster}.
+ * </p>
+ * <p>
+ * Messages posted through {@link #posterFor(MailAddress)} are held 
+ * until {@link #flush(BatchPoster)}. A message which is not already an
+ * {@link OverlayMessage} is held as an overlay, so that later changes 
+ * to the headers of a shared message do not alter it.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Deliveries may safely be added concurrently by multiple threads.
+ * </p>
+ */
+final class PostBatch {
+
+    private final MimeMessage message;
+
+    private final List<Delivery> deliveries = new ArrayList<Delivery>();
+
+    /**
+     * Constructs a batch for the given message.
+     * @param message not null
+     */
+    PostBatch(MimeMessage message) {
+        this.message = message;
+    }
+
+    /**
+     * Answers a poster adding deliveries for the given recipient to this batch.
+     * @param recipient not null
+     * @return not null
+     */
+    Poster posterFor(final MailAddress recipient) {
+        return new Poster() {
+            public void post(String uri, MimeMessage mail) throws MessagingException {
+                add(recipient, uri, mail);
+            }
+        };
+    }
+
+    private void add(MailAddress recipient, String uri, MimeMessage mail) throws MessagingException {
+        final MimeMessage held;
+        if (mail instanceof OverlayMessage) {
+            held = mail;
+        } else {
+            held = new OverlayMessage(mail);
+        }
+        synchronized (deliveries) {
+            deliveries.add(new Delivery(recipient, uri, held));
+        }
+    }
+
+    /**
+     * Gets the distinct recipients of the deliveries in this batch.
+     * @return not null, possibly empty
+     */
+    Collection<MailAddress> getRecipients() {
+        final Collection<MailAddress> results = new LinkedHashSet<MailAddress>();
+        synchronized (deliveries) {
+            for (final Delivery delivery : deliveries) {
+                results.add(delivery.getRecipient());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Posts all deliveries in this batch, in order, by a single call.
+     * Nothing is posted when the batch is empty.
+     * @param poster not null
+     * @return the deliveries which could not be made, not null
+     * @throws MessagingException when no delivery could be made
+     */
+    List<Delivery> flush(BatchPoster poster) throws MessagingException {
+        final List<Delivery> batch;
+        synchronized (deliveries) {
+            batch = new ArrayList<Delivery>(deliveries);
+            deliveries.clear();
+        }
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        return poster.post(message, batch);
+    }
+}
@@ -34,7 +34,8 @@ public interface Poster {
      * 
      * @param uri indicates the destination to which the mail to added. ATM 
      * the value should be mailbox://<user>@localhost/<mailbox-path>
-     * @param mail not null
+     * @param mail not null. Mail filed by Sieve is an {@link OverlayMessage}
+     * whose body is shared with other destinations and must not be modified
      */
     public void post(String uri, MimeMessage mail) throws MessagingException;
 }
@@ -0,0 +1,154 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.mailet.Mail;
+import org.apache.mailet.MailAddress;
+
+/**
+ * <p>
+ * A {@link Mail} delivered to a single recipient, carrying its own copy of
+ * the message and addressed to that recipient alone. All other properties
+ * are those of the original mail.
+ * </p>
+ * <p>
+ * Allows headers specific to a recipient to be added without altering
+ * the message seen by other recipients.
+ * </p>
+ */
+final class RecipientMail implements Mail {
+
+    private static final long serialVersionUID = -2493046382913745093L;
+
+    private final Mail mail;
+
+    private MimeMessage message;
+
+    private Collection<MailAddress> recipients;
+
+    /**
+     * Constructs a mail for a recipient.
+     * @param mail original mail, not null
+     * @param message copy of the message for the recipient, not null
+     * @param recipient the recipient, not null
+     */
+    RecipientMail(Mail mail, MimeMessage message, MailAddress recipient) {
+        this.mail = mail;
+        this.message = message;
+        this.recipients = Collections.singletonList(recipient);
+    }
+
+    public MimeMessage getMessage() throws MessagingException {
+        return message;
+    }
+
+    public void setMessage(MimeMessage message) {
+        this.message = message;
+    }
+
+    public long getMessageSize() throws MessagingException {
+        return mail.getMessageSize();
+    }
+
+    public String getName() {
+        return mail.getName();
+    }
+
+    public void setName(String name) {
+        mail.setName(name);
+    }
+
+    public Collection<MailAddress> getRecipients() {
+        return recipients;
+    }
+
+    public void setRecipients(Collection<MailAddress> recipients) {
+        this.recipients = new ArrayList<MailAddress>(recipients);
+    }
+
+    public MailAddress getSender() {
+        return mail.getSender();
+    }
+
+    public String getState() {
+        return mail.getState();
+    }
+
+    public void setState(String state) {
+        mail.setState(state);
+    }
+
+    public String getRemoteHost() {
+        return mail.getRemoteHost();
+    }
+
+    public String getRemoteAddr() {
+        return mail.getRemoteAddr();
+    }
+
+    public String getErrorMessage() {
+        return mail.getErrorMessage();
+    }
+
+    public void setErrorMessage(String msg) {
+        mail.setErrorMessage(msg);
+    }
+
+    public Serializable getAttribute(String name) {
+        return mail.getAttribute(name);
+    }
+
+    public Iterator<String> getAttributeNames() {
+        return mail.getAttributeNames();
+    }
+
+    public boolean hasAttributes() {
+        return mail.hasAttributes();
+    }
+
+    public Serializable removeAttribute(String name) {
+        return mail.removeAttribute(name);
+    }
+
+    public void removeAllAttributes() {
+        mail.removeAllAttributes();
+    }
+
+    public Serializable setAttribute(String name, Serializable object) {
+        return mail.setAttribute(name, object);
+    }
+
+    public Date getLastUpdated() {
+        return mail.getLastUpdated();
+    }
+
+    public void setLastUpdated(Date lastUpdated) {
+        mail.setLastUpdated(lastUpdated);
+    }
+}
@@ -0,0 +1,138 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.mailet.MailAddress;
+import org.apache.mailet.MailetContext;
+import org.apache.mailet.MailetContext.LogLevel;
+
+/**
+ * <p>
+ * Collects the redirections made for all the recipients of a message,
+ * so that a single mail is sent for each distinct sender and message.
+ * As <a href='http://tools.ietf.org/html/rfc5228#section-4.2'>RFC 5228</a>
+ * permits, separate redirects of a message are combined into a single 
+ * submission with many envelope recipients. A destination redirected to
+ * more than once receives the message once.
+ * </p>
+ * <p>
+ * Only redirects of the same message instance are combined, and each 
+ * message is sent as it is when the batch is flushed. The batch therefore
+ * suits only messages which are not altered for individual recipients, 
+ * for example by adding a delivery header. Redirections added once the 
+ * batch has been flushed, such as replies sent asynchronously, are sent
+ * as they are made.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Redirections may safely be added concurrently by multiple threads.
+ * </p>
+ */
+final class RedirectBatch {
+
+    /** Redirections indexed by sender and message, in order of addition */
+    private final Map<List<Object>, Redirection> redirections = new LinkedHashMap<List<Object>, Redirection>();
+
+    /** Sends redirections once the batch has been flushed, otherwise null */
+    private MailetContext flushed;
+
+    /**
+     * Adds redirections of a message on behalf of a recipient.
+     * @param recipient the recipient whose script redirected, not null
+     * @param sender possibly null
+     * @param destinations not null
+     * @param mail the message redirected, not null
+     * @throws MessagingException when the batch has been flushed 
+     * and the message cannot be sent
+     */
+    void add(MailAddress recipient, MailAddress sender, Collection<MailAddress> destinations, 
+            MimeMessage mail) throws MessagingException {
+        final List<Object> key = Arrays.<Object>asList(sender, mail);
+        final MailetContext context;
+        synchronized (redirections) {
+            context = flushed;
+            if (context == null) {
+                Redirection redirection = redirections.get(key);
+                if (redirection == null) {
+                    redirection = new Redirection(sender, mail);
+                    redirections.put(key, redirection);
+                }
+                redirection.destinations.addAll(destinations);
+                redirection.recipients.add(recipient);
+            }
+        }
+        if (context != null) {
+            context.sendMail(sender, destinations, mail);
+        }
+    }
+
+    /**
+     * Sends a mail for each distinct sender and message.
+     * Sending continues after a failure.
+     * @param context not null
+     * @return the recipients whose redirections could not be sent, 
+     * not null possibly empty
+     */
+    Collection<MailAddress> flush(MailetContext context) {
+        final List<Redirection> batch;
+        synchronized (redirections) {
+            batch = new ArrayList<Redirection>(redirections.values());
+            redirections.clear();
+            flushed = context;
+        }
+        final Collection<MailAddress> failures = new LinkedHashSet<MailAddress>();
+        for (final Redirection redirection : batch) {
+            try {
+                context.sendMail(redirection.sender, redirection.destinations, redirection.message);
+            } catch (MessagingException ex) {
+                context.log(LogLevel.ERROR, "Error while redirecting mail.", ex);
+                failures.addAll(redirection.recipients);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Redirections sharing a sender and message.
+     */
+    private static final class Redirection {
+        private final MailAddress sender;
+        private final MimeMessage message;
+        /** Distinct destinations in order of addition */
+        private final Collection<MailAddress> destinations = new LinkedHashSet<MailAddress>();
+        /** Recipients whose scripts redirected */
+        private final Collection<MailAddress> recipients = new LinkedHashSet<MailAddress>();
+
+        private Redirection(MailAddress sender, MimeMessage message) {
+            this.sender = sender;
+            this.message = message;
+        }
+    }
+}
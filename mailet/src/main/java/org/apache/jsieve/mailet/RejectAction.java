@@ -18,10 +18,10 @@
  ****************************************************************/
 package org.apache.jsieve.mailet;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.mail.Address;
 import javax.mail.MessagingException;
@@ -33,21 +33,59 @@ import org.apache.jsieve.mail.Action;
 import org.apache.jsieve.mail.ActionReject;
 import org.apache.mailet.Mail;
 import org.apache.mailet.MailAddress;
-import org.apache.jsieve.mailet.mdn.ActionModeAutomatic;
-import org.apache.jsieve.mailet.mdn.Disposition;
-import org.apache.jsieve.mailet.mdn.DispositionModifier;
-import org.apache.jsieve.mailet.mdn.MDNFactory;
-import org.apache.jsieve.mailet.mdn.ModifierError;
-import org.apache.jsieve.mailet.mdn.SendingModeAutomatic;
-import org.apache.jsieve.mailet.mdn.TypeDeleted;
+import org.apache.jsieve.mailet.mdn.MDNGenerator;
 
 /**
  * Performs the rejection of a mail, with a reply to the sender. 
+ * <p>
+ * Replies are created by a shared {@link MDNGenerator}, so that the name of 
+ * the reporting user agent is resolved once rather than for every rejection. 
+ * When an executor is given, replies are submitted by the executor so 
+ * that delivery does not wait for them to be sent.
+ * </p>
  * <h4>Thread Safety</h4>
  * <p>An instance maybe safe accessed concurrently by multiple threads.</p>
  */
 public class RejectAction implements MailAction {
 
+    private final MDNGenerator generator;
+
+    private final Executor executor;
+
+    /**
+     * Constructs an action sending replies as they are created.
+     */
+    public RejectAction() {
+        this(new MDNGenerator(), null);
+    }
+
+    /**
+     * Constructs an action.
+     * @param generator creates replies, not null
+     * @param executor submits replies, or null to send replies 
+     * as they are created
+     */
+    public RejectAction(MDNGenerator generator, Executor executor) {
+        this.generator = generator;
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the generator creating replies.
+     * @return not null
+     */
+    public MDNGenerator getGenerator() {
+        return generator;
+    }
+
+    /**
+     * Gets the executor submitting replies.
+     * @return executor, or null when replies are sent as they are created
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
     public void execute(Action action, Mail mail, ActionContext context)
             throws MessagingException {
         if (action instanceof ActionReject) {
@@ -76,25 +114,6 @@ public class RejectAction implements MailAction {
         ActionUtils.detectAndHandleLocalLooping(aMail, context, "reject");
 
         // Create the MDN part
-        StringBuilder humanText = new StringBuilder(128);
-        humanText.append("This message was refused by the recipient's mail filtering program.");
-        humanText.append("\r\n");
-        humanText.append("The reason given was:");
-        humanText.append("\r\n");
-        humanText.append("\r\n");
-        humanText.append(anAction.getMessage());
-
-        String reporting_UA_name = null;
-        try
-        {
-            reporting_UA_name = InetAddress.getLocalHost()
-                    .getCanonicalHostName();
-        }
-        catch (UnknownHostException ex)
-        {
-            reporting_UA_name = "localhost";
-        }
-
         String reporting_UA_product = context.getServerInfo();
 
         String[] originalRecipients = aMail.getMessage().getHeader(
@@ -110,13 +129,9 @@ public class RejectAction implements MailAction {
 
         String original_message_id = aMail.getMessage().getMessageID();
 
-        DispositionModifier modifiers[] = {new ModifierError()};
-        Disposition disposition = new Disposition(new ActionModeAutomatic(),
-                new SendingModeAutomatic(), new TypeDeleted(), modifiers);
-
-        MimeMultipart multiPart = MDNFactory.create(humanText.toString(),
-                reporting_UA_name, reporting_UA_product, original_recipient,
-                final_recipient, original_message_id, disposition);
+        MimeMultipart multiPart = generator.createRejection(anAction.getMessage(),
+                reporting_UA_product, original_recipient, final_recipient, 
+                original_message_id);
 
         // Send the message
         MimeMessage reply = (MimeMessage) aMail.getMessage().reply(false);
@@ -131,7 +146,7 @@ public class RejectAction implements MailAction {
                 recipients.add(new MailAddress(
                         (InternetAddress) recipientAddress));
             }
-            context.post(null, recipients, reply);
+            submit(recipients, reply, context);
         }
         else
         {
@@ -141,4 +156,33 @@ public class RejectAction implements MailAction {
         aMail.setState(Mail.GHOST);
     }
 
+    /**
+     * Sends a reply, by the executor when there is one.
+     * Failures to send by the executor are logged.
+     * @param recipients not null
+     * @param reply not null
+     * @param context not null
+     * @throws MessagingException
+     */
+    private void submit(final Collection<MailAddress> recipients, final MimeMessage reply, 
+            final ActionContext context) throws MessagingException {
+        if (executor != null) {
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            context.post(null, recipients, reply);
+                        } catch (MessagingException ex) {
+                            context.getLog().warn("Unable to send reject MDN.", ex);
+                        }
+                    }
+                });
+                return;
+            } catch (RejectedExecutionException ex) {
+                // Send now
+            }
+        }
+        context.post(null, recipients, reply);
+    }
+
 }
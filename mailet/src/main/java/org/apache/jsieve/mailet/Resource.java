@@ -0,0 +1,59 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.InputStream;
+
+/**
+ * <p>The content of a located resource together with its version.</p>
+ * @see VersionedResourceLocator
+ */
+public final class Resource {
+
+    private final InputStream content;
+
+    private final String version;
+
+    /**
+     * Constructs a resource.
+     * @param content the content, not null
+     * @param version version token for the content, 
+     * or null when unknown
+     */
+    public Resource(InputStream content, String version) {
+        this.content = content;
+        this.version = version;
+    }
+
+    /**
+     * Gets the content. The caller is responsible for closing the stream.
+     * @return not null
+     */
+    public InputStream getContent() {
+        return content;
+    }
+
+    /**
+     * Gets the version of the content.
+     * @return version token, or null when unknown
+     */
+    public String getVersion() {
+        return version;
+    }
+}
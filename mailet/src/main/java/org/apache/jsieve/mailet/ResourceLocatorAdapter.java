@@ -0,0 +1,126 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <p>Adapts a {@link ResourceLocator} to {@link VersionedResourceLocator}.</p>
+ * <p>
+ * A plain locator cannot report versions, so each resource is read in full 
+ * and its version is a digest of its content. This saves the caller from
+ * processing unchanged resources again, but not from reading them.
+ * </p>
+ */
+public class ResourceLocatorAdapter implements VersionedResourceLocator {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ResourceLocator locator;
+
+    /**
+     * Constructs an adapter.
+     * @param locator not null
+     */
+    public ResourceLocatorAdapter(ResourceLocator locator) {
+        this.locator = locator;
+    }
+
+    /**
+     * Answers the given locator as a versioned locator, adapting it when
+     * necessary.
+     * @param locator possibly null
+     * @return the locator when versioned, an adapter for the locator 
+     * otherwise, or null when the locator is null
+     */
+    public static VersionedResourceLocator adapt(ResourceLocator locator) {
+        if (locator == null || locator instanceof VersionedResourceLocator) {
+            return (VersionedResourceLocator) locator;
+        }
+        return new ResourceLocatorAdapter(locator);
+    }
+
+    /**
+     * @see ResourceLocator#get(String)
+     */
+    public InputStream get(String uri) throws IOException {
+        return locator.get(uri);
+    }
+
+    /**
+     * The version is unknown until the resource is read.
+     * @see VersionedResourceLocator#getVersion(String)
+     */
+    public String getVersion(String uri) throws IOException {
+        return null;
+    }
+
+    /**
+     * @see VersionedResourceLocator#getResource(String)
+     */
+    public Resource getResource(String uri) throws IOException {
+        final byte[] content = read(locator.get(uri));
+        return new Resource(new ByteArrayInputStream(content), digest(content));
+    }
+
+    /**
+     * @see VersionedResourceLocator#getIfModified(String, String)
+     */
+    public Resource getIfModified(String uri, String version) throws IOException {
+        final Resource resource = getResource(uri);
+        if (version != null && version.equals(resource.getVersion())) {
+            return null;
+        }
+        return resource;
+    }
+
+    private byte[] read(InputStream ins) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = ins.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            ins.close();
+        }
+    }
+
+    private String digest(byte[] content) throws IOException {
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-1 is not supported: " + e.getMessage());
+        }
+        final char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
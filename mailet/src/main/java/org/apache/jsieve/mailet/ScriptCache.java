@@ -0,0 +1,159 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Bounded cache of compiled Sieve scripts indexed by script URI.</p>
+ * <p>
+ * The cache is bounded both by the number of entries and by their 
+ * total weight, the length of their sources. When either bound is 
+ * exceeded, the least recently used entries are evicted.
+ * Entries may also be invalidated individually, for example when 
+ * a user uploads a new script.
+ * </p>
+ * <p>
+ * Scripts which cannot be compiled are cached as quarantined entries,
+ * see {@link CachedScript#isQuarantined()}.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * Instances may safely be accessed concurrently by multiple threads.
+ * Scripts should be compiled outside the cache, so that the cache is 
+ * locked only briefly.
+ * </p>
+ */
+public class ScriptCache {
+
+    /** Default maximum number of entries */
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    /** Default maximum total weight in bytes */
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 16 * 1024 * 1024;
+
+    private final int maximumSize;
+
+    private final long maximumWeight;
+
+    /** Entries in access order, guarded by this */
+    private final LinkedHashMap<String, CachedScript> entries;
+
+    /** Total weight of all entries, guarded by this */
+    private long weight;
+
+    /**
+     * Constructs a cache with default bounds.
+     */
+    public ScriptCache() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_MAXIMUM_WEIGHT);
+    }
+
+    /**
+     * Constructs a cache.
+     * @param maximumSize maximum number of entries, 
+     * zero to disable caching
+     * @param maximumWeight maximum total length of cached sources in bytes
+     */
+    public ScriptCache(int maximumSize, long maximumWeight) {
+        this.maximumSize = maximumSize;
+        this.maximumWeight = maximumWeight;
+        this.entries = new LinkedHashMap<String, CachedScript>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets the maximum number of entries.
+     * @return maximum size
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Gets the maximum total weight of the entries.
+     * @return maximum weight in bytes
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * Gets the cached script for the given URI.
+     * @param uri identifies the Sieve script, not null
+     * @return the entry, or null when not cached
+     */
+    public synchronized CachedScript get(String uri) {
+        return entries.get(uri);
+    }
+
+    /**
+     * Caches a script, replacing any entry for the same URI and evicting 
+     * the least recently used entries when the bounds are exceeded.
+     * Scripts weighing more than the maximum weight are not cached.
+     * @param uri identifies the Sieve script, not null
+     * @param script not null
+     */
+    public synchronized void put(String uri, CachedScript script) {
+        remove(uri);
+        if (maximumSize <= 0 || script.getWeight() > maximumWeight) {
+            return;
+        }
+        entries.put(uri, script);
+        weight += script.getWeight();
+        final Iterator<Map.Entry<String, CachedScript>> it = entries.entrySet().iterator();
+        while ((entries.size() > maximumSize || weight > maximumWeight) && it.hasNext()) {
+            final CachedScript eldest = it.next().getValue();
+            it.remove();
+            weight -= eldest.getWeight();
+        }
+    }
+
+    /**
+     * Discards any cached script for the given URI.
+     * @param uri identifies the Sieve script, not null
+     */
+    public synchronized void invalidate(String uri) {
+        remove(uri);
+    }
+
+    /**
+     * Discards all cached scripts.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Gets the number of cached scripts.
+     * @return number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void remove(String uri) {
+        final CachedScript removed = entries.remove(uri);
+        if (removed != null) {
+            weight -= removed.getWeight();
+        }
+    }
+}
@@ -19,36 +19,32 @@
 package org.apache.jsieve.mailet;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Enumeration;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
-import javax.mail.Header;
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.james.mime4j.dom.address.AddressList;
-import org.apache.james.mime4j.dom.address.Mailbox;
-import org.apache.james.mime4j.dom.address.MailboxList;
-import org.apache.james.mime4j.dom.field.ParseException;
-import org.apache.james.mime4j.field.address.DefaultAddressParser;
 import org.apache.jsieve.SieveContext;
+import org.apache.jsieve.comparators.AsciiCasemap;
+import org.apache.jsieve.comparators.ComparatorNames;
+import org.apache.jsieve.comparators.MatchType;
 import org.apache.jsieve.exception.InternetAddressException;
 import org.apache.jsieve.exception.SieveException;
 import org.apache.jsieve.mail.Action;
-import org.apache.jsieve.mail.AddressImpl;
 import org.apache.jsieve.mail.MailAdapter;
-import org.apache.jsieve.mail.MailUtils;
 import org.apache.jsieve.mail.SieveMailException;
+import org.apache.jsieve.mail.optional.BodyAccessors;
+import org.apache.jsieve.mail.optional.BodyMatch;
+import org.apache.jsieve.mail.optional.BodyTransform;
 import org.apache.jsieve.mail.optional.EnvelopeAccessors;
+import org.apache.jsieve.tests.optional.BodyArguments;
 import org.apache.mailet.Mail;
 import org.apache.mailet.MailAddress;
 import org.apache.mailet.MailetContext;
@@ -58,7 +54,7 @@ import org.apache.mailet.MailetContext;
  * for use in a Mailet environment.
  * </p>
  */
-public class SieveMailAdapter implements MailAdapter, EnvelopeAccessors, ActionContext
+public class SieveMailAdapter implements MailAdapter, BodyAccessors, EnvelopeAccessors, ActionContext
 {
     private static final Log LOG = LogFactory.getLog(SieveMailAdapter.class);
     
@@ -81,7 +77,25 @@ public class SieveMailAdapter implements MailAdapter, EnvelopeAccessors, ActionC
     
     private final Poster poster;
 
-    private String contentText;
+    /**
+     * View of the message, possibly shared with other adapters.
+     */
+    private MessageView view;
+
+    /**
+     * When true, actions are left for {@link #dispatchActions()}.
+     */
+    private boolean deferActions = false;
+
+    /**
+     * Collects redirections, or null to send each as it is made.
+     */
+    private RedirectBatch redirects;
+
+    /**
+     * The recipient on whose behalf redirections are collected.
+     */
+    private MailAddress redirectingRecipient;
     
     /**
      * Constructor for SieveMailAdapter.
@@ -90,11 +104,25 @@ public class SieveMailAdapter implements MailAdapter, EnvelopeAccessors, ActionC
      * @param aMailetContext
      */
     public SieveMailAdapter(final Mail aMail, final MailetContext aMailetContext, final ActionDispatcher dispatcher, final Poster poster)
+    {
+        this(aMail, aMailetContext, dispatcher, poster, null);
+    }
+    
+    /**
+     * Constructor for SieveMailAdapter sharing a view of the message.
+     * 
+     * @param aMail
+     * @param aMailetContext
+     * @param view view of the message of <code>aMail</code>,
+     * or null to create a view for this adapter
+     */
+    public SieveMailAdapter(final Mail aMail, final MailetContext aMailetContext, final ActionDispatcher dispatcher, final Poster poster, final MessageView view)
     {
         this.poster = poster;
         this.dispatcher = dispatcher;
         setMail(aMail);
         setMailetContext(aMailetContext);
+        this.view = view;
     }
     
   
@@ -111,6 +139,19 @@ public class SieveMailAdapter implements MailAdapter, EnvelopeAccessors, ActionC
     {
         return getMail().getMessage();
     }
+    /**
+     * Returns the view of the message, creating it when necessary.
+     * 
+     * @return MessageView, not null
+     */
+    protected MessageView getView() throws MessagingException
+    {
+        if (view == null)
+        {
+            view = new MessageView(getMessage());
+        }
+        return view;
+    }
     /**
      * Returns the List of actions.
      * 
@@ -153,10 +194,42 @@ public class SieveMailAdapter implements MailAdapter, EnvelopeAccessors, ActionC
     {
         getActions().add(action);
     }
+    /**
+     * Is execution of actions deferred?
+     * @return true when {@link #executeActions()} leaves actions
+     * to be applied by {@link #dispatchActions()}, false otherwise
+     */
+    public boolean isDeferActions()
+    {
+        return deferActions;
+    }
+    /**
+     * Sets whether execution of actions is deferred. 
+     * This allows a script to be evaluated on one thread and 
+     * its actions applied later, in a chosen order.
+     * @param deferActions true when {@link #executeActions()} should
+     * leave actions to be applied by {@link #dispatchActions()},
+     * false otherwise
+     */
+    public void setDeferActions(boolean deferActions)
+    {
+        this.deferActions = deferActions;
+    }
     /**
      * @see org.apache.jsieve.mail.MailAdapter#executeActions()
      */
     public void executeActions() throws SieveException
+    {
+        if (!deferActions)
+        {
+            dispatchActions();
+        }
+    }
+    /**
+     * Applies the accumulated actions.
+     * @throws SieveException
+     */
+    public void dispatchActions() throws SieveException
     {
         final List<Action> actions = getActions();
         for (final Action action: actions) {
@@ -196,8 +269,7 @@ public class SieveMailAdapter implements MailAdapter, EnvelopeAccessors, ActionC
     {
         try
         {
-            String[] headers = getMessage().getHeader(name);
-            return (headers == null ? new ArrayList<String>(0) : Arrays.asList(headers));
+            return getView().getHeader(name);
         }
         catch (MessagingException ex)
         {
@@ -210,15 +282,9 @@ public class SieveMailAdapter implements MailAdapter, EnvelopeAccessors, ActionC
      */
     public List<String> getHeaderNames() throws SieveMailException
     {
-        Set<String> headerNames = new HashSet<String>();
         try
         {
-            Enumeration allHeaders = getMessage().getAllHeaders();
-            while (allHeaders.hasMoreElements())
-            {
-                headerNames.add(((Header) allHeaders.nextElement()).getName());
-            }
-            return new ArrayList<String>(headerNames);
+            return getView().getHeaderNames();
         }
         catch (MessagingException ex)
         {
@@ -231,7 +297,14 @@ public class SieveMailAdapter implements MailAdapter, EnvelopeAccessors, ActionC
      */
     public List<String> getMatchingHeader(String name) throws SieveMailException
     {
-        return MailUtils.getMatchingHeader(this, name);
+        try
+        {
+            return getView().getMatchingHeader(name);
+        }
+        catch (MessagingException ex)
+        {
+            throw new SieveMailException(ex);
+        }
     }
     
     /**
@@ -339,7 +412,7 @@ public class SieveMailAdapter implements MailAdapter, EnvelopeAccessors, ActionC
     protected void setMail(Mail mail)
     {
         fieldMail = mail;
-        contentText = null;
+        view = null;
     }
     
     /**
@@ -391,18 +464,11 @@ public class SieveMailAdapter implements MailAdapter, EnvelopeAccessors, ActionC
         }
     }
     
-    public Address[] parseAddresses(String arg) throws SieveMailException, InternetAddressException {
+    public Address[] parseAddresses(String headerName) throws SieveMailException, InternetAddressException {
         try {
-            final MailboxList list = new AddressList(DefaultAddressParser.DEFAULT.parseAddressList(arg), true).flatten();
-            final int size = list.size();
-            final Address[] results = new Address[size];
-            for (int i=0;i<size;i++) {
-                final Mailbox mailbox = list.get(i);
-                results[i] = new AddressImpl(mailbox.getLocalPart(), mailbox.getDomain());
-            }
-            return null;
-        } catch (ParseException e) {
-            throw new InternetAddressException(e);
+            return getView().getAddresses(headerName);
+        } catch (MessagingException e) {
+            throw new SieveMailException(e);
         }
     }
 
@@ -417,17 +483,53 @@ public class SieveMailAdapter implements MailAdapter, EnvelopeAccessors, ActionC
         poster.post(uri, mail);
     }
     
-    public void post(MailAddress sender, Collection recipients, MimeMessage mail) throws MessagingException {
-        getMailetContext().sendMail(sender, recipients, mail);
+    public void post(MailAddress sender, Collection<MailAddress> recipients, MimeMessage mail) throws MessagingException {
+        if (redirects == null) {
+            getMailetContext().sendMail(sender, recipients, mail);
+        } else {
+            redirects.add(redirectingRecipient, sender, recipients, mail);
+        }
+    }
+
+    /**
+     * Collects the mails posted by this adapter for sending later,
+     * so that they may be combined with those of other recipients.
+     * @param redirects collects redirections, or null to send each as it is made
+     * @param recipient the recipient on whose behalf mail is posted
+     */
+    void setRedirects(RedirectBatch redirects, MailAddress recipient) {
+        this.redirects = redirects;
+        this.redirectingRecipient = recipient;
     }
 
 
+    /**
+     * Searches the body once for the given phrase. The body test uses
+     * {@link #matchBody(BodyMatch)}, so the result is not memoized.
+     * @see org.apache.jsieve.mail.MailAdapter#isInBodyText(String)
+     */
     public boolean isInBodyText(String phraseCaseInsensitive) throws SieveMailException {
         try {
-            if (contentText == null) {
-                contentText = getMessage().getContent().toString().toLowerCase();
-            }
-            return contentText.contains(phraseCaseInsensitive);
+            return getView().scanBody(new BodyArguments(ComparatorNames.ASCII_CASEMAP_COMPARATOR, new AsciiCasemap(),
+                    MatchType.CONTAINS, BodyTransform.TEXT, Collections.<String>emptyList(), 
+                    Collections.singletonList(phraseCaseInsensitive)));
+        } catch (SieveMailException e) {
+            throw e;
+        } catch (SieveException e) {
+            throw new SieveMailException(e);
+        } catch (MessagingException e) {
+            throw new SieveMailException(e);
+        } catch (IOException e) {
+            throw new SieveMailException(e);
+        }
+    }
+
+    /**
+     * @see org.apache.jsieve.mail.optional.BodyAccessors#matchBody(BodyMatch)
+     */
+    public boolean matchBody(BodyMatch match) throws SieveException {
+        try {
+            return getView().matchBody(match);
         } catch (MessagingException e) {
             throw new SieveMailException(e);
         } catch (IOException e) {
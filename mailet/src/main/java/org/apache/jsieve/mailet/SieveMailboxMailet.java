@@ -20,15 +20,32 @@
 package org.apache.jsieve.mailet;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Scanner;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.activation.DataHandler;
 import javax.mail.Header;
@@ -40,10 +57,13 @@ import javax.mail.internet.MimeMultipart;
 import javax.mail.util.ByteArrayDataSource;
 
 import org.apache.commons.logging.Log;
+import org.apache.jsieve.CompiledScript;
 import org.apache.jsieve.ConfigurationManager;
 import org.apache.jsieve.SieveConfigurationException;
 import org.apache.jsieve.SieveFactory;
 import org.apache.jsieve.exception.SieveException;
+import org.apache.jsieve.mail.ActionReject;
+import org.apache.jsieve.mailet.mdn.MDNGenerator;
 import org.apache.jsieve.parser.generated.ParseException;
 import org.apache.jsieve.parser.generated.TokenMgrError;
 import org.apache.mailet.Mail;
@@ -63,7 +83,113 @@ import org.apache.mailet.base.RFC2822Headers;
  * <td>
  * Enables verbose logging.
  * </td></tr>
+ * <tr><td>scriptCacheSize</td><td>No - defaults to 1000</td><td>number of compiled scripts to retain, 0 to disable</td>
+ * <td>
+ * Bounds the number of entries in the {@link ScriptCache}.
+ * </td></tr>
+ * <tr><td>scriptCacheWeight</td><td>No - defaults to 16777216</td><td>total length of cached script sources in bytes</td>
+ * <td>
+ * Bounds the total weight of the {@link ScriptCache}.
+ * </td></tr>
+ * <tr><td>parallelism</td><td>No - defaults to 0</td><td>number of recipients evaluated concurrently</td>
+ * <td>
+ * Values greater than 1 enable concurrent evaluation.
+ * </td></tr>
+ * <tr><td>virtualThreads</td><td>No - defaults to false</td><td>true (ignoring case) to enable, otherwise disable</td>
+ * <td>
+ * Evaluates on virtual threads, when the platform provides them.
+ * </td></tr>
+ * <tr><td>bodyScanLimit</td><td>No - defaults to no limit</td><td>number of bytes of body matched</td>
+ * <td>
+ * Bounds the work done by the <code>body</code> test on large messages.
+ * The body beyond the limit is not matched.
+ * </td></tr>
+ * <tr><td>reorderTests</td><td>No - defaults to false</td><td>true (ignoring case) to enable, otherwise disable</td>
+ * <td>
+ * Executes the tests of <code>allof</code> and <code>anyof</code> in order of
+ * estimated cost and observed selectivity, so that cheap tests may decide
+ * the result before <code>body</code> is matched.
+ * </td></tr>
+ * <tr><td>batchDeliveries</td><td>No - defaults to false</td><td>true (ignoring case) to enable, otherwise disable</td>
+ * <td>
+ * Collects the mailbox deliveries for all recipients of a mail, and posts
+ * them by a single call to a {@link BatchPoster}.
+ * </td></tr>
+ * <tr><td>coalesceRedirects</td><td>No - defaults to false</td><td>true (ignoring case) to enable, otherwise disable</td>
+ * <td>
+ * Collects the redirections for all recipients of a mail, and sends
+ * a single mail to all distinct destinations. Ignored when 
+ * <code>addDeliveryHeader</code> is set.
+ * </td></tr>
+ * <tr><td>asyncReports</td><td>No - defaults to false</td><td>true (ignoring case) to enable, otherwise disable</td>
+ * <td>
+ * Sends the replies to rejected mail from a background thread, 
+ * so that delivery does not wait for them. Once 1024 replies are queued,
+ * further replies are sent as they are created.
+ * </td></tr>
+ * <tr><td>failureNoticeInterval</td><td>No - defaults to 3600000</td><td>milliseconds, 0 to notify every failure</td>
+ * <td>
+ * Bounds the rate at which each user is notified of failures of their script.
+ * </td></tr>
  * </table>
+ * <p>
+ * Compiled scripts are cached by URI, and are read and compiled again only
+ * when {@link VersionedResourceLocator#getIfModified(String, String)} reports
+ * a change. A plain {@link ResourceLocator} is adapted by
+ * {@link ResourceLocatorAdapter}, so that its scripts are read for every mail
+ * but compiled only when their content changes.
+ * </p>
+ * <p>
+ * A single {@link MessageView} of each mail is shared by the evaluations for
+ * all its recipients, so that headers and addresses are extracted, and each 
+ * <code>body</code> test matched, once per mail. The delivery header for each 
+ * recipient is overlaid on the shared view. The body is matched as the 
+ * message is streamed, see {@link BodyScanner}. The script for each 
+ * recipient is evaluated against the mail addressed to that recipient alone,
+ * since actions such as <code>fileinto</code> and <code>redirect</code> 
+ * require a mail with a sole recipient.
+ * The message is copied once per mail, and each recipient is given an
+ * {@link OverlayMessage} of the copy, carrying its delivery header.
+ * </p>
+ * <p>
+ * When an {@link #setExecutor(Executor) executor} is set, or created for
+ * the <code>parallelism</code> init parameter, the scripts for the recipients
+ * of a mail are evaluated concurrently. At most <code>parallelism</code>
+ * evaluations are in progress at once; beyond that, evaluation falls back
+ * to the calling thread.
+ * The resulting actions are applied, and errors are collected, on the calling
+ * thread in recipient order, so the outcome does not depend on scheduling.
+ * The {@link Poster} and {@link ResourceLocator} must then be thread safe.
+ * </p>
+ * <p>
+ * When deliveries are batched, the messages filed for every recipient of a
+ * mail are collected and then posted together once all recipients have
+ * been processed. A {@link Poster} which is not a {@link BatchPoster} is
+ * adapted by {@link BatchPosterAdapter}, posting each delivery in turn.
+ * Recipients with deliveries which fail are treated as errors. Should the 
+ * whole batch fail, all recipients with deliveries in the batch are.
+ * </p>
+ * <p>
+ * When redirects are coalesced, the redirections for every recipient of
+ * a mail are collected and then sent as a single mail for each distinct
+ * sender, each destination receiving the mail once, see {@link RedirectBatch}.
+ * Since a combined mail cannot carry the delivery
+ * header of each recipient, on which loop detection relies, redirects are 
+ * not coalesced when a delivery header is added.
+ * </p>
+ * <p>
+ * Replies to rejected mail are created by a single {@link MDNGenerator},
+ * which resolves the name of the reporting user agent once. When a
+ * {@link #setReportExecutor(Executor) report executor} is set, or created for
+ * the <code>asyncReports</code> init parameter, replies are sent by it.
+ * </p>
+ * <p>
+ * A script which cannot be compiled is quarantined in the {@link ScriptCache}:
+ * the same version is not compiled again, and its failure is reported 
+ * immediately for each mail. A user is sent at most one notice of failure,
+ * carrying the mail, in each <code>failureNoticeInterval</code>; 
+ * other mail is stored directly in their INBOX.
+ * </p>
  */
 public class SieveMailboxMailet extends GenericMailet {
     
@@ -78,8 +204,12 @@ public class SieveMailboxMailet extends GenericMailet {
     private boolean resetReturnPath;
     /** Experimental */
     private Poster poster;
+    /** The poster, adapted when necessary */
+    private BatchPoster batchPoster;
     /** Experimental */
     private ResourceLocator locator;
+    /** The locator, adapted when necessary */
+    private VersionedResourceLocator versionedLocator;
     
     /** Indicates whether this mailet should log verbosely */
     private boolean verbose = false;
@@ -90,10 +220,63 @@ public class SieveMailboxMailet extends GenericMailet {
 
     private SieveFactory factory;
 
+    private ScriptCache scriptCache = new ScriptCache();
+
     private ActionDispatcher actionDispatcher;
 
     private Log log;
 
+    /** Evaluates recipients concurrently, or null to evaluate in turn */
+    private Executor executor;
+
+    /** Executor created by this mailet, shut down on destroy */
+    private ExecutorService ownedExecutor;
+
+    /** Maximum number of concurrent evaluations */
+    private int parallelism;
+
+    /** Bounds the number of concurrent evaluations */
+    private Semaphore permits;
+
+    /** The maximum number of bytes of body matched, or negative for no limit */
+    private long bodyScanLimit = MessageView.UNLIMITED;
+
+    /** Are the tests of allof and anyof reordered by cost? */
+    private boolean reorderTests;
+
+    /** Are the deliveries for all recipients of a mail posted together? */
+    private boolean batchDeliveries;
+
+    /** Are the redirections for all recipients of a mail sent together? */
+    private boolean coalesceRedirects;
+
+    /** Creates replies to rejected mail */
+    private final MDNGenerator reportGenerator = new MDNGenerator();
+
+    /** Sends replies to rejected mail, or null to send as they are created */
+    private Executor reportExecutor;
+
+    /** Report executor created by this mailet, shut down on destroy */
+    private ExecutorService ownedReportExecutor;
+
+    /** The number of replies queued by the report executor before further replies are sent at once */
+    private static final int REPORT_QUEUE_CAPACITY = 1024;
+
+    /** Milliseconds to wait on destroy for queued replies to be sent */
+    private static final long REPORT_SHUTDOWN_TIMEOUT = 30 * 1000;
+
+    /** Default minimum interval between notices of failure to a user */
+    public static final long DEFAULT_FAILURE_NOTICE_INTERVAL = 60 * 60 * 1000;
+
+    /** The number of users whose notices are tracked before expired entries are purged */
+    private static final int FAILURE_NOTICE_PURGE_SIZE = 1024;
+
+    /** Minimum interval between notices of failure to a user in milliseconds, 0 for none */
+    private long failureNoticeInterval = DEFAULT_FAILURE_NOTICE_INTERVAL;
+
+    /** Times of the last notices of failure indexed by user name */
+    private final ConcurrentMap<String, Long> failureNotices = new ConcurrentHashMap<String, Long>();
+
     /**
      * For SDI
      */
@@ -105,8 +288,8 @@ public class SieveMailboxMailet extends GenericMailet {
      */
     public SieveMailboxMailet(Poster poster, ResourceLocator locator) {
         this();
-        this.poster = poster;
-        this.locator = locator;
+        setPoster(poster);
+        setLocator(locator);
     }
 
     
@@ -120,6 +303,153 @@ public class SieveMailboxMailet extends GenericMailet {
      */
     public void setLocator(ResourceLocator locator) {
         this.locator = locator;
+        this.versionedLocator = ResourceLocatorAdapter.adapt(locator);
+    }
+
+    /**
+     * Gets the cache of compiled scripts.
+     * Entries may be invalidated when scripts are known to have changed.
+     * @return not null
+     */
+    public ScriptCache getScriptCache() {
+        return scriptCache;
+    }
+
+    /**
+     * For SDI
+     * @param scriptCache not null
+     */
+    public void setScriptCache(ScriptCache scriptCache) {
+        this.scriptCache = scriptCache;
+    }
+
+    /**
+     * Gets the executor used to evaluate recipients concurrently.
+     * @return the executor, or null when recipients are evaluated in turn
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * For SDI.
+     * Setting an executor enables concurrent evaluation of recipients.
+     * Unless set, parallelism defaults to the number of processors.
+     * @param executor executor, or null to evaluate recipients in turn
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+        if (executor != null && permits == null) {
+            setParallelism(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Gets the generator creating replies to rejected mail.
+     * The name of the reporting user agent may be resolved again by 
+     * {@link MDNGenerator#refreshReportingUAName()}.
+     * @return not null
+     */
+    public MDNGenerator getReportGenerator() {
+        return reportGenerator;
+    }
+
+    /**
+     * Gets the executor sending replies to rejected mail.
+     * @return the executor, or null when replies are sent as they are created
+     */
+    public Executor getReportExecutor() {
+        return reportExecutor;
+    }
+
+    /**
+     * For SDI.
+     * Setting an executor sends replies to rejected mail asynchronously.
+     * @param reportExecutor executor, or null to send replies as they are created
+     */
+    public void setReportExecutor(Executor reportExecutor) {
+        this.reportExecutor = reportExecutor;
+        if (actionDispatcher != null) {
+            actionDispatcher.getMethodMap().put(ActionReject.class, 
+                    new RejectAction(reportGenerator, reportExecutor));
+        }
+    }
+
+    /**
+     * Gets the minimum interval between notices of failure to a user.
+     * This property is set by init parameters.
+     * @return interval in milliseconds, or 0 when every failure is notified
+     */
+    public long getFailureNoticeInterval() {
+        return failureNoticeInterval;
+    }
+
+    /**
+     * Sets the minimum interval between notices of failure to a user.
+     * This property is set by init parameters.
+     * @param failureNoticeInterval interval in milliseconds, 
+     * or 0 to notify every failure
+     */
+    public void setFailureNoticeInterval(long failureNoticeInterval) {
+        this.failureNoticeInterval = failureNoticeInterval;
+    }
+
+    /**
+     * Gets the maximum number of concurrent evaluations.
+     * This property is set by init parameters.
+     * @return maximum number of concurrent evaluations
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the maximum number of concurrent evaluations.
+     * This property is set by init parameters.
+     * @param parallelism maximum number of concurrent evaluations
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        this.permits = new Semaphore(Math.max(parallelism, 1));
+    }
+
+    /**
+     * Gets the maximum number of bytes of body matched.
+     * This property is set by init parameters.
+     * @return maximum number of bytes, or negative for no limit
+     */
+    public long getBodyScanLimit() {
+        return bodyScanLimit;
+    }
+
+    /**
+     * Sets the maximum number of bytes of body matched.
+     * This property is set by init parameters.
+     * @param bodyScanLimit maximum number of bytes, or negative for no limit
+     */
+    public void setBodyScanLimit(long bodyScanLimit) {
+        this.bodyScanLimit = bodyScanLimit;
+    }
+
+    /**
+     * Are the tests of <code>allof</code> and <code>anyof</code> reordered
+     * by cost? This property is set by init parameters, and takes effect
+     * when the mailet is initialised.
+     * @return true when reordered, false when executed in script order
+     */
+    public boolean isReorderTests() {
+        return reorderTests;
+    }
+
+    /**
+     * Sets whether the tests of <code>allof</code> and <code>anyof</code>
+     * are reordered by cost. This property is set by init parameters,
+     * and takes effect when the mailet is initialised.
+     * @param reorderTests true to reorder, false to execute in script order
+     * @see ConfigurationManager#setReorderTests(boolean)
+     */
+    public void setReorderTests(boolean reorderTests) {
+        this.reorderTests = reorderTests;
     }
 
     public Poster getPoster() {
@@ -132,6 +462,48 @@ public class SieveMailboxMailet extends GenericMailet {
      */
     public void setPoster(Poster poster) {
         this.poster = poster;
+        this.batchPoster = BatchPosterAdapter.adapt(poster);
+    }
+
+    /**
+     * Are the deliveries for all recipients of a mail posted together?
+     * This property is set by init parameters.
+     * @return true when batched, false when each delivery is posted
+     * as it is made
+     */
+    public boolean isBatchDeliveries() {
+        return batchDeliveries;
+    }
+
+    /**
+     * Sets whether the deliveries for all recipients of a mail are 
+     * posted together. This property is set by init parameters.
+     * @param batchDeliveries true to batch, false to post each delivery
+     * as it is made
+     * @see BatchPoster
+     */
+    public void setBatchDeliveries(boolean batchDeliveries) {
+        this.batchDeliveries = batchDeliveries;
+    }
+
+    /**
+     * Are the redirections for all recipients of a mail sent together?
+     * This property is set by init parameters.
+     * @return true when coalesced, false when each redirection is sent
+     * as it is made
+     */
+    public boolean isCoalesceRedirects() {
+        return coalesceRedirects;
+    }
+
+    /**
+     * Sets whether the redirections for all recipients of a mail are
+     * sent together. This property is set by init parameters.
+     * @param coalesceRedirects true to coalesce, false to send each 
+     * redirection as it is made
+     */
+    public void setCoalesceRedirects(boolean coalesceRedirects) {
+        this.coalesceRedirects = coalesceRedirects;
     }
 
     /**
@@ -216,6 +588,10 @@ public class SieveMailboxMailet extends GenericMailet {
             }
             log = new CommonsLoggingAdapter(this, logLevel);
             configurationManager.setLog(log);
+            configurationManager.setReorderTests(reorderTests);
+            if (factory != null) {
+                factory.dispose();
+            }
             factory = configurationManager.build();
         } catch (SieveConfigurationException e) {
             throw new MessagingException("Failed to load standard Sieve configuration.", e);
@@ -264,19 +640,59 @@ public class SieveMailboxMailet extends GenericMailet {
             }
         }
 
-        for (Iterator<MailAddress> i = recipients.iterator(); i.hasNext();) {
-            MailAddress recipient = i.next();
-            try {
-                if (deliveryHeader != null) {
-                    // Add qmail's de facto standard Delivered-To header
-                    message.addHeader(deliveryHeader, recipient.toString());
-                }
+        // Headers, addresses and body matches are read once for all recipients
+        MessageView view = null;
+        try {
+            view = new MessageView(mail.getMessage(), bodyScanLimit);
+        } catch (MessagingException ex) {
+            // Leave each recipient to read the message and report the failure
+            if (isInfoLoggingOn()) {
+                log("Cannot read message headers.", ex);
+            }
+        }
+
+        // The message is copied once and overlaid for each recipient
+        final OverlayMessage shared = recipients.size() > 1 
+                ? new OverlayMessage(mail.getMessage()) : null;
+
+        final PostBatch batch = batchDeliveries ? new PostBatch(mail.getMessage()) : null;
+        // Redirects carrying the delivery header of a recipient cannot be combined
+        final RedirectBatch redirects = coalesceRedirects && deliveryHeader == null 
+                ? new RedirectBatch() : null;
 
-                storeMail(mail.getSender(), recipient, mail);
+        if (executor != null && recipients.size() > 1) {
+            serviceConcurrently(mail, shared, recipients, view, batch, redirects, errors);
+        } else {
+            for (Iterator<MailAddress> i = recipients.iterator(); i.hasNext();) {
+                MailAddress recipient = i.next();
+                try {
+                    if (deliveryHeader != null) {
+                        // Add qmail's de facto standard Delivered-To header
+                        message.addHeader(deliveryHeader, recipient.toString());
+                    }
 
-                if (deliveryHeader != null) {
-                    if (i.hasNext()) {
-                        // Remove headers but leave all placeholders
+                    MessageView recipientView = view;
+                    if (view != null && deliveryHeader != null) {
+                        recipientView = view.withHeader(deliveryHeader, recipient.toString());
+                    }
+
+                    // Each script sees the mail addressed to its recipient alone
+                    final Mail recipientMail = shared == null ? mail 
+                            : new RecipientMail(mail, recipientMessage(shared, recipient), recipient);
+                    if (batch == null && redirects == null) {
+                        storeMail(mail.getSender(), recipient, recipientMail, recipientView);
+                    } else {
+                        complete(evaluate(recipient, recipientMail, recipientView,
+                                batch == null ? poster : batch.posterFor(recipient), 
+                                redirects, false));
+                    }
+                } catch (Exception ex) {
+                    log("Error while storing mail.", ex);
+                    errors.add(recipient);
+                } finally {
+                    if (deliveryHeader != null) {
+                        // Remove headers but leave all placeholders, so that 
+                        // neither the next recipient nor a failed mail sees them
                         message.removeHeader(deliveryHeader);
                         headers = deliveredTo.getAllHeaders();
                         // And restore any original Delivered-To headers
@@ -287,9 +703,17 @@ public class SieveMailboxMailet extends GenericMailet {
                         }
                     }
                 }
-            } catch (Exception ex) {
-                log("Error while storing mail.", ex);
-                errors.add(recipient);
+            }
+        }
+
+        if (batch != null) {
+            flush(batch, errors);
+        }
+        if (redirects != null) {
+            for (final MailAddress recipient : redirects.flush(getMailetContext())) {
+                if (!errors.contains(recipient)) {
+                    errors.add(recipient);
+                }
             }
         }
 
@@ -310,6 +734,31 @@ public class SieveMailboxMailet extends GenericMailet {
         }
     }
 
+    /**
+     * Posts the deliveries collected for a mail.
+     * @param batch not null
+     * @param errors collects recipients whose mail could not be stored
+     */
+    private void flush(PostBatch batch, Collection<MailAddress> errors) {
+        final Collection<MailAddress> recipients = batch.getRecipients();
+        try {
+            for (final Delivery failure : batch.flush(batchPoster)) {
+                log("Error while storing mail into " + failure.getUri() 
+                        + " for " + failure.getRecipient() + ".");
+                if (!errors.contains(failure.getRecipient())) {
+                    errors.add(failure.getRecipient());
+                }
+            }
+        } catch (Exception ex) {
+            log("Error while storing mail.", ex);
+            for (final MailAddress recipient : recipients) {
+                if (!errors.contains(recipient)) {
+                    errors.add(recipient);
+                }
+            }
+        }
+    }
+
     /**
      * Return a string describing this mailet.
      * 
@@ -329,6 +778,35 @@ public class SieveMailboxMailet extends GenericMailet {
      */
     public void storeMail(MailAddress sender, MailAddress recipient,
             Mail mail) throws MessagingException {
+        storeMail(sender, recipient, mail, null);
+    }
+
+    /**
+     * 
+     * @param sender
+     * @param recipient
+     * @param mail
+     * @param view view of the message of <code>mail</code> shared
+     * between recipients, or null
+     * @throws MessagingException
+     */
+    public void storeMail(MailAddress sender, MailAddress recipient,
+            Mail mail, MessageView view) throws MessagingException {
+        storeMail(sender, recipient, mail, view, poster);
+    }
+
+    /**
+     * 
+     * @param sender
+     * @param recipient
+     * @param mail
+     * @param view view of the message of <code>mail</code> shared
+     * between recipients, or null
+     * @param poster delivers the mail filed for <code>recipient</code>, not null
+     * @throws MessagingException
+     */
+    public void storeMail(MailAddress sender, MailAddress recipient,
+            Mail mail, MessageView view, Poster poster) throws MessagingException {
         if (recipient == null) {
             throw new IllegalArgumentException(
                     "Recipient for mail to be spooled cannot be null.");
@@ -338,15 +816,223 @@ public class SieveMailboxMailet extends GenericMailet {
                     "Mail message to be spooled cannot be null.");
         }
         
-        sieveMessage(recipient, mail);
+        sieveMessage(recipient, mail, view, poster);
  
     }
     
     protected void sieveMessage(MailAddress recipient, Mail aMail) throws MessagingException {
+        sieveMessage(recipient, aMail, null);
+    }
+
+    protected void sieveMessage(MailAddress recipient, Mail aMail, MessageView view) throws MessagingException {
+        sieveMessage(recipient, aMail, view, poster);
+    }
+
+    protected void sieveMessage(MailAddress recipient, Mail aMail, MessageView view, Poster poster) throws MessagingException {
+        complete(evaluate(recipient, aMail, view, poster, null, false));
+    }
+
+    /**
+     * Evaluates the scripts for the recipients of a mail concurrently,
+     * then applies the results in recipient order.
+     * @param mail not null
+     * @param shared overlay of the message of the mail, not null
+     * @param recipients not null
+     * @param view shared view of the message, or null
+     * @param batch collects deliveries, or null to post each as it is made
+     * @param redirects collects redirections, or null to send each as it is made
+     * @param errors collects recipients whose mail could not be stored
+     */
+    private void serviceConcurrently(Mail mail, OverlayMessage shared, Collection<MailAddress> recipients,
+            MessageView view, PostBatch batch, RedirectBatch redirects, 
+            Collection<MailAddress> errors) {
+        final List<MailAddress> order = new ArrayList<MailAddress>(recipients);
+        final List<Future<Evaluation>> evaluations = new ArrayList<Future<Evaluation>>(order.size());
+        for (final MailAddress recipient : order) {
+            Future<Evaluation> evaluation;
+            try {
+                evaluation = submit(evaluation(mail, shared, recipient, view,
+                        batch == null ? poster : batch.posterFor(recipient), redirects));
+            } catch (Exception ex) {
+                evaluation = failed(ex);
+            }
+            evaluations.add(evaluation);
+        }
+        for (int i = 0; i < order.size(); i++) {
+            final MailAddress recipient = order.get(i);
+            try {
+                complete(evaluations.get(i).get());
+            } catch (ExecutionException ex) {
+                log("Error while storing mail.", ex.getCause());
+                errors.add(recipient);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                log("Error while storing mail.", ex);
+                errors.add(recipient);
+            } catch (Exception ex) {
+                log("Error while storing mail.", ex);
+                errors.add(recipient);
+            }
+        }
+    }
+
+    /**
+     * Prepares the evaluation for a recipient, which sees the mail
+     * addressed to it alone.
+     * @param mail not null
+     * @param shared overlay of the message of the mail, not null
+     * @param recipient not null
+     * @param view shared view of the message, or null
+     * @param poster delivers the mail filed for the recipient, not null
+     * @param redirects collects redirections, or null to send each as it is made
+     * @return evaluation with actions deferred, not null
+     * @throws MessagingException
+     */
+    private Callable<Evaluation> evaluation(final Mail mail, final OverlayMessage shared, 
+            final MailAddress recipient,
+            final MessageView view, final Poster poster, final RedirectBatch redirects) 
+            throws MessagingException {
+        if (recipient == null) {
+            throw new IllegalArgumentException(
+                    "Recipient for mail to be spooled cannot be null.");
+        }
+        if (mail.getMessage() == null) {
+            throw new IllegalArgumentException(
+                    "Mail message to be spooled cannot be null.");
+        }
+        final Mail recipientMail = new RecipientMail(mail, 
+                recipientMessage(shared, recipient), recipient);
+        final MessageView recipientView = view == null || deliveryHeader == null ? view 
+                : view.withHeader(deliveryHeader, recipient.toString());
+        return new Callable<Evaluation>() {
+            public Evaluation call() {
+                return evaluate(recipient, recipientMail, recipientView, poster, redirects, true);
+            }
+        };
+    }
+
+    /**
+     * Answers the message for a recipient. When a delivery header is 
+     * required, the recipient is given an overlay carrying it, rather than
+     * the shared message being altered.
+     * @param shared overlay of the message of the mail, not null
+     * @param recipient not null
+     * @return not null
+     * @throws MessagingException
+     */
+    private MimeMessage recipientMessage(OverlayMessage shared, MailAddress recipient) 
+            throws MessagingException {
+        if (deliveryHeader == null) {
+            return shared;
+        }
+        // Add qmail's de facto standard Delivered-To header to an overlay
+        final MimeMessage message = new OverlayMessage(shared);
+        message.addHeader(deliveryHeader, recipient.toString());
+        return message;
+    }
+
+    /**
+     * Submits an evaluation to the executor. When the maximum number of
+     * evaluations are already in progress, or the executor rejects it, the
+     * evaluation is run by the calling thread.
+     * @param evaluation not null
+     * @return future evaluation, not null
+     */
+    private Future<Evaluation> submit(Callable<Evaluation> evaluation) {
+        final Semaphore permits = this.permits;
+        if (permits.tryAcquire()) {
+            final FutureTask<Evaluation> task = new FutureTask<Evaluation>(evaluation) {
+                @Override
+                protected void done() {
+                    permits.release();
+                }
+            };
+            try {
+                executor.execute(task);
+                return task;
+            } catch (RejectedExecutionException ex) {
+                permits.release();
+            }
+        }
+        final FutureTask<Evaluation> task = new FutureTask<Evaluation>(evaluation);
+        task.run();
+        return task;
+    }
+
+    private static Future<Evaluation> failed(final Exception ex) {
+        final FutureTask<Evaluation> task = new FutureTask<Evaluation>(new Callable<Evaluation>() {
+            public Evaluation call() throws Exception {
+                throw ex;
+            }
+        });
+        task.run();
+        return task;
+    }
+
+    /**
+     * Evaluates the script for a recipient. 
+     * Failures are recorded, to be handled by {@link #complete(Evaluation)}.
+     * @param recipient not null
+     * @param aMail not null
+     * @param view view of the message, or null
+     * @param poster delivers the mail filed for the recipient, not null
+     * @param redirects collects redirections, or null to send each as it is made
+     * @param deferActions true when actions should be left 
+     * for {@link #complete(Evaluation)}, false to apply them immediately
+     * @return not null
+     */
+    private Evaluation evaluate(MailAddress recipient, Mail aMail, MessageView view, 
+            Poster poster, RedirectBatch redirects, boolean deferActions) {
+        final Evaluation evaluation = new Evaluation(recipient, aMail, poster);
+        try {
+            final String scriptUri = getScriptUri(recipient);
+            final CompiledScript script = getScript(scriptUri);
+            SieveMailAdapter aMailAdapter = new SieveMailAdapter(aMail,
+                    getMailetContext(), actionDispatcher, poster, view);
+            aMailAdapter.setLog(log);
+            aMailAdapter.setDeferActions(deferActions);
+            aMailAdapter.setRedirects(redirects, recipient);
+            // This logging operation is potentially costly
+            if (verbose) {
+                log("Evaluating " + aMailAdapter.toString() + "against \""
+                        + scriptUri + "\"");
+            }
+            factory.evaluate(aMailAdapter, script);
+            evaluation.adapter = aMailAdapter;
+        } catch (TokenMgrError ex) {
+            evaluation.failure = new SieveException(ex);
+        } catch (Exception ex) {
+            evaluation.failure = ex;
+        }
+        return evaluation;
+    }
+
+    /**
+     * Applies any deferred actions of an evaluation, or handles its failure.
+     * @param evaluation not null
+     * @throws MessagingException
+     */
+    private void complete(Evaluation evaluation) throws MessagingException {
+        final MailAddress recipient = evaluation.recipient;
+        final Mail aMail = evaluation.mail;
         String username = getUsername(recipient);
         try {
-            final InputStream ins = locator.get(getScriptUri(recipient));
-            sieveMessageEvaluate(recipient, aMail, ins);
+            try {
+                evaluation.dispatch();
+            } catch (SieveException ex) {
+                if (!isFailureNoticeDue(username)) {
+                    throw ex;
+                }
+                handleFailure(evaluation, ex);
+                recordFailureNotice(username);
+            }
+            catch (ParseException ex) {
+                if (!isFailureNoticeDue(username)) {
+                    throw ex;
+                }
+                handleFailure(evaluation, ex);
+                recordFailureNotice(username);
+            }
         } catch (Exception ex) {
             // SIEVE is a mail filtering protocol.
             // Rejecting the mail because it cannot be filtered
@@ -355,34 +1041,181 @@ public class SieveMailboxMailet extends GenericMailet {
             if (isInfoLoggingOn()) {
                 log("Cannot evaluate Sieve script. Storing mail in user INBOX.", ex);
             }
-            storeMessageInbox(username, aMail.getMessage());
+            if (evaluation.poster == poster) {
+                storeMessageInbox(username, aMail.getMessage());
+            } else {
+                storeMessageInbox(evaluation.poster, username, aMail.getMessage());
+            }
         }
     }
-    
-    private void sieveMessageEvaluate(MailAddress recipient, Mail aMail, InputStream ins) throws MessagingException, IOException {    
-            try {
-                SieveMailAdapter aMailAdapter = new SieveMailAdapter(aMail,
-                        getMailetContext(), actionDispatcher, poster);
-                aMailAdapter.setLog(log);
-                // This logging operation is potentially costly
-                if (verbose) {
-                    log("Evaluating " + aMailAdapter.toString() + "against \""
-                            + getScriptUri(recipient) + "\"");
+
+    /**
+     * Stores a notice of the failure of an evaluation, delivered as the mail
+     * filed for the recipient would have been.
+     * @param evaluation not null
+     * @param ex the failure, not null
+     * @throws MessagingException
+     * @throws IOException
+     */
+    private void handleFailure(Evaluation evaluation, Exception ex) 
+            throws MessagingException, IOException {
+        if (evaluation.poster == poster) {
+            handleFailure(evaluation.recipient, evaluation.mail, ex);
+        } else {
+            handleFailure(evaluation.recipient, evaluation.mail, ex, evaluation.poster);
+        }
+    }
+
+    /**
+     * Answers whether a user should be notified of a failure of their
+     * script. A notice is due when none has been recorded in the last
+     * {@link #getFailureNoticeInterval() interval}. Failures of mails 
+     * processed concurrently may each find a notice due.
+     * @param username not null
+     * @return true when a notice is due, false when the user 
+     * has been notified recently
+     */
+    private boolean isFailureNoticeDue(String username) {
+        final long interval = failureNoticeInterval;
+        if (interval <= 0) {
+            return true;
+        }
+        final Long last = failureNotices.get(username);
+        return last == null || System.currentTimeMillis() - last >= interval;
+    }
+
+    /**
+     * Records that a user has been notified of a failure of their script.
+     * Called once the notice has been stored, so that a notice which could
+     * not be stored is attempted again for the next failure.
+     * @param username not null
+     */
+    private void recordFailureNotice(String username) {
+        final long interval = failureNoticeInterval;
+        if (interval <= 0) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        failureNotices.put(username, now);
+        if (failureNotices.size() > FAILURE_NOTICE_PURGE_SIZE) {
+            for (final Iterator<Long> it = failureNotices.values().iterator(); it.hasNext();) {
+                if (now - it.next() >= interval) {
+                    it.remove();
                 }
-                factory.evaluate(aMailAdapter, factory.parse(ins));
-            } catch (SieveException ex) {
-                handleFailure(recipient, aMail, ex);
             }
-            catch (ParseException ex) {
-                handleFailure(recipient, aMail, ex);
+        }
+    }
+
+    /**
+     * The outcome of evaluating the script for a recipient.
+     */
+    private static final class Evaluation {
+        private final MailAddress recipient;
+        private final Mail mail;
+        /** Delivers the mail filed for the recipient */
+        private final Poster poster;
+        /** Evaluated adapter, or null when evaluation failed */
+        private SieveMailAdapter adapter;
+        /** Cause of failure, or null when evaluation succeeded */
+        private Exception failure;
+
+        private Evaluation(MailAddress recipient, Mail mail, Poster poster) {
+            this.recipient = recipient;
+            this.mail = mail;
+            this.poster = poster;
+        }
+
+        private void dispatch() throws Exception {
+            if (failure != null) {
+                throw failure;
+            }
+            if (adapter.isDeferActions()) {
+                adapter.dispatchActions();
+            }
+        }
+    }
+
+    /**
+     * Gets the compiled script for the given URI, reading and compiling it 
+     * only when the cached script is not current. A script which cannot be
+     * compiled is quarantined, and its failure thrown again until the 
+     * script is modified.
+     * @param scriptUri identifies the Sieve script, not null
+     * @return not null
+     * @throws IOException when the script cannot be read
+     * @throws ParseException when the script cannot be parsed
+     * @throws SieveException when the script cannot be compiled
+     */
+    protected CompiledScript getScript(String scriptUri) throws IOException, ParseException, SieveException {
+        final CachedScript cached = scriptCache.get(scriptUri);
+        final Resource resource;
+        if (cached == null) {
+            resource = versionedLocator.getResource(scriptUri);
+        } else {
+            resource = versionedLocator.getIfModified(scriptUri, cached.getVersion());
+            if (resource == null) {
+                if (cached.isQuarantined()) {
+                    throwQuarantined(cached.getFailure());
+                }
+                return cached.getScript();
             }
-            catch (TokenMgrError ex)
-            {
-                handleFailure(recipient, aMail, new SieveException(ex));
+        }
+        final byte[] content = read(resource.getContent());
+        final CompiledScript script;
+        try {
+            script = factory.compile(factory.parse(new ByteArrayInputStream(content)));
+        } catch (ParseException ex) {
+            scriptCache.put(scriptUri, new CachedScript(resource.getVersion(), content.length, ex));
+            throw ex;
+        } catch (SieveException ex) {
+            scriptCache.put(scriptUri, new CachedScript(resource.getVersion(), content.length, ex));
+            throw ex;
+        } catch (TokenMgrError ex) {
+            final SieveException failure = new SieveException(ex);
+            scriptCache.put(scriptUri, new CachedScript(resource.getVersion(), content.length, failure));
+            throw failure;
+        }
+        scriptCache.put(scriptUri, new CachedScript(resource.getVersion(), content.length, script));
+        return script;
+    }
+
+    /**
+     * Throws the failure of a quarantined script. A new exception is thrown
+     * each time, caused by the failure cached when the script was compiled,
+     * so that the cached failure is never altered by its handlers.
+     * @param failure a <code>ParseException</code> or 
+     * <code>SieveException</code>, not null
+     * @throws ParseException when the script could not be parsed
+     * @throws SieveException when the script could not be compiled
+     */
+    private static void throwQuarantined(Exception failure) throws ParseException, SieveException {
+        if (failure instanceof ParseException) {
+            final ParseException ex = new ParseException(failure.getMessage());
+            ex.initCause(failure);
+            throw ex;
+        }
+        throw new SieveException(failure.getMessage(), failure);
+    }
+
+    private byte[] read(InputStream ins) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = ins.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
             }
+            return out.toByteArray();
+        } finally {
+            ins.close();
+        }
     }
     
     protected void storeMessageInbox(String username, MimeMessage message) throws MessagingException {
+        storeMessageInbox(poster, username, message);
+    }
+
+    private void storeMessageInbox(Poster poster, String username, MimeMessage message) throws MessagingException {
         String url = "mailbox://" + username + "/";
         poster.post(url, message);
     }
@@ -403,8 +1236,104 @@ public class SieveMailboxMailet extends GenericMailet {
         this.consume = getInitParameter("consume", true);
         this.verbose = getInitParameter("verbose", false);
         this.quiet = getInitParameter("quiet", false);
+        this.reorderTests = getInitParameter("reorderTests", false);
+        this.batchDeliveries = getInitParameter("batchDeliveries", false);
+        this.coalesceRedirects = getInitParameter("coalesceRedirects", false);
+        final String scriptCacheSize = getInitParameter("scriptCacheSize");
+        final String scriptCacheWeight = getInitParameter("scriptCacheWeight");
+        if (scriptCacheSize != null || scriptCacheWeight != null) {
+            try {
+                scriptCache = new ScriptCache(
+                        scriptCacheSize == null ? ScriptCache.DEFAULT_MAXIMUM_SIZE : Integer.parseInt(scriptCacheSize.trim()),
+                        scriptCacheWeight == null ? ScriptCache.DEFAULT_MAXIMUM_WEIGHT : Long.parseLong(scriptCacheWeight.trim()));
+            } catch (NumberFormatException e) {
+                throw new MailetException("Invalid script cache bound", e);
+            }
+        }
         
         actionDispatcher = new ActionDispatcher();
+
+        final String bodyScanLimit = getInitParameter("bodyScanLimit");
+        if (bodyScanLimit != null) {
+            try {
+                setBodyScanLimit(Long.parseLong(bodyScanLimit.trim()));
+            } catch (NumberFormatException e) {
+                throw new MailetException("Invalid body scan limit", e);
+            }
+        }
+
+        final String failureNoticeInterval = getInitParameter("failureNoticeInterval");
+        if (failureNoticeInterval != null) {
+            try {
+                setFailureNoticeInterval(Long.parseLong(failureNoticeInterval.trim()));
+            } catch (NumberFormatException e) {
+                throw new MailetException("Invalid failure notice interval", e);
+            }
+        }
+
+        final String parallelism = getInitParameter("parallelism");
+        if (parallelism != null) {
+            try {
+                setParallelism(Integer.parseInt(parallelism.trim()));
+            } catch (NumberFormatException e) {
+                throw new MailetException("Invalid parallelism", e);
+            }
+        }
+        if (executor == null && this.parallelism > 1) {
+            if (getInitParameter("virtualThreads", false)) {
+                ownedExecutor = newVirtualThreadExecutor();
+            }
+            if (ownedExecutor == null) {
+                ownedExecutor = Executors.newFixedThreadPool(this.parallelism);
+            }
+            executor = ownedExecutor;
+        }
+
+        if (reportExecutor == null && getInitParameter("asyncReports", false)) {
+            // Once the queue is full, replies are sent by the calling thread
+            ownedReportExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(REPORT_QUEUE_CAPACITY));
+        }
+        setReportExecutor(ownedReportExecutor == null ? reportExecutor : ownedReportExecutor);
+    }
+
+    /**
+     * Creates an executor starting a virtual thread for each task.
+     * @return the executor, or null when virtual threads are not supported
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+            executor = null;
+            ownedExecutor = null;
+        }
+        if (ownedReportExecutor != null) {
+            ownedReportExecutor.shutdown();
+            try {
+                if (!ownedReportExecutor.awaitTermination(REPORT_SHUTDOWN_TIMEOUT, 
+                        TimeUnit.MILLISECONDS)) {
+                    log("Replies to rejected mail were not all sent before shutdown.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            setReportExecutor(null);
+            ownedReportExecutor = null;
+        }
+        if (factory != null) {
+            factory.dispose();
+        }
+        super.destroy();
     }
     
     /**
@@ -438,6 +1367,21 @@ public class SieveMailboxMailet extends GenericMailet {
      */
     protected void handleFailure(MailAddress recipient, Mail aMail, Exception ex)
             throws MessagingException, IOException {
+        handleFailure(recipient, aMail, ex, poster);
+    }
+
+    /**
+     * Deliver the original mail as an attachment with the main part being an error report.
+     *
+     * @param recipient
+     * @param aMail
+     * @param ex
+     * @param poster delivers the report, not null
+     * @throws MessagingException
+     * @throws IOException 
+     */
+    protected void handleFailure(MailAddress recipient, Mail aMail, Exception ex, Poster poster)
+            throws MessagingException, IOException {
         String user = getUsername(recipient);
 
         MimeMessage originalMessage = aMail.getMessage();
@@ -464,7 +1408,7 @@ public class SieveMailboxMailet extends GenericMailet {
         message.setHeader("X-Priority", "1");
         message.saveChanges();
         
-        storeMessageInbox(user, message);
+        storeMessageInbox(poster, user, message);
     }
    
 }
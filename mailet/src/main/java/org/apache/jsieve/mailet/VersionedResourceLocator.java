@@ -0,0 +1,66 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.IOException;
+
+/**
+ * <p>Experimental API locates resources together with their version,
+ * and loads them only when they have changed.
+ * </p><p>
+ * A version is an opaque token, such as an entity tag or a last
+ * modification time, which changes whenever the content of the resource
+ * changes. It allows callers which retain a resource, for example 
+ * {@link ScriptCache}, to reuse it without reading it again.
+ * </p><p>
+ * Existing {@link ResourceLocator} implementations may be adapted
+ * by {@link ResourceLocatorAdapter}.
+ * </p>
+ */
+public interface VersionedResourceLocator extends ResourceLocator {
+
+    /**
+     * Reports the current version of a resource. 
+     * @param uri identifies the Sieve script 
+     * @return the version token, or null when the version is unknown
+     * and the resource must be read to detect changes
+     * @throws IOException when the resource cannot be located
+     */
+    public String getVersion(String uri) throws IOException;
+
+    /**
+     * GET verb locates and loads a resource together with its version.
+     * @param uri identifies the Sieve script 
+     * @return not null
+     * @throws IOException when the resource cannot be located
+     */
+    public Resource getResource(String uri) throws IOException;
+
+    /**
+     * Conditional GET verb locates a resource and loads it only when its 
+     * version differs from the given version.
+     * @param uri identifies the Sieve script 
+     * @param version version token held by the caller, 
+     * or null to load the resource unconditionally
+     * @return the resource, or null when its version equals 
+     * <code>version</code>
+     * @throws IOException when the resource cannot be located
+     */
+    public Resource getIfModified(String uri, String version) throws IOException;
+}
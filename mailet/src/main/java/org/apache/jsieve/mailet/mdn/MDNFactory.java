@@ -60,6 +60,23 @@ public class MDNFactory
             String final_recipient,
             String original_message_id,
             Disposition disposition) throws MessagingException
+    {
+        return new MDNGenerator(reporting_UA_name == null ? "" : reporting_UA_name).create(
+                humanText, reporting_UA_product, original_recipient, final_recipient,
+                original_message_id, disposition.toString());
+    }
+
+    /**
+     * Answers a MimeMultipartReport containing a
+     * Message Delivery Notification with the given parts.
+     * 
+     * @param humanText the 'human-readable' part, not null
+     * @param mdnReport the MDN report part, formatted as RFC 2298, not null
+     * @return MimeMultipartReport
+     * @throws MessagingException
+     */
+    static MimeMultipartReport create(String humanText, String mdnReport) 
+            throws MessagingException
     {
         // Create the message parts. According to RFC 2298, there are two
         // compulsory parts and one optional part...
@@ -72,35 +89,8 @@ public class MDNFactory
         multiPart.addBodyPart(humanPart);
 
         // Part 2: MDN Report Part
-        // 1) reporting-ua-field
-        StringBuilder mdnReport = new StringBuilder(128);
-        mdnReport.append("Reporting-UA: ");
-        mdnReport.append((reporting_UA_name == null ? "" : reporting_UA_name));
-        mdnReport.append("; ");
-        mdnReport.append((reporting_UA_product == null ? "" : reporting_UA_product));
-        mdnReport.append("\r\n");
-        // 2) original-recipient-field
-        if (null != original_recipient)
-        {
-            mdnReport.append("Original-Recipient: ");
-            mdnReport.append("rfc822; ");
-            mdnReport.append(original_recipient);
-            mdnReport.append("\r\n");
-        }
-        // 3) final-recipient-field
-        mdnReport.append("Final-Recepient: ");
-        mdnReport.append("rfc822; ");
-        mdnReport.append((final_recipient == null ? "" : final_recipient));
-        mdnReport.append("\r\n");
-        // 4) original-message-id-field
-        mdnReport.append("Original-Message-ID: ");
-        mdnReport.append((original_message_id == null ? "" : original_message_id));
-        mdnReport.append("\r\n");
-        // 5) disposition-field
-        mdnReport.append(disposition.toString());
-        mdnReport.append("\r\n");
         MimeBodyPart mdnPart = new MimeBodyPart();
-        mdnPart.setContent(mdnReport.toString(), "message/disposition-notification");
+        mdnPart.setContent(mdnReport, "message/disposition-notification");
         multiPart.addBodyPart(mdnPart);
 
         // Part 3: The optional third part, the original message is omitted.
@@ -0,0 +1,245 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet.mdn;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import javax.mail.MessagingException;
+
+import org.apache.mailet.base.mail.MimeMultipartReport;
+
+/**
+ * <p>
+ * Class <code>MDNGenerator</code> creates MimeMultipartReports containing
+ * Message Delivery Notifications as specified by RFC 2298, reusing all 
+ * parts common to every report. {@link MDNFactory} formats its reports
+ * by a generator.
+ * </p>
+ * <p>
+ * The name of the reporting user agent is resolved when first required,
+ * rather than for every report, and may be resolved again by
+ * {@link #refreshReportingUAName()}. The <code>Reporting-UA</code> field
+ * is formatted once for each product, and the disposition of rejections
+ * is formatted once for all.
+ * </p>
+ * <h4>Thread Safety</h4>
+ * <p>
+ * An instance may safely be accessed concurrently by multiple threads.
+ * </p>
+ */
+public class MDNGenerator
+{
+    /**
+     * The disposition field of a rejected message: 
+     * automatic-action/MDN-sent-automatically;deleted/error
+     */
+    public static final String REJECTED_DISPOSITION = new Disposition(
+            new ActionModeAutomatic(), new SendingModeAutomatic(), new TypeDeleted(),
+            new DispositionModifier[] {new ModifierError()}).toString();
+
+    /** Introduces the reason given for a rejection */
+    private static final String REJECTED_TEXT = 
+        "This message was refused by the recipient's mail filtering program.\r\n"
+        + "The reason given was:\r\n\r\n";
+
+    /** Name used when the local host cannot be resolved */
+    private static final String UNKNOWN_HOST = "localhost";
+
+    /** The resolved name of the reporting user agent, or null */
+    private volatile String fieldReportingUAName;
+
+    /** The most recently formatted reporting user agent, or null */
+    private volatile ReportingUA fieldReportingUA;
+
+    /**
+     * Constructs a generator resolving the name of the reporting user
+     * agent from the local host when first required.
+     */
+    public MDNGenerator()
+    {
+        super();
+    }
+
+    /**
+     * Constructs a generator with the given name of the reporting user agent.
+     * 
+     * @param reportingUAName not null
+     */
+    public MDNGenerator(String reportingUAName)
+    {
+        this();
+        setReportingUAName(reportingUAName);
+    }
+
+    /**
+     * Answers the name of the reporting user agent, resolving the 
+     * canonical name of the local host when first required.
+     * 
+     * @return not null
+     */
+    public String getReportingUAName()
+    {
+        String name = fieldReportingUAName;
+        if (null == name)
+        {
+            name = resolveReportingUAName();
+            fieldReportingUAName = name;
+        }
+        return name;
+    }
+
+    /**
+     * Sets the name of the reporting user agent.
+     * 
+     * @param reportingUAName not null
+     */
+    public void setReportingUAName(String reportingUAName)
+    {
+        fieldReportingUAName = reportingUAName;
+    }
+
+    /**
+     * Resolves the name of the reporting user agent again, 
+     * for example after the host has been renamed.
+     */
+    public void refreshReportingUAName()
+    {
+        setReportingUAName(resolveReportingUAName());
+    }
+
+    private static String resolveReportingUAName()
+    {
+        try
+        {
+            return InetAddress.getLocalHost().getCanonicalHostName();
+        }
+        catch (UnknownHostException ex)
+        {
+            return UNKNOWN_HOST;
+        }
+    }
+
+    /**
+     * Answers the <code>Reporting-UA</code> field for the given product,
+     * reusing the field last formatted when unchanged.
+     */
+    private String getReportingUAField(String reporting_UA_product)
+    {
+        final String name = getReportingUAName();
+        final String product = reporting_UA_product == null ? "" : reporting_UA_product;
+        ReportingUA reportingUA = fieldReportingUA;
+        if (null == reportingUA || !reportingUA.matches(name, product))
+        {
+            reportingUA = new ReportingUA(name, product);
+            fieldReportingUA = reportingUA;
+        }
+        return reportingUA.field;
+    }
+
+    /**
+     * Answers a MimeMultipartReport containing a
+     * Message Delivery Notification as specified by RFC 2298.
+     * 
+     * @param humanText not null
+     * @param reporting_UA_product possibly null
+     * @param original_recipient possibly null
+     * @param final_recipient possibly null
+     * @param original_message_id possibly null
+     * @param disposition the formatted disposition field, as 
+     * {@link Disposition#toString()}, for example {@link #REJECTED_DISPOSITION}
+     * @return MimeMultipartReport
+     * @throws MessagingException
+     */
+    public MimeMultipartReport create(String humanText,
+            String reporting_UA_product,
+            String original_recipient,
+            String final_recipient,
+            String original_message_id,
+            String disposition) throws MessagingException
+    {
+        final String reportingUAField = getReportingUAField(reporting_UA_product);
+        final StringBuilder mdnReport = new StringBuilder(reportingUAField.length() + 128);
+        // 1) reporting-ua-field
+        mdnReport.append(reportingUAField);
+        // 2) original-recipient-field
+        if (null != original_recipient)
+        {
+            mdnReport.append("Original-Recipient: rfc822; ");
+            mdnReport.append(original_recipient);
+            mdnReport.append("\r\n");
+        }
+        // 3) final-recipient-field
+        mdnReport.append("Final-Recepient: rfc822; ");
+        mdnReport.append((final_recipient == null ? "" : final_recipient));
+        mdnReport.append("\r\n");
+        // 4) original-message-id-field
+        mdnReport.append("Original-Message-ID: ");
+        mdnReport.append((original_message_id == null ? "" : original_message_id));
+        mdnReport.append("\r\n");
+        // 5) disposition-field
+        mdnReport.append(disposition);
+        mdnReport.append("\r\n");
+        return MDNFactory.create(humanText, mdnReport.toString());
+    }
+
+    /**
+     * Answers a MimeMultipartReport notifying the rejection of a message
+     * for the given reason.
+     * 
+     * @param reason not null
+     * @param reporting_UA_product possibly null
+     * @param original_recipient possibly null
+     * @param final_recipient possibly null
+     * @param original_message_id possibly null
+     * @return MimeMultipartReport
+     * @throws MessagingException
+     */
+    public MimeMultipartReport createRejection(String reason,
+            String reporting_UA_product,
+            String original_recipient,
+            String final_recipient,
+            String original_message_id) throws MessagingException
+    {
+        return create(REJECTED_TEXT + reason, reporting_UA_product, original_recipient,
+                final_recipient, original_message_id, REJECTED_DISPOSITION);
+    }
+
+    /**
+     * A formatted <code>Reporting-UA</code> field.
+     */
+    private static final class ReportingUA
+    {
+        private final String name;
+        private final String product;
+        private final String field;
+
+        private ReportingUA(String name, String product)
+        {
+            this.name = name;
+            this.product = product;
+            this.field = "Reporting-UA: " + name + "; " + product + "\r\n";
+        }
+
+        private boolean matches(String name, String product)
+        {
+            return this.name.equals(name) && this.product.equals(product);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.awt.datatransfer.DataFlavor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.activation.CommandMap;
+import javax.activation.DataContentHandler;
+import javax.activation.DataSource;
+import javax.activation.MailcapCommandMap;
+
+/**
+ * Writes the report part of a Message Delivery Notification, which is set
+ * as a string, so that replies to rejected mail may be copied as a mail
+ * server would spool them.
+ */
+public class DispositionNotificationHandler implements DataContentHandler {
+
+    private static final String MIME_TYPE = "message/disposition-notification";
+
+    /**
+     * Registers this handler with the default command map, when possible.
+     */
+    static void register() {
+        final CommandMap map = CommandMap.getDefaultCommandMap();
+        if (map instanceof MailcapCommandMap) {
+            ((MailcapCommandMap) map).addMailcap(MIME_TYPE
+                    + ";; x-java-content-handler="
+                    + DispositionNotificationHandler.class.getName());
+        }
+    }
+
+    public DataFlavor[] getTransferDataFlavors() {
+        return new DataFlavor[0];
+    }
+
+    public Object getTransferData(DataFlavor flavor, DataSource source)
+            throws IOException {
+        return getContent(source);
+    }
+
+    public Object getContent(DataSource source) throws IOException {
+        final InputStream in = source.getInputStream();
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("US-ASCII");
+        } finally {
+            in.close();
+        }
+    }
+
+    public void writeTo(Object content, String mimeType, OutputStream out)
+            throws IOException {
+        out.write(((String) content).getBytes("US-ASCII"));
+    }
+}
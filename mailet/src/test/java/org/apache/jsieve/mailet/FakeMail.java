@@ -0,0 +1,197 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.ByteArrayInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.mailet.Mail;
+import org.apache.mailet.MailAddress;
+
+/**
+ * A mail held in memory, for testing.
+ */
+public class FakeMail implements Mail {
+
+    private static final long serialVersionUID = 1L;
+
+    private String name = "mail";
+
+    private MimeMessage message;
+
+    private Collection<MailAddress> recipients;
+
+    private final MailAddress sender;
+
+    private String state = Mail.DEFAULT;
+
+    private String errorMessage;
+
+    private Date lastUpdated = new Date();
+
+    private final Map<String, Serializable> attributes = new HashMap<String, Serializable>();
+
+    public FakeMail(MailAddress sender, MimeMessage message,
+            Collection<MailAddress> recipients) {
+        this.sender = sender;
+        this.message = message;
+        this.recipients = recipients;
+    }
+
+    /**
+     * Creates a mail from sender@example.org, reading the message.
+     * @param message the raw message, not null
+     * @param recipients not null
+     * @return not null
+     */
+    public static FakeMail stored(String message, String... recipients)
+            throws Exception {
+        return new FakeMail(new MailAddress("sender@example.org"),
+                new MimeMessage((Session) null, new ByteArrayInputStream(
+                        message.getBytes("US-ASCII"))), addresses(recipients));
+    }
+
+    /**
+     * Creates a mail from sender@example.org, building a text message in
+     * memory.
+     * @param subject not null
+     * @param text the body, not null
+     * @param recipients not null
+     * @return not null
+     */
+    public static FakeMail built(String subject, String text,
+            String... recipients) throws Exception {
+        final MimeMessage message = new MimeMessage((Session) null);
+        message.setFrom(new InternetAddress(
+                "sender@example.org"));
+        message.setSubject(subject);
+        message.setText(text);
+        message.saveChanges();
+        return new FakeMail(new MailAddress("sender@example.org"), message,
+                addresses(recipients));
+    }
+
+    public static Collection<MailAddress> addresses(String... recipients)
+            throws Exception {
+        final Collection<MailAddress> results = new ArrayList<MailAddress>();
+        for (final String recipient : recipients) {
+            results.add(new MailAddress(recipient));
+        }
+        return results;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public MimeMessage getMessage() throws MessagingException {
+        return message;
+    }
+
+    public void setMessage(MimeMessage message) {
+        this.message = message;
+    }
+
+    public Collection<MailAddress> getRecipients() {
+        return recipients;
+    }
+
+    public void setRecipients(Collection<MailAddress> recipients) {
+        this.recipients = recipients;
+    }
+
+    public MailAddress getSender() {
+        return sender;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public String getRemoteHost() {
+        return "localhost";
+    }
+
+    public String getRemoteAddr() {
+        return "127.0.0.1";
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public Serializable getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public Iterator<String> getAttributeNames() {
+        return attributes.keySet().iterator();
+    }
+
+    public boolean hasAttributes() {
+        return !attributes.isEmpty();
+    }
+
+    public Serializable removeAttribute(String name) {
+        return attributes.remove(name);
+    }
+
+    public void removeAllAttributes() {
+        attributes.clear();
+    }
+
+    public Serializable setAttribute(String name, Serializable value) {
+        return attributes.put(name, value);
+    }
+
+    public long getMessageSize() throws MessagingException {
+        return message.getSize();
+    }
+
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(Date lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+}
@@ -0,0 +1,67 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.mailet.MailetConfig;
+import org.apache.mailet.MailetContext;
+
+/**
+ * Mailet configuration given by a map of init parameters, for testing.
+ */
+public class FakeMailetConfig implements MailetConfig {
+
+    private final MailetContext context;
+
+    private final Map<String, String> parameters = new HashMap<String, String>();
+
+    public FakeMailetConfig(MailetContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Sets an init parameter.
+     * @param name not null
+     * @param value not null
+     * @return this configuration, not null
+     */
+    public FakeMailetConfig set(String name, String value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    public String getInitParameter(String name) {
+        return parameters.get(name);
+    }
+
+    public Iterator<String> getInitParameterNames() {
+        return parameters.keySet().iterator();
+    }
+
+    public MailetContext getMailetContext() {
+        return context;
+    }
+
+    public String getMailetName() {
+        return "SieveMailboxMailet";
+    }
+}
@@ -0,0 +1,258 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.mailet.Mail;
+import org.apache.mailet.MailAddress;
+import org.apache.mailet.MailetContext;
+
+/**
+ * A mailet context recording the mails sent and the messages logged,
+ * for testing.
+ */
+@SuppressWarnings("deprecation")
+public class FakeMailetContext implements MailetContext {
+
+    static {
+        DispositionNotificationHandler.register();
+    }
+
+    /**
+     * A mail sent through the context.
+     */
+    public static final class SentMail {
+
+        private final MailAddress sender;
+
+        private final List<MailAddress> recipients;
+
+        private final MimeMessage message;
+
+        private final String state;
+
+        SentMail(MailAddress sender, Collection<MailAddress> recipients,
+                MimeMessage message, String state) {
+            this.sender = sender;
+            this.recipients = new ArrayList<MailAddress>(recipients);
+            this.message = message;
+            this.state = state;
+        }
+
+        public MailAddress getSender() {
+            return sender;
+        }
+
+        public List<MailAddress> getRecipients() {
+            return recipients;
+        }
+
+        public MimeMessage getMessage() {
+            return message;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public String toString() {
+            return state + " " + sender + " " + recipients;
+        }
+    }
+
+    private final List<SentMail> sent = new ArrayList<SentMail>();
+
+    private final List<String> logged = new ArrayList<String>();
+
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+    /**
+     * Gets the mails sent, in order.
+     * @return not null
+     */
+    public synchronized List<SentMail> getSent() {
+        return new ArrayList<SentMail>(sent);
+    }
+
+    /**
+     * Gets the mails sent to the given state, in order.
+     * @param state not null
+     * @return not null
+     */
+    public synchronized List<SentMail> getSent(String state) {
+        final List<SentMail> results = new ArrayList<SentMail>();
+        for (final SentMail mail : sent) {
+            if (state.equals(mail.getState())) {
+                results.add(mail);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Gets the messages logged, in order.
+     * @return not null
+     */
+    public synchronized List<String> getLogged() {
+        return new ArrayList<String>(logged);
+    }
+
+    public int getMajorVersion() {
+        return 2;
+    }
+
+    public int getMinorVersion() {
+        return 5;
+    }
+
+    public String getServerInfo() {
+        return "Fake";
+    }
+
+    public Iterator<String> getAttributeNames() {
+        return attributes.keySet().iterator();
+    }
+
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    public void log(String message) {
+        log(LogLevel.INFO, message);
+    }
+
+    public void log(String message, Throwable t) {
+        log(LogLevel.ERROR, message, t);
+    }
+
+    public synchronized void log(LogLevel level, String message) {
+        logged.add(level + " " + message);
+    }
+
+    public synchronized void log(LogLevel level, String message, Throwable t) {
+        logged.add(level + " " + message + " " + t);
+    }
+
+    public MailAddress getPostmaster() {
+        try {
+            return new MailAddress("postmaster@localhost");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public boolean isLocalServer(String serverName) {
+        return "localhost".equals(serverName);
+    }
+
+    public boolean isLocalUser(String userAccount) {
+        return true;
+    }
+
+    public boolean isLocalEmail(MailAddress mailAddress) {
+        return isLocalServer(mailAddress.getDomain());
+    }
+
+    public Collection<String> getMailServers(String domain) {
+        return Collections.emptyList();
+    }
+
+    public Iterator<org.apache.mailet.HostAddress> getSMTPHostAddresses(String domain) {
+        return Collections.<org.apache.mailet.HostAddress> emptyList().iterator();
+    }
+
+    public void sendMail(MimeMessage message) throws MessagingException {
+        sendMail(null, Collections.<MailAddress> emptyList(), message);
+    }
+
+    public void sendMail(MailAddress sender,
+            Collection<MailAddress> recipients, MimeMessage message)
+            throws MessagingException {
+        sendMail(sender, recipients, message, Mail.DEFAULT);
+    }
+
+    /**
+     * Records a copy of the message, as a mail server would spool it.
+     */
+    public void sendMail(MailAddress sender,
+            Collection<MailAddress> recipients, MimeMessage message,
+            String state) throws MessagingException {
+        final MimeMessage copy = copy(message);
+        synchronized (this) {
+            sent.add(new SentMail(sender, recipients, copy, state));
+        }
+    }
+
+    public void sendMail(Mail mail) throws MessagingException {
+        sendMail(mail.getSender(), mail.getRecipients(), mail.getMessage(),
+                mail.getState());
+    }
+
+    public void bounce(Mail mail, String message) throws MessagingException {
+        bounce(mail, message, getPostmaster());
+    }
+
+    public void bounce(Mail mail, String message, MailAddress bouncer)
+            throws MessagingException {
+        sendMail(bouncer, Collections.singletonList(mail.getSender()), mail
+                .getMessage(), "bounce");
+    }
+
+    public List<String> dnsLookup(String name, RecordType type) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Copies a message by writing it out and reading it back.
+     * @param message not null
+     * @return not null
+     */
+    public static MimeMessage copy(MimeMessage message)
+            throws MessagingException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            message.writeTo(out);
+            return new MimeMessage(null, new ByteArrayInputStream(out
+                    .toByteArray()));
+        } catch (IOException e) {
+            throw new MessagingException("Cannot copy message", e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Class FileSystemResourceLocatorTest
+ */
+public class FileSystemResourceLocatorTest {
+
+    private static final String URI = "//bob@localhost/sieve";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileSystemResourceLocator locator;
+
+    private File script;
+
+    @Before
+    public void setUp() throws Exception {
+        locator = new FileSystemResourceLocator(folder.getRoot());
+        script = new File(folder.getRoot(), "bob@localhost.sieve");
+        write(script, "keep;");
+        script.setLastModified(1000000000000L);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("US-ASCII"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int read;
+            while ((read = in.read()) != -1) {
+                out.write(read);
+            }
+            return out.toString("US-ASCII");
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The URI names a file in the directory, whose version is read with it
+     */
+    @Test
+    public void testGetResource() throws Exception {
+        Assert.assertEquals("keep;", read(locator.get(URI)));
+        Resource resource = locator.getResource(URI);
+        Assert.assertEquals("keep;", read(resource.getContent()));
+        Assert.assertEquals(locator.getVersion(URI), resource.getVersion());
+        Assert.assertEquals("1000000000000-5", resource.getVersion());
+    }
+
+    /**
+     * An unchanged script is not read again
+     */
+    @Test
+    public void testUnchangedVersion() throws Exception {
+        String version = locator.getVersion(URI);
+        Assert.assertNull(locator.getIfModified(URI, version));
+    }
+
+    /**
+     * A script is read when its modification time or length changes, 
+     * or when no version is known
+     */
+    @Test
+    public void testChangedVersion() throws Exception {
+        String version = locator.getVersion(URI);
+        Assert.assertNotNull(locator.getIfModified(URI, null));
+
+        script.setLastModified(1000000001000L);
+        Resource resource = locator.getIfModified(URI, version);
+        Assert.assertNotNull(resource);
+        Assert.assertEquals("keep;", read(resource.getContent()));
+        Assert.assertFalse(version.equals(resource.getVersion()));
+
+        version = resource.getVersion();
+        write(script, "discard;");
+        script.setLastModified(1000000001000L);
+        resource = locator.getIfModified(URI, version);
+        Assert.assertNotNull(resource);
+        Assert.assertEquals("discard;", read(resource.getContent()));
+    }
+
+    /**
+     * A missing script is reported as not found
+     */
+    @Test(expected = FileNotFoundException.class)
+    public void testMissingScript() throws Exception {
+        locator.getVersion("//carol@localhost/sieve");
+    }
+
+    /**
+     * URIs which might name a file outside the directory are rejected
+     */
+    @Test
+    public void testRejectedUris() throws Exception {
+        String[] uris = { "//../x/y", "//a/b\\c", "//a/b/c", "//.hidden/sieve",
+                "/bob@localhost/sieve", "//bob@localhost", "bob@localhost.sieve" };
+        for (String uri : uris) {
+            try {
+                locator.getVersion(uri);
+                Assert.fail("Expected " + uri + " to be rejected");
+            } catch (FileNotFoundException e) {
+                Assert.fail("Expected " + uri + " to be rejected");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().startsWith("Unsupported script URI"));
+            }
+        }
+    }
+}
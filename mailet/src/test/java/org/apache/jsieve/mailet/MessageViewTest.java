@@ -0,0 +1,250 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.jsieve.comparators.AsciiCasemap;
+import org.apache.jsieve.comparators.Comparator;
+import org.apache.jsieve.comparators.ComparatorNames;
+import org.apache.jsieve.comparators.MatchType;
+import org.apache.jsieve.comparators.Octet;
+import org.apache.jsieve.mail.MailAdapter;
+import org.apache.jsieve.mail.optional.BodyMatch;
+import org.apache.jsieve.mail.optional.BodyTransform;
+import org.apache.jsieve.tests.optional.BodyArguments;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class MessageViewTest
+ */
+public class MessageViewTest {
+
+    private static final String MESSAGE = "From: Alice <alice@example.org>\r\n"
+            + "To: bob@example.org, carol@example.org\r\n"
+            + "Subject: Test\r\n" + "\r\n" + "Hello\r\n";
+
+    private MessageView view;
+
+    @Before
+    public void setUp() throws Exception {
+        view = new MessageView(new MimeMessage((Session) null,
+                new ByteArrayInputStream(MESSAGE.getBytes("US-ASCII"))));
+    }
+
+    /**
+     * Addresses are parsed once, whatever the case of the name
+     */
+    @Test
+    public void testAddressesParsedOnce() throws Exception {
+        MailAdapter.Address[] addresses = view.getAddresses("To");
+        Assert.assertEquals(2, addresses.length);
+        Assert.assertEquals("carol", addresses[1].getLocalPart());
+        Assert.assertSame(addresses, view.getAddresses(" to "));
+    }
+
+    /**
+     * Overlays share the addresses of their parent
+     */
+    @Test
+    public void testOverlaySharesAddresses() throws Exception {
+        MessageView overlay = view.withHeader("Delivered-To",
+                "bob@example.org");
+        Assert.assertSame(view.getAddresses("To"), overlay.getAddresses("To"));
+        Assert.assertSame(overlay.getAddresses("from"), view
+                .getAddresses("From"));
+    }
+
+    /**
+     * The overlaid header is parsed by the overlay alone
+     */
+    @Test
+    public void testOverlaidHeader() throws Exception {
+        MessageView overlay = view.withHeader("To", "dave@example.org");
+        Assert.assertEquals(2, view.getAddresses("To").length);
+        Assert.assertEquals(3, overlay.getAddresses("to").length);
+        Assert.assertEquals(0, overlay.getAddresses("Delivered-To").length);
+    }
+
+    private static final String MULTIPART = "From: sender@example.org\r\n"
+            + "Subject: Report\r\n"
+            + "MIME-Version: 1.0\r\n"
+            + "Content-Type: multipart/alternative; boundary=\"XX\"\r\n"
+            + "\r\n"
+            + "Multipart preamble\r\n"
+            + "--XX\r\n"
+            + "Content-Type: text/plain; charset=us-ascii\r\n"
+            + "\r\n"
+            + "Plain Wibble\r\n"
+            + "--XX\r\n"
+            + "Content-Type: text/html; charset=us-ascii\r\n"
+            + "Content-Transfer-Encoding: quoted-printable\r\n"
+            + "\r\n"
+            + "<p>Html=20Wobble</p>\r\n"
+            + "--XX\r\n"
+            + "Content-Type: application/octet-stream\r\n"
+            + "Content-Transfer-Encoding: base64\r\n"
+            + "\r\n"
+            + "QmluYXJ5IEZsb2I=\r\n"
+            + "--XX\r\n"
+            + "Content-Type: text/plain; charset=iso-8859-1\r\n"
+            + "Content-Transfer-Encoding: quoted-printable\r\n"
+            + "\r\n"
+            + "Caf=E9 cr=E8me\r\n"
+            + "--XX--\r\n";
+
+    private static MessageView multipart(long bodyLimit) throws Exception {
+        return new MessageView(new MimeMessage((Session) null,
+                new ByteArrayInputStream(MULTIPART.getBytes("US-ASCII"))), bodyLimit);
+    }
+
+    private static boolean isMatched(BodyTransform transform, MatchType matchType,
+            String key, String... contentTypes) throws Exception {
+        return isMatched(MessageView.UNLIMITED, new AsciiCasemap(), transform,
+                matchType, key, contentTypes);
+    }
+
+    private static boolean isMatched(long bodyLimit, Comparator comparator,
+            BodyTransform transform, MatchType matchType, String key,
+            String... contentTypes) throws Exception {
+        final String name = comparator instanceof Octet ? ComparatorNames.OCTET_COMPARATOR
+                : ComparatorNames.ASCII_CASEMAP_COMPARATOR;
+        return multipart(bodyLimit).matchBody(new BodyArguments(name, comparator, 
+                matchType, transform, Arrays.asList(contentTypes), 
+                Collections.singletonList(key)));
+    }
+
+    /**
+     * :text searches only the decoded text parts
+     */
+    @Test
+    public void testText() throws Exception {
+        Assert.assertTrue(isMatched(BodyTransform.TEXT, MatchType.CONTAINS, "wibble"));
+        Assert.assertTrue(isMatched(BodyTransform.TEXT, MatchType.CONTAINS, "HTML WOBBLE"));
+        Assert.assertFalse(isMatched(BodyTransform.TEXT, MatchType.CONTAINS, "Binary"));
+        Assert.assertFalse(isMatched(BodyTransform.TEXT, MatchType.CONTAINS, "preamble"));
+    }
+
+    /**
+     * Parts are decoded according to their charset
+     */
+    @Test
+    public void testCharset() throws Exception {
+        Assert.assertTrue(isMatched(BodyTransform.TEXT, MatchType.CONTAINS, "caf\u00e9 cr\u00e8me"));
+        Assert.assertFalse(isMatched(BodyTransform.TEXT, MatchType.CONTAINS, "Caf=E9"));
+    }
+
+    /**
+     * :content selects parts by type, or by type and subtype
+     */
+    @Test
+    public void testContent() throws Exception {
+        Assert.assertTrue(isMatched(BodyTransform.CONTENT, MatchType.CONTAINS, "Wobble", "text"));
+        Assert.assertFalse(isMatched(BodyTransform.CONTENT, MatchType.CONTAINS, "Wobble", "text/plain"));
+        Assert.assertTrue(isMatched(BodyTransform.CONTENT, MatchType.CONTAINS, "Binary Flob", 
+                "application/octet-stream"));
+        Assert.assertTrue(isMatched(BodyTransform.CONTENT, MatchType.CONTAINS, "preamble", "multipart"));
+        Assert.assertTrue(isMatched(BodyTransform.CONTENT, MatchType.CONTAINS, "Flob", ""));
+        Assert.assertFalse(isMatched(BodyTransform.CONTENT, MatchType.CONTAINS, "Wibble", "text/"));
+    }
+
+    /**
+     * :raw searches the undecoded body
+     */
+    @Test
+    public void testRaw() throws Exception {
+        Assert.assertTrue(isMatched(BodyTransform.RAW, MatchType.CONTAINS, "QmluYXJ5IEZsb2I="));
+        Assert.assertTrue(isMatched(BodyTransform.RAW, MatchType.CONTAINS, "Html=20Wobble"));
+        Assert.assertFalse(isMatched(BodyTransform.RAW, MatchType.CONTAINS, "Binary Flob"));
+    }
+
+    /**
+     * Every match type and comparator is applied to the text of each part
+     */
+    @Test
+    public void testMatchTypesAndComparators() throws Exception {
+        Assert.assertTrue(isMatched(BodyTransform.CONTENT, MatchType.IS, "plain wibble", "text/plain"));
+        Assert.assertFalse(isMatched(BodyTransform.CONTENT, MatchType.IS, "wibble", "text/plain"));
+        Assert.assertFalse(isMatched(BodyTransform.CONTENT, MatchType.IS, "plain", "text/plain"));
+        Assert.assertTrue(isMatched(BodyTransform.CONTENT, MatchType.MATCHES, "plain wibble*", "text/plain"));
+        Assert.assertTrue(isMatched(BodyTransform.CONTENT, MatchType.MATCHES, "*html?wobble*", "text/html"));
+        Assert.assertFalse(isMatched(MessageView.UNLIMITED, new Octet(), BodyTransform.TEXT, 
+                MatchType.CONTAINS, "wibble"));
+        Assert.assertTrue(isMatched(MessageView.UNLIMITED, new Octet(), BodyTransform.TEXT, 
+                MatchType.CONTAINS, "Wibble"));
+        Assert.assertTrue(isMatched(MessageView.UNLIMITED, new Octet(), BodyTransform.CONTENT, 
+                MatchType.IS, "Plain Wibble", "text/plain"));
+    }
+
+    /**
+     * No more than the limit is matched, across all parts
+     */
+    @Test
+    public void testBodyScanLimit() throws Exception {
+        Assert.assertTrue(isMatched(5, new AsciiCasemap(), BodyTransform.TEXT, 
+                MatchType.CONTAINS, "Plain"));
+        Assert.assertFalse(isMatched(5, new AsciiCasemap(), BodyTransform.TEXT, 
+                MatchType.CONTAINS, "Wibble"));
+        Assert.assertFalse(isMatched(12, new AsciiCasemap(), BodyTransform.TEXT, 
+                MatchType.CONTAINS, "Wobble"));
+        Assert.assertTrue(isMatched(5, new AsciiCasemap(), BodyTransform.CONTENT, 
+                MatchType.IS, "Plain", "text/plain"));
+    }
+
+    /**
+     * Matches are memoized for the mail, shared with overlays, while scans 
+     * are made each time
+     */
+    @Test
+    public void testMatchesMemoized() throws Exception {
+        MessageView view = multipart(MessageView.UNLIMITED);
+        final BodyMatch arguments = new BodyArguments(ComparatorNames.ASCII_CASEMAP_COMPARATOR, 
+                new AsciiCasemap(), MatchType.CONTAINS, BodyTransform.TEXT, 
+                Collections.<String> emptyList(), Collections.singletonList("nowhere"));
+        final int[] matchers = new int[1];
+        BodyMatch match = new BodyMatch() {
+            public BodyTransform getTransform() {
+                return arguments.getTransform();
+            }
+
+            public boolean isSelected(String mimeType) {
+                return arguments.isSelected(mimeType);
+            }
+
+            public Matcher newMatcher() {
+                matchers[0]++;
+                return arguments.newMatcher();
+            }
+        };
+        Assert.assertFalse(view.matchBody(match));
+        int parts = matchers[0];
+        Assert.assertEquals(3, parts);
+        Assert.assertFalse(view.withHeader("Delivered-To", "bob@example.org").matchBody(match));
+        Assert.assertEquals(parts, matchers[0]);
+        Assert.assertFalse(view.scanBody(match));
+        Assert.assertEquals(2 * parts, matchers[0]);
+    }
+}
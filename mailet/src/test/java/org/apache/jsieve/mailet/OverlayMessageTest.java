@@ -0,0 +1,124 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.ByteArrayOutputStream;
+
+import javax.mail.IllegalWriteException;
+import javax.mail.internet.MimeMessage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class OverlayMessageTest
+ */
+public class OverlayMessageTest {
+
+    private static final String MESSAGE = "From: alice@example.org\r\n"
+            + "Subject: Stored\r\n" + "Message-ID: <1@example.org>\r\n"
+            + "\r\n" + "Stored body\r\n";
+
+    /**
+     * The message is copied once, and its headers left unaltered
+     */
+    @Test
+    public void testStoredMessage() throws Exception {
+        MimeMessage message = FakeMail.stored(MESSAGE, "bob@localhost")
+                .getMessage();
+        OverlayMessage overlay = new OverlayMessage(message);
+        overlay.addHeader("Delivered-To", "bob@localhost");
+
+        Assert.assertNotSame(message, overlay.getSharedMessage());
+        Assert.assertNull(message.getHeader("Delivered-To"));
+        Assert.assertEquals("Stored", overlay.getSubject());
+        String written = write(overlay);
+        Assert.assertTrue(written.startsWith("Delivered-To: bob@localhost\r\n"));
+        Assert.assertTrue(written.endsWith("\r\n\r\nStored body\r\n"));
+    }
+
+    /**
+     * A message built in memory, without a stored body, is copied
+     */
+    @Test
+    public void testMessageBuiltInMemory() throws Exception {
+        MimeMessage message = FakeMail.built("Built", "Built body",
+                "bob@localhost").getMessage();
+        OverlayMessage overlay = new OverlayMessage(message);
+        overlay.addHeader("Delivered-To", "bob@localhost");
+
+        Assert.assertNotSame(message, overlay.getSharedMessage());
+        Assert.assertNull(message.getHeader("Delivered-To"));
+        Assert.assertEquals("Built", overlay.getSubject());
+        Assert.assertEquals(message.getMessageID(), overlay.getMessageID());
+        Assert.assertEquals("Built body", overlay.getContent());
+        Assert.assertTrue(write(overlay).endsWith("\r\n\r\nBuilt body"));
+    }
+
+    /**
+     * A body replaced after the message was read is delivered
+     */
+    @Test
+    public void testModifiedBody() throws Exception {
+        MimeMessage message = FakeMail.stored(MESSAGE, "bob@localhost")
+                .getMessage();
+        message.setText("Modified body");
+        message.saveChanges();
+        OverlayMessage overlay = new OverlayMessage(message);
+        overlay.addHeader("Delivered-To", "bob@localhost");
+
+        Assert.assertEquals("Modified body", overlay.getContent());
+        String written = write(overlay);
+        Assert.assertTrue(written.startsWith("Delivered-To: bob@localhost\r\n"));
+        Assert.assertTrue(written.endsWith("\r\n\r\nModified body"));
+    }
+
+    /**
+     * Overlays of overlays share the copy of the original message
+     */
+    @Test
+    public void testOverlaysAreNotChained() throws Exception {
+        MimeMessage message = FakeMail.stored(MESSAGE, "bob@localhost")
+                .getMessage();
+        OverlayMessage overlay = new OverlayMessage(message);
+        overlay.addHeader("X-First", "1");
+        OverlayMessage second = new OverlayMessage(overlay);
+        second.addHeader("X-Second", "2");
+
+        Assert.assertSame(overlay.getSharedMessage(), second.getSharedMessage());
+        Assert.assertEquals("1", second.getHeader("X-First")[0]);
+        Assert.assertNull(overlay.getHeader("X-Second"));
+    }
+
+    /**
+     * The shared body cannot be replaced
+     */
+    @Test(expected = IllegalWriteException.class)
+    public void testBodyCannotBeSet() throws Exception {
+        MimeMessage message = FakeMail.stored(MESSAGE, "bob@localhost")
+                .getMessage();
+        new OverlayMessage(message).setText("Replaced");
+    }
+
+    private static String write(MimeMessage message) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+        return out.toString("US-ASCII");
+    }
+}
@@ -0,0 +1,119 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+/**
+ * Records the messages posted to each destination, for testing.
+ * Destinations may be set to fail.
+ */
+public class RecordingPoster implements Poster {
+
+    /**
+     * A message posted to a destination.
+     */
+    public static final class Posting {
+
+        private final String uri;
+
+        private final MimeMessage message;
+
+        Posting(String uri, MimeMessage message) {
+            this.uri = uri;
+            this.message = message;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        public MimeMessage getMessage() {
+            return message;
+        }
+
+        public String toString() {
+            return uri;
+        }
+    }
+
+    private final List<Posting> postings = new ArrayList<Posting>();
+
+    private final Set<String> failing = Collections.synchronizedSet(new HashSet<String>());
+
+    /**
+     * Makes posts to the given destination fail.
+     * @param uri not null
+     */
+    public void fail(String uri) {
+        failing.add(uri);
+    }
+
+    /**
+     * Makes posts to the given destination succeed again.
+     * @param uri not null
+     */
+    public void recover(String uri) {
+        failing.remove(uri);
+    }
+
+    /**
+     * Records a copy of the message, as a mailbox would store it.
+     */
+    public void post(String uri, MimeMessage mail) throws MessagingException {
+        if (failing.contains(uri)) {
+            throw new MessagingException("Cannot post to " + uri);
+        }
+        final MimeMessage copy = FakeMailetContext.copy(mail);
+        synchronized (postings) {
+            postings.add(new Posting(uri, copy));
+        }
+    }
+
+    /**
+     * Gets the messages posted, in order.
+     * @return not null
+     */
+    public List<Posting> getPostings() {
+        synchronized (postings) {
+            return new ArrayList<Posting>(postings);
+        }
+    }
+
+    /**
+     * Gets the destinations posted to, sorted, so that postings made
+     * concurrently may be compared.
+     * @return not null
+     */
+    public List<String> getUris() {
+        final List<String> results = new ArrayList<String>();
+        for (final Posting posting : getPostings()) {
+            results.add(posting.getUri());
+        }
+        Collections.sort(results);
+        return results;
+    }
+}
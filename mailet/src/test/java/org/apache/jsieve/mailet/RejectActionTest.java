@@ -0,0 +1,140 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.impl.NoOpLog;
+import org.apache.jsieve.mail.ActionReject;
+import org.apache.jsieve.mailet.mdn.MDNGenerator;
+import org.apache.mailet.Mail;
+import org.apache.mailet.MailAddress;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class RejectActionTest
+ */
+public class RejectActionTest {
+
+    private static final String MESSAGE = "From: alice@example.org\r\n"
+            + "To: bob@localhost\r\n" + "Subject: Unwanted\r\n"
+            + "Message-ID: <1@example.org>\r\n" + "\r\n" + "Unwanted body\r\n";
+
+    private List<MimeMessage> replies;
+
+    private List<Collection<MailAddress>> recipients;
+
+    private List<Runnable> submitted;
+
+    private ActionContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        replies = new ArrayList<MimeMessage>();
+        recipients = new ArrayList<Collection<MailAddress>>();
+        submitted = new ArrayList<Runnable>();
+        context = new ActionContext() {
+            public Log getLog() {
+                return new NoOpLog();
+            }
+
+            public void post(String uri, MimeMessage mail) throws MessagingException {
+                Assert.fail("Expected a reply to be sent");
+            }
+
+            public void post(MailAddress sender, Collection<MailAddress> to, MimeMessage mail) 
+                    throws MessagingException {
+                recipients.add(to);
+                replies.add(mail);
+            }
+
+            public String getServerInfo() {
+                return "Test Server";
+            }
+        };
+    }
+
+    private Mail reject(Executor executor) throws Exception {
+        Mail mail = FakeMail.stored(MESSAGE, "bob@localhost");
+        new RejectAction(new MDNGenerator("mail.example.org"), executor).execute(
+                new ActionReject("No thanks"), mail, context);
+        return mail;
+    }
+
+    /**
+     * Without an executor, the reply is sent to the sender at once
+     */
+    @Test
+    public void testReplySentAtOnce() throws Exception {
+        Mail mail = reject(null);
+        Assert.assertEquals(Mail.GHOST, mail.getState());
+        Assert.assertEquals(1, replies.size());
+        Assert.assertEquals(FakeMail.addresses("alice@example.org"), recipients.get(0));
+        MimeMessage reply = replies.get(0);
+        Assert.assertEquals("bob@localhost", reply.getFrom()[0].toString());
+        MimeMultipart report = (MimeMultipart) reply.getContent();
+        Assert.assertTrue(((String) report.getBodyPart(0).getContent()).endsWith("No thanks"));
+        String fields = (String) report.getBodyPart(1).getContent();
+        Assert.assertTrue(fields.startsWith("Reporting-UA: mail.example.org; Test Server\r\n"));
+        Assert.assertTrue(fields.contains("Original-Message-ID: <1@example.org>\r\n"));
+        Assert.assertTrue(fields.endsWith(MDNGenerator.REJECTED_DISPOSITION + "\r\n"));
+    }
+
+    /**
+     * With an executor, the reply is sent when the executor runs it
+     */
+    @Test
+    public void testReplySubmittedToExecutor() throws Exception {
+        Mail mail = reject(new Executor() {
+            public void execute(Runnable command) {
+                submitted.add(command);
+            }
+        });
+        Assert.assertEquals(Mail.GHOST, mail.getState());
+        Assert.assertTrue(replies.isEmpty());
+        Assert.assertEquals(1, submitted.size());
+        submitted.get(0).run();
+        Assert.assertEquals(1, replies.size());
+        Assert.assertEquals(FakeMail.addresses("alice@example.org"), recipients.get(0));
+    }
+
+    /**
+     * When the executor rejects the reply, it is sent at once
+     */
+    @Test
+    public void testReplySentWhenExecutorRejects() throws Exception {
+        reject(new Executor() {
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        Assert.assertEquals(1, replies.size());
+    }
+}
@@ -0,0 +1,104 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class ResourceLocatorAdapterTest
+ */
+public class ResourceLocatorAdapterTest {
+
+    private static final String URI = "//bob@localhost/sieve";
+
+    private MapResourceLocator scripts;
+
+    private VersionedResourceLocator locator;
+
+    @Before
+    public void setUp() throws Exception {
+        scripts = new MapResourceLocator();
+        scripts.put("bob@localhost", "keep;");
+        locator = ResourceLocatorAdapter.adapt(scripts);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int read;
+            while ((read = in.read()) != -1) {
+                out.write(read);
+            }
+            return out.toString("US-ASCII");
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Only plain locators are adapted
+     */
+    @Test
+    public void testAdapt() throws Exception {
+        Assert.assertTrue(locator instanceof ResourceLocatorAdapter);
+        Assert.assertSame(locator, ResourceLocatorAdapter.adapt(locator));
+        Assert.assertNull(ResourceLocatorAdapter.adapt(null));
+    }
+
+    /**
+     * The version is a digest of the content, unknown until it is read
+     */
+    @Test
+    public void testGetResource() throws Exception {
+        Assert.assertNull(locator.getVersion(URI));
+        Resource resource = locator.getResource(URI);
+        Assert.assertEquals("keep;", read(resource.getContent()));
+        Assert.assertEquals(40, resource.getVersion().length());
+        Assert.assertEquals(resource.getVersion(), locator.getResource(URI).getVersion());
+    }
+
+    /**
+     * An unchanged script is not answered again
+     */
+    @Test
+    public void testUnchangedVersion() throws Exception {
+        String version = locator.getResource(URI).getVersion();
+        Assert.assertNull(locator.getIfModified(URI, version));
+    }
+
+    /**
+     * A script is answered when its content changes, or no version is known
+     */
+    @Test
+    public void testChangedVersion() throws Exception {
+        String version = locator.getResource(URI).getVersion();
+        Assert.assertNotNull(locator.getIfModified(URI, null));
+        scripts.put("bob@localhost", "discard;");
+        Resource resource = locator.getIfModified(URI, version);
+        Assert.assertNotNull(resource);
+        Assert.assertEquals("discard;", read(resource.getContent()));
+        Assert.assertFalse(version.equals(resource.getVersion()));
+    }
+}
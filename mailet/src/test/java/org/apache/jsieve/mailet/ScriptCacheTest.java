@@ -0,0 +1,144 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.io.ByteArrayInputStream;
+
+import org.apache.jsieve.CompiledScript;
+import org.apache.jsieve.ConfigurationManager;
+import org.apache.jsieve.SieveFactory;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Class ScriptCacheTest
+ */
+public class ScriptCacheTest {
+
+    private static CompiledScript script;
+
+    @BeforeClass
+    public static void compile() throws Exception {
+        SieveFactory factory = new ConfigurationManager().build();
+        script = factory.compile(factory.parse(new ByteArrayInputStream("keep;"
+                .getBytes("US-ASCII"))));
+    }
+
+    private static CachedScript entry(int weight) {
+        return new CachedScript("1", weight, script);
+    }
+
+    /**
+     * The least recently used entry is evicted once there are too many
+     */
+    @Test
+    public void testEvictionBySize() throws Exception {
+        ScriptCache cache = new ScriptCache(2, 1000);
+        CachedScript a = entry(10);
+        cache.put("a", a);
+        cache.put("b", entry(10));
+        // Using a makes b the least recently used
+        Assert.assertSame(a, cache.get("a"));
+        cache.put("c", entry(10));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertSame(a, cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("c"));
+    }
+
+    /**
+     * Least recently used entries are evicted once they weigh too much
+     */
+    @Test
+    public void testEvictionByWeight() throws Exception {
+        ScriptCache cache = new ScriptCache(10, 100);
+        cache.put("a", entry(40));
+        cache.put("b", entry(40));
+        cache.put("c", entry(40));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNull(cache.get("a"));
+        // Evicts both b and c
+        cache.put("d", entry(90));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertNotNull(cache.get("d"));
+    }
+
+    /**
+     * Replacing an entry releases the weight of the entry replaced
+     */
+    @Test
+    public void testReplace() throws Exception {
+        ScriptCache cache = new ScriptCache(10, 100);
+        cache.put("a", entry(60));
+        CachedScript replacement = entry(60);
+        cache.put("a", replacement);
+        cache.put("b", entry(40));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertSame(replacement, cache.get("a"));
+    }
+
+    /**
+     * An entry weighing more than the maximum is not cached, and does not
+     * evict others
+     */
+    @Test
+    public void testOversizeEntryNotCached() throws Exception {
+        ScriptCache cache = new ScriptCache(10, 100);
+        cache.put("a", entry(50));
+        cache.put("b", entry(101));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    /**
+     * Invalidated entries are discarded and their weight released
+     */
+    @Test
+    public void testInvalidate() throws Exception {
+        ScriptCache cache = new ScriptCache(10, 100);
+        cache.put("a", entry(60));
+        cache.put("b", entry(30));
+        cache.invalidate("a");
+        cache.invalidate("missing");
+        Assert.assertNull(cache.get("a"));
+        cache.put("c", entry(70));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNotNull(cache.get("b"));
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        cache.put("d", entry(100));
+        Assert.assertNotNull(cache.get("d"));
+    }
+
+    /**
+     * A maximum size of zero or less disables caching
+     */
+    @Test
+    public void testDisabled() throws Exception {
+        ScriptCache cache = new ScriptCache(0, 100);
+        cache.put("a", entry(10));
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(0, cache.size());
+        cache = new ScriptCache(-1, 100);
+        cache.put("a", entry(10));
+        Assert.assertNull(cache.get("a"));
+    }
+}
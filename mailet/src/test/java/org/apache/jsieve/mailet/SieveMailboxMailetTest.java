@@ -0,0 +1,436 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.mailet.Mail;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class SieveMailboxMailetTest
+ */
+public class SieveMailboxMailetTest {
+
+    private static final String MESSAGE = "From: alice@example.org\r\n"
+            + "To: bob@localhost, carol@localhost\r\n"
+            + "Subject: Stored\r\n" + "Message-ID: <1@example.org>\r\n"
+            + "\r\n" + "Stored body\r\n";
+
+    private static final String FILE_INTO = "require \"fileinto\"; fileinto \"Lists\";";
+
+    private static final String INVALID = "if header :is \"Subject\" { keep; ";
+
+    private static final String SCRIPT = "//bob@localhost/sieve";
+
+    private static final String INBOX = "mailbox://bob@localhost/";
+
+    private FakeMailetContext context;
+
+    private FakeMailetConfig config;
+
+    private RecordingPoster poster;
+
+    private MapResourceLocator locator;
+
+    private SieveMailboxMailet mailet;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new FakeMailetContext();
+        config = new FakeMailetConfig(context);
+        poster = new RecordingPoster();
+        locator = new MapResourceLocator();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mailet != null) {
+            mailet.destroy();
+        }
+    }
+
+    private SieveMailboxMailet init() throws Exception {
+        mailet = new SieveMailboxMailet(poster, locator);
+        mailet.init(config);
+        return mailet;
+    }
+
+    /**
+     * Stored messages are filed into each recipient's mailbox
+     */
+    @Test
+    public void testFileIntoStoredMessage() throws Exception {
+        locator.put("bob@localhost", FILE_INTO);
+        init().service(FakeMail.stored(MESSAGE, "bob@localhost"));
+        assertFiled("Stored", "Stored body\r\n", "mailbox://bob@localhost/Lists");
+    }
+
+    /**
+     * Messages built in memory are filed into each recipient's mailbox
+     */
+    @Test
+    public void testFileIntoMessageBuiltInMemory() throws Exception {
+        locator.put("bob@localhost", FILE_INTO);
+        init().service(FakeMail.built("Built", "Built body", "bob@localhost"));
+        assertFiled("Built", "Built body", "mailbox://bob@localhost/Lists");
+    }
+
+    /**
+     * Each recipient of a mail has its own script evaluated against
+     * the mail addressed to it alone
+     */
+    @Test
+    public void testEachRecipientEvaluatedAlone() throws Exception {
+        locator.put("bob@localhost", FILE_INTO);
+        locator.put("carol@localhost", "require \"fileinto\"; fileinto \"Archive\";");
+        config.set("addDeliveryHeader", "Delivered-To");
+        init().service(FakeMail.stored(MESSAGE, "bob@localhost", "carol@localhost"));
+        assertFiled("Stored", "Stored body\r\n", "mailbox://bob@localhost/Lists",
+                "mailbox://carol@localhost/Archive");
+        Assert.assertEquals("bob@localhost", 
+                poster.getPostings().get(0).getMessage().getHeader("Delivered-To")[0]);
+    }
+
+    /**
+     * Recipients evaluated concurrently are each given a copy of a
+     * stored message
+     */
+    @Test
+    public void testConcurrentStoredMessage() throws Exception {
+        locator.put("bob@localhost", FILE_INTO);
+        locator.put("carol@localhost", FILE_INTO);
+        config.set("parallelism", "2").set("addDeliveryHeader", "Delivered-To");
+        init().service(FakeMail.stored(MESSAGE, "bob@localhost", "carol@localhost"));
+        assertFiled("Stored", "Stored body\r\n", "mailbox://bob@localhost/Lists",
+                "mailbox://carol@localhost/Lists");
+    }
+
+    /**
+     * Recipients evaluated concurrently are each given a copy of a
+     * message built in memory
+     */
+    @Test
+    public void testConcurrentMessageBuiltInMemory() throws Exception {
+        locator.put("bob@localhost", FILE_INTO);
+        locator.put("carol@localhost", FILE_INTO);
+        config.set("parallelism", "2").set("addDeliveryHeader", "Delivered-To");
+        init().service(FakeMail.built("Built", "Built body", "bob@localhost", "carol@localhost"));
+        assertFiled("Built", "Built body", "mailbox://bob@localhost/Lists",
+                "mailbox://carol@localhost/Lists");
+    }
+
+    /**
+     * Batched deliveries failing for one recipient do not prevent
+     * delivery to the others, and only that recipient is an error
+     */
+    @Test
+    public void testBatchDeliveryFailure() throws Exception {
+        locator.put("bob@localhost", FILE_INTO);
+        locator.put("carol@localhost", FILE_INTO);
+        poster.fail("mailbox://bob@localhost/Lists");
+        config.set("batchDeliveries", "true");
+        init().service(FakeMail.stored(MESSAGE, "bob@localhost", "carol@localhost"));
+        Assert.assertEquals(Arrays.asList("mailbox://carol@localhost/Lists"), poster.getUris());
+        Assert.assertEquals(1, context.getSent(Mail.ERROR).size());
+        Assert.assertEquals(FakeMail.addresses("bob@localhost"), 
+                context.getSent(Mail.ERROR).get(0).getRecipients());
+    }
+
+    /**
+     * Redirects of a mail by many recipients are sent once to all 
+     * distinct destinations
+     */
+    @Test
+    public void testCoalescedRedirects() throws Exception {
+        locator.put("bob@localhost", "redirect \"dave@example.org\";");
+        locator.put("carol@localhost", "redirect \"dave@example.org\";");
+        locator.put("dan@localhost", "redirect \"erin@example.org\";");
+        config.set("coalesceRedirects", "true");
+        init().service(FakeMail.stored(MESSAGE, "bob@localhost", "carol@localhost", 
+                "dan@localhost"));
+        Assert.assertEquals(1, context.getSent().size());
+        FakeMailetContext.SentMail sent = context.getSent().get(0);
+        Assert.assertEquals(Mail.DEFAULT, sent.getState());
+        Assert.assertEquals("sender@example.org", sent.getSender().toString());
+        Assert.assertEquals(FakeMail.addresses("dave@example.org", "erin@example.org"), 
+                sent.getRecipients());
+        Assert.assertEquals("Stored", sent.getMessage().getSubject());
+    }
+
+    /**
+     * Redirects are not coalesced when each carries the delivery header 
+     * of its recipient
+     */
+    @Test
+    public void testRedirectsCarryDeliveryHeader() throws Exception {
+        locator.put("bob@localhost", "redirect \"dave@example.org\";");
+        locator.put("carol@localhost", "redirect \"dave@example.org\";");
+        config.set("coalesceRedirects", "true").set("addDeliveryHeader", "Delivered-To")
+                .set("parallelism", "2");
+        init().service(FakeMail.stored(MESSAGE, "bob@localhost", "carol@localhost"));
+        Assert.assertEquals(2, context.getSent().size());
+        Assert.assertEquals("bob@localhost", 
+                context.getSent().get(0).getMessage().getHeader("Delivered-To")[0]);
+        Assert.assertEquals("carol@localhost", 
+                context.getSent().get(1).getMessage().getHeader("Delivered-To")[0]);
+    }
+
+    /**
+     * A script which cannot be compiled is quarantined until it is changed,
+     * and each failure is thrown afresh
+     */
+    @Test
+    public void testQuarantine() throws Exception {
+        locator.put("bob@localhost", INVALID);
+        init().service(FakeMail.stored(MESSAGE, "bob@localhost"));
+        Assert.assertEquals(Arrays.asList(INBOX), poster.getUris());
+        Assert.assertTrue(mailet.getScriptCache().get(SCRIPT).isQuarantined());
+
+        Exception first = failure(SCRIPT);
+        Exception second = failure(SCRIPT);
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(mailet.getScriptCache().get(SCRIPT).getFailure(), first.getCause());
+        Assert.assertSame(first.getCause(), second.getCause());
+
+        locator.put("bob@localhost", FILE_INTO);
+        mailet.service(FakeMail.stored(MESSAGE, "bob@localhost"));
+        Assert.assertFalse(mailet.getScriptCache().get(SCRIPT).isQuarantined());
+        Assert.assertEquals(Arrays.asList(INBOX, "mailbox://bob@localhost/Lists"), poster.getUris());
+    }
+
+    /**
+     * A user is notified of failures of their script at most once in 
+     * each interval, and other failing mails are stored in their INBOX
+     */
+    @Test
+    public void testFailureNoticeRateLimited() throws Exception {
+        locator.put("bob@localhost", INVALID);
+        init();
+        for (int i = 0; i < 3; i++) {
+            mailet.service(FakeMail.stored(MESSAGE, "bob@localhost"));
+        }
+        Assert.assertEquals(Arrays.asList("[SIEVE ERROR] Stored", "Stored", "Stored"), subjects());
+    }
+
+    /**
+     * With deliveries batched, the notice is posted in the batch in place
+     * of the mail, as the mail is when no notice is due
+     */
+    @Test
+    public void testFailureNoticeRateLimitedBatched() throws Exception {
+        final List<String> subjects = new ArrayList<String>();
+        locator.put("bob@localhost", INVALID);
+        config.set("batchDeliveries", "true");
+        mailet = new SieveMailboxMailet(new BatchPoster() {
+            public void post(String uri, MimeMessage mail) throws MessagingException {
+                Assert.fail("Expected deliveries to be batched");
+            }
+
+            public List<Delivery> post(MimeMessage message, List<Delivery> deliveries) 
+                    throws MessagingException {
+                for (Delivery delivery : deliveries) {
+                    Assert.assertEquals(INBOX, delivery.getUri());
+                    subjects.add(delivery.getMessage().getSubject());
+                }
+                return Collections.emptyList();
+            }
+        }, locator);
+        mailet.init(config);
+        for (int i = 0; i < 3; i++) {
+            mailet.service(FakeMail.stored(MESSAGE, "bob@localhost"));
+        }
+        Assert.assertEquals(Arrays.asList("[SIEVE ERROR] Stored", "Stored", "Stored"), subjects);
+    }
+
+    /**
+     * Every failure is notified when the interval is zero
+     */
+    @Test
+    public void testFailureNoticeUnlimited() throws Exception {
+        locator.put("bob@localhost", INVALID);
+        config.set("failureNoticeInterval", "0");
+        init();
+        for (int i = 0; i < 2; i++) {
+            mailet.service(FakeMail.stored(MESSAGE, "bob@localhost"));
+        }
+        Assert.assertEquals(Arrays.asList("[SIEVE ERROR] Stored", "[SIEVE ERROR] Stored"), subjects());
+    }
+
+    /**
+     * A notice which cannot be stored is not recorded, so the next failure
+     * is notified
+     */
+    @Test
+    public void testFailedNoticeIsNotRecorded() throws Exception {
+        locator.put("bob@localhost", INVALID);
+        poster.fail(INBOX);
+        init().service(FakeMail.stored(MESSAGE, "bob@localhost"));
+        Assert.assertEquals(1, context.getSent(Mail.ERROR).size());
+        poster.recover(INBOX);
+        mailet.service(FakeMail.stored(MESSAGE, "bob@localhost"));
+        Assert.assertEquals(Arrays.asList("[SIEVE ERROR] Stored"), subjects());
+    }
+
+    /**
+     * Evaluating recipients concurrently has the same outcome as evaluating
+     * them in turn
+     */
+    @Test
+    public void testConcurrentOutcomeMatchesSequential() throws Exception {
+        Assert.assertEquals(outcome("1"), outcome("4"));
+    }
+
+    private List<String> outcome(String parallelism) throws Exception {
+        setUp();
+        locator.put("bob@localhost", FILE_INTO);
+        locator.put("carol@localhost", "discard;");
+        locator.put("dan@localhost", "redirect \"erin@example.org\";");
+        locator.put("fred@localhost", INVALID);
+        locator.put("gina@localhost", "if header :contains \"Subject\" \"Stored\" " 
+                + "{ keep; } else { discard; }");
+        poster.fail("mailbox://gina@localhost/INBOX");
+        poster.fail("mailbox://gina@localhost/");
+        config.set("addDeliveryHeader", "Delivered-To").set("parallelism", parallelism);
+        init().service(FakeMail.stored(MESSAGE, "bob@localhost", "carol@localhost", 
+                "dan@localhost", "fred@localhost", "gina@localhost", "harry@localhost"));
+        mailet.destroy();
+        mailet = null;
+        final List<String> results = new ArrayList<String>();
+        for (RecordingPoster.Posting posting : poster.getPostings()) {
+            results.add(posting.getUri() + " " + posting.getMessage().getSubject() + " " 
+                    + deliveredTo(posting.getMessage()));
+        }
+        for (FakeMailetContext.SentMail sent : context.getSent()) {
+            results.add(sent.toString() + " " + deliveredTo(sent.getMessage()));
+        }
+        Collections.sort(results);
+        return results;
+    }
+
+    private static List<String> deliveredTo(MimeMessage message) throws MessagingException {
+        final String[] values = message.getHeader("Delivered-To");
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(values);
+    }
+
+    /**
+     * Replies to rejected mail sent in the background are all sent 
+     * before the mailet is destroyed
+     */
+    @Test
+    public void testAsyncReports() throws Exception {
+        locator.put("bob@localhost", "require \"reject\"; reject \"No thanks\";");
+        locator.put("carol@localhost", "require \"reject\"; reject \"No thanks\";");
+        config.set("asyncReports", "true");
+        init();
+        for (int i = 0; i < 10; i++) {
+            mailet.service(FakeMail.stored(MESSAGE, "bob@localhost", "carol@localhost"));
+        }
+        mailet.destroy();
+        mailet = null;
+        Assert.assertEquals(20, context.getSent().size());
+        for (FakeMailetContext.SentMail sent : context.getSent()) {
+            Assert.assertEquals(FakeMail.addresses("alice@example.org"), sent.getRecipients());
+        }
+        Assert.assertTrue(poster.getPostings().isEmpty());
+    }
+
+    /**
+     * Batched deliveries are posted by a single call, each as an overlay 
+     * sharing one copy of the message and carrying its delivery header
+     */
+    @Test
+    public void testBatchDelivery() throws Exception {
+        final List<List<Delivery>> batches = new ArrayList<List<Delivery>>();
+        final List<MimeMessage> messages = new ArrayList<MimeMessage>();
+        locator.put("bob@localhost", FILE_INTO);
+        locator.put("carol@localhost", "keep;");
+        config.set("batchDeliveries", "true").set("addDeliveryHeader", "Delivered-To")
+                .set("parallelism", "2");
+        mailet = new SieveMailboxMailet(new BatchPoster() {
+            public void post(String uri, MimeMessage mail) throws MessagingException {
+                Assert.fail("Expected deliveries to be batched");
+            }
+
+            public List<Delivery> post(MimeMessage message, List<Delivery> deliveries) {
+                messages.add(message);
+                batches.add(deliveries);
+                return Collections.emptyList();
+            }
+        }, locator);
+        mailet.init(config);
+        FakeMail mail = FakeMail.stored(MESSAGE, "bob@localhost", "carol@localhost");
+        mailet.service(mail);
+
+        Assert.assertEquals(1, batches.size());
+        Assert.assertSame(mail.getMessage(), messages.get(0));
+        List<Delivery> deliveries = batches.get(0);
+        Assert.assertEquals(2, deliveries.size());
+        Assert.assertEquals("mailbox://bob@localhost/Lists", deliveries.get(0).getUri());
+        Assert.assertEquals("mailbox://carol@localhost/INBOX", deliveries.get(1).getUri());
+        MimeMessage copy = ((OverlayMessage) deliveries.get(0).getMessage()).getSharedMessage();
+        Assert.assertNotSame(mail.getMessage(), copy);
+        for (Delivery delivery : deliveries) {
+            OverlayMessage overlay = (OverlayMessage) delivery.getMessage();
+            Assert.assertSame(copy, overlay.getSharedMessage());
+            Assert.assertEquals(delivery.getRecipient().toString(), 
+                    overlay.getHeader("Delivered-To")[0]);
+        }
+        Assert.assertNull(mail.getMessage().getHeader("Delivered-To"));
+    }
+
+    private Exception failure(String script) {
+        try {
+            mailet.getScript(script);
+        } catch (Exception e) {
+            return e;
+        }
+        Assert.fail("Expected the script to fail");
+        return null;
+    }
+
+    private List<String> subjects() throws Exception {
+        List<String> results = new ArrayList<String>();
+        for (RecordingPoster.Posting posting : poster.getPostings()) {
+            results.add(posting.getMessage().getSubject());
+        }
+        return results;
+    }
+
+    private void assertFiled(String subject, String body, String... uris) throws Exception {
+        Assert.assertEquals(Arrays.asList(uris), poster.getUris());
+        for (RecordingPoster.Posting posting : poster.getPostings()) {
+            Assert.assertEquals(subject, posting.getMessage().getSubject());
+            Assert.assertEquals(body, posting.getMessage().getContent());
+        }
+        Assert.assertTrue(context.getSent(Mail.ERROR).isEmpty());
+    }
+}
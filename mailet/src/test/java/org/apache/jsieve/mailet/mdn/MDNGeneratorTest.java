@@ -0,0 +1,110 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.jsieve.mailet.mdn;
+
+import javax.mail.internet.MimeMultipart;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class MDNGeneratorTest
+ */
+public class MDNGeneratorTest {
+
+    private static String fields(MimeMultipart report) throws Exception {
+        return (String) report.getBodyPart(1).getContent();
+    }
+
+    /**
+     * Report fields are formatted as RFC 2298 
+     */
+    @Test
+    public void testCreate() throws Exception {
+        MimeMultipart report = new MDNGenerator("mail.example.org").create("Human text",
+                "Server", "alice@example.org", "bob@example.org", "<1@example.org>",
+                MDNGenerator.REJECTED_DISPOSITION);
+        Assert.assertEquals(2, report.getCount());
+        Assert.assertEquals("Human text", report.getBodyPart(0).getContent());
+        Assert.assertEquals("Reporting-UA: mail.example.org; Server\r\n"
+                + "Original-Recipient: rfc822; alice@example.org\r\n"
+                + "Final-Recepient: rfc822; bob@example.org\r\n"
+                + "Original-Message-ID: <1@example.org>\r\n"
+                + "Disposition: automatic-action/MDN-sent-automatically;deleted/error\r\n",
+                fields(report));
+    }
+
+    /**
+     * Missing fields are omitted or left empty
+     */
+    @Test
+    public void testCreateWithoutOptionalFields() throws Exception {
+        MimeMultipart report = new MDNGenerator("mail.example.org").create("Human text",
+                null, null, null, null, MDNGenerator.REJECTED_DISPOSITION);
+        Assert.assertEquals("Reporting-UA: mail.example.org; \r\n"
+                + "Final-Recepient: rfc822; \r\n"
+                + "Original-Message-ID: \r\n"
+                + MDNGenerator.REJECTED_DISPOSITION + "\r\n", fields(report));
+    }
+
+    /**
+     * A rejection carries the reason and the rejected disposition
+     */
+    @Test
+    public void testCreateRejection() throws Exception {
+        MimeMultipart report = new MDNGenerator("mail.example.org").createRejection(
+                "No thanks", "Server", null, "bob@example.org", "<1@example.org>");
+        String text = (String) report.getBodyPart(0).getContent();
+        Assert.assertTrue(text.startsWith("This message was refused"));
+        Assert.assertTrue(text.endsWith("\r\n\r\nNo thanks"));
+        Assert.assertTrue(fields(report).endsWith(MDNGenerator.REJECTED_DISPOSITION + "\r\n"));
+    }
+
+    /**
+     * The reporting user agent follows changes to its name and product
+     */
+    @Test
+    public void testReportingUAChanges() throws Exception {
+        MDNGenerator generator = new MDNGenerator("one.example.org");
+        Assert.assertTrue(fields(generator.createRejection("", "First", null, null, null))
+                .startsWith("Reporting-UA: one.example.org; First\r\n"));
+        Assert.assertTrue(fields(generator.createRejection("", "Second", null, null, null))
+                .startsWith("Reporting-UA: one.example.org; Second\r\n"));
+        generator.setReportingUAName("two.example.org");
+        Assert.assertEquals("two.example.org", generator.getReportingUAName());
+        Assert.assertTrue(fields(generator.createRejection("", "Second", null, null, null))
+                .startsWith("Reporting-UA: two.example.org; Second\r\n"));
+    }
+
+    /**
+     * The factory formats reports as before, leaving a missing name empty
+     */
+    @Test
+    public void testFactory() throws Exception {
+        MimeMultipart report = MDNFactory.create("Human text", null, "Server",
+                null, "bob@example.org", "<1@example.org>", new Disposition(
+                        new ActionModeManual(), new SendingModeManual(), new TypeDisplayed()));
+        Assert.assertEquals("Human text", report.getBodyPart(0).getContent());
+        Assert.assertEquals("Reporting-UA: ; Server\r\n"
+                + "Final-Recepient: rfc822; bob@example.org\r\n"
+                + "Original-Message-ID: <1@example.org>\r\n"
+                + "Disposition: manual-action/MDN-sent-manually;displayed\r\n",
+                fields(report));
+    }
+}
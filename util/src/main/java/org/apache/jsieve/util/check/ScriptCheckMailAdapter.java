@@ -22,8 +22,8 @@ package org.apache.jsieve.util.check;
 import org.apache.jsieve.SieveContext;
 import org.apache.jsieve.exception.SieveException;
 import org.apache.jsieve.mail.Action;
+import org.apache.jsieve.mail.HeaderIndex;
 import org.apache.jsieve.mail.MailAdapter;
-import org.apache.jsieve.mail.MailUtils;
 import org.apache.jsieve.mail.SieveMailException;
 import org.apache.jsieve.parser.address.SieveAddressBuilder;
 import org.apache.jsieve.parser.generated.address.ParseException;
@@ -47,6 +47,16 @@ public class ScriptCheckMailAdapter implements MailAdapter {
 
     private Message mail = null;
 
+    /**
+     * Index of the headers of the mail, built when first required
+     */
+    private HeaderIndex headerIndex = null;
+
+    /**
+     * Addresses parsed from the mail indexed by header name
+     */
+    private final Map<String, Address[]> addresses = new HashMap<String, Address[]>();
+
     public ScriptCheckMailAdapter() {
         actions = new ArrayList<Action>();
         executedActions = new ArrayList<Action>();
@@ -119,6 +129,8 @@ public class ScriptCheckMailAdapter implements MailAdapter {
     public void reset() {
         executedActions.clear();
         actions.clear();
+        headerIndex = null;
+        addresses.clear();
     }
 
     /**
@@ -197,7 +209,10 @@ public class ScriptCheckMailAdapter implements MailAdapter {
     public List<String> getMatchingHeader(String name) throws SieveMailException {
         List<String> result = Collections.EMPTY_LIST;
         if (mail != null) {
-            result = MailUtils.getMatchingHeader(this, name);
+            if (headerIndex == null) {
+                headerIndex = HeaderIndex.index(this);
+            }
+            result = headerIndex.getMatchingHeader(name);
         }
         return result;
     }
@@ -241,7 +256,12 @@ public class ScriptCheckMailAdapter implements MailAdapter {
 
     public Address[] parseAddresses(String headerName)
             throws SieveMailException {
-        return parseAddresses(headerName, mail);
+        Address[] results = addresses.get(headerName);
+        if (results == null) {
+            results = parseAddresses(headerName, mail);
+            addresses.put(headerName, results);
+        }
+        return results;
     }
 
     /**
@@ -290,6 +310,9 @@ public class ScriptCheckMailAdapter implements MailAdapter {
     }
 
     public void setContext(SieveContext context) {
+        // The mail may have changed since the last evaluation
+        headerIndex = null;
+        addresses.clear();
     }
 
 }